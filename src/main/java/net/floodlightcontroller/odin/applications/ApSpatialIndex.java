@@ -0,0 +1,134 @@
+package net.floodlightcontroller.odin.applications;
+
+/**
+ * k-d tree over the positions of APs, to find the AP nearest to a point without measuring the
+ * distance to all of them. The positions are kept in a flat array in tree order: the median of
+ * each range splits it along one axis, x, y and z in turn, and the halves on either side of it are
+ * the subtrees, so the tree needs no nodes. A search visits O(log n) positions on average.
+ * <p>
+ * The index does not change once built, so any number of threads can search it.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ApSpatialIndex {
+
+    private final double[] coordinates; // x, y, z of each position, in tree order
+    private final int[] ids;            // Index of each position in the array it was built from
+
+    /**
+     * @param positions x, y, z of each AP, one after the other; an AP is then known by its index
+     *                  in the array divided by 3
+     */
+    ApSpatialIndex(double[] positions) {
+        int n = positions.length / 3;
+        ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        build(positions, 0, n, 0);
+
+        coordinates = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(positions, 3 * ids[i], coordinates, 3 * i, 3);
+        }
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the AP nearest to the point, the lowest index among those at the same distance, -1
+     * if the index is empty
+     */
+    int nearest(double x, double y, double z) {
+        Nearest best = new Nearest();
+        search(0, ids.length, 0, x, y, z, best);
+        return best.id;
+    }
+
+    private static class Nearest {
+        int id = -1;
+        double distanceSquared = Double.POSITIVE_INFINITY;
+    }
+
+    private void search(int from, int to, int depth, double x, double y,
+                        double z, Nearest best) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        int i = 3 * median;
+        double dx = x - coordinates[i];
+        double dy = y - coordinates[i + 1];
+        double dz = z - coordinates[i + 2];
+        double d = dx * dx + dy * dy + dz * dz;
+        if (d < best.distanceSquared
+            || d == best.distanceSquared && ids[median] < best.id) {
+            best.distanceSquared = d;
+            best.id = ids[median];
+        }
+
+        int axis = depth % 3;
+        double split = axis == 0 ? dx : axis == 1 ? dy : dz;
+        // The side of the point first, the other only if it may hold a nearer AP
+        if (split < 0) {
+            search(from, median, depth + 1, x, y, z, best);
+            if (split * split <= best.distanceSquared) {
+                search(median + 1, to, depth + 1, x, y, z, best);
+            }
+        } else {
+            search(median + 1, to, depth + 1, x, y, z, best);
+            if (split * split <= best.distanceSquared) {
+                search(from, median, depth + 1, x, y, z, best);
+            }
+        }
+    }
+
+    /**
+     * Order ids[from, to) so that the median splits it along the axis of the depth: lower
+     * coordinates before, higher or equal ones after
+     */
+    private void build(double[] positions, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        select(positions, from, to - 1, median, depth % 3);
+        build(positions, from, median, depth + 1);
+        build(positions, median + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect of the k-th lowest coordinate along the axis in ids[low, high]
+     */
+    private void select(double[] positions, int low, int high, int k,
+                        int axis) {
+        while (low < high) {
+            int pivot = (low + high) >>> 1;
+            double value = positions[3 * ids[pivot] + axis];
+            swap(pivot, high);
+            int store = low;
+            for (int i = low; i < high; i++) {
+                if (positions[3 * ids[i] + axis] < value) {
+                    swap(store++, i);
+                }
+            }
+            swap(store, high);
+
+            if (k == store) {
+                return;
+            } else if (k < store) {
+                high = store - 1;
+            } else {
+                low = store + 1;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+}
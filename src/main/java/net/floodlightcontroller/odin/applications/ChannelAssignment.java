@@ -1,19 +1,16 @@
 package net.floodlightcontroller.odin.applications;
 
-import com.mathworks.toolbox.javabuilder.MWArray;
-import com.mathworks.toolbox.javabuilder.MWClassID;
-import com.mathworks.toolbox.javabuilder.MWNumericArray;
 import net.floodlightcontroller.odin.master.OdinApplication;
 import net.floodlightcontroller.odin.master.OdinClient;
 import net.floodlightcontroller.odin.master.OdinMaster.ChannelAssignmentParams;
 import net.floodlightcontroller.util.MACAddress;
 import org.apache.commons.io.output.TeeOutputStream;
-import wi5.Wi5;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -44,7 +41,9 @@ import java.util.Scanner;
 
     // Algorithm results
 
-    private int[][] channels = null;
+    private int[] channels = null;
+
+    private ChannelAssignmentSolver solver;
 
     private long time = 0L; // Compare timestamps in ms
 
@@ -66,6 +65,8 @@ import java.util.Scanner;
     @Override public void run() {
 
         this.CHANNEL_PARAMS = getChannelAssignmentParams();
+        this.solver = ChannelAssignmentSolver
+                .forMethod(CHANNEL_PARAMS.method, coefII);
         String operationMode = CHANNEL_PARAMS.mode;
         try {
             Thread.sleep(CHANNEL_PARAMS.time_to_start);
@@ -433,7 +434,7 @@ import java.util.Scanner;
                         System.out.println("[ChannelAssignment] Threshold: "
                                            + CHANNEL_PARAMS.threshold); // Print Threshold
                         channels = this.getChannelAssignments(pathLosses,
-                                                              CHANNEL_PARAMS.method); // Method: 1 for WI5, 2 for RANDOM, 3 for LCC
+                                                              null); // No external interference measured
                         System.out.println(
                                 "[ChannelAssignment] Timestamp - Algorithm: "
                                 + System.currentTimeMillis()
@@ -443,8 +444,8 @@ import java.util.Scanner;
                             System.out.println(
                                     "[ChannelAssignment] Setting AP "
                                     + agentAddr + " to channel: "
-                                    + channels[0][i]);
-                            setChannelToAgent(agentAddr, channels[0][i]);
+                                    + channels[i]);
+                            setChannelToAgent(agentAddr, channels[i]);
                             i++;
                         }
                     } else {
@@ -470,52 +471,17 @@ import java.util.Scanner;
         }
     }
 
-    private int[][] getChannelAssignments(double[][] pathLosses,
-                                          int methodType) {
-
-        //System.out.println(System.getProperty("java.library.path"));
-
-        MWNumericArray n = null;   /* Stores method_number */
-        Object[] result = null;    /* Stores the result */
-        Wi5 channelFinder = null;     /* Stores magic class instance */
-
-        MWNumericArray pathLossMatrix = null;
-
-        MWNumericArray channelsArray = null;
-        int[][] channels = null;
-
-        try {    /* Convert and print inputs */
-            pathLossMatrix = new MWNumericArray(pathLosses,
-                                                MWClassID.DOUBLE);
-            n = new MWNumericArray(methodType, MWClassID.DOUBLE);
-            /* Create new ChannelAssignment object */
-
-            channelFinder = new Wi5();
-            result = channelFinder
-                    .getChannelAssignments(1, pathLossMatrix, n);
-
-            /* Compute magic square and print result */
-            System.out.println(
-                    "[ChannelAssignment] =======CHANNEL ASSIGNMENTS=======");
-            System.out.println(result[0]); // result is type Object
-            System.out.println(
-                    "[ChannelAssignment] =================================");
-
-            channelsArray = (MWNumericArray) result[0]; // Object to 2D MWNumericArray
-            channels = (int[][]) channelsArray
-                    .toIntArray(); // 2D MWNumericArray to int[][]
-        } catch (Exception e) {
-            System.out.println("Exception: " + e.toString());
-        } finally {
-            /* Free native resources */
-            MWArray.disposeArray(pathLossMatrix);
-            MWArray.disposeArray(result);
-            MWArray.disposeArray(channelsArray);
-            if (channelFinder != null) {
-                channelFinder.dispose();
-            }
-            return channels;
-        }
+    private int[] getChannelAssignments(double[][] pathLosses,
+                                        double[][] externalII) {
+
+        int[] channels = solver.assign(pathLosses, txpowerAPs, externalII);
+
+        System.out.println(
+                "[ChannelAssignment] =======CHANNEL ASSIGNMENTS=======");
+        System.out.println(Arrays.toString(channels));
+        System.out.println(
+                "[ChannelAssignment] =================================");
+        return channels;
     }
 
     public void promptEnterKey() { // Function to ask for a key
@@ -0,0 +1,343 @@
+package net.floodlightcontroller.odin.applications;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Channel assignment of the APs from the path losses measured between them, as requested by the
+ * method of the poolfile's channel assignment parameters: 1 for WI5, 2 for RANDOM, 3 for LCC.
+ * <p>
+ * The interference impact minimised is the one ChannelAssignment measures against its threshold:
+ * the power an AP receives from each other AP, weighted by the coefficient of the distance between
+ * their channels, plus the external interference measured on each channel, if any.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+abstract class ChannelAssignmentSolver {
+
+    static final int METHOD_WI5 = 1;
+    static final int METHOD_RANDOM = 2;
+    static final int METHOD_LCC = 3;
+
+    static final int CHANNELS = 11; // Channels 1 to 11
+
+    /**
+     * @param method 1 for WI5, 2 for RANDOM, 3 for LCC
+     * @param coefII interference coefficient of each channel distance, from 0 to CHANNELS - 1
+     */
+    static ChannelAssignmentSolver forMethod(int method, double[] coefII) {
+        switch (method) {
+            case METHOD_WI5:
+                return new Wi5(coefII);
+            case METHOD_RANDOM:
+                return new RandomChannels();
+            case METHOD_LCC:
+                return new LeastCongested(coefII);
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown channel assignment method " + method);
+        }
+    }
+
+    /**
+     * @param pathLosses path loss in dB from each AP (row) to each other AP (column), 0 if not
+     *                   measured
+     * @param txPowers   transmission power of each AP in dBm
+     * @param externalII external interference impact in dB on each channel (row) at each AP
+     *                   (column), null if not measured
+     * @return channel of each AP, from 1 to CHANNELS
+     */
+    abstract int[] assign(double[][] pathLosses, int[] txPowers,
+                          double[][] externalII);
+
+    /**
+     * Interference between the APs, in linear power
+     */
+    static class Interference {
+        final int n;
+        final double[] coefII;
+        final double[][] received; // received[i][j]: power j gets from i
+        final double[][] mutual;   // received[i][j] + received[j][i]
+        final double[][] external; // external[i][c - 1]
+
+        Interference(double[] coefII, double[][] pathLosses, int[] txPowers,
+                     double[][] externalII) {
+            this.n = txPowers.length;
+            this.coefII = coefII;
+            received = new double[n][n];
+            mutual = new double[n][n];
+            external = new double[n][CHANNELS];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j && pathLosses[i][j] > 0) {
+                        received[i][j] = Math.pow(10.0,
+                                (txPowers[i] - pathLosses[i][j]) / 10.0);
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    mutual[i][j] = received[i][j] + received[j][i];
+                }
+            }
+            if (externalII != null) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    for (int i = 0; i < n; i++) {
+                        double db = externalII[c][i];
+                        external[i][c] = Double.isNaN(db) ? 0 :
+                                         Math.pow(10.0, db / 10.0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Interference AP i suffers and causes on channel c, given the channels of the others.
+         * APs with channel 0 are not assigned yet and ignored.
+         */
+        double cost(int i, int c, int[] channels) {
+            double sum = external[i][c - 1];
+            double[] row = mutual[i];
+            for (int j = 0; j < n; j++) {
+                if (j != i && channels[j] != 0 && row[j] != 0) {
+                    sum += coefII[Math.abs(c - channels[j])] * row[j];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @return interference impact of the assignment, in linear power
+         */
+        double total(int[] channels) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += external[i][channels[i] - 1];
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        sum += coefII[Math.abs(channels[i] - channels[j])]
+                               * received[j][i];
+                    }
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @return the cheapest channel for AP i, the lowest one on a tie
+         */
+        int bestChannel(int i, int[] channels) {
+            int best = 1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int c = 1; c <= CHANNELS; c++) {
+                double cost = cost(i, c, channels);
+                if (cost < bestCost) {
+                    best = c;
+                    bestCost = cost;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Local search over the total interference impact. Each AP in turn moves to the channel where
+     * it interferes least with the others, until none can improve; since the interference between
+     * two APs is counted for both, every move lowers the total and the search ends.
+     * <p>
+     * The first solve starts from the LCC assignment and from several random ones, run in parallel
+     * for large deployments, and keeps the best. Later solves start from the previous assignment,
+     * revisiting only the APs whose measurements changed, unless too many of them did.
+     */
+    static class Wi5 extends ChannelAssignmentSolver {
+
+        static final int RESTARTS = 8;
+        static final int PARALLEL_APS = 32;   // APs from which restarts run in parallel
+        static final double CHANGED = 0.01;   // Relative change of an interference to revisit an AP
+        static final double INCREMENTAL = 0.25; // Most APs changed for an incremental solve
+
+        private final double[] coefII;
+        private final long seed;
+
+        private Interference previous;
+        private int[] channels;
+
+        Wi5(double[] coefII) {
+            this(coefII, 0x5157L);
+        }
+
+        Wi5(double[] coefII, long seed) {
+            this.coefII = coefII.clone();
+            this.seed = seed;
+        }
+
+        @Override synchronized int[] assign(double[][] pathLosses,
+                                            int[] txPowers,
+                                            double[][] externalII) {
+            Interference model = new Interference(coefII, pathLosses, txPowers,
+                                                  externalII);
+            boolean[] changed = previous == null ? null :
+                                changedAps(previous, model);
+            if (changed != null && count(changed) <= model.n * INCREMENTAL) {
+                channels = channels.clone();
+                search(model, channels, changed);
+            } else {
+                channels = solve(model);
+            }
+            previous = model;
+            return channels.clone();
+        }
+
+        private int[] solve(final Interference model) {
+            IntStream starts = IntStream.range(0, RESTARTS);
+            if (model.n >= PARALLEL_APS) {
+                starts = starts.parallel();
+            }
+            final boolean[] all = new boolean[model.n];
+            Arrays.fill(all, true);
+
+            return starts.mapToObj(k -> {
+                int[] start = k == 0 ? LeastCongested.assign(model) :
+                              random(model.n, new Random(seed + k));
+                search(model, start, all);
+                return start;
+            }).reduce((a, b) -> model.total(b) < model.total(a) ? b : a).get();
+        }
+
+        /**
+         * Move the APs to their best channel, starting with the dirty ones, until none moves
+         */
+        static void search(Interference model, int[] channels,
+                           boolean[] dirty) {
+            boolean[] queued = dirty.clone();
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int i = 0; i < model.n; i++) {
+                if (queued[i]) {
+                    queue.add(i);
+                }
+            }
+            // Every move lowers the total, the bound only guards against rounding
+            long moves = (long) model.n * CHANNELS * 100;
+            while (!queue.isEmpty() && moves-- > 0) {
+                int i = queue.poll();
+                queued[i] = false;
+                int c = model.bestChannel(i, channels);
+                if (c == channels[i] || model.cost(i, c, channels)
+                                        >= model.cost(i, channels[i], channels)) {
+                    continue;
+                }
+                channels[i] = c;
+                for (int j = 0; j < model.n; j++) {
+                    if (!queued[j] && model.mutual[i][j] != 0) {
+                        queued[j] = true;
+                        queue.add(j);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return APs whose interference with another AP or external interference changed, null
+         * if the APs are not the same
+         */
+        static boolean[] changedAps(Interference before, Interference after) {
+            if (before.n != after.n) {
+                return null;
+            }
+            boolean[] changed = new boolean[after.n];
+            for (int i = 0; i < after.n; i++) {
+                for (int j = i + 1; j < after.n; j++) {
+                    if (differs(before.mutual[i][j], after.mutual[i][j])) {
+                        changed[i] = true;
+                        changed[j] = true;
+                    }
+                }
+                for (int c = 0; c < CHANNELS; c++) {
+                    if (differs(before.external[i][c], after.external[i][c])) {
+                        changed[i] = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private static boolean differs(double a, double b) {
+            return Math.abs(a - b) > CHANGED * Math.max(Math.abs(a), Math.abs(b));
+        }
+
+        private static int count(boolean[] flags) {
+            int n = 0;
+            for (boolean f : flags) {
+                if (f) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Each AP, in turn, takes the channel where it hears the least interference from the APs
+     * before it and from outside.
+     */
+    static class LeastCongested extends ChannelAssignmentSolver {
+
+        private final double[] coefII;
+
+        LeastCongested(double[] coefII) {
+            this.coefII = coefII.clone();
+        }
+
+        @Override int[] assign(double[][] pathLosses, int[] txPowers,
+                               double[][] externalII) {
+            return assign(new Interference(coefII, pathLosses, txPowers,
+                                           externalII));
+        }
+
+        static int[] assign(Interference model) {
+            int[] channels = new int[model.n];
+            for (int i = 0; i < model.n; i++) {
+                int best = 1;
+                double bestHeard = Double.POSITIVE_INFINITY;
+                for (int c = 1; c <= CHANNELS; c++) {
+                    double heard = model.external[i][c - 1];
+                    for (int j = 0; j < i; j++) {
+                        heard += model.coefII[Math.abs(c - channels[j])]
+                                 * model.received[j][i];
+                    }
+                    if (heard < bestHeard) {
+                        best = c;
+                        bestHeard = heard;
+                    }
+                }
+                channels[i] = best;
+            }
+            return channels;
+        }
+    }
+
+    /**
+     * A random channel for each AP, as a baseline for the other methods
+     */
+    static class RandomChannels extends ChannelAssignmentSolver {
+
+        private final Random random = new Random();
+
+        @Override synchronized int[] assign(double[][] pathLosses,
+                                            int[] txPowers,
+                                            double[][] externalII) {
+            return random(txPowers.length, random);
+        }
+    }
+
+    static int[] random(int n, Random random) {
+        int[] channels = new int[n];
+        for (int i = 0; i < n; i++) {
+            channels[i] = 1 + random.nextInt(CHANNELS);
+        }
+        return channels;
+    }
+}
@@ -1,12 +1,10 @@
 package net.floodlightcontroller.odin.applications;
 
-import com.mathworks.toolbox.javabuilder.MWArray;
-import com.mathworks.toolbox.javabuilder.MWClassID;
-import com.mathworks.toolbox.javabuilder.MWNumericArray;
-import getChannelAssignments.Wi5;
+import net.floodlightcontroller.odin.master.InterferenceMatrix;
 import net.floodlightcontroller.odin.master.OdinApplication;
 import net.floodlightcontroller.odin.master.OdinClient;
 import net.floodlightcontroller.odin.master.OdinMaster.ChannelAssignmentParams;
+import net.floodlightcontroller.odin.master.StationStats;
 import net.floodlightcontroller.util.MACAddress;
 import org.apache.commons.io.output.TeeOutputStream;
 
@@ -14,6 +12,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -44,7 +43,9 @@ import java.util.Scanner;
 
     // Algorithm results
 
-    private int[][] channels = null;
+    private int[] channels = null;
+
+    private ChannelAssignmentSolver solver;
 
     private long time = 0L; // Compare timestamps in ms
     private long timeIdle = 0L; // Compare timestamps in ms
@@ -55,6 +56,8 @@ import java.util.Scanner;
 
     private int[] channelAPs = null;
 
+    private static final long SWEEP_SLACK = 1000; // Time allowed to each agent on top of a scan, in ms
+
     private double[] coefII = { 0.65, 0.8, 0.6, 0.4, 0.2, 0.0, 0.0, 0.0, 0.0,
                                 0.0, 0.0 }; // To calculate the trigger
 
@@ -67,6 +70,8 @@ import java.util.Scanner;
     @Override public void run() {
 
         this.CHANNEL_PARAMS = getChannelAssignmentParams();
+        this.solver = ChannelAssignmentSolver
+                .forMethod(CHANNEL_PARAMS.method, coefII);
         String operationMode = CHANNEL_PARAMS.mode;
         try {
             Thread.sleep(CHANNEL_PARAMS.time_to_start);
@@ -467,7 +472,6 @@ import java.util.Scanner;
                                     numAPs);
 
                             channels = this.getChannelAssignments(pathLosses,
-                                                                  CHANNEL_PARAMS.method,
                                                                   externalII); // Method: 1 for WI5, 2 for RANDOM, 3 for LCC
                             System.out.println(
                                     "[ChannelAssignment] Timestamp - Algorithm: "
@@ -478,8 +482,8 @@ import java.util.Scanner;
                                 System.out.println(
                                         "[ChannelAssignment] Setting AP "
                                         + agentAddr + " to channel: "
-                                        + channels[0][i]);
-                                setChannelToAgent(agentAddr, channels[0][i]);
+                                        + channels[i]);
+                                setChannelToAgent(agentAddr, channels[i]);
                                 i++;
                             }
                         } else {
@@ -515,58 +519,17 @@ import java.util.Scanner;
         }
     }
 
-    private int[][] getChannelAssignments(double[][] pathLosses,
-                                          int methodType,
-                                          double[][] externalII) { // New parameter in function
-
-        //System.out.println(System.getProperty("java.library.path"));
-
-        MWNumericArray n = null;   /* Stores method_number */
-        Object[] result = null;    /* Stores the result */
-        Wi5 channelFinder = null;     /* Stores magic class instance */
-
-        MWNumericArray pathLossMatrix = null;
-        MWNumericArray externalIIMatrix = null;
-
-        MWNumericArray channelsArray = null;
-        int[][] channels = null;
-
-        try {    /* Convert and print inputs */
-            pathLossMatrix = new MWNumericArray(pathLosses,
-                                                MWClassID.DOUBLE);
-            externalIIMatrix = new MWNumericArray(externalII,
-                                                  MWClassID.DOUBLE);
-            n = new MWNumericArray(methodType, MWClassID.DOUBLE);
-            /* Create new ChannelAssignment object */
-
-            channelFinder = new Wi5();
-            result = channelFinder
-                    .getChannelAssignments(1, pathLossMatrix, n,
-                                           externalIIMatrix);
-
-            /* Compute magic square and print result */
-            System.out.println(
-                    "[ChannelAssignment] =======CHANNEL ASSIGNMENTS=======");
-            System.out.println(result[0]); // result is type Object
-            System.out.println(
-                    "[ChannelAssignment] =================================");
-
-            channelsArray = (MWNumericArray) result[0]; // Object to 2D MWNumericArray
-            channels = (int[][]) channelsArray
-                    .toIntArray(); // 2D MWNumericArray to int[][]
-        } catch (Exception e) {
-            System.out.println("Exception: " + e.toString());
-        } finally {
-            /* Free native resources */
-            MWArray.disposeArray(pathLossMatrix);
-            MWArray.disposeArray(externalIIMatrix);
-            MWArray.disposeArray(result);
-            MWArray.disposeArray(channelsArray);
-            if (channelFinder != null) {
-                channelFinder.dispose();
-            }
-            return channels;
-        }
+    private int[] getChannelAssignments(double[][] pathLosses,
+                                        double[][] externalII) {
+
+        int[] channels = solver.assign(pathLosses, txpowerAPs, externalII);
+
+        System.out.println(
+                "[ChannelAssignment] =======CHANNEL ASSIGNMENTS=======");
+        System.out.println(Arrays.toString(channels));
+        System.out.println(
+                "[ChannelAssignment] =================================");
+        return channels;
     }
 
     private void promptEnterKey() { // Function to ask for a key
@@ -658,57 +621,38 @@ import java.util.Scanner;
                                      int numAPs) { // Function to get and calculate External Interference Impact
         double[][] externalII = new double[11][numAPs];
 
-        // SSID to scan
-        String SCANNED_SSID = "*";
-
-        // Scanning agents
-        Map<InetAddress, Integer> scanningAgents = new HashMap<InetAddress, Integer>();
-        int result; // Result for scanning
-
         HashSet<OdinClient> clients = new HashSet<OdinClient>(getClients());
-        //For each channel
-        double sumEII = 0;
-        int numAgent = 0;
 
+        // Every agent scans every channel, each starting on a different one
+        InetAddress[] agents = getAgents().toArray(new InetAddress[0]);
+        int[] channels = new int[11];
         for (int num_channel = 1; num_channel <= 11; ++num_channel) {
-            sumEII = 0;
-            numAgent = 0;
-            scanningAgents.clear();
-
-            // For each Agent
-            for (InetAddress agentAddr : getAgents()) {
-                // Request statistics
-                result = requestScannedStationsStatsFromAgent(agentAddr,
-                                                              num_channel,
-                                                              "*");
-                scanningAgents.put(agentAddr, result);
-            }
-
-            try {
-                Thread.sleep(scanningInterval);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            //System.out.println("[ChannelAssignment - ExternalII] After sleep");
-
-            for (InetAddress agentAddr : getAgents()) {
-                //System.out.println("[ChannelAssignment - ExternalII] Agent: " + agentAddr + " scans in channel: " + num_channel);
+            channels[num_channel - 1] = num_channel;
+        }
+        InterferenceMatrix sweep = sweepStationStatsFromAgents(agents,
+                                                               channels, "*",
+                                                               scanningInterval,
+                                                               SWEEP_SLACK);
+
+        for (int c = 0; c < sweep.getChannelCount(); c++) {
+            for (int numAgent = 0; numAgent < agents.length; numAgent++) {
+                //System.out.println("[ChannelAssignment - ExternalII] Agent: " + agents[numAgent] + " scans in channel: " + sweep.getChannel(c));
                 // Reception statistics
-                if (scanningAgents.get(agentAddr) == 0) {
+                StationStats vals_rx = sweep.getStats(c, numAgent);
+                if (vals_rx == null) {
                     System.out.println(
-                            "[ChannelAssignment - ExternalII] Agent BUSY during scanning operation");
+                            "[ChannelAssignment - ExternalII] Agent "
+                            + sweep.getStatus(c, numAgent)
+                            + " during scanning operation");
+                    externalII[c][numAgent] = Double.NEGATIVE_INFINITY;
                     continue;
                 }
-                Map<MACAddress, Map<String, String>> vals_rx = getScannedStationsStatsFromAgent(
-                        agentAddr, "*");
-
-                //System.out.println("[ChannelAssignment - ExternalII] After get vals_rx");
+                double sumEII = 0;
 
                 // for each STA scanned by the Agent
-                for (Entry<MACAddress, Map<String, String>> vals_entry_rx : vals_rx
-                        .entrySet()) {
+                for (int i = 0; i < vals_rx.size(); i++) {
                     // NOTE: the clients currently scanned MAY NOT be the same as the clients who have been associated
-                    MACAddress staHwAddr = vals_entry_rx.getKey();
+                    MACAddress staHwAddr = vals_rx.getMacAddress(i);
                     boolean isWi5Sta = false;
                     boolean isWi5Lvap = false;
                     for (OdinClient oc : clients) {  // all the clients currently associated
@@ -728,46 +672,27 @@ import java.util.Scanner;
                         continue;
                     }
 
-                    double signal = Double.parseDouble(
-                            vals_entry_rx.getValue().get("avg_signal"));
-                    double packets = Double.parseDouble(
-                            vals_entry_rx.getValue().get("packets"));
-                    double length = Double.parseDouble(
-                            vals_entry_rx.getValue().get("avg_len_pkt"));
-                    double rate = Double.parseDouble(
-                            vals_entry_rx.getValue().get("avg_rate"));
-                    double inittime = Double.parseDouble(
-                            vals_entry_rx.getValue()
-                                         .get("first_received")); // In seconds
-                    double endtime = Double.parseDouble(
-                            vals_entry_rx.getValue()
-                                         .get("last_received")); // In seconds
+                    double signal = vals_rx.getAvgSignal(i);
+                    double packets = vals_rx.getPackets(i);
+                    double length = vals_rx.getAvgLenPkt(i);
+                    double rate = vals_rx.getAvgRate(i);
+                    double inittime = vals_rx.getFirstReceived(i); // In seconds
+                    double endtime = vals_rx.getLastReceived(i); // In seconds
 
                     if ((rate != 0.0) && (signal
                                           != 0.0)) {//Without errors in scan
-                        //System.out.print("[ChannelAssignment - ExternalII] Scan: " + signal);
-                        //System.out.print(" " + packets);
-                        //System.out.print(" " + length);
-                        //System.out.print(" " + rate);
-                        //System.out.println(" " + (endtime-inittime));
                         double signal_lineal = Math
                                 .pow(10.0, (signal) / 10.0);
                         double signal_EII = signal_lineal * (
                                 (packets * 8 * length / rate) / (1000 * (
                                         endtime
                                         - inittime)));  // (bits/kbits)/ms
-                        //System.out.println("[ChannelAssignment - ExternalII] Signal_EII: " + signal_EII);
                         sumEII = sumEII + signal_EII;
-                    } else {
-                        //System.out.println("[ChannelAssignment - ExternalII] Rate 0!");
                     }
                 }
 
                 //System.out.println("[ChannelAssignment - ExternalII] sumEII: " + 10.0*Math.log10(sumEII));
-                //System.out.println("");
-                externalII[num_channel - 1][numAgent] =
-                        10.0 * Math.log10(sumEII);
-                numAgent++;
+                externalII[c][numAgent] = 10.0 * Math.log10(sumEII);
             }
         }
 
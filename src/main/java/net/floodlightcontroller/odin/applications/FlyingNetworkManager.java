@@ -5,26 +5,26 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import net.floodlightcontroller.odin.master.IOdinAgent;
 import net.floodlightcontroller.odin.master.OdinApplication;
 import net.floodlightcontroller.odin.master.OdinClient;
+import net.floodlightcontroller.odin.master.ScheduledTask;
 import net.floodlightcontroller.util.MACAddress;
 
 import java.io.*;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 /**
  * Application that handles predictive mobility management in flying networks
@@ -33,9 +33,17 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class FlyingNetworkManager extends OdinApplication {
 
+    private static final int RELOCATION_PORT = 6666;
+    private static final int PARALLEL_CLIENTS = 256; // Clients from which handoffs are solved in parallel
+
     private String VERSION = "TEST"; // "TEST" || "PRODUCTION"
     private PrintStream ps = null;
 
+    // Guarded by getLock()
+    private final Map<InetAddress, RelocationPlan> plans = new HashMap<>();
+    private long resumeAt = Long.MIN_VALUE; // System.nanoTime()
+    private ScheduledTask resumeTask = null;
+
     @Override public void run() {
 
         TEE("Running", null);
@@ -53,113 +61,129 @@ public class FlyingNetworkManager extends OdinApplication {
             ps = getPrintStream(directoryName, fileName);
         }
 
-        ServerSocket serverSocket = null;
-        Socket clientSocket = null;
-        PrintWriter out = null;
-        BufferedReader in = null;
-
+        RelocationServer server;
         try {
-            serverSocket = new ServerSocket(6666);
+            server = new RelocationServer(RELOCATION_PORT,
+                                          this::receiveRelocation);
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
 
-        // infinite loop if server socket is valid (i.e., listening on port 6666)
-        while (serverSocket != null) {
-            TEE("Listening...", ps);
-            String message;
-            try {
-                clientSocket = serverSocket
-                        .accept(); // blocks until someone connects
-                out = new PrintWriter(clientSocket.getOutputStream(), true);
-                in = new BufferedReader(new InputStreamReader(
-                        clientSocket.getInputStream()));
-                message = in.readLine();
-            } catch (IOException e) {
-                e.printStackTrace();
-                continue;
-            }
-            Instant receiveTime = Instant.now();
+        TEE("Listening...", ps);
+        server.run(); // Until the server fails
+    }
 
-            if (!possibleJson(message)) {
-                continue;
-            }
-            TEE("Topology is moving:\n\t" + message, ps);
-            out.println("ACK_" + getTimestamp());
-
-            // Wait until it's safe
-            tryHaltApplication("SmartApSelection");
-            synchronized (getLock()) {
-                TEE("Halted", null);
-                while (!getApplicationState("SmartApSelection")
-                        .equals(State.HALTED)) {
-                    TEE("Waiting", null);
-                    try {
-                        getLock().wait();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    TEE("Woke up", null);
-                }
+    /**
+     * A UAV controller sent a relocation. It is acknowledged right away and handled on the
+     * master's executor, leaving the server to the other controllers.
+     */
+    private void receiveRelocation(final String message,
+                                   final Instant receiveTime,
+                                   final RelocationServer.Reply reply) {
+        TEE("Topology is moving:\n\t" + message, ps);
+        reply.send("ACK_" + getTimestamp());
+
+        scheduleOnce(() -> {
+            relocate(message, receiveTime);
+            TEE("Done", ps);
+            reply.send("DONE_" + getTimestamp());
+        }, 0);
+    }
 
-                TEE("Handling handoffs", ps);
-                // Handle handoffs
-                long resumeDelay = 0L;
-                if (VERSION.equals("PRODUCTION")) {
-                    resumeDelay = handleHandoffs(message,
-                                                 Timestamp.from(receiveTime)
-                                                          .getTime());  // Confirmar
-                } else if (VERSION.equals("TEST")) {
-                    resumeDelay = handleHandoffsTest(message, receiveTime);
-                    TEE("resumeDelay: " + resumeDelay, null);
+    /**
+     * Halt SmartApSelection, plan the handoffs of the relocation and resume SmartApSelection once
+     * every AP is done moving.
+     */
+    private void relocate(String message, Instant receiveTime) {
+        // Wait until it's safe
+        tryHaltApplication("SmartApSelection");
+        synchronized (getLock()) {
+            TEE("Halted", null);
+            while (!getApplicationState("SmartApSelection")
+                    .equals(State.HALTED)) {
+                TEE("Waiting", null);
+                try {
+                    getLock().wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
                 }
+                TEE("Woke up", null);
+            }
 
-                ScheduledExecutorService scheduler = Executors
-                        .newSingleThreadScheduledExecutor();
+            TEE("Handling handoffs", ps);
+            // Handle handoffs
+            long resumeDelay = 0L;
+            if (VERSION.equals("PRODUCTION")) {
+                resumeDelay = handleHandoffs(message, receiveTime);
+            } else if (VERSION.equals("TEST")) {
+                resumeDelay = handleHandoffsTest(message, receiveTime);
+                TEE("resumeDelay: " + resumeDelay, null);
+            }
 
-                // Resume SmartApSelection() after the UAVs/APs are done moving around
-                scheduler.schedule(
-                        new RunResumeApplication("SmartApSelection",
-                                                 getLock()),
-                        resumeDelay - Duration
-                                .between(receiveTime, Instant.now())
-                                .toNanos(), TimeUnit.NANOSECONDS);
-                scheduler.shutdown();
+            // Resume SmartApSelection() after the UAVs/APs are done moving around
+            scheduleResume(receiveTime, resumeDelay);
 
-                getLock().notifyAll();
-            }
+            getLock().notifyAll();
+        }
+    }
 
-            TEE("Done", ps);
-            out.println("DONE_" + getTimestamp());
-            try {
-                in.close();
-                out.close();
-                clientSocket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Start a plan for each AP of a relocation, replacing the plan of an earlier relocation of the
+     * same AP: the handoffs it scheduled and has not done yet are dropped. Called with the lock
+     * held.
+     *
+     * @return the new plan of each AP
+     */
+    private Map<InetAddress, RelocationPlan> newPlans(
+            Set<InetAddress> relocated) {
+        Map<InetAddress, RelocationPlan> newPlans = new HashMap<>();
+        for (InetAddress agent : relocated) {
+            RelocationPlan plan = new RelocationPlan();
+            RelocationPlan old = plans.put(agent, plan);
+            if (old != null) {
+                old.superseded = true;
+                TEE("[COALESCE] " + agent + " relocated again", ps);
             }
+            newPlans.put(agent, plan);
         }
+        return newPlans;
+    }
 
-        try {
-            in.close();
-            out.close();
-            clientSocket.close();
-            serverSocket.close();
-        } catch (IOException | NullPointerException e) {
-            e.printStackTrace();
+    /**
+     * Schedule batches of handoffs on the master's executor. Called with the lock held.
+     *
+     * @param handoffs    batch of handoffs to run by each delay [ms] after the receive time
+     * @param receiveTime time the relocation was received
+     */
+    private void scheduleHandoffs(Map<Long, RunHandoffClientsToAps> handoffs,
+                                  Instant receiveTime) {
+        long elapsed = Duration.between(receiveTime, Instant.now())
+                               .toMillis();
+        for (Map.Entry<Long, RunHandoffClientsToAps> entry : handoffs
+                .entrySet()) {
+            scheduleOnce(entry.getValue(),
+                         Math.max(0, entry.getKey() - elapsed));
         }
     }
 
     /**
-     * Checks very basic JSON rules. Eliminates easy targets.
+     * Resume SmartApSelection once the last of the relocating APs is done, an overlapping
+     * relocation postponing the resume set by an earlier one. Called with the lock held.
      *
-     * @param message the JSON string
-     * @return true if string might be a JSON object, false otherwise
+     * @param resumeDelay time [ns] after the receive time this relocation is done
      */
-    private boolean possibleJson(String message) {
-        return message != null && !message.trim().isEmpty() && (
-                (message.startsWith("[") && message.endsWith("]")) || (
-                        message.startsWith("{") && message.endsWith("}")));
+    private void scheduleResume(Instant receiveTime, long resumeDelay) {
+        long now = System.nanoTime();
+        long end = now + resumeDelay - Duration
+                .between(receiveTime, Instant.now()).toNanos();
+        resumeAt = Math.max(resumeAt, end);
+        if (resumeTask != null) {
+            resumeTask.cancel();
+        }
+        resumeTask = scheduleOnce(
+                new RunResumeApplication("SmartApSelection", getLock()),
+                Math.max(0, TimeUnit.NANOSECONDS.toMillis(resumeAt - now)));
     }
 
     /**
@@ -169,13 +193,13 @@ public class FlyingNetworkManager extends OdinApplication {
      * Velocity (NED), for every UAV acting as a possible AP.
      *
      * @param message     JSON string with information regarding UAV relocations
-     * @param receiveTime time [ns] used as reference to begin operations
+     * @param receiveTime time used as reference to begin operations
      * @return the duration [ns] of the longest UAV flight (operation time)
      */
     //TODO: follow handleHandoffsTest()'s reasoning - the return must take
     // into account the time between receiveTime and startTime. I.e.,
     // longest overall delay, not longest flight.
-    private long handleHandoffs(String message, long receiveTime) {
+    private long handleHandoffs(String message, Instant receiveTime) {
         ObjectMapper objectMapper = new ObjectMapper();
         Map<String, ApRelocation> apRelocations;
         try {
@@ -187,154 +211,210 @@ public class FlyingNetworkManager extends OdinApplication {
             e.printStackTrace();
         }
 
-        HashSet<InetAddress> agents = new HashSet<>(getAgents());
-        HashSet<OdinClient> clients = new HashSet<>(getClients());
-
-        ScheduledExecutorService scheduler = Executors
-                .newScheduledThreadPool(clients.size());
-
-        // For each UAV: GPS -> ECEF -> NED (Origin & Destination)
-        Map<InetAddress, Cartesian> agentCoordinatesNedOrigin = new HashMap<>();
-        Map<InetAddress, Cartesian> agentCoordinatesNedDestination = new HashMap<>();
-
-        AtomicReference<Double> longestFlight = new AtomicReference<>(0.0);
-
-        apRelocations.forEach((agent, apRelocation) -> {
-            InetAddress agentAddress = null;
+        // For each UAV: GPS -> ECEF -> NED (Origin & Destination), x, y, z
+        // one after the other by index of the UAV
+        int relocated = 0;
+        InetAddress[] agents = new InetAddress[apRelocations.size()];
+        double[] origins = new double[3 * agents.length];
+        double[] destinations = new double[3 * agents.length];
+        double[] velocities = new double[3 * agents.length];
+        Map<InetAddress, Integer> agentIndex = new HashMap<>();
+        double longestFlight = 0.0;
+
+        for (Map.Entry<String, ApRelocation> entry : apRelocations
+                .entrySet()) {
+            InetAddress agentAddress;
             try {
-                agentAddress = InetAddress.getByName(agent);
+                agentAddress = InetAddress.getByName(entry.getKey());
             } catch (UnknownHostException e) {
                 e.printStackTrace();
+                continue;
+            }
+            if (agentIndex.putIfAbsent(agentAddress, relocated) != null) {
+                continue;
+            }
+            ApRelocation apRelocation = entry.getValue();
+
+            Cartesian originNed = apRelocation.origin.toEcef()
+                                                     .toNed(apRelocation.reference.lat,
+                                                            apRelocation.reference.lon,
+                                                            apRelocation.reference.alt);
+            Cartesian destinationNed = apRelocation.destination.toEcef()
+                                                               .toNed(apRelocation.reference.lat,
+                                                                      apRelocation.reference.lon,
+                                                                      apRelocation.reference.alt);
+            agents[relocated] = agentAddress;
+            store(origins, relocated, originNed);
+            store(destinations, relocated, destinationNed);
+            store(velocities, relocated, apRelocation.velocity);
+            relocated++;
+
+            double flightX = (destinationNed.x - originNed.x)
+                             / apRelocation.velocity.x;
+            double flightY = (destinationNed.y - originNed.y)
+                             / apRelocation.velocity.y;
+            double flightZ = (destinationNed.z - originNed.z)
+                             / apRelocation.velocity.z;
+            double flightTime;
+
+            if (flightX >= flightY && flightX >= flightZ) {
+                flightTime = flightX;
+            } else if (flightY >= flightX && flightY >= flightZ) {
+                flightTime = flightY;
+            } else {
+                flightTime = flightZ;
             }
 
-            if (agentAddress != null) {
-                Cartesian originNed = apRelocation.origin.toEcef()
-                                                         .toNed(apRelocation.reference.lat,
-                                                                apRelocation.reference.lon,
-                                                                apRelocation.reference.alt);
-                agentCoordinatesNedOrigin.put(agentAddress, originNed);
-
-                Cartesian destinationNed = apRelocation.destination.toEcef()
-                                                                   .toNed(apRelocation.reference.lat,
-                                                                          apRelocation.reference.lon,
-                                                                          apRelocation.reference.alt);
-                agentCoordinatesNedDestination
-                        .put(agentAddress, destinationNed);
-
-                double flightX = (destinationNed.x - originNed.x)
-                                 / apRelocation.velocity.x;
-                double flightY = (destinationNed.y - originNed.y)
-                                 / apRelocation.velocity.y;
-                double flightZ = (destinationNed.z - originNed.z)
-                                 / apRelocation.velocity.z;
-                double flightTime;
-
-                if (flightX >= flightY && flightX >= flightZ) {
-                    flightTime = flightX;
-                } else if (flightY >= flightX && flightY >= flightZ) {
-                    flightTime = flightY;
-                } else {
-                    flightTime = flightZ;
-                }
-
-                if (flightTime > longestFlight.get()) {
-                    longestFlight.set(flightTime);
-                }
+            if (flightTime > longestFlight) {
+                longestFlight = flightTime;
             }
-        });
+        }
 
-        // For each client: (NED, wRSSI)_uavs -> NED
-        Map<MACAddress, Cartesian> clientCoordinatesNed = new HashMap<>();
+        Map<InetAddress, RelocationPlan> relocationPlans = newPlans(
+                agentIndex.keySet());
 
-        for (OdinClient client : clients) {
+        final int uavs = relocated;
+        final ApSpatialIndex destinationIndex = new ApSpatialIndex(
+                Arrays.copyOf(destinations, 3 * uavs));
+
+        OdinClient[] clients = getClients().toArray(new OdinClient[0]);
+        double[] clientCoordinatesNed = new double[3 * clients.length];
+        int[] currentAgents = new int[clients.length];
+        int[] futureAgents = new int[clients.length];
+        double[] delays = new double[clients.length]; // seconds, NaN if no handoff
+
+        // For each client: (NED, wRSSI)_uavs -> NED
+        clientRange(clients.length).forEach(i -> {
             double x = 0.0, y = 0.0, z = 0.0;
             int countValid = 0;
 
-            for (InetAddress agent : agents) {
+            for (int a = 0; a < uavs; a++) {
                 Double weightedRssi = getStaWeightedRssiFromAgent(
-                        client.getMacAddress(), agent);
+                        clients[i].getMacAddress(), agents[a]);
 
                 if (weightedRssi != null && weightedRssi != -99.9) {
-                    x += agentCoordinatesNedOrigin.get(agent).x
-                         * weightedRssi;
-                    y += agentCoordinatesNedOrigin.get(agent).y
-                         * weightedRssi;
-                    z += agentCoordinatesNedOrigin.get(agent).z
-                         * weightedRssi;
+                    x += origins[3 * a] * weightedRssi;
+                    y += origins[3 * a + 1] * weightedRssi;
+                    z += origins[3 * a + 2] * weightedRssi;
 
                     countValid++;
                 }
             }
 
-            x /= countValid;
-            y /= countValid;
-            z /= countValid;
-
-            clientCoordinatesNed
-                    .put(client.getMacAddress(), new Cartesian(x, y, z));
-        }
-
-        // Foreach client in client_set
-        for (OdinClient client : clients) {
-            // Calculate distance squared to each AP (in its final position)
-            InetAddress currentAgent = client.getLvap().getAgent()
-                                             .getIpAddress();
-            InetAddress futureAgent = null;
-            double min = Double.MAX_VALUE; // meters
-
-            for (InetAddress agent : agents) {
-                Double distanceSqr = distanceSquared(
-                        clientCoordinatesNed.get(client.getMacAddress()),
-                        agentCoordinatesNedDestination.get(agent));
+            // NaN if none of the UAVs heard the client
+            clientCoordinatesNed[3 * i] = x / countValid;
+            clientCoordinatesNed[3 * i + 1] = y / countValid;
+            clientCoordinatesNed[3 * i + 2] = z / countValid;
+        });
 
-                if (distanceSqr < min) {
-                    min = distanceSqr;
-                    futureAgent = agent;
-                }
+        // Foreach client: nearest UAV (in its final position) and time for handoff
+        clientRange(clients.length).forEach(i -> {
+            delays[i] = Double.NaN;
+            double x = clientCoordinatesNed[3 * i];
+            double y = clientCoordinatesNed[3 * i + 1];
+            double z = clientCoordinatesNed[3 * i + 2];
+            // Read once, the client may lose its agent meanwhile
+            IOdinAgent agent = clients[i].getLvap().getAgent();
+            if (agent == null) {
+                return;
+            }
+            Integer current = agentIndex.get(agent.getIpAddress());
+            if (Double.isNaN(x) || current == null) {
+                return;
             }
+            int future = destinationIndex.nearest(x, y, z);
 
             // Check if client needs a handoff
-            if (futureAgent == null || futureAgent.equals(currentAgent)) {
-                continue;
+            if (future < 0 || future == current) {
+                return;
             }
 
-            // Calculate time for handoff
-            Cartesian v1 = apRelocations
-                    .get(currentAgent.toString().substring(1)).velocity;
-            Cartesian v2 = apRelocations
-                    .get(futureAgent.toString().substring(1)).velocity;
-            Cartesian p1 = agentCoordinatesNedOrigin.get(currentAgent);
-            Cartesian p2 = agentCoordinatesNedOrigin.get(futureAgent);
-            Cartesian p = clientCoordinatesNed.get(client.getMacAddress());
-
-            Double delay = lowestPositiveQuadraticSolution(
-                    v1.x * v1.x + v1.y * v1.y + v1.z * v1.z - v2.x * v2.x
-                    - v2.y * v2.y - v2.z * v2.z,
-                    2 * (v1.x * (p1.x - p.x) + v1.y * (p1.y - p.y) + v1.z * (
-                            p1.z - p.z) - v2.x * (p2.x - p.x) - v2.y * (p2.y
-                                                                        - p.y)
-                         - v2.z * (p2.z - p.z)),
-                    p1.x * p1.x + p1.y * p1.y + p1.z * p1.z - p2.x * p2.x
-                    - p2.y * p2.y - p2.z * p2.z - 2 * (p.x * (p1.x - p2.x)
-                                                       + p.y * (p1.y - p2.y)
-                                                       + p.z * (p1.z
-                                                                - p2.z))); // seconds
-
+            Double delay = handoffDelay(origins, velocities, current, future,
+                                        x, y, z);
             if (delay != null) {
-                // Schedule handoff
-                scheduler.schedule(
-                        new RunHandoffClientToAp(client.getMacAddress(),
-                                                 currentAgent, futureAgent),
-                        Math.round(delay * 1000)
-                        - (System.nanoTime() - receiveTime) / 1000000,
-                        TimeUnit.MILLISECONDS);
+                currentAgents[i] = current;
+                futureAgents[i] = future;
+                delays[i] = delay;
             }
+        });
+
+        // Clients handed off at the same time go in a single batch
+        Map<Long, RunHandoffClientsToAps> handoffs = new HashMap<>();
+
+        for (int i = 0; i < clients.length; i++) {
+            if (Double.isNaN(delays[i])) {
+                continue;
+            }
+            InetAddress currentAgent = agents[currentAgents[i]];
+            InetAddress futureAgent = agents[futureAgents[i]];
+            handoffs.computeIfAbsent(Math.round(delays[i] * 1000),
+                                     k -> new RunHandoffClientsToAps())
+                    .add(clients[i].getMacAddress(), currentAgent,
+                         futureAgent, planOf(relocationPlans, futureAgent,
+                                             currentAgent));
         }
 
-        // Gracefully shutdown the scheduler (i.e., still finishes old tasks)
-        scheduler.shutdown();
+        scheduleHandoffs(handoffs, receiveTime);
 
-        return (long) (longestFlight.get().doubleValue());
+        return (long) (longestFlight * 1e9); // seconds to ns
+    }
+
+    /**
+     * @return the clients' indices, in parallel if there are enough of them
+     */
+    private static IntStream clientRange(int clients) {
+        IntStream range = IntStream.range(0, clients);
+        return clients >= PARALLEL_CLIENTS ? range.parallel() : range;
+    }
+
+    private static void store(double[] coordinates, int index, Cartesian c) {
+        coordinates[3 * index] = c.x;
+        coordinates[3 * index + 1] = c.y;
+        coordinates[3 * index + 2] = c.z;
+    }
+
+    /**
+     * Time [s] from which a client at p is nearer to the future UAV than to the current one, both
+     * flying from their origin at their velocity
+     *
+     * @return null if never
+     */
+    private static Double handoffDelay(double[] origins, double[] velocities,
+                                       int current, int future, double px,
+                                       double py, double pz) {
+        double v1x = velocities[3 * current];
+        double v1y = velocities[3 * current + 1];
+        double v1z = velocities[3 * current + 2];
+        double v2x = velocities[3 * future];
+        double v2y = velocities[3 * future + 1];
+        double v2z = velocities[3 * future + 2];
+        double p1x = origins[3 * current];
+        double p1y = origins[3 * current + 1];
+        double p1z = origins[3 * current + 2];
+        double p2x = origins[3 * future];
+        double p2y = origins[3 * future + 1];
+        double p2z = origins[3 * future + 2];
+
+        return lowestPositiveQuadraticSolution(
+                v1x * v1x + v1y * v1y + v1z * v1z - v2x * v2x - v2y * v2y
+                - v2z * v2z,
+                2 * (v1x * (p1x - px) + v1y * (p1y - py) + v1z * (p1z - pz)
+                     - v2x * (p2x - px) - v2y * (p2y - py) - v2z * (p2z
+                                                                     - pz)),
+                p1x * p1x + p1y * p1y + p1z * p1z - p2x * p2x - p2y * p2y
+                - p2z * p2z - 2 * (px * (p1x - p2x) + py * (p1y - p2y)
+                                   + pz * (p1z - p2z)));
+    }
+
+    /**
+     * @return the plan the handoff belongs to: the one of the AP the client goes to, or else the
+     * one of the AP it leaves
+     */
+    private static RelocationPlan planOf(Map<InetAddress, RelocationPlan> plans,
+                                         InetAddress futureAgent,
+                                         InetAddress currentAgent) {
+        RelocationPlan plan = plans.get(futureAgent);
+        return plan != null ? plan : plans.get(currentAgent);
     }
 
     public double distanceSquared(Cartesian p1, Cartesian p2) {
@@ -373,27 +453,51 @@ public class FlyingNetworkManager extends OdinApplication {
         return (answerPlus > answerMinus) ? answerPlus : answerMinus;
     }
 
-    public class RunHandoffClientToAp implements Runnable {
+    /**
+     * Handoffs planned for the same time. Those whose plan was replaced by a later relocation of
+     * the AP are dropped.
+     */
+    public class RunHandoffClientsToAps implements Runnable {
 
-        private final MACAddress staHwAddr;
-        private final InetAddress currentAgent;
-        private final InetAddress futureAgent;
+        private final Map<MACAddress, InetAddress> currentAgents = new HashMap<>();
+        private final Map<MACAddress, InetAddress> futureAgents = new HashMap<>();
+        private final Map<MACAddress, RelocationPlan> plansOf = new HashMap<>();
 
-        public RunHandoffClientToAp(MACAddress staHwAddr,
-                                    InetAddress currentAgent,
-                                    InetAddress futureAgent) {
-            this.staHwAddr = staHwAddr;
-            this.currentAgent = currentAgent;
-            this.futureAgent = futureAgent;
+        public void add(MACAddress staHwAddr, InetAddress currentAgent,
+                        InetAddress futureAgent, RelocationPlan plan) {
+            currentAgents.put(staHwAddr, currentAgent);
+            futureAgents.put(staHwAddr, futureAgent);
+            plansOf.put(staHwAddr, plan);
         }
 
         @Override public void run() {
-            TEE("[HANDOVER] " + staHwAddr + ": " + currentAgent + " -> "
-                + futureAgent, ps);
-            handoffClientToAp(staHwAddr, futureAgent);
+            Map<MACAddress, InetAddress> handoffs = new HashMap<>();
+            for (Map.Entry<MACAddress, InetAddress> entry : futureAgents
+                    .entrySet()) {
+                RelocationPlan plan = plansOf.get(entry.getKey());
+                if (plan != null && plan.superseded) {
+                    TEE("[DROPPED] " + entry.getKey() + ": " + currentAgents
+                            .get(entry.getKey()) + " -> " + entry.getValue(),
+                        ps);
+                    continue;
+                }
+                TEE("[HANDOVER] " + entry.getKey() + ": " + currentAgents
+                        .get(entry.getKey()) + " -> " + entry.getValue(), ps);
+                handoffs.put(entry.getKey(), entry.getValue());
+            }
+            if (!handoffs.isEmpty()) {
+                handoffClientsToAps(handoffs);
+            }
         }
     }
 
+    /**
+     * Handoffs planned for the relocation of an AP
+     */
+    static class RelocationPlan {
+        volatile boolean superseded = false;
+    }
+
     protected class RunResumeApplication implements Runnable {
 
         final String appName;
@@ -583,9 +687,6 @@ public class FlyingNetworkManager extends OdinApplication {
         HashSet<InetAddress> agents = new HashSet<>(getAgents());
         HashSet<OdinClient> clients = new HashSet<>(getClients());
 
-        ScheduledExecutorService scheduler = Executors
-                .newScheduledThreadPool(clients.size());
-
         // Convert Strings to InetAddresses and get the longest flight time
         Map<InetAddress, ApRelocationTest> apRelocations = new HashMap<>();
         long longestDelay = 0L;
@@ -633,11 +734,20 @@ public class FlyingNetworkManager extends OdinApplication {
             }
         }
 
+        Map<InetAddress, RelocationPlan> relocationPlans = newPlans(
+                apRelocations.keySet());
+
+        // Clients handed off at the same time go in a single batch
+        Map<Long, RunHandoffClientsToAps> handoffs = new HashMap<>();
+
         // Foreach client in client_set
         for (OdinClient client : clients) {
             // Set future agent as the first AP without association to this client (2 agents only)
-            InetAddress currentAgent = client.getLvap().getAgent()
-                                             .getIpAddress();
+            IOdinAgent lvapAgent = client.getLvap().getAgent();
+            if (lvapAgent == null) {
+                continue;
+            }
+            InetAddress currentAgent = lvapAgent.getIpAddress();
             InetAddress futureAgent = null;
 
             for (InetAddress agent : agents) {
@@ -658,18 +768,16 @@ public class FlyingNetworkManager extends OdinApplication {
                                       .toNanos();
 
             if (delayNanos > 0) {
-                // Schedule handoff
-                scheduler.schedule(
-                        new RunHandoffClientToAp(client.getMacAddress(),
-                                                 currentAgent, futureAgent),
-                        delayNanos - Duration
-                                .between(receiveTime, Instant.now())
-                                .toNanos(), TimeUnit.NANOSECONDS);
+                handoffs.computeIfAbsent(
+                        TimeUnit.NANOSECONDS.toMillis(delayNanos),
+                        k -> new RunHandoffClientsToAps())
+                        .add(client.getMacAddress(), currentAgent,
+                             futureAgent, planOf(relocationPlans,
+                                                 futureAgent, currentAgent));
             }
         }
 
-        // Gracefully shutdown the scheduler (i.e., still finishes old tasks)
-        scheduler.shutdown();
+        scheduleHandoffs(handoffs, receiveTime);
 
         return longestDelay;
     }
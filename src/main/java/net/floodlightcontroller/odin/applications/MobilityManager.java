@@ -3,24 +3,27 @@ package net.floodlightcontroller.odin.applications;
 import net.floodlightcontroller.odin.master.*;
 import net.floodlightcontroller.odin.master.OdinEventSubscription.Relation;
 import net.floodlightcontroller.odin.master.OdinMaster.MobilityParams;
-import net.floodlightcontroller.util.MACAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class MobilityManager extends OdinApplication {
 
     protected static Logger log = LoggerFactory
             .getLogger(MobilityManager.class);
     /* A table including each client and its mobility statistics */
-    private ConcurrentMap<MACAddress, MobilityStats> clientMap = new ConcurrentHashMap<MACAddress, MobilityStats>();
+    private final MobilityStateTable clientMap = new MobilityStateTable();
     private final String STA;                        // Handle a mac or all STAs ("*")
     private final String VALUE;                    // Parameter to measure (signal, noise, rate, etc.)
     private boolean scan;                            // For testing only once
     private MobilityParams MOBILITY_PARAMS;            // Mobility parameters imported from poolfile
+    private static final int NEIGHBORS_TO_SCAN = 3;    // APs a client is scanned on before a hand off
 
     public MobilityManager() {
         /*this.STA = "40:A5:EF:05:9B:A0";*/
@@ -88,12 +91,7 @@ public class MobilityManager extends OdinApplication {
         OdinClient client = getClientFromHwAddress(cntx.clientHwAddress);
         long lastScanningResult = 0;
         long greaterscanningresult = 0;
-
-        double client_signal = 0.0;
-        long client_signal_dBm = 0;
-        double client_average = 0.0;
         long client_average_dBm = 0;
-        int client_triggers = 0;
 		
 		/*
 		log.info("\n*\n*\n*\n*\n*\n*");
@@ -105,121 +103,76 @@ public class MobilityManager extends OdinApplication {
             return;
         }
         long currentTimestamp = System.currentTimeMillis();
-        // Assign mobility stats object if not already done
-        // add an entry in the clientMap table for this client MAC
-        // put the statistics in the table: value of the parameter, timestamp, timestamp, agent, scanning result, average power and number of triggers
-        if (!clientMap.containsKey(cntx.clientHwAddress)) {
-            clientMap.put(cntx.clientHwAddress,
-                          new MobilityStats(cntx.value, currentTimestamp,
-                                            currentTimestamp,
-                                            cntx.agent.getIpAddress(),
-                                            cntx.value, cntx.client_average,
-                                            cntx.client_triggers));
-        } else {
-            clientMap.put(cntx.clientHwAddress,
-                          new MobilityStats(cntx.value, currentTimestamp,
-                                            clientMap
-                                                    .get(cntx.clientHwAddress).assignmentTimestamp,
-                                            cntx.agent.getIpAddress(),
-                                            clientMap
-                                                    .get(cntx.clientHwAddress).scanningResult,
-                                            clientMap
-                                                    .get(cntx.clientHwAddress).client_average,
-                                            clientMap
-                                                    .get(cntx.clientHwAddress).client_triggers));
-        }
-
-        // get the statistics of that client
-        MobilityStats stats = clientMap.get(cntx.clientHwAddress);
+        long mac = cntx.clientHwAddress.toLong();
+        // Add or update the client's entry in the table: value of the parameter, timestamp, agent
+        // and, for a new client, its scanning result, average power and number of triggers
+        clientMap.heard(mac, cntx.value, currentTimestamp,
+                        cntx.agent.getIpAddress(), cntx.client_average,
+                        cntx.client_triggers);
 
         /* Now, handoff */
 
         // The client is associated to Odin (it has an LVAP), but it does not have an associated agent
         // If client hasn't been assigned an agent, associate it to the current AP
         if (client.getLvap().getAgent() == null) {
+            InetAddress agentAddr = clientMap.getAgent(mac);
             log.info(
                     "MobilityManager: client hasn't been asigned an agent: handing off client "
-                    + cntx.clientHwAddress + " to agent " + stats.agentAddr
+                    + cntx.clientHwAddress + " to agent " + agentAddr
                     + " at " + System.currentTimeMillis());
-            handoffClientToAp(cntx.clientHwAddress, stats.agentAddr);
-            updateStatsWithReassignment(stats, cntx.value, currentTimestamp,
-                                        stats.agentAddr,
-                                        stats.scanningResult);
-            clientMap.put(cntx.clientHwAddress, stats);
+            handoffClientToAp(cntx.clientHwAddress, agentAddr);
+            clientMap.reassign(mac, cntx.value, currentTimestamp, agentAddr,
+                               clientMap.getScanningResult(mac));
             return;
         }
 
         // Check for out-of-range client
         // a client has sent nothing during a certain time
-        if ((currentTimestamp - stats.lastHeard)
+        long lastHeard = clientMap.getLastHeard(mac);
+        if ((currentTimestamp - lastHeard)
             > MOBILITY_PARAMS.idle_client_threshold) {
+            InetAddress agentAddr = clientMap.getAgent(mac);
             log.info("MobilityManager: client with MAC address "
                      + cntx.clientHwAddress + " was idle longer than "
                      + MOBILITY_PARAMS.idle_client_threshold / 1000
                      + " sec -> Reassociating it to agent "
-                     + stats.agentAddr);
-            handoffClientToAp(cntx.clientHwAddress, stats.agentAddr);
-            updateStatsWithReassignment(stats, cntx.value, currentTimestamp,
-                                        stats.agentAddr,
-                                        stats.scanningResult);
-            clientMap.put(cntx.clientHwAddress, stats);
+                     + agentAddr);
+            handoffClientToAp(cntx.clientHwAddress, agentAddr);
+            clientMap.reassign(mac, cntx.value, currentTimestamp, agentAddr,
+                               clientMap.getScanningResult(mac));
             return;
         }
 
-        if ((currentTimestamp - stats.lastHeard)
+        if ((currentTimestamp - lastHeard)
             > MOBILITY_PARAMS.time_reset_triggers) {
             log.info("MobilityManager: Time threshold consumed");
-            updateStatsScans(stats, currentTimestamp, 0, 0);
-            clientMap.put(cntx.clientHwAddress, stats);
+            clientMap.setAverage(mac, currentTimestamp, 0, 0);
         }
 
-        // If this notification is from the agent that's hosting the client's LVAP scan, update MobilityStats and handoff.
+        // If this notification is from the agent that's hosting the client's LVAP scan, update the statistics and handoff.
         if (client.getLvap().getAgent().getIpAddress()
                   .equals(cntx.agent.getIpAddress())) {
 
 
             /* Scan and update statistics */
 
-            client_signal_dBm = stats.signalStrength - 256;
-            client_average_dBm = stats.client_average - 256;
-            client_triggers = stats.client_triggers;
-            //log.info("MobilityManager: Triggers: "+ client_triggers);
-
-            //log.info("MobilityManager: STA current power in this client: "+ stats.signalStrength + " (" + client_signal_dBm + "dBm)");
-
-            if (client_triggers != MOBILITY_PARAMS.number_of_triggers) {
-
-                client_signal = Math.pow(10.0, (client_signal_dBm)
-                                               / 10.0); // Linear power
-                //log.info("client_signal: "+ client_signal);
-                client_average = Math.pow(10.0, (client_average_dBm)
-                                                / 10.0); // Linear power average
-                //log.info("client_average: "+ client_average);
-                client_average =
-                        client_average + ((client_signal - client_average)
-                                          / (client_triggers
-                                             + 1)); // Cumulative moving average
-                //log.info("client_average: "+ client_average);
-                client_average_dBm = Math.round(10.0 * Math
-                        .log10(client_average)); //Average power in dBm
-                //log.info("client_average_dBm: "+ client_average_dBm);
-                client_triggers++; // Increase number of triggers that will be used to calculate average power
-
-                updateStatsScans(stats, currentTimestamp,
-                                 client_average_dBm + 256, client_triggers);
-                clientMap.put(cntx.clientHwAddress, stats);
-                //log.info("MobilityManager: STA average power in this client: "+ stats.client_average + " (" + client_average_dBm + "dBm)");
-                //log.info("MobilityManager: Triggers: "+ stats.client_triggers);
+            //log.info("MobilityManager: Triggers: "+ clientMap.getTriggers(mac));
 
+            if (clientMap.getTriggers(mac)
+                != MOBILITY_PARAMS.number_of_triggers) {
+
+                // Cumulative moving average of the linear power, stored in dBm
+                clientMap.addSampleToAverage(mac, currentTimestamp);
+                //log.info("MobilityManager: STA average power in this client: "+ clientMap.getAverage(mac));
                 return;
 
             } else {
 
-                updateStatsScans(stats, currentTimestamp, 0, 0);
-                clientMap.put(cntx.clientHwAddress, stats);
+                client_average_dBm = clientMap.getAverage(mac) - 256;
+                clientMap.setAverage(mac, currentTimestamp, 0, 0);
 
                 // Don't bother if we're not within hysteresis period
-                if (currentTimestamp - stats.assignmentTimestamp
+                if (currentTimestamp - clientMap.getAssignedAt(mac)
                     < MOBILITY_PARAMS.hysteresis_threshold) {
                     return;
                 }
@@ -230,74 +183,55 @@ public class MobilityManager extends OdinApplication {
                         + client_average_dBm + "dBm)");
             }
 
-            for (InetAddress agentAddr : getAgents()) { // FIXME: scan for nearby agents only
-
-                // This is the agent where the STA is associated, so we don't scan
-                if (cntx.agent.getIpAddress().equals(agentAddr)) {
-                    log.info("MobilityManager: Do not Scan client "
-                             + cntx.clientHwAddress
-                             + " in agent (Skip same AP) " + agentAddr
-                             + " and channel " + getChannelFromAgent(
-                            agentAddr));
-                    continue; // Skip same AP
-                }
-                // Scanning in the rest of APs
-                else {
-                    log.info("MobilityManager: Scanning client "
+            // Scan on the APs the client is likely to move to, all at once
+            InetAddress[] candidates = scanCandidates(cntx.agent.getIpAddress());
+            int scanChannel = getChannelFromAgent(cntx.agent.getIpAddress());
+            log.info("MobilityManager: Scanning client " + cntx.clientHwAddress
+                     + " in agents " + Arrays.toString(candidates)
+                     + " and channel " + scanChannel);
+            Map<InetAddress, Integer> scanned = scanClientFromAgents(
+                    candidates, cntx.clientHwAddress, scanChannel,
+                    this.MOBILITY_PARAMS.scanning_time);
+
+            long bestSignal = clientMap.getSignal(mac);
+            for (InetAddress agentAddr : candidates) {
+                Integer power = scanned.get(agentAddr);
+                if (power == null) {
+                    log.info("MobilityManager: No scanning result for client "
                              + cntx.clientHwAddress + " in agent "
-                             + agentAddr + " and channel "
-                             + getChannelFromAgent(
-                            cntx.agent.getIpAddress()));
-
-                    // Send the scanning request to the agent
-
-                    lastScanningResult = scanClientFromAgent(agentAddr,
-                                                             cntx.clientHwAddress,
-                                                             getChannelFromAgent(
-                                                                     cntx.agent
-                                                                             .getIpAddress()),
-                                                             this.MOBILITY_PARAMS.scanning_time);
-                    //log.info("MobilityManager: Last Scanning Result: "+lastScanningResult);
-
-                    //scan = false; // For testing only once
-                    //if (lastScanningResult >= 50) { // testing
-
-                    if (lastScanningResult > stats.signalStrength) {
-                        //greaterscanningresult = stats.signalStrength;
-                        greaterscanningresult = lastScanningResult;//
-                        updateStatsWithReassignment(stats,
-                                                    lastScanningResult,
-                                                    currentTimestamp,
-                                                    agentAddr,
-                                                    greaterscanningresult);
-                    } else if (greaterscanningresult
-                               < lastScanningResult) { //
-                        greaterscanningresult = lastScanningResult;
-                    }
-
+                             + agentAddr);
+                    continue;
+                }
+                lastScanningResult = power;
+
+                if (lastScanningResult > bestSignal) {
+                    greaterscanningresult = lastScanningResult;
+                    bestSignal = lastScanningResult;
+                    clientMap.reassign(mac, lastScanningResult,
+                                       currentTimestamp, agentAddr,
+                                       greaterscanningresult);
+                } else if (greaterscanningresult < lastScanningResult) {
+                    greaterscanningresult = lastScanningResult;
                 }
 
-                //log.info("MobilityManager: Higher Scanning result: " + greaterscanningresult);
                 log.info("MobilityManager: Scanned client "
                          + cntx.clientHwAddress + " in agent " + agentAddr
-                         + " and channel " + getChannelFromAgent(
-                        cntx.agent.getIpAddress()) + " with power "
+                         + " and channel " + scanChannel + " with power "
                          + lastScanningResult);
             }
 
-            if (cntx.agent.getIpAddress().equals(stats.agentAddr)) {
-                stats.scanningResult = greaterscanningresult;
-                clientMap.put(cntx.clientHwAddress, stats);
+            InetAddress bestAgent = clientMap.getAgent(mac);
+            if (cntx.agent.getIpAddress().equals(bestAgent)) {
+                clientMap.setScanningResult(mac, greaterscanningresult);
                 log.info("MobilityManager: no hand off");
                 return;
             }
 
             log.info("MobilityManager: signal strengths: new = "
-                     + stats.signalStrength + " old = " + cntx.value
+                     + bestSignal + " old = " + cntx.value
                      + " handing off client " + cntx.clientHwAddress
-                     + " to agent " + stats.agentAddr);
-            handoffClientToAp(cntx.clientHwAddress, stats.agentAddr);
-            clientMap.put(cntx.clientHwAddress, stats);
+                     + " to agent " + bestAgent);
+            handoffClientToAp(cntx.clientHwAddress, bestAgent);
             //log.info("\n*\n*\n*\n*\n*\n*");
             return;
 
@@ -306,28 +240,29 @@ public class MobilityManager extends OdinApplication {
     }
 
     /**
-     * This method will update statistics
+     * Agents to scan a client on: the closest neighbors of its AP, topped up with other APs picked
+     * at random while fewer are known, so that the neighbors still get discovered. Every other AP
+     * while the neighbors of its AP are not known at all.
      */
-    private void updateStatsWithReassignment(MobilityStats stats,
-                                             long signalValue, long now,
-                                             InetAddress agentAddr,
-                                             long scanningResult) {
-        stats.signalStrength = signalValue;
-        stats.lastHeard = now;
-        stats.assignmentTimestamp = now;
-        stats.agentAddr = agentAddr;
-        stats.scanningResult = scanningResult;
-
-    }
-
-    /**
-     * This method will only update when trigger
-     */
-    private void updateStatsScans(MobilityStats stats, long now,
-                                  long average, int triggers) {
-        stats.lastHeard = now;
-        stats.client_average = average;
-        stats.client_triggers = triggers;
+    private InetAddress[] scanCandidates(InetAddress currentAgent) {
+        List<InetAddress> neighbors = getNeighborAgents(currentAgent,
+                                                        NEIGHBORS_TO_SCAN);
+        List<InetAddress> others = new ArrayList<>();
+        for (InetAddress agentAddr : getAgents()) {
+            // Skip same AP
+            if (!agentAddr.equals(currentAgent) && !neighbors.contains(agentAddr)) {
+                others.add(agentAddr);
+            }
+        }
+        if (neighbors.isEmpty()) {
+            return others.toArray(new InetAddress[others.size()]);
+        }
+        List<InetAddress> candidates = new ArrayList<>(neighbors);
+        Collections.shuffle(others);
+        for (int i = 0; i < others.size() && candidates.size() < NEIGHBORS_TO_SCAN; i++) {
+            candidates.add(others.get(i));
+        }
+        return candidates.toArray(new InetAddress[candidates.size()]);
     }
 
     /**
@@ -368,28 +303,4 @@ public class MobilityManager extends OdinApplication {
         }
     }
 
-    private class MobilityStats {
-
-        public long signalStrength;
-        public long lastHeard;                // timestamp where it was heard the last time
-        public long assignmentTimestamp;    // timestamp it was assigned
-        public InetAddress agentAddr;
-        public long scanningResult;
-        public long client_average;                // average power
-        public int client_triggers;                    // number of triggers to calculate average power
-
-        public MobilityStats(long signalStrength, long lastHeard,
-                             long assignmentTimestamp, InetAddress agentAddr,
-                             long scanningResult, long average,
-                             int triggers) {
-            this.signalStrength = signalStrength;
-            this.lastHeard = lastHeard;
-            this.assignmentTimestamp = assignmentTimestamp;
-            this.agentAddr = agentAddr;
-            this.scanningResult = scanningResult;
-            this.client_average = average;
-            this.client_triggers = triggers;
-        }
-    }
-
 }
@@ -0,0 +1,390 @@
+package net.floodlightcontroller.odin.applications;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mobility state of every client, as used by MobilityManager on each publish event. Clients are
+ * keyed by their MAC address as a long in an open-addressing table (linear probing), and each
+ * field is a column array indexed by the client's slot, so updating a client allocates nothing.
+ * <p>
+ * Signal values are kept as the agents report them (dBm + 256). Several clients are updated at
+ * once from the dispatcher lanes, but the events of one client are serialized on its lane: field
+ * updates only take the read lock, adding, removing and growing take the write lock.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class MobilityStateTable {
+
+    private static final long EMPTY = -1L; // Not a valid MAC address, which are 48 bits
+    private static final int MIN_CAPACITY = 16;
+
+    // Reported signal to linear power (mW) lookup, for every value an agent can report
+    private static final int SIGNAL_OFFSET = 256;
+    private static final double[] SIGNAL_TO_MW = new double[2 * SIGNAL_OFFSET];
+
+    static {
+        for (int i = 0; i < SIGNAL_TO_MW.length; i++) {
+            SIGNAL_TO_MW[i] = Math.pow(10.0, (i - SIGNAL_OFFSET) / 10.0);
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private int size = 0;
+    private int mask;
+    private long[] keys;
+    private long[] signal;
+    private long[] lastHeard;      // Timestamp it was heard the last time
+    private long[] assignedAt;     // Timestamp it was assigned to its agent
+    private long[] scanningResult;
+    private long[] average;        // Average power, dBm + 256
+    private int[] triggers;        // Samples in the average power
+    private InetAddress[] agent;
+
+    MobilityStateTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expected number of clients sized for, the table grows past it
+     */
+    MobilityStateTable(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * A client was heard. A new client is added with the signal as its scanning result, a known
+     * one gets its signal, last heard time and agent updated.
+     *
+     * @return true if the client was new
+     */
+    boolean heard(long mac, long signalValue, long now, InetAddress agentAddr,
+                  long initialAverage, int initialTriggers) {
+        lock.readLock().lock();
+        try {
+            int slot = find(mac);
+            if (slot >= 0) {
+                signal[slot] = signalValue;
+                lastHeard[slot] = now;
+                agent[slot] = agentAddr;
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(mac);
+            if (slot < 0) {
+                slot = insert(mac);
+                assignedAt[slot] = now;
+                scanningResult[slot] = signalValue;
+                average[slot] = initialAverage;
+                triggers[slot] = initialTriggers;
+            }
+            signal[slot] = signalValue;
+            lastHeard[slot] = now;
+            agent[slot] = agentAddr;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The client was (or is to be) assigned to an agent
+     */
+    void reassign(long mac, long signalValue, long now, InetAddress agentAddr,
+                  long scanning) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(mac);
+            signal[slot] = signalValue;
+            lastHeard[slot] = now;
+            assignedAt[slot] = now;
+            agent[slot] = agentAddr;
+            scanningResult[slot] = scanning;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Set the average power of the client and the samples it was computed over
+     */
+    void setAverage(long mac, long now, long averageValue, int triggerCount) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(mac);
+            lastHeard[slot] = now;
+            average[slot] = averageValue;
+            triggers[slot] = triggerCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add the client's current signal to its cumulative moving average, computed on linear power
+     *
+     * @return the new average, dBm + 256
+     */
+    long addSampleToAverage(long mac, long now) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(mac);
+            double sample = toMilliwatts(signal[slot]);
+            double avg = toMilliwatts(average[slot]);
+            int n = triggers[slot];
+            avg += (sample - avg) / (n + 1);
+
+            lastHeard[slot] = now;
+            average[slot] = Math.round(10.0 * Math.log10(avg)) + SIGNAL_OFFSET;
+            triggers[slot] = n + 1;
+            return average[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void setScanningResult(long mac, long scanning) {
+        lock.readLock().lock();
+        try {
+            scanningResult[slotOf(mac)] = scanning;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the client was known
+     */
+    boolean remove(long mac) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(mac);
+            if (slot < 0) {
+                return false;
+            }
+            delete(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(long mac) {
+        lock.readLock().lock();
+        try {
+            return find(mac) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getSignal(long mac) {
+        lock.readLock().lock();
+        try {
+            return signal[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getLastHeard(long mac) {
+        lock.readLock().lock();
+        try {
+            return lastHeard[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getAssignedAt(long mac) {
+        lock.readLock().lock();
+        try {
+            return assignedAt[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getScanningResult(long mac) {
+        lock.readLock().lock();
+        try {
+            return scanningResult[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getAverage(long mac) {
+        lock.readLock().lock();
+        try {
+            return average[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int getTriggers(long mac) {
+        lock.readLock().lock();
+        try {
+            return triggers[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    InetAddress getAgent(long mac) {
+        lock.readLock().lock();
+        try {
+            return agent[slotOf(mac)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param value signal as reported by the agents, dBm + 256
+     * @return linear power in mW
+     */
+    static double toMilliwatts(long value) {
+        if (value >= 0 && value < SIGNAL_TO_MW.length) {
+            return SIGNAL_TO_MW[(int) value];
+        }
+        return Math.pow(10.0, (value - SIGNAL_OFFSET) / 10.0);
+    }
+
+    private int slotOf(long mac) {
+        int slot = find(mac);
+        if (slot < 0) {
+            throw new IllegalStateException(
+                    "Unknown client " + Long.toHexString(mac));
+        }
+        return slot;
+    }
+
+    private int find(long mac) {
+        for (int i = hash(mac) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == mac) {
+                return i;
+            }
+            if (keys[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    // Called with the write lock held, the key being absent
+    private int insert(long mac) {
+        if ((size + 1) * 4 > keys.length * 3) { // Load factor 0.75
+            rehash(keys.length * 2);
+        }
+        int i = hash(mac) & mask;
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = mac;
+        size++;
+        return i;
+    }
+
+    // Backward shift deletion, so no tombstones are left behind
+    private void delete(int slot) {
+        int hole = slot;
+        for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            // Move the entry back if the hole is between its home and it
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        agent[hole] = null;
+        size--;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        signal[to] = signal[from];
+        lastHeard[to] = lastHeard[from];
+        assignedAt[to] = assignedAt[from];
+        scanningResult[to] = scanningResult[from];
+        average[to] = average[from];
+        triggers[to] = triggers[from];
+        agent[to] = agent[from];
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldSignal = signal;
+        long[] oldLastHeard = lastHeard;
+        long[] oldAssignedAt = assignedAt;
+        long[] oldScanningResult = scanningResult;
+        long[] oldAverage = average;
+        int[] oldTriggers = triggers;
+        InetAddress[] oldAgent = agent;
+
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) {
+                continue;
+            }
+            int i = hash(oldKeys[j]) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            signal[i] = oldSignal[j];
+            lastHeard[i] = oldLastHeard[j];
+            assignedAt[i] = oldAssignedAt[j];
+            scanningResult[i] = oldScanningResult[j];
+            average[i] = oldAverage[j];
+            triggers[i] = oldTriggers[j];
+            agent[i] = oldAgent[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mask = capacity - 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        signal = new long[capacity];
+        lastHeard = new long[capacity];
+        assignedAt = new long[capacity];
+        scanningResult = new long[capacity];
+        average = new long[capacity];
+        triggers = new int[capacity];
+        agent = new InetAddress[capacity];
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Vendor prefixes repeat, mix every bit into the low ones
+    private static int hash(long mac) {
+        long h = mac * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,286 @@
+package net.floodlightcontroller.odin.applications;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Server the UAV controllers send AP relocations to. Any number of controllers can stay
+ * connected and stream relocations, one JSON object or array after the other, whatever the line
+ * breaks; anything outside of a JSON value is ignored. Every relocation is handed over as soon as
+ * it is complete, on the server's thread, so the handler must not block.
+ * <p>
+ * All connections are served by the thread calling run(). Replies can be sent from any thread.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class RelocationServer implements Runnable {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(RelocationServer.class);
+
+    static final int MAX_MESSAGE = 1 << 20; // Bytes of a relocation
+    private static final int BUFFER_SIZE = 8192;
+
+    interface Handler {
+        /**
+         * @param json        a complete JSON object or array
+         * @param receiveTime when its last byte was received
+         * @param reply       to answer the controller that sent it
+         */
+        void relocation(String json, Instant receiveTime, Reply reply);
+    }
+
+    interface Reply {
+        /**
+         * Send a line to the controller, dropped if it has disconnected
+         */
+        void send(String line);
+    }
+
+    private final Handler handler;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param port TCP port to listen on, 0 for any
+     * @throws IOException if the port cannot be bound
+     */
+    RelocationServer(int port, Handler handler) throws IOException {
+        this.handler = handler;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override public void run() {
+        while (running) {
+            try {
+                selector.select();
+                Connection c;
+                while ((c = pendingWrites.poll()) != null) {
+                    c.flush();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    c = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        c.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        c.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Relocation server failed", e);
+                }
+                break;
+            }
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Closing the relocation server failed", e);
+        }
+    }
+
+    /**
+     * Stop serving, run() disconnects every controller before returning
+     */
+    void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel sc = server.accept();
+        if (sc == null) {
+            return;
+        }
+        sc.configureBlocking(false);
+        sc.socket().setTcpNoDelay(true);
+        Connection c = new Connection(sc);
+        c.key = sc.register(selector, SelectionKey.OP_READ, c);
+        log.info("UAV controller connected from " + sc.getRemoteAddress());
+    }
+
+    /**
+     * A connected controller
+     */
+    private class Connection implements Reply {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        private final JsonFramer framer = new JsonFramer();
+        SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            try {
+                int n;
+                while ((n = channel.read(in)) > 0) {
+                    in.flip();
+                    while (in.hasRemaining()) {
+                        String json = framer.feed(in.get());
+                        if (json != null) {
+                            handler.relocation(json, Instant.now(), this);
+                        }
+                    }
+                    in.clear();
+                }
+                if (n < 0) {
+                    disconnect(null);
+                }
+            } catch (IOException | IllegalStateException e) {
+                disconnect(e);
+            }
+        }
+
+        @Override public void send(String line) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            out.add(ByteBuffer.wrap((line + "\n")
+                                            .getBytes(StandardCharsets.UTF_8)));
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        void flush() {
+            if (!key.isValid()) {
+                out.clear();
+                return;
+            }
+            try {
+                ByteBuffer buf;
+                while ((buf = out.peek()) != null) {
+                    channel.write(buf);
+                    if (buf.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ
+                                        | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    out.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                disconnect(e);
+            }
+        }
+
+        private void disconnect(Exception cause) {
+            log.info("UAV controller disconnected" + (cause == null ? "" :
+                                                      ": " + cause
+                                                              .getMessage()));
+            key.cancel();
+            out.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Splits a byte stream into JSON values by counting the nesting of objects and arrays outside
+     * of strings. It does not validate the values, the JSON parser does.
+     */
+    static class JsonFramer {
+        private byte[] value = new byte[256];
+        private int length = 0;
+        private int depth = 0;
+        private boolean inString = false;
+        private boolean escaped = false;
+
+        /**
+         * @return the value the byte completes, null if none
+         * @throws IllegalStateException if a value exceeds MAX_MESSAGE bytes
+         */
+        String feed(byte b) {
+            if (depth == 0) {
+                if (b != '{' && b != '[') {
+                    return null; // Between values
+                }
+                length = 0;
+            }
+            if (length == value.length) {
+                if (length >= MAX_MESSAGE) {
+                    throw new IllegalStateException(
+                            "Relocation larger than " + MAX_MESSAGE + " bytes");
+                }
+                value = Arrays.copyOf(value, length * 2);
+            }
+            value[length++] = b;
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                return null;
+            }
+            switch (b) {
+                case '"':
+                    inString = true;
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    if (--depth == 0) {
+                        return new String(value, 0, length,
+                                          StandardCharsets.UTF_8);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return null;
+        }
+    }
+}
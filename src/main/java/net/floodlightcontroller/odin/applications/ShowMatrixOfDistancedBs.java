@@ -132,6 +132,15 @@ public class ShowMatrixOfDistancedBs extends OdinApplication {
                                 System.out.println("\tAP MAC: " + APHwAddr);
                                 System.out.println(
                                         "\tavg signal: " + avg_dB + " dBm");
+                                // Only the beacon agent is sending in SCANNED_SSID
+                                try {
+                                    reportBeaconRssi(beaconAgentAddr,
+                                                     agentAddr,
+                                                     Double.parseDouble(
+                                                             avg_dB));
+                                } catch (NumberFormatException e) {
+                                    // Not a measurement, keep printing
+                                }
                                 if (avg_dB.length() > 6) {
                                     matrix = matrix + "\t" + avg_dB
                                             .substring(0, 6) + " dBm";
@@ -1,8 +1,10 @@
 package net.floodlightcontroller.odin.applications;
 
+import net.floodlightcontroller.odin.master.InterferenceMatrix;
 import net.floodlightcontroller.odin.master.OdinApplication;
 import net.floodlightcontroller.odin.master.OdinClient;
 import net.floodlightcontroller.odin.master.OdinMaster.ScannParams;
+import net.floodlightcontroller.odin.master.StationStats;
 import net.floodlightcontroller.util.MACAddress;
 import org.apache.commons.io.output.TeeOutputStream;
 
@@ -10,10 +12,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Scanner;
 
 public class ShowScannedStationsStatistics extends OdinApplication {
@@ -29,9 +29,7 @@ public class ShowScannedStationsStatistics extends OdinApplication {
     //Scann params
     private ScannParams SCANN_PARAMS;
 
-    // Scanning agents
-    Map<InetAddress, Integer> scanningAgents = new HashMap<InetAddress, Integer>();
-    int result; // Result for scanning
+    private static final long SWEEP_SLACK = 1000; // Time allowed to each agent on top of a scan, in ms
 
     HashSet<OdinClient> clients;
 
@@ -78,46 +76,32 @@ public class ShowScannedStationsStatistics extends OdinApplication {
                         "[ShowScannedStationsStatistics] ================");
                 System.out.println("[ShowScannedStationsStatistics]");
 
-                //For each channel
+                // Every agent scans every channel, each starting on a different one
+                InetAddress[] agents = getAgents().toArray(new InetAddress[0]);
+                int[] channels = new int[11];
                 for (int num_channel = 1; num_channel <= 11; ++num_channel) {
+                    channels[num_channel - 1] = num_channel;
+                }
+                System.out.println(
+                        "[ShowScannedStationsStatistics] Request for scanning channels "
+                        + Arrays.toString(channels) + " during the interval of  "
+                        + SCANN_PARAMS.scanning_interval + " ms in SSID "
+                        + SCANNED_SSID);
+                InterferenceMatrix sweep = sweepStationStatsFromAgents(
+                        agents, channels, SCANNED_SSID,
+                        SCANN_PARAMS.scanning_interval
+                        + SCANN_PARAMS.added_time, SWEEP_SLACK);
 
-                    scanningAgents.clear();
+                //For each channel
+                for (int c = 0; c < sweep.getChannelCount(); c++) {
+                    int num_channel = sweep.getChannel(c);
                     System.out.println(
                             "[ShowScannedStationsStatistics] Scanning channel "
                             + num_channel);
 
-                    // For each Agent
-                    System.out.println(
-                            "[ShowScannedStationsStatistics] Request for scanning during the interval of  "
-                            + SCANN_PARAMS.scanning_interval + " ms in SSID "
-                            + SCANNED_SSID);
-                    for (InetAddress agentAddr : getAgents()) {
-
-                        System.out.println(
-                                "[ShowScannedStationsStatistics] Agent: "
-                                + agentAddr);
-                        if (SCANN_PARAMS.filename.length() > 0) {
-                            System.setOut(stdout); // Return to only console
-                        }
-
-                        // Request statistics
-                        result = requestScannedStationsStatsFromAgent(
-                                agentAddr, num_channel, SCANNED_SSID);
-                        scanningAgents.put(agentAddr, result);
-                    }
+                    for (int a = 0; a < agents.length; a++) {
+                        InetAddress agentAddr = agents[a];
 
-                    try {
-                        Thread.sleep(SCANN_PARAMS.scanning_interval
-                                     + SCANN_PARAMS.added_time);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    for (InetAddress agentAddr : getAgents()) {
-
-                        if (SCANN_PARAMS.filename.length() > 0) {
-                            System.setOut(ps); // Both outputs enabled
-                        }
                         System.out
                                 .println("[ShowScannedStationsStatistics]");
                         System.out.println(
@@ -125,50 +109,48 @@ public class ShowScannedStationsStatistics extends OdinApplication {
                                 + agentAddr + " in channel " + num_channel);
 
                         // Reception statistics
-                        if (scanningAgents.get(agentAddr) == 0) {
+                        StationStats vals_rx = sweep.getStats(c, a);
+                        if (vals_rx == null) {
                             System.out.println(
-                                    "[ShowScannedStationsStatistics] Agent BUSY during scanning operation");
+                                    "[ShowScannedStationsStatistics] Agent "
+                                    + sweep.getStatus(c, a)
+                                    + " during scanning operation");
                             continue;
                         }
-                        Map<MACAddress, Map<String, String>> vals_rx = getScannedStationsStatsFromAgent(
-                                agentAddr, SCANNED_SSID);
+                        System.out.println(
+                                "[ShowScannedStationsStatistics] Timestamp - Scan: "
+                                + sweep.getCollectedAt(c, a)
+                                + " ms since epoch");
 
                         // for each STA scanned by the Agent
-                        for (Entry<MACAddress, Map<String, String>> vals_entry_rx : vals_rx
-                                .entrySet()) {
+                        for (int i = 0; i < vals_rx.size(); i++) {
                             // NOTE: the clients currently scanned MAY NOT be the same as the clients who have been associated
-                            MACAddress staHwAddr = vals_entry_rx.getKey();
+                            MACAddress staHwAddr = vals_rx.getMacAddress(i);
                             boolean isWi5Sta = false;
                             boolean isWi5Lvap = false;
                             System.out
                                     .println("\tStation MAC: " + staHwAddr);
                             System.out.println(
-                                    "\t\tnum packets: " + vals_entry_rx
-                                            .getValue().get("packets"));
+                                    "\t\tnum packets: " + vals_rx
+                                            .getPackets(i));
                             System.out.println(
-                                    "\t\tavg rate: " + vals_entry_rx
-                                            .getValue().get("avg_rate")
+                                    "\t\tavg rate: " + vals_rx.getAvgRate(i)
                                     + " kbps");
                             System.out.println(
-                                    "\t\tavg signal: " + vals_entry_rx
-                                            .getValue().get("avg_signal")
-                                    + " dBm");
+                                    "\t\tavg signal: " + vals_rx
+                                            .getAvgSignal(i) + " dBm");
                             System.out.println(
-                                    "\t\tavg length: " + vals_entry_rx
-                                            .getValue().get("avg_len_pkt")
-                                    + " bytes");
+                                    "\t\tavg length: " + vals_rx
+                                            .getAvgLenPkt(i) + " bytes");
                             System.out.println(
-                                    "\t\tair time: " + vals_entry_rx
-                                            .getValue().get("air_time")
+                                    "\t\tair time: " + vals_rx.getAirTime(i)
                                     + " ms");
                             System.out.println(
-                                    "\t\tinit time: " + vals_entry_rx
-                                            .getValue().get("first_received")
-                                    + " sec");
+                                    "\t\tinit time: " + vals_rx
+                                            .getFirstReceived(i) + " sec");
                             System.out.println(
-                                    "\t\tend time: " + vals_entry_rx
-                                            .getValue().get("last_received")
-                                    + " sec");
+                                    "\t\tend time: " + vals_rx
+                                            .getLastReceived(i) + " sec");
 
                             for (OdinClient oc : clients) {  // all the clients currently associated
                                 if (oc.getMacAddress().equals(staHwAddr)) {
@@ -210,8 +192,7 @@ public class ShowScannedStationsStatistics extends OdinApplication {
                             }
                             System.out.println("\t\tAP of client: unknown");
                             System.out.println("\t\tChannel of AP: unknown");
-                            if (vals_entry_rx.getValue().get("equipment")
-                                             .equals("AP")) {
+                            if (vals_rx.isAccessPoint(i)) {
                                 System.out.println("\t\tCode: non-Wi-5 AP");
                             } else {
                                 System.out.println("\t\tCode: non-Wi-5 STA");
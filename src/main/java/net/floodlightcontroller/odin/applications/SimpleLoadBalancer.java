@@ -44,78 +44,78 @@ public class SimpleLoadBalancer extends OdinApplication {
      */ Map<InetAddress, Integer> newMapping = new HashMap<InetAddress, Integer>();
 
     @Override public void run() {
+        schedulePeriodic(new Runnable() {
+            @Override public void run() {
+                buildHearingMap();
+                balance();
+            }
+        }, INTERVAL, INTERVAL);
+    }
 
-        while (true) {
-            try {
-                Thread.sleep(INTERVAL);
-
-                /*all the clients Odin has heared (even non-connected) */
-                clients = new HashSet<OdinClient>(getClients());
-
-                hearingMap.clear();
-                newMapping.clear();
-
-                /*
-                 * Probe each AP to get the list of MAC addresses that it can "hear".
-                 * We define "able to hear" as "signal strength > SIGNAL_THRESHOLD".
-                 *
-                 *  We then build the hearing table.
-                 *
-                 * Note that the hearing table may not match the current distribution
-                 *of clients between the APs
-                 */
-
-                /* for each of the agents defined in the Poolfile (APs)*/
-                for (InetAddress agentAddr : getAgents()) {
-                    /* FIXME: if the next line is run before the APs are activated,
-                     *the program blocks here */
-                    Map<MACAddress, Map<String, String>> vals = getRxStatsFromAgent(
-                            agentAddr);
-
-                    /* for each STA which has contacted that agent (AP) (not necessarily associated) */
-                    for (Entry<MACAddress, Map<String, String>> vals_entry : vals
-                            .entrySet()) {
-
-                        MACAddress staHwAddr = vals_entry.getKey();
-
-                        /* for all the clients registered in Odin (those who have an LVAP) */
-                        for (OdinClient oc : clients) {
-                            /*
-                             * Check four conditions:
-                             * - the MAC address of the client must be that of the connected STA
-                             * - the IP address of the STA cannot be null
-                             * - the IP address of the STA cannot be 0.0.0.0
-                             * - the received signal must be over the threshold
-                             */
-                            if (oc.getMacAddress().equals(staHwAddr)
-                                && oc.getIpAddress() != null && !oc
-                                    .getIpAddress().getHostAddress()
-                                    .equals("0.0.0.0") && Integer.parseInt(
-                                    vals_entry.getValue().get("signal"))
-                                                          >= SIGNAL_THRESHOLD) {
-
-                                /* if the client is in not in the hearing map, I add
-                                 * the MAC address of the STA to the hearing map table
-                                 * and I initialize the table of agents who have heared it
-                                 */
-                                if (!hearingMap.containsKey(staHwAddr)) {
-                                    hearingMap.put(staHwAddr,
-                                                   new HashSet<InetAddress>());
-                                }
-
-                                /* for that MAC address, add the agent (AP)
-                                 *  in the table
-                                 */
-                                hearingMap.get(staHwAddr).add(agentAddr);
-                            }
+    /**
+     * Find which agents hear each client above the threshold
+     */
+    private void buildHearingMap() {
+        /*all the clients Odin has heared (even non-connected) */
+        clients = new HashSet<OdinClient>(getClients());
+
+        hearingMap.clear();
+        newMapping.clear();
+
+        /*
+         * Probe each AP to get the list of MAC addresses that it can "hear".
+         * We define "able to hear" as "signal strength > SIGNAL_THRESHOLD".
+         *
+         *  We then build the hearing table.
+         *
+         * Note that the hearing table may not match the current distribution
+         *of clients between the APs
+         */
+
+        /* for each of the agents defined in the Poolfile (APs)*/
+        for (InetAddress agentAddr : getAgents()) {
+            /* FIXME: if the next line is run before the APs are activated,
+             *the program blocks here */
+            Map<MACAddress, Map<String, String>> vals = getRxStatsFromAgent(
+                    agentAddr);
+
+            /* for each STA which has contacted that agent (AP) (not necessarily associated) */
+            for (Entry<MACAddress, Map<String, String>> vals_entry : vals
+                    .entrySet()) {
+
+                MACAddress staHwAddr = vals_entry.getKey();
+
+                /* for all the clients registered in Odin (those who have an LVAP) */
+                for (OdinClient oc : clients) {
+                    /*
+                     * Check four conditions:
+                     * - the MAC address of the client must be that of the connected STA
+                     * - the IP address of the STA cannot be null
+                     * - the IP address of the STA cannot be 0.0.0.0
+                     * - the received signal must be over the threshold
+                     */
+                    if (oc.getMacAddress().equals(staHwAddr)
+                        && oc.getIpAddress() != null && !oc
+                            .getIpAddress().getHostAddress()
+                            .equals("0.0.0.0") && Integer.parseInt(
+                            vals_entry.getValue().get("signal"))
+                                                  >= SIGNAL_THRESHOLD) {
+
+                        /* if the client is in not in the hearing map, I add
+                         * the MAC address of the STA to the hearing map table
+                         * and I initialize the table of agents who have heared it
+                         */
+                        if (!hearingMap.containsKey(staHwAddr)) {
+                            hearingMap.put(staHwAddr,
+                                           new HashSet<InetAddress>());
                         }
+
+                        /* for that MAC address, add the agent (AP)
+                         *  in the table
+                         */
+                        hearingMap.get(staHwAddr).add(agentAddr);
                     }
                 }
-
-                balance();
-
-            } catch (InterruptedException e) {
-                e.printStackTrace();
             }
         }
     }
@@ -0,0 +1,384 @@
+package net.floodlightcontroller.odin.applications;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scores used by SmartApSelection to pick an AP for each client, computed for every client and AP
+ * at once. The averaged RSSI, the available throughput and the fittingness factor are kept in
+ * dense client x AP matrices (row-major double arrays); rows are found from the client's MAC
+ * address and columns from the agent's address.
+ * <p>
+ * RSSI averaging happens in the linear domain, dBm values are converted through a lookup table
+ * with the 0.01 dB resolution the averages are rounded to.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class SmartApScoringEngine {
+
+    static final double NO_SIGNAL = -99.9; // dBm, client not heard by the AP
+
+    /**
+     * Told when an AP hears a client for the first time.
+     */
+    interface FirstHeardListener {
+        void firstHeard(MACAddress client, InetAddress agent, double rssi);
+    }
+
+    // dBm to linear lookup, covering every value the averages can be rounded to
+    private static final int TABLE_MIN_CENTI_DB = -15000;
+    private static final int TABLE_MAX_CENTI_DB = 5000;
+    private static final double[] DB_TO_LINEAR = new double[
+            TABLE_MAX_CENTI_DB - TABLE_MIN_CENTI_DB + 1];
+
+    static {
+        for (int i = 0; i < DB_TO_LINEAR.length; i++) {
+            DB_TO_LINEAR[i] = Math.pow(10.0, (TABLE_MIN_CENTI_DB + i) / 1000.0);
+        }
+    }
+
+    // Fittingness factor shaping
+    private static final double SHAPING = 5;
+    private static final double SHAPING_K = 1;
+    private static final double SHAPING_MINE = 1.3;
+    private static final double LAMBDA = 1 - Math.exp(-SHAPING_K / (
+            Math.pow(SHAPING - 1, 1 / SHAPING) + Math
+                    .pow(SHAPING - 1, (1 - SHAPING) / SHAPING)));
+
+    private final InetAddress[] agents;
+    private final int cols;
+    private final Map<InetAddress, Integer> columns = new HashMap<>();
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    private int rowCount = 0;
+    private MACAddress[] clients;
+    private int[] scanChannel; // Scan to read each client's RSSI from, -1 if none
+    private double[] rssi; // dBm, averaged
+    private double[] samples; // dBm, last scan
+    private double[] throughput; // kbps
+    private double[] fittingness;
+
+    /**
+     * @param agents APs, in column order
+     */
+    SmartApScoringEngine(InetAddress[] agents) {
+        this.agents = agents.clone();
+        this.cols = agents.length;
+        for (int i = 0; i < cols; i++) {
+            columns.put(agents[i], i);
+        }
+        allocate(16);
+    }
+
+    /**
+     * @param client client MAC address
+     * @return row of the client, added with no data if it wasn't known yet
+     */
+    int addClient(MACAddress client) {
+        Integer row = rows.get(client.toLong());
+        if (row != null) {
+            return row;
+        }
+        if (rowCount == clients.length) {
+            allocate(rowCount * 2);
+        }
+
+        int r = rowCount++;
+        clients[r] = client;
+        scanChannel[r] = -1;
+        Arrays.fill(rssi, r * cols, (r + 1) * cols, NO_SIGNAL);
+        Arrays.fill(throughput, r * cols, (r + 1) * cols, 0.0);
+        Arrays.fill(fittingness, r * cols, (r + 1) * cols, 0.0);
+        rows.put(client.toLong(), r);
+        return r;
+    }
+
+    /**
+     * @return row of the client, -1 if unknown
+     */
+    int getRow(MACAddress client) {
+        Integer row = rows.get(client.toLong());
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @return column of the agent, -1 if unknown
+     */
+    int getColumn(InetAddress agent) {
+        Integer col = columns.get(agent);
+        return col == null ? -1 : col;
+    }
+
+    int getClientCount() {
+        return rowCount;
+    }
+
+    int getAgentCount() {
+        return cols;
+    }
+
+    /**
+     * Set which scan (channel index) the client's RSSI is to be read from.
+     *
+     * @param row     the client's row
+     * @param channel index of the channel in the scans, -1 for none
+     */
+    void setScanChannel(int row, int channel) {
+        scanChannel[row] = channel;
+    }
+
+    double getRssi(int row, int col) {
+        return rssi[row * cols + col];
+    }
+
+    /**
+     * Copy the RSSI the client is heard with by each AP.
+     *
+     * @param row the client's row
+     * @param dst array to copy to, allocated if null or too small
+     * @return the array copied to
+     */
+    double[] getRssiRow(int row, double[] dst) {
+        if (dst == null || dst.length < cols) {
+            dst = new double[cols];
+        }
+        System.arraycopy(rssi, row * cols, dst, 0, cols);
+        return dst;
+    }
+
+    /**
+     * @return true if any client is heard by the AP above the threshold
+     */
+    boolean anyAbove(int col, double threshold) {
+        for (int i = col; i < rowCount * cols; i += cols) {
+            if (rssi[i] > threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fold the results of a scan cycle into the averaged RSSI. Every scan is parsed once, and
+     * the averages of all clients and APs are then updated in a single pass.
+     *
+     * @param scans    "MAC rssi" rows, indexed by channel then AP column, null if missing
+     * @param weight   weight of the new samples in the average (alpha)
+     * @param listener told when an AP hears a client for the first time, may be null
+     */
+    void updateRssi(String[][] scans, double weight,
+                    FirstHeardListener listener) {
+        final int n = rowCount * cols;
+        Arrays.fill(samples, 0, n, NO_SIGNAL);
+
+        for (int channel = 0; channel < scans.length; channel++) {
+            for (int col = 0; col < cols && col < scans[channel].length;
+                 col++) {
+                String scan = scans[channel][col];
+                if (scan != null) {
+                    readScan(scan, channel, col);
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            double sample = samples[i];
+            double previous = rssi[i];
+            if (previous == NO_SIGNAL) {
+                // First data for this client on this AP
+                rssi[i] = sample;
+                if (sample != NO_SIGNAL && listener != null) {
+                    listener.firstHeard(clients[i / cols], agents[i % cols],
+                                        sample);
+                }
+            } else if (sample != NO_SIGNAL) {
+                double average = toLinear(previous) * (1 - weight)
+                                 + toLinear(sample) * weight;
+                rssi[i] = (double) Math.round(1000 * Math.log10(average))
+                          / 100; // dBm with 2 decimals
+            }
+        }
+    }
+
+    void setThroughput(int row, int col, double kbps) {
+        throughput[row * cols + col] = kbps;
+    }
+
+    double getThroughput(int row, int col) {
+        return throughput[row * cols + col];
+    }
+
+    /**
+     * Compute the fittingness factor of every client on every AP.
+     *
+     * @param required throughput required by the clients, in kbps
+     */
+    void computeFittingness(double required) {
+        final int n = rowCount * cols;
+        final double scale = SHAPING_MINE / required;
+        for (int i = 0; i < n; i++) {
+            double rb = throughput[i];
+            if (Math.abs(rb) > 1e-6) {
+                double x = rb * scale;
+                double x5 = x * x * x * x * x;
+                double u = x5 / (1 + x5);
+                fittingness[i] = (1 - Math.exp(-SHAPING_K * u / x)) / LAMBDA;
+            } else {
+                fittingness[i] = 0;
+            }
+        }
+    }
+
+    double getFittingness(int row, int col) {
+        return fittingness[row * cols + col];
+    }
+
+    /**
+     * @return the client's AP columns, from highest to lowest fittingness factor
+     */
+    int[] rankByFittingness(int row) {
+        int[] order = new int[cols];
+        int base = row * cols;
+        for (int col = 0; col < cols; col++) {
+            // Insertion sort, stable so that ties keep the AP order
+            int i = col;
+            while (i > 0 && fittingness[base + order[i - 1]]
+                            < fittingness[base + col]) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = col;
+        }
+        return order;
+    }
+
+    /**
+     * Compute the Jain's fairness index the network would have if the client moved to each AP,
+     * and pick the fairest AP where the client is heard above the threshold.
+     * <p>
+     * Only two APs change their load when a client moves, so each index is derived from the
+     * current sum of squared loads in constant time.
+     *
+     * @param row           the client's row
+     * @param assocCol      column of the AP the client is associated to
+     * @param stasPerAgent  number of clients associated to each AP
+     * @param numClients    number of clients in the network
+     * @param threshold     minimum RSSI on the target AP, in dBm
+     * @param fairnessIndex filled with the index obtained for each AP
+     * @return column of the fairest AP, 0 if none is heard above the threshold
+     */
+    int bestFairnessColumn(int row, int assocCol, int[] stasPerAgent,
+                           int numClients, double threshold,
+                           double[] fairnessIndex) {
+        double sum = 0;
+        for (int stas : stasPerAgent) {
+            sum += (double) stas * stas;
+        }
+
+        int best = 0;
+        double maxFI = 0;
+        int base = row * cols;
+        for (int col = 0; col < cols; col++) {
+            double moved = sum;
+            if (col != assocCol) {
+                // (n+1)^2 on the new AP, (n-1)^2 on the old one
+                moved += 2 * stasPerAgent[col] + 1;
+                if (assocCol >= 0) {
+                    moved += -2 * stasPerAgent[assocCol] + 1;
+                }
+            }
+            fairnessIndex[col] = numClients / (cols * moved);
+
+            if (fairnessIndex[col] > maxFI && rssi[base + col] > threshold) {
+                maxFI = fairnessIndex[col];
+                best = col;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Forget every client.
+     */
+    void clear() {
+        rows.clear();
+        rowCount = 0;
+        Arrays.fill(clients, null);
+    }
+
+    /**
+     * Convert dBm to linear power.
+     */
+    static double toLinear(double dBm) {
+        double centi = dBm * 100;
+        long idx = Math.round(centi);
+        if (Math.abs(centi - idx) < 1e-6 && idx >= TABLE_MIN_CENTI_DB
+            && idx <= TABLE_MAX_CENTI_DB) {
+            return DB_TO_LINEAR[(int) idx - TABLE_MIN_CENTI_DB];
+        }
+        return Math.pow(10.0, dBm / 10.0);
+    }
+
+    private void readScan(String scan, int channel, int col) {
+        int pos = 0;
+        final int len = scan.length();
+        while (pos < len) {
+            int eol = scan.indexOf('\n', pos);
+            if (eol < 0) {
+                eol = len;
+            }
+            int space = scan.indexOf(' ', pos);
+            int next = space < 0 ? -1 : scan.indexOf(' ', space + 1);
+            // "MAC rssi", anything else is skipped
+            if (space > pos && space < eol && (next < 0 || next >= eol)) {
+                long mac = parseMac(scan, pos, space);
+                Integer row = mac < 0 ? null : rows.get(mac);
+                if (row != null && scanChannel[row] == channel) {
+                    try {
+                        samples[row * cols + col] = Double.parseDouble(
+                                scan.substring(space + 1, eol));
+                    } catch (NumberFormatException e) {
+                        // Not heard
+                    }
+                }
+            }
+            pos = eol + 1;
+        }
+    }
+
+    private static long parseMac(String s, int from, int to) {
+        if (to - from != 17) {
+            return -1;
+        }
+        long mac = 0;
+        for (int i = 0; i < 6; i++) {
+            int p = from + i * 3;
+            int hi = Character.digit(s.charAt(p), 16);
+            int lo = Character.digit(s.charAt(p + 1), 16);
+            if (hi < 0 || lo < 0 || (i < 5 && s.charAt(p + 2) != ':')) {
+                return -1;
+            }
+            mac = (mac << 8) | (hi << 4) | lo;
+        }
+        return mac;
+    }
+
+    private void allocate(int capacity) {
+        clients = clients == null ? new MACAddress[capacity] :
+                  Arrays.copyOf(clients, capacity);
+        scanChannel = scanChannel == null ? new int[capacity] :
+                      Arrays.copyOf(scanChannel, capacity);
+        rssi = grow(rssi, capacity * cols);
+        samples = grow(samples, capacity * cols);
+        throughput = grow(throughput, capacity * cols);
+        fittingness = grow(fittingness, capacity * cols);
+    }
+
+    private static double[] grow(double[] a, int size) {
+        return a == null ? new double[size] : Arrays.copyOf(a, size);
+    }
+}
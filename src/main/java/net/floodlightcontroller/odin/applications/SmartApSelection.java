@@ -24,10 +24,6 @@ public class SmartApSelection extends OdinApplication {
     //Params
     private SmartApSelectionParams SMARTAP_PARAMS;
 
-    // Scanning agents
-    Map<InetAddress, Integer> scanningAgents = new HashMap<InetAddress, Integer>();
-    int result; // Result for scanning
-
     HashSet<OdinClient> clients;
     Set<InetAddress> agents;
 
@@ -35,6 +31,7 @@ public class SmartApSelection extends OdinApplication {
     private int num_channels = 0;
     private int num_agents = 0;
     private String[][] vals_rx = null;
+    private static final long SCAN_SLACK = 1000; // Time allowed to each agent on top of a scan, in ms
 
     private long time = 0L; // Compare timestamps in ms
 
@@ -194,9 +191,10 @@ public class SmartApSelection extends OdinApplication {
         ps.flush(); // write in the log file (empty the buffer)
 
         vals_rx = new String[num_channels][num_agents]; // Matrix to store the results from agents
-        Map<MACAddress, Double[]> rssiData = new HashMap<MACAddress, Double[]>(); // Map to store RSSI for each STA in all APs
+        final SmartApScoringEngine scores = new SmartApScoringEngine(
+                agents.toArray(new InetAddress[0])); // RSSI and Throughput available for each STA in all APs
         Map<MACAddress, Long> handoffDate = new HashMap<MACAddress, Long>(); // Map to store last handoff for each STA FIXME: Maybe create struct
-        Map<MACAddress, Double[]> ffData = new HashMap<MACAddress, Double[]>(); // Map to store Throughput available for each STA in all APs
+        double[] client_dBm = null; // RSSI of the STA being processed in all APs
 
         System.out.print("\033[2J"); // Clear screen and cursor to 0,0
         char[] progressChar = new char[] { '-', '\\', '|', '/' };
@@ -216,7 +214,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     continue;
                 }
@@ -244,9 +242,6 @@ public class SmartApSelection extends OdinApplication {
                     continue;
                 }
 
-                // if there are clients
-                int[] clientsChannels = new int[num_clients]; // Array with the indexes of channels of the STAs, better performance in data process
-
                 // Various indexes
                 int client_index = 0;
                 int client_channel = 0;
@@ -258,26 +253,26 @@ public class SmartApSelection extends OdinApplication {
                         "\033[K\r[SmartAPSelection] Proactive AP Handoff");
                 System.out.println("\033[K\r[SmartAPSelection]");
 
-                // For each STA, fill the array
-                for (OdinClient oc : clients) { // Create array with client channels and their indexes for better data processing
-
-                    ind_aux = 0;
-
-                    client_channel = getChannelFromAgent(
-                            oc.getLvap().getAgent().getIpAddress());
-
-                    for (int chann : channels) {
+                // For each STA, store the index of its channel, to know which scan to read its RSSI from
+                Map<InetAddress, Integer> agentChannels = new HashMap<InetAddress, Integer>();
+                for (OdinClient oc : clients) {
 
-                        if (chann == client_channel) {
+                    InetAddress clientAgent = oc.getLvap().getAgent().getIpAddress();
+                    Integer chann = agentChannels.get(clientAgent);
+                    if (chann == null) { // Ask each agent only once
+                        chann = getChannelFromAgent(clientAgent);
+                        agentChannels.put(clientAgent, chann);
+                    }
 
-                            clientsChannels[client_index] = ind_aux;
-                            client_index++;
+                    client_channel = -1;
+                    for (ind_aux = 0; ind_aux < num_channels; ind_aux++) {
+                        if (channels[ind_aux] == chann) {
+                            client_channel = ind_aux;
                             break;
-
                         }
-                        ind_aux++;
                     }
-
+                    scores.setScanChannel(scores.addClient(oc.getMacAddress()),
+                                          client_channel);
                 }
 
                 /* * * * * * * * * * * * * * * * * * * * *
@@ -286,7 +281,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     continue;
                 }
@@ -295,48 +290,23 @@ public class SmartApSelection extends OdinApplication {
 
 //                System.out.println("\n\n\t[DEBUG] num_channels: " + num_channels + "\t\n\n\n");  // DEBUG
 
-                //For each channel used in our APs
-                for (int channel = 0; channel < num_channels; ++channel) {
-//                    System.out.println("\n\n\t[DEBUG] channels[channel]: " + channels[channel] + "\t\n\n\n");  // DEBUG
-
-                    if (channels[channel] == 0)
-                        continue;
-
-                    int agent = 0;
-                    scanningAgents.clear();
-
-                    // For each agent, request the statistics
-                    for (InetAddress agentAddr : agents) {
+                // Every agent scans every channel used in our APs, all agents at once
+                InetAddress[] scanAgents = agents.toArray(new InetAddress[0]);
+                ScanResult scan = scanStaRssiFromAgents(scanAgents, channels,
+                                                        SCANNED_SSID,
+                                                        SMARTAP_PARAMS.scanning_interval
+                                                        + SMARTAP_PARAMS.added_time,
+                                                        SCAN_SLACK);
 
-                        // Request statistics
-                        result = requestScannedStationsStatsFromAgent(
-                                agentAddr, channels[channel], SCANNED_SSID);
-                        // Check if the request has been successful
-                        scanningAgents.put(agentAddr, result);
-                    }
-
-                    // sleep during the scanning
-                    try {
-                        Thread.sleep(SMARTAP_PARAMS.scanning_interval + SMARTAP_PARAMS.added_time);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    // Recover the information after the scanning
-                    for (InetAddress agentAddr : agents) {
-
-                        // Reception statistics
-                        if (scanningAgents.get(agentAddr) == 0) { // Busy agent
+                // Recover the information after the scanning
+                for (int channel = 0; channel < num_channels; ++channel) {
+                    for (int agent = 0; agent < scanAgents.length; agent++) {
+                        if (scan.getStatus(agent, channel) == ScanResult.Status.BUSY) {
                             System.out.println("\033[K\r[SmartAPSelection] Agent BUSY during scanning operation");
-                            continue;
                         }
-
-                        // Agent non busy, so we recover the information
-                        vals_rx[channel][agent] = getScannedStaRssiFromAgent(agentAddr);
-//                        System.out.println("\n\n[DEBUG] channel: " + channel + "\n\n");  // DEBUG
-                        agent++;
+                        // Null for busy or slow agents, the STA is then not heard by that AP
+                        vals_rx[channel][agent] = scan.getStaRssi(agent, channel);
                     }
-//                    Thread.sleep(200); // Give some time to the AP
                 }
 
 //                System.out.println("\n\nvals_rx: " + Arrays.deepToString(vals_rx) + "\n\n");  // DEBUG
@@ -349,7 +319,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     continue;
                 }
@@ -360,72 +330,18 @@ public class SmartApSelection extends OdinApplication {
 
                 // All the statistics stored, now process
                 time = System.currentTimeMillis();
-                client_index = 0;
-                ind_aux = 0;
-
-                // For each STA (client) associated, store the RSSI value with which the APs "see" it
-                for (OdinClient oc : clients) {
-
-                    MACAddress eth = oc.getMacAddress(); // client MAC
-
-                    client_channel = clientsChannels[client_index]; // row in the matrix
-
-                    for (ind_aux = 0;
-                         ind_aux < num_agents; ind_aux++) {// For
-
-                        String arr = vals_rx[client_channel][ind_aux]; // String with "MAC rssi\nMAC rssi\n..."
-
-                        Double rssi = getRssiFromRxStats(eth,
-                                                         arr); // rssi or -99.9
-
-                        Double[] client_average_dBm = new Double[num_agents];
-
-                        // get the stored RSSI averaged value (historical data)
-                        client_average_dBm = rssiData.get(eth);
-
-                        if (client_average_dBm
-                            == null) {// First time STA is associated
-
-                            client_average_dBm = new Double[num_agents];
-                            Arrays.fill(client_average_dBm,
-                                        -99.9); // first, we put -99.9 everywhere
-                            client_average_dBm[ind_aux] = rssi;   // put the last value instead of -99.9
-
-                        } else {
-
-                            // Recalculate the new average
-                            if ((client_average_dBm[ind_aux] != -99.9) && (
-                                    client_average_dBm[ind_aux] != null)) {
-                                if (rssi != -99.9) {
-                                    Double client_signal = Math.pow(10.0,
-                                                                    (rssi)
-                                                                    / 10.0); // Linear power
-                                    Double client_average = Math.pow(10.0,
-                                                                     (client_average_dBm[ind_aux])
-                                                                     / 10.0); // Linear power average
-                                    client_average = client_average * (1
-                                                                       - SMARTAP_PARAMS.weight)
-                                                     + client_signal
-                                                       * SMARTAP_PARAMS.weight; // use the "alpha" parameter (weight) to calculate the new value
-                                    client_average_dBm[ind_aux] = Double
-                                            .valueOf((double) Math
-                                                    .round(1000 * Math
-                                                            .log10(client_average))
-                                                     / 100); //Average power in dBm with 2 decimals
-                                }
-                            } else {
-                                // It is the first time we have data of this STA in this AP
-                                client_average_dBm[ind_aux] = rssi;
-                                setStaWeightedRssiForAgent(eth,
-                                                           agentsArray[ind_aux],
-                                                           rssi);  // ADDED; TODO: Test
-                            }
-                        }
-                        rssiData.put(eth,
-                                     client_average_dBm); // Store all the data
-                    }
-                    client_index++;
-                }
+                // For each STA (client) associated, average the RSSI value with which the APs "see" it
+                scores.updateRssi(vals_rx, SMARTAP_PARAMS.weight,
+                                  new SmartApScoringEngine.FirstHeardListener() {
+                                      @Override
+                                      public void firstHeard(MACAddress eth,
+                                                             InetAddress agentAddr,
+                                                             double rssi) {
+                                          setStaWeightedRssiForAgent(eth,
+                                                                     agentAddr,
+                                                                     rssi);
+                                      }
+                                  });
                 System.out.println(
                         "\033[K\r[SmartAPSelection] Processing done in: " + (
                                 System.currentTimeMillis() - time) + " ms");
@@ -441,7 +357,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     continue;
                 }
@@ -451,6 +367,21 @@ public class SmartApSelection extends OdinApplication {
 
                 ps.println(time + " ms"); // Log file
 
+                // FF mode, statistics of each AP, asked once per cycle and not for each STA
+                StationStats[] rxStatsFF = new StationStats[num_agents];
+                double[] txPowerFF = new double[num_agents];
+                int[] numClientsFF = new int[num_agents];
+                if (SMARTAP_PARAMS.mode.equals("FF")) {
+                    for (ind_aux = 0; ind_aux < num_agents; ind_aux++) {
+                        rxStatsFF[ind_aux] = getRxStationStatsFromAgent(
+                                agentsArray[ind_aux]);
+                        txPowerFF[ind_aux] = getTxPowerFromAgent(
+                                agentsArray[ind_aux]);
+                        numClientsFF[ind_aux] = getClientCountFromAgent(
+                                agentsArray[ind_aux]);
+                    }
+                }
+
                 // Write to screen the updated value of the averaged RSSI
                 for (OdinClient oc : clients) {
 
@@ -458,8 +389,6 @@ public class SmartApSelection extends OdinApplication {
 
                     MACAddress eth = oc.getMacAddress(); // client MAC
 
-                    Double[] client_dBm = new Double[num_agents];
-
                     InetAddress clientAddr = oc.getIpAddress();
                     InetAddress agentAddr = oc.getLvap().getAgent()
                                               .getIpAddress();
@@ -475,9 +404,10 @@ public class SmartApSelection extends OdinApplication {
                                + agentAddr); // Log in file
 
                     // Recover the information
-                    client_dBm = rssiData.get(eth);
+                    int row = scores.getRow(eth);
 
-                    if (client_dBm != null) {// Array with rssi
+                    if (row >= 0) {// Array with rssi
+                        client_dBm = scores.getRssiRow(row, client_dBm);
 
                         Double maxRssi = client_dBm[0]; // Start with first rssi
 
@@ -634,66 +564,43 @@ public class SmartApSelection extends OdinApplication {
                                 .equals("FF")) { // Calculate FF data
                             System.out.println("\033[K\r[SmartAPSelection]");
 
-                            ind_aux = 0;
-                            Double[] TH_av = new Double[num_agents];
-
-                            for (InetAddress agentAddrFF : agents) {
+                            for (ind_aux = 0; ind_aux < num_agents; ind_aux++) {
 
-                                if (oc.getLvap().getAgent().getIpAddress()
-                                      .equals(agentAddrFF)) { // If the STA is associated to this agent, use the real statistics
+                                double TH_av;
+                                if (agentsArray[ind_aux].equals(agentAddr)) { // If the STA is associated to this agent, use the real statistics
                                     // Reception statistics
-                                    Map<MACAddress, Map<String, String>> vals_rx_FF = getRxStatsFromAgent(
-                                            agentAddrFF);
-                                    Map<String, String> vals_entry_rx = vals_rx_FF
-                                            .get(eth);  // Look for the statistics corresponding to this client (using the eth address)
-                                    if (vals_entry_rx != null) {
-                                        //System.out.println("\033[K\r[SmartAPSelection] avg rate: " + vals_entry_rx.get("avg_rate") + " kbps");
-                                        Double clientRate = Double
-                                                .parseDouble(vals_entry_rx
-                                                                     .get("avg_rate"));
+                                    int rxRow = rxStatsFF[ind_aux].indexOf(
+                                            eth);  // Look for the statistics corresponding to this client (using the eth address)
+                                    if (rxRow >= 0) {
+                                        double clientRate = rxStatsFF[ind_aux]
+                                                .getAvgRate(rxRow);
                                         // t and T
                                         double[] tTValues = getTransmissionTime(
-                                                clientRate.doubleValue());
+                                                clientRate);
                                         double p = 0.98 * (tTValues[1]
                                                            / tTValues[0]);
-                                        //System.out.println("\033[K\r[SmartAPSelection] Th_av["+ind_aux+"]: " + String.format("%.2f",clientRate.doubleValue()*p));
-                                        TH_av[ind_aux] =
-                                                clientRate.doubleValue() * p;
+                                        TH_av = clientRate * p;
                                     } else {
-                                        TH_av[ind_aux] = 0.0;
+                                        TH_av = 0.0;
                                     }
 
                                 } else { // if the STA is NOT associated to this agent, estimate the available throughput
-                                    double txpowerAP = Math.pow(10.0,
-                                                                (getTxPowerFromAgent(
-                                                                        agentAddrFF))
-                                                                / 10.0);
-                                    double txpowerSTA = Math.pow(10.0,
-                                                                 (SMARTAP_PARAMS.txpowerSTA)
-                                                                 / 10.0);
-                                    double rssiDL =
-                                            client_dBm[ind_aux] + 10.0 * Math
-                                                    .log10(txpowerAP
-                                                           / txpowerSTA);
+                                    double rssiDL = client_dBm[ind_aux]
+                                                    + txPowerFF[ind_aux]
+                                                    - SMARTAP_PARAMS.txpowerSTA;
                                     double snr = 90.0 + rssiDL;
                                     double maxRate = getOFDMRates(snr);
                                     double[] tTValues = getTransmissionTime(
                                             maxRate);
 
-                                    HashSet<OdinClient> clients_FF = new HashSet<OdinClient>(
-                                            getClientsFromAgent(
-                                                    agentAddrFF));
                                     double t2Value = calculateT2(
-                                            clients_FF.size(), tTValues[0]);
+                                            numClientsFF[ind_aux], tTValues[0]);
                                     double p =
                                             0.98 * (tTValues[1] / t2Value);
-                                    //System.out.println("\033[K\r[SmartAPSelection] Th_av["+ind_aux+"]: " + String.format("%.2f",maxRate*p));
-                                    TH_av[ind_aux] = maxRate * p;
+                                    TH_av = maxRate * p;
                                 }
-                                ind_aux++;
+                                scores.setThroughput(row, ind_aux, TH_av);
                             }
-                            // Save TH_av in map
-                            ffData.put(eth, TH_av);
                         }
                     } else {
                         System.out.println(
@@ -707,7 +614,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     continue;
                 }
@@ -720,9 +627,8 @@ public class SmartApSelection extends OdinApplication {
                                        + " - FF Throughput available [Mbps]\033[00m");
 
                     // obtain the FF values for each client on each AP
+                    scores.computeFittingness(SMARTAP_PARAMS.thReqSTA);
                     for (OdinClient oc : clients) {
-                        ind_aux = 0;
-                        client_index = 0;
                         MACAddress eth = oc.getMacAddress(); // client MAC
                         InetAddress clientAddr = oc.getIpAddress();
                         InetAddress agentAddr = oc.getLvap().getAgent()
@@ -738,66 +644,43 @@ public class SmartApSelection extends OdinApplication {
                         ps.println("\tClient " + clientAddr + " in agent "
                                    + agentAddr); // Log in file
 
-                        Double[] th_avFF = ffData.get(eth);
-                        //System.out.println("\033[K\r[SmartAPSelection] th_avFF= "+Arrays.toString(th_avFF));
-                        Double maxFF = calculateFittingnessFactor(
-                                SMARTAP_PARAMS.thReqSTA,
-                                th_avFF[0]); // Start with first Th_av
-                        Double currentTh_av = null;
-                        System.out.print("\033[K\r[SmartAPSelection] ff["
-                                         + ind_aux + "]=" + String
-                                                 .format("%.3f", maxFF)
-                                         + " ");
-
-                        ArrayList<Integer> th_list = new ArrayList<Integer>(); // To sort FF
-                        th_list.add(0); // First FF
-
-                        for (ind_aux = 1; ind_aux
-                                          < th_avFF.length; ind_aux++) { //Get max position and calculate FF
-
-                            Double currentFF = calculateFittingnessFactor(
-                                    SMARTAP_PARAMS.thReqSTA,
-                                    th_avFF[ind_aux]);
-                            boolean added_FF = false;
-
-                            for (int ind_list = 0;
-                                 ind_list < th_list.size(); ind_list++) {
-
-                                if (currentFF > th_list.get(ind_list)) {
-                                    maxFF = currentFF;
-                                    client_index = ind_aux;
-                                    th_list.add(ind_list, ind_aux);
-                                    added_FF = true;
-                                    break;
-                                }
-                            }
-                            if (!added_FF)
-                                th_list.add(ind_aux); // Not max FF
+                        int row = scores.getRow(eth);
+                        if (row < 0) // No data received
+                            continue;
 
+                        int[] ff_order = scores.rankByFittingness(row); // APs sorted by FF, highest first
+                        client_index = ff_order[0];
+                        double currentTh_av = 0.0;
+                        System.out.print("\033[K\r[SmartAPSelection] ");
+                        for (ind_aux = 0; ind_aux < num_agents; ind_aux++) {
                             System.out.print("ff[" + ind_aux + "]=" + String
-                                    .format("%.3f", currentFF) + " ");
+                                    .format("%.3f", scores.getFittingness(row,
+                                                                          ind_aux))
+                                             + " ");
                         }
                         System.out.println("");
                         System.out.print("\033[K\r[SmartAPSelection] ");
 
                         // Print the results with colours
                         for (ind_aux = 0;
-                             ind_aux < th_avFF.length; ind_aux++) {
+                             ind_aux < num_agents; ind_aux++) {
+
+                            double th_av = scores.getThroughput(row, ind_aux);
 
                             if (agentsArray[ind_aux]
                                     .equals(agentAddr)) { // Current AP
 
-                                currentTh_av = th_avFF[ind_aux];
+                                currentTh_av = th_av;
                                 if (currentTh_av != 0.0) {
                                     System.out.print("[\033[48;5;29;1m"
                                                      + String.format("%.2f",
-                                                                     th_avFF[ind_aux]
+                                                                     th_av
                                                                      / 1000.0)
                                                      + "\033[00m]"); // Dark Green
                                     ps.println(
                                             "\t\t[Associated] Throughput in agent "
                                             + agentsArray[ind_aux] + ": "
-                                            + th_avFF[ind_aux]
+                                            + th_av
                                             + " kbps"); // Log in file
                                 } else {
                                     System.out.print("[\033[48;5;29;1m"
@@ -813,41 +696,41 @@ public class SmartApSelection extends OdinApplication {
                                     System.out
                                             .print("[\033[48;5;88m" + String
                                                     .format("%.2f",
-                                                            th_avFF[ind_aux]
+                                                            th_av
                                                             / 1000.0)
                                                    + "\033[00m]"); // Dark red
                                     ps.println(
                                             "\t\t[BetterAP] Throughput in agent "
                                             + agentsArray[ind_aux] + ": "
-                                            + th_avFF[ind_aux]
+                                            + th_av
                                             + " kbps"); // Log in file
 
                                 } else {
                                     System.out.print("[" + String
-                                            .format("%.2f", th_avFF[ind_aux]
+                                            .format("%.2f", th_av
                                                             / 1000.0)
                                                      + "]"); //
                                     ps.println(
                                             "\t\t[WorseAP] Throughput in agent "
                                             + agentsArray[ind_aux] + ": "
-                                            + th_avFF[ind_aux]
+                                            + th_av
                                             + " kbps"); // Log in file
                                 }
                             }
                         }
 
                         for (int ind_list = 0;
-                             ind_list < th_list.size(); ind_list++) {
+                             ind_list < ff_order.length; ind_list++) {
 
-                            client_index = th_list.get(ind_list);
+                            client_index = ff_order[ind_list];
 
                             // Order the handoff to the AP with the highest FF
                             if (!agentsArray[client_index]
                                     .equals(agentAddr)) { // Change to the best FF
 
                                 //If Rssi threshold is reached, check hystheresis
-                                Double[] client_dBm = rssiData.get(eth);
-                                Double currentRssi = client_dBm[client_index];
+                                double currentRssi = scores.getRssi(row,
+                                                                    client_index);
                                 if (currentRssi
                                     < SMARTAP_PARAMS.signal_threshold) {
 
@@ -921,7 +804,7 @@ public class SmartApSelection extends OdinApplication {
                         System.out.println(showAPsLine
                                            + " - Jain's Fairness index Balancer\033[00m");
                         System.out.print("\033[K\r[SmartAPSelection] ");
-                        assignedClients = jainsFairnessIndex(rssiData,
+                        assignedClients = jainsFairnessIndex(scores,
                                                              agentsArray,
                                                              clients,
                                                              SMARTAP_PARAMS.signal_threshold); // More complex algorithm
@@ -931,7 +814,7 @@ public class SmartApSelection extends OdinApplication {
                         System.out.println(
                                 showAPsLine + " - Balancer\033[00m");
                         System.out.print("\033[K\r[SmartAPSelection] ");
-                        assignedClients = simpleBalancerAlgorithm(rssiData,
+                        assignedClients = simpleBalancerAlgorithm(scores,
                                                                   agentsArray,
                                                                   clients,
                                                                   SMARTAP_PARAMS.signal_threshold); // Very simple balancer algorithm
@@ -939,6 +822,7 @@ public class SmartApSelection extends OdinApplication {
                     }
 
                     // for each STA for which a handoff has been ordered
+                    Map<MACAddress, InetAddress> handoffs = new HashMap<>();
                     for (MACAddress eth : assignedClients.keySet()) {
 
                         Long handoffTime = handoffDate.get(eth);
@@ -957,7 +841,7 @@ public class SmartApSelection extends OdinApplication {
 
                             // Do the handoff
                             if (getClientFromHwAddress(eth) != null) {
-                                handoffClientToAp(eth, assignedAgent);
+                                handoffs.put(eth, assignedAgent);
                                 handoffDate.put(eth,
                                                 System.currentTimeMillis());
                                 System.out.print("\033[0;1mHandoff "
@@ -983,6 +867,10 @@ public class SmartApSelection extends OdinApplication {
                         }
                         System.out.println("");
                     }
+                    // Every handoff of this cycle at once
+                    if (!handoffs.isEmpty()) {
+                        handoffClientsToAps(handoffs);
+                    }
                 }
 
                 // DETECTOR mode
@@ -1025,11 +913,11 @@ public class SmartApSelection extends OdinApplication {
                                                           .getAgent()
                                                           .getIpAddress();
                                 if (!vipAPAddr.equals(agentAddr)) {
-                                    Double[] client_dBm = rssiData.get(eth);
+                                    int row = scores.getRow(eth);
 
                                     // Check if the signal level is above the threshold
-                                    if (client_dBm[vip_index]
-                                        > SMARTAP_PARAMS.signal_threshold) {
+                                    if (row >= 0 && scores.getRssi(row, vip_index)
+                                                    > SMARTAP_PARAMS.signal_threshold) {
 
                                         // move the STA to the VIP AP
                                         System.out
@@ -1082,7 +970,7 @@ public class SmartApSelection extends OdinApplication {
                  *                                       *
                  * * * * * * * * * * * * * * * * * * * * */
                 if (checkpoint()) {
-                    softReset(rssiData, handoffDate, ffData);
+                    softReset(scores, handoffDate);
                     TEE("Soft Resetting...", ps);
                     System.out
                             .print("\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[K\r\n\033[0;0H"); // Clear lines above and return to console 0,0
@@ -1099,41 +987,14 @@ public class SmartApSelection extends OdinApplication {
         }
     }
 
-    private void softReset(Map<MACAddress, Double[]> rssiData,
-                           Map<MACAddress, Long> handoffDate,
-                           Map<MACAddress, Double[]> ffData) {
+    private void softReset(SmartApScoringEngine scores,
+                           Map<MACAddress, Long> handoffDate) {
         System.out.println("\033[K\r[SmartAPSelection] Soft Resetting...");
-        rssiData.clear();
+        scores.clear();
         handoffDate.clear();
-        ffData.clear();
         clearAgentsWeightedRssis();
     }
 
-    private Double getRssiFromRxStats(MACAddress clientMAC,
-                                      String arr) { // Process the string with all the data, it saves 2 ms if done inside the app vs. in agent
-
-        for (String elem : arr.split("\n")) {//Split string in STAs
-
-            String row[] = elem.split(" ");//Split string in MAC and rssi
-
-            if (row.length != 2) { // If there is more than 2 items, next one
-                continue;
-            }
-
-            MACAddress eth = MACAddress.valueOf(row[0].toLowerCase());
-
-            if (clientMAC
-                    .equals(eth)) {//If it belongs to the client, return rssi
-
-                Double rssi = Double.parseDouble(row[1]);
-
-                if (rssi != null)
-                    return rssi;
-            }
-        }
-        return -99.9;//Not heard by the AP, return -99.9
-    }
-
     private double calculateT2(int numberOfStas, double tValue) {
         double cwMin = 15.0;
         double slot = 0.000009;
@@ -1220,26 +1081,8 @@ public class SmartApSelection extends OdinApplication {
         }
     }
 
-    private double calculateFittingnessFactor(double Rreq, double Rb) {
-
-        double shaping = 5, shaping_k = 1, shaping_mine = 1.3, ff = 0;
-
-        if (Math.abs(Rb) > 1e-6) {
-            double U =
-                    Math.pow(Rb * shaping_mine / Rreq, shaping) / (1 + Math
-                            .pow(Rb * shaping_mine / Rreq, shaping));
-            double lambda = 1 - Math.pow(Math.E, -shaping_k / (
-                    Math.pow(shaping - 1, 1 / shaping) + Math
-                            .pow(shaping - 1, (1 - shaping) / shaping)));
-            ff = (1 - Math.pow(Math.E,
-                               -shaping_k * U / (Rb * shaping_mine / Rreq)))
-                 / lambda;
-        }
-        return ff;
-    }
-
     private Map<MACAddress, InetAddress> simpleBalancerAlgorithm(
-            Map<MACAddress, Double[]> rssiData, InetAddress[] agentsArray,
+            SmartApScoringEngine scores, InetAddress[] agentsArray,
             HashSet<OdinClient> clients,
             Double threshold) { // Print load in each AP and returns array of agents to assign
 
@@ -1250,8 +1093,6 @@ public class SmartApSelection extends OdinApplication {
         boolean orderHandoff = false;
         Map<MACAddress, InetAddress> arrayHandoff = new HashMap<MACAddress, InetAddress>();
 
-        HashSet<OdinClient> clients_Balancer;
-
         int maxStas = 0;
         int minStas = Integer.MAX_VALUE;
         int numberOfAgentsAvailable = 0;
@@ -1259,21 +1100,15 @@ public class SmartApSelection extends OdinApplication {
 
         for (InetAddress agentAddrBalancer : agentsArray) { // Create array with number of STAs for each AP, find the one with lower number
 
-            clients_Balancer = new HashSet<OdinClient>(
-                    getClientsFromAgent(agentAddrBalancer));
-
-            int numberOfStas = clients_Balancer.size();
+            int numberOfStas = getClientCountFromAgent(agentAddrBalancer);
 
             boolean stasToMove = false;
 
             numStasPerAgent[ind_aux] = numberOfStas;
 
-            for (MACAddress eth : rssiData
-                    .keySet()) { // If there is not a STA with enougth RSSI, not handoff
-                Double[] client_dBm = rssiData.get(eth);
-                if (client_dBm[ind_aux] > SMARTAP_PARAMS.signal_threshold) {
-                    stasToMove = true;
-                }
+            if (scores.anyAbove(ind_aux,
+                                SMARTAP_PARAMS.signal_threshold)) { // If there is not a STA with enougth RSSI, not handoff
+                stasToMove = true;
             }
 
             if ((numberOfStas <= minStas) && (stasToMove)) {
@@ -1308,22 +1143,19 @@ public class SmartApSelection extends OdinApplication {
         }
         OdinClient clientHandoff = null;
         if (orderHandoff) {
-            clients_Balancer = new HashSet<OdinClient>(
-                    getClientsFromAgent(agentsArray[max_index]));
             double maxRssi = -99.9;
-            for (OdinClient oc : clients_Balancer) {
-                Double[] client_dBm = new Double[num_agents];
+            for (OdinClient oc : getClientsFromAgent(agentsArray[max_index])) {
                 MACAddress eth = oc.getMacAddress();
                 InetAddress clientAddr = oc.getIpAddress();
                 if (clientAddr
                         .equals(nullAddr))// If client not assigned, next one
                     continue;
-                client_dBm = rssiData.get(eth);
-                if (client_dBm != null) {
-                    if ((client_dBm[agent_index] >= maxRssi) && (
-                            client_dBm[agent_index]
-                            > SMARTAP_PARAMS.signal_threshold)) {
-                        maxRssi = client_dBm[agent_index];
+                int row = scores.getRow(eth);
+                if (row >= 0) {
+                    double rssi = scores.getRssi(row, agent_index);
+                    if ((rssi >= maxRssi) && (rssi
+                                              > SMARTAP_PARAMS.signal_threshold)) {
+                        maxRssi = rssi;
                         clientHandoff = oc;
                     }
                 }
@@ -1403,16 +1235,9 @@ public class SmartApSelection extends OdinApplication {
         int ind_aux = 0;
         int[] numStasPerAgent = new int[agentsArray.length];
 
-        HashSet<OdinClient> clients_AP;
-
         for (InetAddress agentAddrAP : agentsArray) { // Create array with number of STAs for each AP
 
-            clients_AP = new HashSet<OdinClient>(
-                    getClientsFromAgent(agentAddrAP));
-
-            int numberOfStas = clients_AP.size();
-
-            numStasPerAgent[ind_aux] = numberOfStas;
+            numStasPerAgent[ind_aux] = getClientCountFromAgent(agentAddrAP);
 
             ind_aux++;
         }
@@ -1438,111 +1263,57 @@ public class SmartApSelection extends OdinApplication {
     }
 
     private Map<MACAddress, InetAddress> jainsFairnessIndex(
-            Map<MACAddress, Double[]> rssiData, InetAddress[] agentsArray,
+            SmartApScoringEngine scores, InetAddress[] agentsArray,
             HashSet<OdinClient> clients,
             Double threshold) { // Print load in each AP and returns array of agents to assign
 
         int ind_aux = 0;
-        int agent_index = 0;
         int[] numStasPerAgent = new int[agentsArray.length];
-        boolean orderHandoff = false;
         Map<MACAddress, InetAddress> arrayHandoff = new HashMap<MACAddress, InetAddress>();
-        Map<InetAddress, Integer> agentIndex = new HashMap<InetAddress, Integer>();
-
-        HashSet<OdinClient> clients_Balancer;
 
         int num_clients = clients.size();
 
         for (InetAddress agentAddrBalancer : agentsArray) { // Create array with number of STAs for each AP and print it
 
-            clients_Balancer = new HashSet<OdinClient>(
-                    getClientsFromAgent(agentAddrBalancer));
-
-            int numberOfStas = clients_Balancer.size();
+            int numberOfStas = getClientCountFromAgent(agentAddrBalancer);
 
             numStasPerAgent[ind_aux] = numberOfStas;
 
             System.out.print("[  " + numberOfStas + "   ]");
 
-            agentIndex.put(agentAddrBalancer, ind_aux);
-
             ind_aux++;
         }
         System.out.println("");
 
+        double[] fairnessIndex = new double[agentsArray.length];
+
         for (OdinClient oc : clients) { // For each STA
 
-            Double[] client_dBm = new Double[num_agents];
             MACAddress eth = oc.getMacAddress();
             InetAddress clientAddr = oc.getIpAddress();
             InetAddress clientAgent = oc.getLvap().getAgent().getIpAddress();
-            int agent_index_assoc = agentIndex.get(clientAgent);
-            double maxFI = 0;
-            int index_maxFI = 0;
-
-            Double[] fairnessIndex = new Double[num_agents];
+            int agent_index_assoc = scores.getColumn(clientAgent);
 
             if (clientAddr
                     .equals(nullAddr))// If client not assigned, next one
                 continue;
 
-            client_dBm = rssiData.get(eth);
-
-            if (client_dBm != null) {
-
-                for (InetAddress agentAddrBalancer : agentsArray) { // For each AP
-
-                    ind_aux = 0;
-                    double sum = 0;
-
-                    if (clientAgent
-                            .equals(agentAddrBalancer)) { // numSTAs not changed
-
-                        for (int stas : numStasPerAgent) {
-
-                            sum = sum + Math.pow(stas, 2);
-
-                        }
+            int row = scores.getRow(eth);
 
-                        fairnessIndex[agentIndex.get(agentAddrBalancer)] =
-                                num_clients / (num_agents * sum);
+            if (row >= 0) {
 
-                    } else { // numSTAs changed
-
-                        agent_index = agentIndex.get(agentAddrBalancer);
-
-                        for (int stas : numStasPerAgent) {
-
-                            if (agent_index == ind_aux) {
-                                sum = sum + Math.pow(stas + 1, 2);
-                            } else if (agent_index_assoc == ind_aux) {
-                                sum = sum + Math.pow(stas - 1, 2);
-                            } else {
-                                sum = sum + Math.pow(stas, 2);
-                            }
-
-                            ind_aux++;
-
-                        }
-
-                        fairnessIndex[agentIndex.get(agentAddrBalancer)] =
-                                num_clients / (num_agents * sum);
-
-                    }
-                    if ((fairnessIndex[agentIndex.get(agentAddrBalancer)]
-                         > maxFI) && (
-                                client_dBm[agentIndex.get(agentAddrBalancer)]
-                                > SMARTAP_PARAMS.signal_threshold)) {
-                        maxFI = fairnessIndex[agentIndex
-                                .get(agentAddrBalancer)];
-                        index_maxFI = agentIndex.get(agentAddrBalancer);
-                    }
-                }
+                // Fairness index the network would have with the STA in each AP
+                int index_maxFI = scores.bestFairnessColumn(row,
+                                                            agent_index_assoc,
+                                                            numStasPerAgent,
+                                                            num_clients,
+                                                            SMARTAP_PARAMS.signal_threshold,
+                                                            fairnessIndex);
 
                 ind_aux = 0;
 
                 System.out.print("\033[K\r[SmartAPSelection] ");
-                for (Double fair_index : fairnessIndex) {
+                for (double fair_index : fairnessIndex) {
 
                     if (ind_aux == agent_index_assoc) { // Green
                         System.out.print("[\033[48;5;29;1m " + String
@@ -1557,7 +1328,7 @@ public class SmartApSelection extends OdinApplication {
                     ind_aux++;
                 }
                 System.out.print(" - " + clientAddr);
-                if ((client_dBm[index_maxFI]
+                if ((scores.getRssi(row, index_maxFI)
                      > SMARTAP_PARAMS.signal_threshold) && (index_maxFI
                                                             != agent_index_assoc)) {
                     arrayHandoff.put(eth, agentsArray[index_maxFI]);
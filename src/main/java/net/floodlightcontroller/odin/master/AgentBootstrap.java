@@ -0,0 +1,207 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.core.IOFSwitch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings new agents up, in stages: connect to the control socket, read the LVAPs the agent hosts
+ * and track the agent, push its subscription list, then install the flows of its clients.
+ * <p>
+ * Bootstraps run on a bounded pool of workers, so that agents coming back together after a power
+ * cut are set up side by side instead of one at a time, and the pings of the agents already
+ * tracked are never held up behind them. An agent has a single bootstrap at a time; its pings are
+ * ignored until it is done. A failed stage is retried after an exponential backoff, with jitter,
+ * from where it stopped. Once out of attempts the agent is dropped, its control socket closed, and
+ * its next ping starts over. Without workers, bootstraps run in the thread of the ping and are not
+ * retried.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class AgentBootstrap {
+
+    protected static Logger log = LoggerFactory.getLogger(AgentBootstrap.class);
+
+    /**
+     * Stages the master takes once the agent is tracked
+     */
+    interface SetUp {
+        void pushSubscriptions(IOdinAgent agent);
+
+        void installFlows(IOdinAgent agent) throws IOException;
+    }
+
+    static final int DEFAULT_PARALLELISM = 16;
+    static final long DEFAULT_BACKOFF = 500; // ms, doubled on every failure
+    static final long MAX_BACKOFF = 16000; // ms
+    static final int MAX_ATTEMPTS = 6;
+
+    private enum Stage {
+        CONNECT, TABLE_SYNC, SUBSCRIPTIONS, FLOWS
+    }
+
+    private final AgentManager agentManager;
+    private final ConcurrentHashMap<InetAddress, Attempt> inFlight = new ConcurrentHashMap<>();
+    private volatile SetUp setUp;
+    private volatile ExecutorService workers;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile long backoff = DEFAULT_BACKOFF;
+
+    AgentBootstrap(AgentManager agentManager) {
+        this.agentManager = agentManager;
+    }
+
+    void setSetUp(SetUp setUp) {
+        this.setUp = setUp;
+    }
+
+    /**
+     * @param workers   run the bootstraps, the number of its threads bounding how many run at once
+     * @param scheduler waits out the backoff before a retry
+     */
+    void setExecutors(ExecutorService workers,
+                      ScheduledExecutorService scheduler) {
+        this.workers = workers;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param backoff time in ms before the first retry
+     */
+    void setBackoff(long backoff) {
+        this.backoff = backoff;
+    }
+
+    /**
+     * @return a pool of parallelism daemon threads to run the bootstraps on
+     */
+    static ExecutorService newWorkers(int parallelism) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AgentBootstrap-"
+                                         + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Bootstrap an agent, unless it is being bootstrapped already
+     *
+     * @return true if the agent was bootstrapped before returning, which only happens without
+     * workers
+     */
+    boolean start(InetAddress agentAddr, IOFSwitch ofSwitch) {
+        Attempt attempt = new Attempt(agentAddr, ofSwitch);
+        if (inFlight.putIfAbsent(agentAddr, attempt) != null) {
+            return false;
+        }
+
+        ExecutorService w = workers;
+        if (w == null) {
+            attempt.run();
+            return attempt.stage == null;
+        }
+        w.execute(attempt);
+        return false;
+    }
+
+    boolean isBootstrapping(InetAddress agentAddr) {
+        return inFlight.containsKey(agentAddr);
+    }
+
+    private class Attempt implements Runnable {
+        final InetAddress agentAddr;
+        final IOFSwitch ofSwitch;
+        // Only touched by the worker running the attempt
+        IOdinAgent agent;
+        Stage stage = Stage.CONNECT; // null once done
+        int failures = 0;
+
+        Attempt(InetAddress agentAddr, IOFSwitch ofSwitch) {
+            this.agentAddr = agentAddr;
+            this.ofSwitch = ofSwitch;
+        }
+
+        @Override public void run() {
+            try {
+                if (stage == Stage.CONNECT) {
+                    agent = agentManager.connect(agentAddr, ofSwitch);
+                    stage = Stage.TABLE_SYNC;
+                }
+                if (stage == Stage.TABLE_SYNC) {
+                    Set<OdinClient> clients = agent.getLvapsRemote();
+                    if (clients == null) {
+                        throw new IOException("Cannot read the LVAPs of agent "
+                                              + agentAddr.getHostAddress());
+                    }
+                    if (!agentManager.register(agent, clients)) {
+                        agent.close();
+                        stage = null;
+                        inFlight.remove(agentAddr, this);
+                        return;
+                    }
+                    stage = Stage.SUBSCRIPTIONS;
+                }
+                SetUp s = setUp;
+                if (stage == Stage.SUBSCRIPTIONS) {
+                    if (s != null) {
+                        s.pushSubscriptions(agent);
+                    }
+                    stage = Stage.FLOWS;
+                }
+                if (stage == Stage.FLOWS) {
+                    if (s != null) {
+                        s.installFlows(agent);
+                    }
+                    stage = null;
+                }
+                inFlight.remove(agentAddr, this);
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        private void failed(Exception e) {
+            failures++;
+            ScheduledExecutorService sched = scheduler;
+            ExecutorService w = workers;
+            if (w == null || sched == null || failures >= MAX_ATTEMPTS) {
+                log.error("Giving up on bootstrapping agent "
+                          + agentAddr.getHostAddress() + " at " + stage, e);
+                if (stage != Stage.CONNECT && stage != Stage.TABLE_SYNC) {
+                    agentManager.bootstrapFailed(agent);
+                }
+                if (agent != null) {
+                    agent.close();
+                }
+                inFlight.remove(agentAddr, this);
+                return;
+            }
+
+            long delay = Math.min(MAX_BACKOFF, backoff << (failures - 1));
+            delay = delay / 2 + ThreadLocalRandom.current()
+                                                 .nextLong(delay / 2 + 1);
+            log.warn("Bootstrap of agent " + agentAddr.getHostAddress()
+                     + " failed at " + stage + ", retrying in " + delay
+                     + " ms: " + e.getMessage());
+            sched.schedule(() -> w.execute(this), delay,
+                           TimeUnit.MILLISECONDS);
+        }
+    }
+}
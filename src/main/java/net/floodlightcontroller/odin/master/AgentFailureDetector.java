@@ -0,0 +1,281 @@
+package net.floodlightcontroller.odin.master;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hashed-wheel failure detector for OdinAgents.
+ * <p>
+ * Every supervised agent gets a slot; heartbeats are a single store into a primitive array indexed
+ * by slot, and never touch the wheel. Each slot sits in the wheel bucket covering its deadline
+ * (last heard + timeout). When a bucket comes due, its slots are either expired or, if they were
+ * heard in the meantime, moved to the bucket of their new deadline. A live agent is therefore
+ * looked at about once per timeout, and a tick only costs the slots whose deadline falls in it.
+ * <p>
+ * An expired slot is freed before the handler runs and may be reused right away, so heartbeats and
+ * unregistrations name the agent they are meant for, and are ignored once it no longer owns the
+ * slot.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class AgentFailureDetector {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(AgentFailureDetector.class);
+
+    /**
+     * Told about agents that have not been heard from for longer than the timeout.
+     */
+    interface ExpiryHandler {
+        void expired(IOdinAgent agent);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int WHEEL_SIZE = 512;
+
+    private final long tick;
+    private volatile long timeout;
+    private final ExpiryHandler handler;
+    private final ScheduledExecutorService timer;
+
+    // Read by heartbeats without locking, hence atomic. Replaced (under lock) when growing.
+    private volatile AtomicLongArray lastHeard = new AtomicLongArray(
+            INITIAL_CAPACITY);
+    private volatile AtomicReferenceArray<IOdinAgent> agents = new AtomicReferenceArray<IOdinAgent>(
+            INITIAL_CAPACITY);
+
+    // Everything below is guarded by this
+    private int[] bucketOf = new int[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int nextSlot = 0;
+    private int size = 0;
+
+    private final int[][] wheel = new int[WHEEL_SIZE][];
+    private final int[] wheelCount = new int[WHEEL_SIZE];
+    private int cursor = 0;
+    private long wheelTime; // Start of the time span covered by the bucket at cursor
+
+    /**
+     * @param tick    wheel resolution in ms, agents are expired at most this late
+     * @param timeout time in ms after which a silent agent is expired
+     * @param handler callback for expired agents, invoked from the detector's thread
+     */
+    AgentFailureDetector(long tick, long timeout, ExpiryHandler handler) {
+        this.tick = tick;
+        this.timeout = timeout;
+        this.handler = handler;
+        this.wheelTime = System.currentTimeMillis();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new int[4];
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AgentFailureDetector");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override public void run() {
+                try {
+                    advance(System.currentTimeMillis());
+                } catch (Exception e) {
+                    log.error("Failure detector tick failed", e);
+                }
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Change the timeout. Agents already scheduled keep their current deadline until they are
+     * next looked at.
+     *
+     * @param timeout time in ms after which a silent agent is expired
+     */
+    void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Start supervising an agent.
+     *
+     * @param agent agent to supervise
+     * @param now   time at which the agent was last heard
+     * @return slot of the agent, to be passed to {@link #heard(int, IOdinAgent, long)}
+     */
+    synchronized int register(IOdinAgent agent, long now) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (nextSlot == agents.length()) {
+                grow();
+            }
+            slot = nextSlot++;
+        }
+
+        lastHeard.set(slot, now);
+        agents.set(slot, agent);
+        schedule(slot, now + timeout);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Stop supervising an agent. Does nothing if the agent no longer owns the slot, as when it
+     * expired and the slot went to another agent.
+     *
+     * @param slot  the agent's slot
+     * @param agent the agent
+     */
+    synchronized void unregister(int slot, IOdinAgent agent) {
+        if (slot < 0 || slot >= nextSlot || agent == null
+            || agents.get(slot) != agent) {
+            return;
+        }
+        free(slot);
+    }
+
+    private void free(int slot) {
+        agents.set(slot, null);
+        bucketOf[slot] = -1; // Its wheel entry is now stale and will be skipped
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Record a heartbeat. Lock-free. Ignored if the agent no longer owns the slot.
+     *
+     * @param slot  the agent's slot
+     * @param agent the agent
+     * @param now   time at which the agent was heard
+     */
+    void heard(int slot, IOdinAgent agent, long now) {
+        if (agents.get(slot) != agent) {
+            return;
+        }
+        AtomicLongArray array = lastHeard;
+        array.set(slot, now);
+        if (array != lastHeard) {
+            // Raced with grow(), make sure the new array sees it too
+            lastHeard.set(slot, now);
+        }
+    }
+
+    /**
+     * @return number of agents under supervision
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Process every bucket that has come due by now.
+     *
+     * @param now current time in ms
+     */
+    void advance(long now) {
+        List<IOdinAgent> expired = null;
+
+        synchronized (this) {
+            AtomicLongArray heard = lastHeard;
+
+            while (wheelTime + tick <= now) {
+                int[] bucket = wheel[cursor];
+                int count = wheelCount[cursor];
+                wheelCount[cursor] = 0;
+
+                for (int i = 0; i < count; i++) {
+                    int slot = bucket[i];
+                    IOdinAgent agent = agents.get(slot);
+                    if (bucketOf[slot] != cursor || agent == null) {
+                        continue; // Stale entry
+                    }
+
+                    long deadline = heard.get(slot) + timeout;
+                    if (deadline <= now) {
+                        if (expired == null) {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(agent);
+                        free(slot);
+                    } else {
+                        schedule(slot, deadline);
+                    }
+                }
+
+                cursor = (cursor + 1) % WHEEL_SIZE;
+                wheelTime += tick;
+            }
+        }
+
+        if (expired != null) {
+            for (IOdinAgent agent : expired) {
+                handler.expired(agent);
+            }
+        }
+    }
+
+    /**
+     * Stop the detector's thread.
+     */
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Put a slot in the bucket covering its deadline. Deadlines beyond the wheel's span land in
+     * the farthest bucket and get rescheduled from there.
+     */
+    private void schedule(int slot, long deadline) {
+        long ahead = Math.max(0, (deadline - wheelTime) / tick);
+        ahead = Math.min(ahead, WHEEL_SIZE - 1);
+        int b = (int) ((cursor + ahead) % WHEEL_SIZE);
+
+        if (wheelCount[b] == wheel[b].length) {
+            wheel[b] = Arrays.copyOf(wheel[b], wheel[b].length * 2);
+        }
+        wheel[b][wheelCount[b]++] = slot;
+        bucketOf[slot] = b;
+    }
+
+    private void grow() {
+        int capacity = agents.length() * 2;
+        AtomicReferenceArray<IOdinAgent> owners = new AtomicReferenceArray<IOdinAgent>(
+                capacity);
+        for (int i = 0; i < agents.length(); i++) {
+            owners.set(i, agents.get(i));
+        }
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+
+        AtomicLongArray old = lastHeard;
+        AtomicLongArray bigger = new AtomicLongArray(capacity);
+        for (int i = 0; i < old.length(); i++) {
+            bigger.set(i, old.get(i));
+        }
+        lastHeard = bigger;
+        agents = owners; // Last, so a heartbeat seeing a new slot's owner also sees the new array
+        // Pick up heartbeats that landed on the old array while copying
+        for (int i = 0; i < old.length(); i++) {
+            long t = old.get(i);
+            if (t > bigger.get(i)) {
+                bigger.set(i, t);
+            }
+        }
+    }
+}
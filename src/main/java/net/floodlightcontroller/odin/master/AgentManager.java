@@ -5,10 +5,14 @@ import net.floodlightcontroller.core.IOFSwitch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 class AgentManager {
 
@@ -19,13 +23,28 @@ class AgentManager {
     private final ClientManager clientManager;
     private final PoolManager poolManager;
 
-    private final Timer failureDetectionTimer = new Timer();
     private int agentTimeout = 6000;
+    private long radioConfigTtl = AgentRadioConfig.DEFAULT_TTL;
+    private OdinMetrics metrics;
+    private static final long FAILURE_DETECTION_TICK = 100; // ms
+
+    // Slot of each tracked agent in the failure detector
+    private final ConcurrentHashMap<InetAddress, Integer> detectorSlots = new ConcurrentHashMap<InetAddress, Integer>();
+    private final AgentFailureDetector failureDetector;
+    private final List<AgentStatusListener> statusListeners = new CopyOnWriteArrayList<AgentStatusListener>();
+    private final AgentBootstrap bootstrap = new AgentBootstrap(this);
 
     protected AgentManager(ClientManager clientManager,
                            PoolManager poolManager) {
         this.clientManager = clientManager;
         this.poolManager = poolManager;
+        this.failureDetector = new AgentFailureDetector(
+                FAILURE_DETECTION_TICK, agentTimeout,
+                new AgentFailureDetector.ExpiryHandler() {
+                    @Override public void expired(IOdinAgent agent) {
+                        agentTimedOut(agent);
+                    }
+                });
     }
 
     protected void setFloodlightProvider(
@@ -36,6 +55,85 @@ class AgentManager {
     protected void setAgentTimeout(final int timeout) {
         assert (timeout > 0);
         agentTimeout = timeout;
+        failureDetector.setTimeout(timeout);
+    }
+
+    /**
+     * @param ttl time in ms the channel and tx power of new agents are served from memory
+     */
+    protected void setRadioConfigTtl(final long ttl) {
+        assert (ttl >= 0);
+        radioConfigTtl = ttl;
+    }
+
+    /**
+     * @param metrics where new agents record the round trips of their control socket
+     */
+    protected void setMetrics(final OdinMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param setUp stages the master takes to set up new agents once they are tracked
+     */
+    protected void setAgentSetUp(final AgentBootstrap.SetUp setUp) {
+        bootstrap.setSetUp(setUp);
+    }
+
+    /**
+     * Bootstrap new agents on workers instead of the thread of their first ping
+     *
+     * @param workers   runs the bootstraps, its threads bounding how many run at once
+     * @param scheduler schedules the retries of failed bootstraps
+     */
+    protected void setBootstrapExecutors(final ExecutorService workers,
+                                         final ScheduledExecutorService scheduler) {
+        bootstrap.setExecutors(workers, scheduler);
+    }
+
+    /**
+     * @param backoff time in ms before a failed bootstrap is first retried
+     */
+    protected void setBootstrapBackoff(final long backoff) {
+        assert (backoff > 0);
+        bootstrap.setBackoff(backoff);
+    }
+
+    /**
+     * Register a listener for agents joining and leaving
+     *
+     * @param listener listener to register
+     */
+    protected void addAgentStatusListener(AgentStatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener for agents joining and leaving
+     *
+     * @param listener listener to unregister
+     */
+    protected void removeAgentStatusListener(AgentStatusListener listener) {
+        statusListeners.remove(listener);
+    }
+
+    /**
+     * Record that an agent was heard from, for failure detection
+     *
+     * @param agentInetAddr agent's address
+     * @param timestamp     time at which the agent was heard
+     */
+    protected void agentHeard(final InetAddress agentInetAddr,
+                              final long timestamp) {
+        IOdinAgent agent = agentMap.get(agentInetAddr);
+        Integer slot = detectorSlots.get(agentInetAddr);
+
+        if (agent == null || slot == null) {
+            return;
+        }
+
+        agent.setLastHeard(timestamp);
+        failureDetector.heard(slot, agent, timestamp);
     }
 
     /**
@@ -68,39 +166,46 @@ class AgentManager {
      * Removes an agent from the agent manager
      */
     protected void removeAgent(InetAddress agentInetAddr) {
+        IOdinAgent agent;
         synchronized (this) {
-            agentMap.remove(agentInetAddr);
+            agent = agentMap.remove(agentInetAddr);
+            Integer slot = detectorSlots.remove(agentInetAddr);
+            if (slot != null) {
+                failureDetector.unregister(slot, agent);
+            }
+        }
+
+        if (agent != null) {
+            for (AgentStatusListener listener : statusListeners) {
+                listener.agentDown(agent);
+            }
         }
     }
 
     // Handle protocol messages here
 
     /**
-     * Handle a ping from an agent. If an agent was added to the agent map, return true.
+     * Handle a ping from an agent. A new agent is handed to the bootstrap, which tracks it once it
+     * is set up.
      *
-     * @return true if an agent was added
+     * @return true if an agent was added before returning, which only happens when the bootstrap
+     * has no workers
      */
     protected boolean receivePing(final InetAddress odinAgentAddr) {
 
-        //if we receive a ping from a new agent
-        if ((!isTracked(odinAgentAddr)) && (!odinAgentAddr.getHostAddress()
-                                                          .equals(OdinMaster
-                                                                          .getDetectorIpAddress()))) {
-
-            log.debug("Ping message from: " + odinAgentAddr);
-
-        }
-        ;
-
         /*
          * If this is not the first time we're hearing from this
-         * agent, then skip.
+         * agent, or it is being bootstrapped, then skip.
          */
-        if (odinAgentAddr == null || isTracked(odinAgentAddr)) {
+        if (odinAgentAddr == null || isTracked(odinAgentAddr) || bootstrap
+                .isBootstrapping(odinAgentAddr)) {
             return false;
         }
 
-        IOFSwitch ofSwitch = null;
+        if (!odinAgentAddr.getHostAddress()
+                          .equals(OdinMaster.getDetectorIpAddress())) {
+            log.debug("Ping message from: " + odinAgentAddr);
+        }
 
         /*
          * If the OFSwitch corresponding to the agent has already
@@ -108,6 +213,19 @@ class AgentManager {
          * We avoid registering the agent until its corresponding
          * OFSwitch has done so.
          */
+        IOFSwitch ofSwitch = findSwitch(odinAgentAddr);
+
+        if (ofSwitch == null) {
+            return false;
+        }
+
+        return bootstrap.start(odinAgentAddr, ofSwitch);
+    }
+
+    /**
+     * @return the OFSwitch of an agent, null if it has not registered
+     */
+    protected IOFSwitch findSwitch(final InetAddress odinAgentAddr) {
         for (IOFSwitch sw : floodlightProvider.getSwitches().values()) {
 
             /*
@@ -119,38 +237,63 @@ class AgentManager {
                     .getAddress().getHostAddress();
 
             if (switchIpAddr.equals(odinAgentAddr.getHostAddress())) {
-                ofSwitch = sw;
-                break;
+                return sw;
             }
         }
+        return null;
+    }
 
-        if (ofSwitch == null) {
-            return false;
+    /**
+     * @return a new, unconnected, agent
+     */
+    protected IOdinAgent newAgent() {
+        return OdinAgentFactory.getOdinAgent();
+    }
+
+    /**
+     * First stage of a bootstrap: connect to the control socket of an agent
+     *
+     * @throws IOException if the agent cannot be reached
+     */
+    IOdinAgent connect(final InetAddress odinAgentAddr,
+                       final IOFSwitch ofSwitch) throws IOException {
+        IOdinAgent oa = newAgent();
+        oa.setSwitch(ofSwitch);
+        if (oa.init(odinAgentAddr) < 0) {
+            throw new IOException(
+                    "Cannot connect to agent " + odinAgentAddr.getHostAddress());
         }
+        oa.setRadioConfigTtl(radioConfigTtl);
+        oa.setMetrics(metrics);
+        return oa;
+    }
+
+    /**
+     * Second stage of a bootstrap: add the LVAPs an agent hosts to the client tracker, and start
+     * tracking the agent
+     *
+     * @param remoteClients LVAPs read from the agent
+     * @return false if the agent was tracked already
+     */
+    boolean register(final IOdinAgent oa,
+                     final Set<OdinClient> remoteClients) {
+        final InetAddress odinAgentAddr = oa.getIpAddress();
 
         synchronized (this) {
 
-            /* Possible if a thread has waited
-             * outside this critical region for
-             * too long
-             */
             if (isTracked(odinAgentAddr)) {
                 return false;
             }
 
-            IOdinAgent oa = OdinAgentFactory.getOdinAgent();
-            oa.setSwitch(ofSwitch);
-            oa.init(odinAgentAddr);
             oa.setLastHeard(System.currentTimeMillis());
             List<String> poolListForAgent = poolManager
                     .getPoolsForAgent(odinAgentAddr);
 
             /*
              * It is possible that the controller is recovering from a failure,
-             * so query the agent to see what LVAPs it hosts, and add them
-             * to our client tracker accordingly.
+             * so add the LVAPs the agent hosts to our client tracker accordingly.
              */
-            for (OdinClient client : oa.getLvapsRemote()) {
+            for (OdinClient client : remoteClients) {
 
                 OdinClient trackedClient = clientManager.getClients()
                                                         .get(client.getMacAddress());
@@ -183,7 +326,7 @@ class AgentManager {
                 }
 
                 if (trackedClient.getLvap().getAgent() == null) {
-                    trackedClient.getLvap().setAgent(oa);
+                    clientManager.setClientAgent(trackedClient, oa);
                 } else if (!trackedClient.getLvap().getAgent().getIpAddress()
                                          .equals(odinAgentAddr)) {
                     /*
@@ -204,51 +347,75 @@ class AgentManager {
             log.info("Adding OdinAgent to map: " + odinAgentAddr
                     .getHostAddress());
 
-            /* This TimerTask checks the lastHeard value
+            /* The failure detector checks the lastHeard value
              * of the agent in order to handle failure detection
              */
-            failureDetectionTimer.scheduleAtFixedRate(
-                    new OdinAgentFailureDetectorTask(oa), 1,
-                    agentTimeout / 2);
+            detectorSlots.put(odinAgentAddr, failureDetector
+                    .register(oa, oa.getLastHeard()));
+        }
+
+        for (AgentStatusListener listener : statusListeners) {
+            listener.agentUp(oa);
         }
 
         return true;
     }
 
-    private class OdinAgentFailureDetectorTask extends TimerTask {
+    /**
+     * Called by the failure detector once an agent hasn't been heard from for agentTimeout ms
+     *
+     * @param agent the agent that timed out
+     */
+    private void agentTimedOut(final IOdinAgent agent) {
+        // TODO: protect agents from timing out due to the FlyingNetworkManager
+        synchronized (this) {
+            // The agent may have been removed, or replaced, in the meantime
+            if (agentMap.get(agent.getIpAddress()) != agent) {
+                return;
+            }
+        }
 
-        private final IOdinAgent agent;
+        log.error("Agent: " + agent.getIpAddress() + " has timed out");
 
-        OdinAgentFailureDetectorTask(final IOdinAgent oa) {
-            this.agent = oa;
-        }
+        /* This is default behaviour, maybe we should
+         * re-assign the client based on some specific
+         * behaviour
+         */
 
-        @Override public void run() {
-            //log.info("Executing failure check against: " + agent.getIpAddress());
-            // TODO: protect agents from timing out due to the FlyingNetworkManager
-            if ((System.currentTimeMillis() - agent.getLastHeard())
-                >= agentTimeout) {
-                log.error(
-                        "Agent: " + agent.getIpAddress() + " has timed out");
-
-                /* This is default behaviour, maybe we should
-                 * re-assign the client based on some specific
-                 * behaviour
-                 */
-
-                // TODO: There should be a way to lock the master
-                //  during such operations
-                for (OdinClient oc : agent.getLvapsLocal()) {
-                    clientManager.getClients().get(oc.getMacAddress())
-                                 .getLvap().setAgent(null);
-                }
+        // TODO: There should be a way to lock the master
+        //  during such operations
+        detachClients(agent);
+
+        // Agent should now be cleared out
+        removeAgent(agent.getIpAddress());
+    }
 
-                // Agent should now be cleared out
-                removeAgent(agent.getIpAddress());
-                this.cancel();
+    /**
+     * Drop an agent the bootstrap gave up on once it was tracked, as if it had timed out
+     *
+     * @param agent the agent
+     */
+    void bootstrapFailed(final IOdinAgent agent) {
+        synchronized (this) {
+            if (agentMap.get(agent.getIpAddress()) != agent) {
+                return;
             }
         }
+        detachClients(agent);
+        removeAgent(agent.getIpAddress());
+    }
 
+    /**
+     * Leave the clients hosted by an agent without one, so they get a new LVAP once heard from
+     */
+    private void detachClients(final IOdinAgent agent) {
+        for (OdinClient oc : agent.getLvapsLocal()) {
+            OdinClient client = clientManager.getClients()
+                                             .get(oc.getMacAddress());
+            if (client != null) {
+                clientManager.setClientAgent(client, null);
+            }
+        }
     }
 
 }
@@ -1,17 +1,90 @@
 package net.floodlightcontroller.odin.master;
 
+import org.codehaus.jackson.JsonGenerator;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
-import org.restlet.resource.ServerResource;
+import org.restlet.resource.ResourceException;
 
+import java.io.IOException;
 import java.net.InetAddress;
-import java.util.Set;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
-public class AgentManagerResource extends ServerResource {
+public class AgentManagerResource extends ListingResource {
 
-    @Get("json") public Set<InetAddress> retreive() {
-        OdinMaster oc = (OdinMaster) getContext().getAttributes().
-                get(OdinMaster.class.getCanonicalName());
+    // Numerical order of the addresses, IPv4 before IPv6
+    private static final Comparator<InetAddress> BY_ADDRESS = new Comparator<InetAddress>() {
+        @Override public int compare(InetAddress a, InetAddress b) {
+            byte[] x = a.getAddress();
+            byte[] y = b.getAddress();
+            if (x.length != y.length) {
+                return x.length - y.length;
+            }
+            for (int i = 0; i < x.length; i++) {
+                if (x[i] != y[i]) {
+                    return (x[i] & 0xff) - (y[i] & 0xff);
+                }
+            }
+            return 0;
+        }
+    };
 
-        return oc.getAgentAddrs(PoolManager.GLOBAL_POOL);
+    /**
+     * @return the agents of every pool, by address. Unpaginated they are a JSON array of
+     * addresses, a page is {"agents": [...], "next": cursor}.
+     */
+    @Get("json") public Representation retreive() {
+        final OdinMaster oc = getMaster();
+        final int limit = getLimit();
+        final String after = getAfter();
+        final InetAddress afterAddr;
+        try {
+            afterAddr = after == null ? null : InetAddress.getByName(after);
+        } catch (UnknownHostException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                                        "Invalid cursor " + after);
+        }
+        final boolean paginated = limit > 0 || after != null;
+
+        return json(oc.getAgentsTag(), new Body() {
+            @Override public void write(JsonGenerator jgen)
+                    throws IOException {
+                List<InetAddress> agents = new ArrayList<>(
+                        oc.getAgentAddrs(PoolManager.GLOBAL_POOL));
+                Collections.sort(agents, BY_ADDRESS);
+
+                int from = 0;
+                if (afterAddr != null) {
+                    from = Collections.binarySearch(agents, afterAddr,
+                                                    BY_ADDRESS);
+                    from = from >= 0 ? from + 1 : -from - 1;
+                }
+                int to = limit > 0 ? Math.min(agents.size(), from + limit) :
+                         agents.size();
+
+                if (paginated) {
+                    jgen.writeStartObject();
+                    jgen.writeArrayFieldStart("agents");
+                } else {
+                    jgen.writeStartArray();
+                }
+                for (int i = from; i < to; i++) {
+                    jgen.writeString(agents.get(i).getHostAddress());
+                }
+                if (paginated) {
+                    jgen.writeEndArray();
+                    String next = limit > 0 && to - from == limit ?
+                                  agents.get(to - 1).getHostAddress() : null;
+                    jgen.writeStringField("next", next);
+                    jgen.writeEndObject();
+                } else {
+                    jgen.writeEndArray();
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,179 @@
+package net.floodlightcontroller.odin.master;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel and tx power of an agent, kept in memory so that hot paths (handoffs, applications
+ * polling every AP each cycle) don't need a round-trip to the agent for each read.
+ * <p>
+ * Values are read from the agent the first time they are needed. After that they are served from
+ * memory, and once older than the TTL a read triggers a refresh in the background and returns
+ * the value held meanwhile. Channel changes made through the master are written through. A TTL of
+ * 0 disables caching, every read then goes to the agent.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class AgentRadioConfig {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(AgentRadioConfig.class);
+
+    static final long DEFAULT_TTL = 5000; // ms
+
+    /**
+     * Where values are read from, a read handler of the agent.
+     */
+    interface Source {
+        CompletableFuture<String> read(String handler);
+    }
+
+    private final Source source;
+    private final long readTimeout;
+    private volatile long ttl = DEFAULT_TTL;
+
+    private final Value channel;
+    private final Value txPower;
+
+    /**
+     * @param source        read handlers of the agent
+     * @param channelHandler handler returning the channel
+     * @param txPowerHandler handler returning the tx power
+     * @param readTimeout   time in ms to wait for the agent when there is no value yet
+     */
+    AgentRadioConfig(Source source, String channelHandler,
+                     String txPowerHandler, long readTimeout) {
+        this.source = source;
+        this.readTimeout = readTimeout;
+        this.channel = new Value(channelHandler);
+        this.txPower = new Value(txPowerHandler);
+    }
+
+    /**
+     * @param ttl time in ms after which values are refreshed, 0 to always read from the agent
+     */
+    void setTtl(long ttl) {
+        assert (ttl >= 0);
+        this.ttl = ttl;
+    }
+
+    int getChannel() {
+        return channel.get();
+    }
+
+    /**
+     * The agent was told to switch to a channel.
+     */
+    void setChannel(int value) {
+        channel.set(value);
+    }
+
+    int getTxPower() {
+        return txPower.get();
+    }
+
+    /**
+     * Read every value from the agent now, waiting for the answers.
+     */
+    void refresh() {
+        CompletableFuture<Void> c = channel.refresh();
+        CompletableFuture<Void> t = txPower.refresh();
+        try {
+            CompletableFuture.allOf(c, t)
+                             .get(readTimeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Radio configuration refresh failed: " + e.getMessage());
+        }
+    }
+
+    private class Value {
+        final String handler;
+        volatile int value = 0;
+        volatile long readAt = 0; // 0 until read once
+        private CompletableFuture<Void> pending; // Read going on, guarded by this
+        private long writes = 0; // Guarded by this, reads sent before the last write are stale
+
+        Value(String handler) {
+            this.handler = handler;
+        }
+
+        int get() {
+            if (readAt == 0 || ttl == 0) {
+                // Nothing to serve yet, wait for the agent
+                try {
+                    refresh().get(readTimeout, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    log.warn("Reading " + handler + " failed: "
+                             + e.getMessage());
+                }
+            } else if (System.currentTimeMillis() - readAt >= ttl) {
+                refresh();
+            }
+            return value;
+        }
+
+        /**
+         * A value written to the agent. Reads sent before it are dropped, as their answers
+         * would come back with the old value.
+         */
+        synchronized void set(int v) {
+            writes++;
+            pending = null;
+            store(v);
+        }
+
+        private void store(int v) {
+            value = v;
+            readAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Read the value from the agent, or join the read already going on.
+         */
+        synchronized CompletableFuture<Void> refresh() {
+            if (pending != null) {
+                return pending;
+            }
+            final long stamp = writes;
+            CompletableFuture<String> f;
+            try {
+                f = source.read(handler);
+            } catch (RuntimeException e) {
+                f = new CompletableFuture<>();
+                f.completeExceptionally(e);
+            }
+            final CompletableFuture<Void> read = f.handle((s, t) -> {
+                if (s != null) {
+                    try {
+                        int v = Integer.parseInt(s.trim());
+                        synchronized (Value.this) {
+                            if (writes == stamp) {
+                                store(v);
+                            }
+                        }
+                    } catch (NumberFormatException e) {
+                        log.warn("Bad " + handler + " from agent: " + s);
+                    }
+                } else if (t != null) {
+                    log.warn("Reading " + handler + " failed: "
+                             + t.getMessage());
+                }
+                return null;
+            });
+            if (!read.isDone()) {
+                pending = read;
+                read.whenComplete((v, t) -> {
+                    synchronized (Value.this) {
+                        if (pending == read) {
+                            pending = null;
+                        }
+                    }
+                });
+            }
+            return read;
+        }
+    }
+}
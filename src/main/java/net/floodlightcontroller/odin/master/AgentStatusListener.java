@@ -0,0 +1,23 @@
+package net.floodlightcontroller.odin.master;
+
+/**
+ * Notified when the AgentManager starts or stops tracking an agent.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+interface AgentStatusListener {
+
+    /**
+     * An agent pinged the master for the first time, or after having been removed
+     *
+     * @param agent the newly tracked agent
+     */
+    void agentUp(IOdinAgent agent);
+
+    /**
+     * An agent timed out or its switch disconnected. Its LVAPs have already been detached.
+     *
+     * @param agent the agent that is no longer tracked
+     */
+    void agentDown(IOdinAgent agent);
+}
@@ -0,0 +1,137 @@
+package net.floodlightcontroller.odin.master;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which APs are close to each other, learnt from the measurement beacons APs hear from each other
+ * and from the handoffs clients actually make. Applications use it to scan a client only on the APs
+ * it is likely to move to, instead of on every AP of the deployment.
+ * <p>
+ * Each AP keeps an edge to every AP it is related to, scored by the beacon RSSI between both (an
+ * average of the last measurements) plus a bonus per handoff made from one to the other. The
+ * best neighbors of each AP are sorted when its edges change, so reads are a lookup.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ApNeighborGraph {
+
+    static final int DEFAULT_MAX_NEIGHBORS = 8;
+
+    static final double RSSI_FLOOR = -100; // dBm, beacons below are not heard
+    static final double HANDOFF_WEIGHT = 3; // dB, score of each handoff between two APs
+    static final double RSSI_ALPHA = 0.3; // Weight of a new measurement in the average
+
+    private final int maxNeighbors;
+
+    // Guarded by this
+    private final Map<InetAddress, Map<InetAddress, Edge>> edges = new HashMap<>();
+
+    // Best neighbors first, replaced as a whole
+    private final ConcurrentHashMap<InetAddress, List<InetAddress>> neighbors = new ConcurrentHashMap<>();
+
+    private static class Edge {
+        final InetAddress to;
+        double rssi = Double.NaN;
+        int handoffs = 0;
+
+        Edge(InetAddress to) {
+            this.to = to;
+        }
+
+        double score() {
+            double s = HANDOFF_WEIGHT * handoffs;
+            if (!Double.isNaN(rssi)) {
+                s += Math.max(0, rssi - RSSI_FLOOR);
+            }
+            return s;
+        }
+    }
+
+    ApNeighborGraph() {
+        this(DEFAULT_MAX_NEIGHBORS);
+    }
+
+    /**
+     * @param maxNeighbors neighbors kept for each AP
+     */
+    ApNeighborGraph(int maxNeighbors) {
+        this.maxNeighbors = maxNeighbors;
+    }
+
+    /**
+     * An AP heard the measurement beacon of another one. Radio links being about symmetric, both
+     * APs are taken as neighbors of each other.
+     *
+     * @param beaconAgent   AP that sent the beacon
+     * @param scanningAgent AP that heard it
+     * @param rssi          average signal of the beacon in dBm
+     */
+    synchronized void observeBeacon(InetAddress beaconAgent,
+                                    InetAddress scanningAgent, double rssi) {
+        if (beaconAgent.equals(scanningAgent)) {
+            return;
+        }
+        updateRssi(edge(beaconAgent, scanningAgent), rssi);
+        updateRssi(edge(scanningAgent, beaconAgent), rssi);
+        sort(beaconAgent);
+        sort(scanningAgent);
+    }
+
+    /**
+     * A client was handed off between two APs, which makes the second a likely next AP for clients
+     * of the first.
+     */
+    synchronized void observeHandoff(InetAddress from, InetAddress to) {
+        if (from.equals(to)) {
+            return;
+        }
+        edge(from, to).handoffs++;
+        sort(from);
+    }
+
+    /**
+     * @param agent AP to get the neighbors of
+     * @param k     number of neighbors wanted
+     * @return up to k neighbors of the AP, best first, empty if nothing is known about it yet
+     */
+    List<InetAddress> getNeighbors(InetAddress agent, int k) {
+        List<InetAddress> best = neighbors.get(agent);
+        if (best == null) {
+            return Collections.emptyList();
+        }
+        return best.size() <= k ? best : best.subList(0, k);
+    }
+
+    private Edge edge(InetAddress from, InetAddress to) {
+        return edges.computeIfAbsent(from, k -> new HashMap<>())
+                    .computeIfAbsent(to, Edge::new);
+    }
+
+    private static void updateRssi(Edge e, double rssi) {
+        e.rssi = Double.isNaN(e.rssi) ? rssi :
+                 e.rssi + RSSI_ALPHA * (rssi - e.rssi);
+    }
+
+    private void sort(InetAddress agent) {
+        List<Edge> sorted = new ArrayList<>(edges.get(agent).values());
+        sorted.sort((a, b) -> Double.compare(b.score(), a.score()));
+
+        List<InetAddress> best = new ArrayList<>(
+                Math.min(maxNeighbors, sorted.size()));
+        for (Edge e : sorted) {
+            if (best.size() == maxNeighbors) {
+                break;
+            }
+            if (e.score() > 0) {
+                best.add(e.to);
+            }
+        }
+        neighbors.put(agent, Collections.unmodifiableList(best));
+    }
+}
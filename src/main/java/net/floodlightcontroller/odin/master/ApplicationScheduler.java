@@ -0,0 +1,261 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.odin.master.OdinApplication.State;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the periodic tasks, timers and event listeners of one application on the master's
+ * executor, so that the application does not need a thread of its own polling with sleeps.
+ * <p>
+ * Halting happens between tasks: once a halt is requested, the application is HALTED as soon as
+ * no task is running, and nothing runs until it is resumed. Periodic runs falling in that time are
+ * skipped, timers and events are kept and run on resume. The application's run() counts as a
+ * task until it returns, so applications that loop in run() keep halting at their checkpoints.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ApplicationScheduler implements AgentStatusListener,
+                                      ClientStatusListener {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(ApplicationScheduler.class);
+
+    private final OdinApplication application;
+    private final ScheduledExecutorService executor;
+    private final List<Registration> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private int running = 0;
+    private final Queue<Runnable> deferred = new ArrayDeque<>();
+
+    private static class Registration {
+        final NetworkEventListener listener;
+        final ScheduledTask handle;
+
+        Registration(NetworkEventListener listener, ScheduledTask handle) {
+            this.listener = listener;
+            this.handle = handle;
+        }
+    }
+
+    ApplicationScheduler(OdinApplication application,
+                         ScheduledExecutorService executor) {
+        this.application = application;
+        this.executor = executor;
+    }
+
+    /**
+     * Run the application's run() on the executor.
+     */
+    void start() {
+        synchronized (this) {
+            running++;
+        }
+        executor.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    application.run();
+                } catch (RuntimeException e) {
+                    log.error("Application " + getName() + " failed", e);
+                } finally {
+                    exit();
+                }
+            }
+        });
+    }
+
+    ScheduledTask schedulePeriodic(final Runnable task, long initialDelay,
+                                   long period) {
+        final ScheduledTask handle = new ScheduledTask();
+        handle.setFuture(executor.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                runTask(handle, task, false);
+            }
+        }, initialDelay, period, TimeUnit.MILLISECONDS));
+        return handle;
+    }
+
+    ScheduledTask scheduleOnce(final Runnable task, long delay) {
+        final ScheduledTask handle = new ScheduledTask();
+        handle.setFuture(executor.schedule(new Runnable() {
+            @Override public void run() {
+                runTask(handle, task, true);
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+        return handle;
+    }
+
+    ScheduledTask addListener(NetworkEventListener listener) {
+        ScheduledTask handle = new ScheduledTask();
+        listeners.add(new Registration(listener, handle));
+        return handle;
+    }
+
+    /**
+     * The application was asked to halt, it halts right away if it is between tasks.
+     */
+    void haltRequested() {
+        boolean halted;
+        synchronized (this) {
+            halted = running == 0 && application.halt();
+        }
+        if (halted) {
+            notifyHalted();
+        }
+    }
+
+    /**
+     * The application was resumed, run whatever was held back meanwhile.
+     */
+    void resumed() {
+        List<Runnable> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(deferred);
+            deferred.clear();
+        }
+        for (Runnable r : pending) {
+            executor.execute(r);
+        }
+    }
+
+    @Override public void agentUp(IOdinAgent agent) {
+        final InetAddress addr = agent.getIpAddress();
+        dispatch(new Event() {
+            @Override public void deliver(NetworkEventListener l) {
+                l.agentUp(addr);
+            }
+        });
+    }
+
+    @Override public void agentDown(IOdinAgent agent) {
+        final InetAddress addr = agent.getIpAddress();
+        dispatch(new Event() {
+            @Override public void deliver(NetworkEventListener l) {
+                l.agentDown(addr);
+            }
+        });
+    }
+
+    @Override public void clientAdded(final OdinClient client) {
+        dispatch(new Event() {
+            @Override public void deliver(NetworkEventListener l) {
+                l.clientAdded(client);
+            }
+        });
+    }
+
+    @Override public void clientRemoved(final OdinClient client) {
+        dispatch(new Event() {
+            @Override public void deliver(NetworkEventListener l) {
+                l.clientRemoved(client);
+            }
+        });
+    }
+
+    private interface Event {
+        void deliver(NetworkEventListener l);
+    }
+
+    /**
+     * Hand the event to every listener on the executor, never on the caller's thread.
+     */
+    private void dispatch(final Event event) {
+        for (final Registration r : listeners) {
+            if (r.handle.isCancelled()) {
+                listeners.remove(r);
+                continue;
+            }
+            executor.execute(new Runnable() {
+                @Override public void run() {
+                    runTask(r.handle, new Runnable() {
+                        @Override public void run() {
+                            event.deliver(r.listener);
+                        }
+                    }, true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run a task unless the application is halting or halted. Tasks that must not be lost are kept
+     * until the application resumes.
+     */
+    private void runTask(final ScheduledTask handle, final Runnable task,
+                         boolean keepIfHalted) {
+        if (handle.isCancelled()) {
+            return;
+        }
+
+        boolean accepted = false;
+        boolean halted = false;
+        synchronized (this) {
+            if (application.getState() == State.RUNNING) {
+                running++;
+                accepted = true;
+            } else {
+                if (keepIfHalted) {
+                    deferred.add(new Runnable() {
+                        @Override public void run() {
+                            runTask(handle, task, true);
+                        }
+                    });
+                }
+                halted = running == 0 && application.halt();
+            }
+        }
+        if (!accepted) {
+            if (halted) {
+                notifyHalted();
+            }
+            return;
+        }
+
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Task of application " + getName() + " failed", e);
+        } finally {
+            exit();
+        }
+    }
+
+    private void exit() {
+        boolean halted;
+        synchronized (this) {
+            running--;
+            halted = running == 0 && application.halt();
+        }
+        if (halted) {
+            notifyHalted();
+        }
+    }
+
+    /**
+     * Wake up whoever is waiting for the application to halt.
+     */
+    private void notifyHalted() {
+        log.info("Application " + getName() + " halted");
+        Object lock = application.getLock();
+        if (lock != null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private String getName() {
+        return application.getClass().getSimpleName();
+    }
+}
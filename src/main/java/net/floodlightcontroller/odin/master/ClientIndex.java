@@ -0,0 +1,128 @@
+package net.floodlightcontroller.odin.master;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups clients by a key (agent, pool, channel...). Each group is a sorted concurrent set, so a
+ * client joins or leaves it in O(log n) however large the group is (the global pool holds every
+ * client), and readers iterate it without locking or copying. Views are weakly consistent: they
+ * reflect the joins and leaves made while being iterated, and are read-only.
+ *
+ * @param <K> type of the key
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ClientIndex<K> {
+
+    private final ConcurrentHashMap<K, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Clients of a group, counted apart as a concurrent set has no constant time size
+     */
+    private static class Group extends AbstractSet<OdinClient>
+            implements SortedSet<OdinClient> {
+
+        final ConcurrentSkipListSet<OdinClient> clients = new ConcurrentSkipListSet<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        @Override
+        public Iterator<OdinClient> iterator() {
+            return Collections.unmodifiableSortedSet(clients).iterator();
+        }
+
+        @Override
+        public int size() {
+            return size.get();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size.get() == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return clients.contains(o);
+        }
+
+        @Override
+        public Comparator<? super OdinClient> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedSet<OdinClient> subSet(OdinClient from, OdinClient to) {
+            return Collections.unmodifiableSortedSet(clients.subSet(from, to));
+        }
+
+        @Override
+        public SortedSet<OdinClient> headSet(OdinClient to) {
+            return Collections.unmodifiableSortedSet(clients.headSet(to));
+        }
+
+        @Override
+        public SortedSet<OdinClient> tailSet(OdinClient from) {
+            return Collections.unmodifiableSortedSet(clients.tailSet(from));
+        }
+
+        @Override
+        public OdinClient first() {
+            return clients.first();
+        }
+
+        @Override
+        public OdinClient last() {
+            return clients.last();
+        }
+    }
+
+    /**
+     * Add a client to a group, creating it if needed
+     */
+    void add(K key, final OdinClient client) {
+        // Under the map's lock for the key, so a group is never dropped while a client joins it
+        groups.compute(key, (k, group) -> {
+            if (group == null) {
+                group = new Group();
+            }
+            if (group.clients.add(client)) {
+                group.size.incrementAndGet();
+            }
+            return group;
+        });
+    }
+
+    /**
+     * Remove a client from a group, dropping the group once empty
+     */
+    void remove(K key, final OdinClient client) {
+        groups.computeIfPresent(key, (k, group) -> {
+            if (group.clients.remove(client)) {
+                group.size.decrementAndGet();
+            }
+            return group.isEmpty() ? null : group;
+        });
+    }
+
+    /**
+     * @return read-only view of the group, empty if there is none
+     */
+    SortedSet<OdinClient> get(K key) {
+        Group group = groups.get(key);
+        return group == null ? Collections.<OdinClient>emptySortedSet() : group;
+    }
+
+    /**
+     * @return number of clients in the group
+     */
+    int count(K key) {
+        Group group = groups.get(key);
+        return group == null ? 0 : group.size();
+    }
+}
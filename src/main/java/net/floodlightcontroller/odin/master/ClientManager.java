@@ -3,12 +3,47 @@ package net.floodlightcontroller.odin.master;
 import net.floodlightcontroller.util.MACAddress;
 
 import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Tracks the clients known to the master, and keeps them indexed by the agent hosting their LVAP
+ * and by the channel of that agent.
+ */
 class ClientManager {
 
     private final Map<MACAddress, OdinClient> odinClientMap = new ConcurrentHashMap<MACAddress, OdinClient>();
+    private final ClientIndex<InetAddress> agentIndex = new ClientIndex<InetAddress>();
+    private final ClientIndex<Integer> channelIndex = new ClientIndex<Integer>();
+    private final Map<InetAddress, Integer> agentChannels = new ConcurrentHashMap<InetAddress, Integer>();
+    // Agent each client is indexed under, by hw address as OdinClient has no hashCode(). Guarded
+    // by this.
+    private final Map<MACAddress, InetAddress> indexedAgents = new HashMap<MACAddress, InetAddress>();
+    private final List<ClientStatusListener> statusListeners = new CopyOnWriteArrayList<ClientStatusListener>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Register a listener to be told when clients are added or removed
+     *
+     * @param listener the listener
+     */
+    protected void addClientStatusListener(ClientStatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener
+     *
+     * @param listener the listener
+     */
+    protected void removeClientStatusListener(ClientStatusListener listener) {
+        statusListeners.remove(listener);
+    }
 
     /**
      * Add a client to the client tracker
@@ -21,9 +56,7 @@ class ClientManager {
     protected void addClient(final MACAddress clientHwAddress,
                              final InetAddress ipv4Address,
                              final Lvap lvap) {
-        odinClientMap.put(clientHwAddress,
-                          new OdinClient(clientHwAddress, ipv4Address,
-                                         lvap));
+        addClient(new OdinClient(clientHwAddress, ipv4Address, lvap));
     }
 
     /**
@@ -35,7 +68,15 @@ class ClientManager {
      * @param vapEssid    Client specific VAP essid
      */
     protected void addClient(final OdinClient oc) {
-        odinClientMap.put(oc.getMacAddress(), oc);
+        if (oc.getLvap() != null && oc.getLvap().getAgent() != null) {
+            index(oc, oc.getLvap().getAgent().getIpAddress());
+        }
+        version.incrementAndGet();
+        if (odinClientMap.put(oc.getMacAddress(), oc) == null) {
+            for (ClientStatusListener listener : statusListeners) {
+                listener.clientAdded(oc);
+            }
+        }
     }
 
     /**
@@ -44,7 +85,14 @@ class ClientManager {
      * @param hwAddress Client's hw address
      */
     protected void removeClient(final MACAddress clientHwAddress) {
-        odinClientMap.remove(clientHwAddress);
+        OdinClient oc = odinClientMap.remove(clientHwAddress);
+        if (oc != null) {
+            version.incrementAndGet();
+            index(oc, null);
+            for (ClientStatusListener listener : statusListeners) {
+                listener.clientRemoved(oc);
+            }
+        }
     }
 
     /**
@@ -62,4 +110,110 @@ class ClientManager {
     protected Map<MACAddress, OdinClient> getClients() {
         return odinClientMap;
     }
+
+    /**
+     * Set the agent hosting the client's LVAP, and index the client under it
+     *
+     * @param oc    the client
+     * @param agent the new agent, null if none
+     */
+    protected void setClientAgent(final OdinClient oc, final IOdinAgent agent) {
+        oc.getLvap().setAgent(agent);
+        index(oc, agent == null ? null : agent.getIpAddress());
+        version.incrementAndGet();
+    }
+
+    /**
+     * Set the IP address of a client
+     *
+     * @param oc     the client
+     * @param ipAddr the address the client was given
+     */
+    protected void setClientIpAddress(final OdinClient oc,
+                                      final InetAddress ipAddr) {
+        oc.setIpAddress(ipAddr);
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes whenever a client is added or removed, or its agent or IP
+     * address change
+     */
+    protected long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Record the channel an agent is on, moving its clients in the channel index
+     *
+     * @param agentAddr the agent's address
+     * @param channel   the agent's channel
+     */
+    protected synchronized void setAgentChannel(final InetAddress agentAddr,
+                                                final int channel) {
+        Integer previous = agentChannels.put(agentAddr, channel);
+        if (previous != null && previous == channel) {
+            return;
+        }
+        for (OdinClient oc : agentIndex.get(agentAddr)) {
+            if (previous != null) {
+                channelIndex.remove(previous, oc);
+            }
+            channelIndex.add(channel, oc);
+        }
+    }
+
+    /**
+     * Get the clients whose LVAP is on an agent
+     *
+     * @param agentAddr the agent's address
+     * @return read-only view of the clients, safe to iterate without copying
+     */
+    protected Set<OdinClient> getClientsFromAgent(final InetAddress agentAddr) {
+        return agentIndex.get(agentAddr);
+    }
+
+    /**
+     * Get the number of clients whose LVAP is on an agent
+     */
+    protected int getClientCountFromAgent(final InetAddress agentAddr) {
+        return agentIndex.count(agentAddr);
+    }
+
+    /**
+     * Get the clients on agents known to be on a channel
+     *
+     * @param channel the channel
+     * @return read-only view of the clients, safe to iterate without copying
+     */
+    protected Set<OdinClient> getClientsOnChannel(final int channel) {
+        return channelIndex.get(channel);
+    }
+
+    /**
+     * Move a client in the agent and channel indexes
+     */
+    private synchronized void index(OdinClient oc, InetAddress agentAddr) {
+        MACAddress mac = oc.getMacAddress();
+        InetAddress previous = agentAddr == null ? indexedAgents.remove(mac) :
+                               indexedAgents.put(mac, agentAddr);
+        if (previous != null && previous.equals(agentAddr)) {
+            return;
+        }
+
+        if (previous != null) {
+            agentIndex.remove(previous, oc);
+            Integer channel = agentChannels.get(previous);
+            if (channel != null) {
+                channelIndex.remove(channel, oc);
+            }
+        }
+        if (agentAddr != null) {
+            agentIndex.add(agentAddr, oc);
+            Integer channel = agentChannels.get(agentAddr);
+            if (channel != null) {
+                channelIndex.add(channel, oc);
+            }
+        }
+    }
 }
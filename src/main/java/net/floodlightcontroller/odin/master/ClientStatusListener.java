@@ -0,0 +1,23 @@
+package net.floodlightcontroller.odin.master;
+
+/**
+ * Notified when the ClientManager starts or stops tracking a client.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+interface ClientStatusListener {
+
+    /**
+     * A client was heard for the first time, or after having been removed
+     *
+     * @param client the newly tracked client
+     */
+    void clientAdded(OdinClient client);
+
+    /**
+     * A client deauthenticated, went idle or lost its agent
+     *
+     * @param client the client that is no longer tracked
+     */
+    void clientRemoved(OdinClient client);
+}
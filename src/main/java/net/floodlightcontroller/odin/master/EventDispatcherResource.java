@@ -0,0 +1,39 @@
+package net.floodlightcontroller.odin.master;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventDispatcherResource extends ServerResource {
+
+    /**
+     * @return queue depth, throughput and drops of every event dispatcher lane
+     */
+    @Get("json") public List<Map<String, Long>> retreive() {
+        OdinMaster oc = (OdinMaster) getContext().getAttributes().
+                get(OdinMaster.class.getCanonicalName());
+
+        List<Map<String, Long>> lanes = new ArrayList<Map<String, Long>>();
+        OdinEventDispatcher dispatcher = oc.getEventDispatcher();
+
+        if (dispatcher == null) {
+            return lanes;
+        }
+
+        for (int i = 0; i < dispatcher.getLaneCount(); i++) {
+            Map<String, Long> lane = new HashMap<String, Long>();
+            lane.put("lane", (long) i);
+            lane.put("queueDepth", (long) dispatcher.getQueueDepth(i));
+            lane.put("maxQueueDepth", dispatcher.getMaxQueueDepth(i));
+            lane.put("processed", dispatcher.getProcessed(i));
+            lane.put("dropped", dispatcher.getDropped(i));
+            lanes.add(lane);
+        }
+
+        return lanes;
+    }
+}
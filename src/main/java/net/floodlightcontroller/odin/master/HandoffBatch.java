@@ -0,0 +1,130 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.odin.master.HandoffTracer.Phase;
+import org.openflow.protocol.OFMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The network side of a set of handoffs, collected while each client is moved in the master's
+ * view and sent once they all are: one write of flow mods per switch, and the LVAP removals and
+ * additions of each agent sent together over its control channel.
+ * <p>
+ * Clients are only locked while being planned, so one may be removed (deauthenticated, reclaimed)
+ * before the batch is sent. Its LVAP is then not spawned, as nothing would ever remove it.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class HandoffBatch {
+
+    protected static Logger log = LoggerFactory.getLogger(HandoffBatch.class);
+
+    private final HandoffTracer tracer;
+    private final ClientManager clientManager;
+
+    // Keyed by the agent of the switch
+    private final Map<IOdinAgent, List<OFMessage>> flowMods = new LinkedHashMap<>();
+    private final Map<IOdinAgent, List<OdinClient>> removals = new LinkedHashMap<>();
+    private final Map<IOdinAgent, List<OdinClient>> additions = new LinkedHashMap<>();
+
+    /**
+     * @param tracer        where the latency of each phase is recorded
+     * @param clientManager tells which clients are still tracked once the batch is sent
+     */
+    HandoffBatch(HandoffTracer tracer, ClientManager clientManager) {
+        this.tracer = tracer;
+        this.clientManager = clientManager;
+    }
+
+    /**
+     * Flow messages of a client to push to the switch of its new agent
+     */
+    void pushFlowMods(IOdinAgent agent, List<OFMessage> messages) {
+        flowMods.computeIfAbsent(agent, k -> new ArrayList<OFMessage>())
+                .addAll(messages);
+    }
+
+    /**
+     * The client's LVAP is to be spawned on the agent
+     */
+    void addLvap(IOdinAgent agent, OdinClient client) {
+        additions.computeIfAbsent(agent, k -> new ArrayList<OdinClient>())
+                 .add(client);
+    }
+
+    /**
+     * The client's LVAP is to be removed from the agent
+     */
+    void removeLvap(IOdinAgent agent, OdinClient client) {
+        removals.computeIfAbsent(agent, k -> new ArrayList<OdinClient>())
+                .add(client);
+    }
+
+    boolean isEmpty() {
+        return flowMods.isEmpty() && removals.isEmpty() && additions.isEmpty();
+    }
+
+    /**
+     * Send everything collected. Flow mods go first, so traffic is steered to the new agents by
+     * the time their LVAPs are up. Agent commands are pipelined and this does not wait for them.
+     */
+    void execute() {
+        for (Map.Entry<IOdinAgent, List<OFMessage>> e : flowMods.entrySet()) {
+            IOFSwitch sw = e.getKey().getSwitch();
+            long start = System.nanoTime();
+            try {
+                sw.write(e.getValue(), null);
+                tracer.record(Phase.FLOW_PUSH, e.getKey().getIpAddress(), start);
+            } catch (IOException ex) {
+                log.error("Failed to update switch's flow tables " + sw);
+            }
+        }
+        for (Map.Entry<IOdinAgent, List<OdinClient>> e : additions.entrySet()) {
+            List<OdinClient> clients = tracked(e.getValue());
+            if (clients.isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            trace(Phase.ADD_VAP, e.getKey(), start,
+                  e.getKey().addClientLvaps(clients));
+        }
+        for (Map.Entry<IOdinAgent, List<OdinClient>> e : removals.entrySet()) {
+            long start = System.nanoTime();
+            trace(Phase.REMOVE_VAP, e.getKey(), start,
+                  e.getKey().removeClientLvaps(e.getValue()));
+        }
+    }
+
+    /**
+     * @return the clients still tracked, checked under the same lock as their removal
+     */
+    private List<OdinClient> tracked(List<OdinClient> clients) {
+        List<OdinClient> still = new ArrayList<>(clients.size());
+        for (OdinClient client : clients) {
+            synchronized (client) {
+                if (clientManager.getClient(client.getMacAddress()) == client) {
+                    still.add(client);
+                }
+            }
+        }
+        return still;
+    }
+
+    /**
+     * Record the phase once the agent acknowledged its commands
+     */
+    private void trace(final Phase phase, IOdinAgent agent, final long start,
+                       CompletableFuture<Void> acked) {
+        final InetAddress addr = agent.getIpAddress();
+        acked.thenRun(() -> tracer.record(phase, addr, start));
+    }
+}
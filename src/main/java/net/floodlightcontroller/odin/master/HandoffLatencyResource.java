@@ -0,0 +1,20 @@
+package net.floodlightcontroller.odin.master;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+import java.util.Map;
+
+public class HandoffLatencyResource extends ServerResource {
+
+    /**
+     * @return latency histograms of every handoff phase, over all handoffs and per agent, in
+     * microseconds
+     */
+    @Get("json") public Map<String, Object> retreive() {
+        OdinMaster oc = (OdinMaster) getContext().getAttributes().
+                get(OdinMaster.class.getCanonicalName());
+
+        return oc.getHandoffTracer().toMap();
+    }
+}
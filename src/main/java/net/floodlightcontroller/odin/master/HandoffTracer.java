@@ -0,0 +1,125 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import java.net.InetAddress;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of each phase of the handoffs, over all of them and per agent. Phases are counted for
+ * the agent they ran on: the old agent for remove_vap, the new one for everything else.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class HandoffTracer {
+
+    enum Phase {
+        LOCK_WAIT,   // Waiting for another handoff of the same client
+        CSA,         // Channel switch announcement to the client
+        FLOW_PUSH,   // Writing the client's flow mods to the switch
+        ADD_VAP,     // Until the new agent acknowledged the LVAP
+        REMOVE_VAP,  // Until the old agent acknowledged the removal
+        ASSOCIATION  // From the handoff until the client associated with the new agent
+    }
+
+    private final Map<Phase, LatencyHistogram> global = newHistograms();
+    private final ConcurrentHashMap<InetAddress, Map<Phase, LatencyHistogram>> perAgent = new ConcurrentHashMap<>();
+
+    // Handoffs waiting for the client to associate
+    private final ConcurrentHashMap<MACAddress, Pending> pending = new ConcurrentHashMap<>();
+
+    private static class Pending {
+        final InetAddress agent;
+        final long start;
+
+        Pending(InetAddress agent, long start) {
+            this.agent = agent;
+            this.start = start;
+        }
+    }
+
+    /**
+     * @param agent agent the phase ran on
+     * @param start System.nanoTime() when the phase started
+     */
+    void record(Phase phase, InetAddress agent, long start) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        global.get(phase).record(micros);
+        if (agent != null) {
+            perAgent.computeIfAbsent(agent, k -> newHistograms()).get(phase)
+                    .record(micros);
+        }
+    }
+
+    /**
+     * A client was handed off, its association with the agent is awaited
+     *
+     * @param start System.nanoTime() when the handoff started
+     */
+    void handoffStarted(MACAddress client, InetAddress agent, long start) {
+        pending.put(client, new Pending(agent, start));
+    }
+
+    /**
+     * A client associated with an agent, ending its handoff if it was to that agent
+     */
+    void associated(MACAddress client, InetAddress agent) {
+        Pending p = pending.get(client);
+        if (p != null && p.agent.equals(agent) && pending.remove(client, p)) {
+            record(Phase.ASSOCIATION, agent, p.start);
+        }
+    }
+
+    /**
+     * The client left, stop waiting for it
+     */
+    void forget(MACAddress client) {
+        pending.remove(client);
+    }
+
+    /**
+     * @return histograms of every phase, over all handoffs and per agent, in microseconds
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("global", toMap(global));
+        Map<String, Object> agents = new TreeMap<>();
+        for (Map.Entry<InetAddress, Map<Phase, LatencyHistogram>> e : perAgent
+                .entrySet()) {
+            agents.put(e.getKey().getHostAddress(), toMap(e.getValue()));
+        }
+        m.put("agents", agents);
+        return m;
+    }
+
+    LatencyHistogram getHistogram(Phase phase) {
+        return global.get(phase);
+    }
+
+    LatencyHistogram getHistogram(Phase phase, InetAddress agent) {
+        Map<Phase, LatencyHistogram> h = perAgent.get(agent);
+        return h == null ? null : h.get(phase);
+    }
+
+    private static Map<String, Object> toMap(
+            Map<Phase, LatencyHistogram> histograms) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> e : histograms.entrySet()) {
+            m.put(e.getKey().name().toLowerCase(), e.getValue().toMap());
+        }
+        return m;
+    }
+
+    private static Map<Phase, LatencyHistogram> newHistograms() {
+        Map<Phase, LatencyHistogram> m = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            m.put(phase, new LatencyHistogram());
+        }
+        return m;
+    }
+}
@@ -5,10 +5,12 @@ import net.floodlightcontroller.util.MACAddress;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @JsonSerialize(using = OdinAgentSerializer.class)
 public interface IOdinAgent {
@@ -23,7 +25,7 @@ public interface IOdinAgent {
     /**
      * Get a list of VAPs that the agent is hosting
      *
-     * @return a list of OdinClient entities on the agent
+     * @return a list of OdinClient entities on the agent, or null if it could not be read
      */
     public Set<OdinClient> getLvapsRemote();
 
@@ -49,6 +51,71 @@ public interface IOdinAgent {
      */
     public Map<MACAddress, Map<String, String>> getRxStats();
 
+    /**
+     * Retrieve Tx-stats from the OdinAgent without blocking the caller.
+     *
+     * @return future completed with a map of stations' MAC addresses to a map of properties and
+     * values.
+     */
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getTxStatsAsync();
+
+    /**
+     * Retrieve Rx-stats from the OdinAgent without blocking the caller.
+     *
+     * @return future completed with a map of stations' MAC addresses to a map of properties and
+     * values.
+     */
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getRxStatsAsync();
+
+    /**
+     * Retrieve Tx-stats from the OdinAgent, parsed into typed columns.
+     *
+     * @return statistics of each station
+     */
+    public StationStats getTxStationStats();
+
+    /**
+     * Retrieve Rx-stats from the OdinAgent, parsed into typed columns. Stations from which only
+     * beacons were received are left out.
+     *
+     * @return statistics of each station
+     */
+    public StationStats getRxStationStats();
+
+    /**
+     * Retrieve typed Tx-stats from the OdinAgent without blocking the caller.
+     *
+     * @return future completed with the statistics of each station
+     */
+    public CompletableFuture<StationStats> getTxStationStatsAsync();
+
+    /**
+     * Retrieve typed Rx-stats from the OdinAgent without blocking the caller.
+     *
+     * @return future completed with the statistics of each station
+     */
+    public CompletableFuture<StationStats> getRxStationStatsAsync();
+
+    /**
+     * Invoke a read handler on the agent. Calls are pipelined over the agent's control socket,
+     * so any number of them may be in flight at the same time.
+     *
+     * @param handlerName OdinAgent read handler
+     * @return future completed with the read-handler string
+     */
+    public CompletableFuture<String> invokeReadHandlerAsync(String handlerName);
+
+    /**
+     * Invoke a write handler on the agent. Calls are pipelined over the agent's control socket,
+     * so any number of them may be in flight at the same time.
+     *
+     * @param handlerName OdinAgent write handler
+     * @param handlerText Write string
+     * @return future completed once the agent acknowledged the write
+     */
+    public CompletableFuture<Void> invokeWriteHandlerAsync(String handlerName,
+                                                           String handlerText);
+
     /**
      * To be called only once, intialises a connection to the OdinAgent's control socket. We let the
      * connection persist so as to save on setup/tear-down messages with every invocation of an
@@ -60,6 +127,11 @@ public interface IOdinAgent {
      */
     public int init(InetAddress host);
 
+    /**
+     * Close the connection to the OdinAgent's control socket. Calls made afterwards fail.
+     */
+    public void close();
+
     /**
      * Get the IOFSwitch for this agent
      *
@@ -81,6 +153,14 @@ public interface IOdinAgent {
      */
     public void removeClientLvap(OdinClient oc);
 
+    /**
+     * Remove several LVAPs from the AP corresponding to this agent, sending the commands together
+     *
+     * @param clients clients whose LVAPs are removed
+     * @return future completed once the agent acknowledged every removal
+     */
+    public CompletableFuture<Void> removeClientLvaps(Collection<OdinClient> clients);
+
     /**
      * Add an LVAP to the AP corresponding to this agent
      *
@@ -91,6 +171,14 @@ public interface IOdinAgent {
      */
     public void addClientLvap(OdinClient oc);
 
+    /**
+     * Add several LVAPs to the AP corresponding to this agent, sending the commands together
+     *
+     * @param clients clients whose LVAPs are added
+     * @return future completed once the agent acknowledged every LVAP
+     */
+    public CompletableFuture<Void> addClientLvaps(Collection<OdinClient> clients);
+
     /**
      * Update a virtual access point with possibly new IP, BSSID, or SSID
      *
@@ -104,6 +192,17 @@ public interface IOdinAgent {
     public void sendProbeResponse(MACAddress clientHwAddr, MACAddress bssid,
                                   Set<String> ssidLists);
 
+    /**
+     * Answer the probes of several clients, sending the commands together
+     *
+     * @param clientHwAddrs clients to answer
+     * @param bssids        BSSID of each client
+     * @param ssidLists     SSIDs to announce to every client
+     */
+    public void sendProbeResponses(List<MACAddress> clientHwAddrs,
+                                   List<MACAddress> bssids,
+                                   Set<String> ssidLists);
+
     /**
      * Returns timestamp of last heartbeat from agent
      *
@@ -174,6 +273,24 @@ public interface IOdinAgent {
      */
     public int scanClient(MACAddress clientHwAddr, int channel, int time);
 
+    /**
+     * Start scanning for a client without blocking the caller. The result is read with
+     * getScanClientResultAsync() once the scanning time is over.
+     *
+     * @param clientHwAddr MAC address of the client
+     * @param channel      channel to scan
+     * @return future completed once the agent accepted the request
+     */
+    public CompletableFuture<Void> requestScanClientAsync(
+            MACAddress clientHwAddr, int channel);
+
+    /**
+     * Read the result of the last client scan without blocking the caller
+     *
+     * @return future completed with the signal power of the client
+     */
+    public CompletableFuture<Integer> getScanClientResultAsync();
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -185,6 +302,16 @@ public interface IOdinAgent {
      */
     public int requestScannedStationsStats(int channel, String ssid);
 
+    /**
+     * Request scanned stations statistics from the agent without blocking the caller
+     *
+     * @param channel to scan
+     * @param ssid    to scan (always is *)
+     * @return future completed with 1 if the request is accepted, 0 if the agent is busy
+     */
+    public CompletableFuture<Integer> requestScannedStationsStatsAsync(
+            int channel, String ssid);
+
     /**
      * Retreive scanned stations statistics from the agent
      *
@@ -194,6 +321,32 @@ public interface IOdinAgent {
     public Map<MACAddress, Map<String, String>> getScannedStationsStats(
             String ssid);
 
+    /**
+     * Retrieve scanned stations statistics from the agent without blocking the caller
+     *
+     * @param ssid scanned SSID (* for all)
+     * @return future completed with the recorded statistics for each station
+     */
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getScannedStationsStatsAsync(
+            String ssid);
+
+    /**
+     * Retrieve scanned stations statistics from the agent, parsed into typed columns
+     *
+     * @param ssid scanned SSID (* for all)
+     * @return statistics of each scanned station
+     */
+    public StationStats getScannedStationStats(String ssid);
+
+    /**
+     * Retrieve typed scanned stations statistics from the agent without blocking the caller
+     *
+     * @param ssid scanned SSID (* for all)
+     * @return future completed with the statistics of each scanned station
+     */
+    public CompletableFuture<StationStats> getScannedStationStatsAsync(
+            String ssid);
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -219,6 +372,26 @@ public interface IOdinAgent {
      */
     public int getTxPower();
 
+    /**
+     * Read the channel and tx power from the agent now, instead of waiting for the cached values
+     * to expire. Useful after they were changed outside the master.
+     */
+    public void refreshRadioConfig();
+
+    /**
+     * Set for how long the channel and tx power are served from memory
+     *
+     * @param ttl time in ms, 0 to always read them from the agent
+     */
+    public void setRadioConfigTtl(long ttl);
+
+    /**
+     * Set where to record the round trips of the read handlers
+     *
+     * @param metrics metrics of the master, null to record nothing
+     */
+    public void setMetrics(OdinMetrics metrics);
+
     /**
      * Returns the Detector IP address added in poolfile
      *
@@ -234,6 +407,13 @@ public interface IOdinAgent {
      */
     public String getScannedStaRssi();
 
+    /**
+     * Retrieve scanned wi5 stations rssi from the agent without blocking the caller
+     *
+     * @return future completed with the rssi of each wi5 station
+     */
+    public CompletableFuture<String> getScannedStaRssiAsync();
+
     /**
      * Retrieves historical RSSI value for all stations
      *
@@ -8,6 +8,7 @@ import net.floodlightcontroller.odin.master.OdinMaster.SmartApSelectionParams;
 import net.floodlightcontroller.util.MACAddress;
 
 import java.net.InetAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,6 +24,15 @@ interface IOdinMasterToApplicationInterface {
     void handoffClientToAp(String pool, MACAddress staHwAddr,
                            InetAddress newApIpAddr);
 
+    /**
+     * VAP-Handoff several clients at once, each to its own AP. Cheaper than one handoffClientToAp()
+     * per client when many of them move together.
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param handoffs InetAddress of the future agent of each client
+     */
+    void handoffClientsToAps(String pool, Map<MACAddress, InetAddress> handoffs);
+
     /**
      * @param pool Pool that the invoking application corresponds to
      * @return a map of OdinClient objects keyed by HW Addresses
@@ -65,6 +75,26 @@ interface IOdinMasterToApplicationInterface {
     Map<MACAddress, Map<String, String>> getRxStatsFromAgent(String pool,
                                                              InetAddress agentAddr);
 
+    /**
+     * Retrieve typed TxStats from the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    StationStats getTxStationStatsFromAgent(String pool,
+                                            InetAddress agentAddr);
+
+    /**
+     * Retrieve typed RxStats from the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    StationStats getRxStationStatsFromAgent(String pool,
+                                            InetAddress agentAddr);
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -89,6 +119,18 @@ interface IOdinMasterToApplicationInterface {
     Map<MACAddress, Map<String, String>> getScannedStationsStatsFromAgent(
             String pool, InetAddress agentAddr, String ssid);
 
+    /**
+     * Retreive typed scanned stations statistics from the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @param ssid      Network name
+     * @return statistics of each scanned station
+     */
+    StationStats getScannedStationStatsFromAgent(String pool,
+                                                 InetAddress agentAddr,
+                                                 String ssid);
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -272,6 +314,80 @@ interface IOdinMasterToApplicationInterface {
      */
     String getScannedStaRssiFromAgent(String pool, InetAddress agentAddr);
 
+    /**
+     * Scan several channels with several agents at once, and retrieve the rssi of the wi5
+     * stations each agent heard on each channel. Agents that are busy or do not answer in time
+     * are left out of the result.
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return rssi rows per agent and channel
+     */
+    ScanResult scanStaRssiFromAgents(String pool, InetAddress[] agents,
+                                     int[] channels, String ssid,
+                                     long scanTime, long slack);
+
+    /**
+     * Sweep several channels with several agents at once, each agent starting on a different
+     * channel, and retrieve the statistics of the stations each agent heard on each channel.
+     * Agents that are busy or do not answer in time are left out of the result.
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan (* for all)
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return station statistics per channel and agent, with the time each was collected at
+     */
+    InterferenceMatrix sweepStationStatsFromAgents(String pool,
+                                                   InetAddress[] agents,
+                                                   int[] channels, String ssid,
+                                                   long scanTime, long slack);
+
+    /**
+     * Scan for a client with several agents at once
+     *
+     * @param pool         Pool that the invoking application corresponds to
+     * @param agents       agents to scan with
+     * @param clientHwAddr MAC address of the client
+     * @param channel      Channel number
+     * @param time         Scanning time
+     * @return signal power each agent heard the client with, missing for agents that failed
+     */
+    Map<InetAddress, Integer> scanClientFromAgents(String pool,
+                                                   InetAddress[] agents,
+                                                   MACAddress clientHwAddr,
+                                                   int channel, int time);
+
+    /**
+     * Report the signal an agent heard the measurement beacon of another agent with, to learn
+     * which agents are neighbors
+     *
+     * @param pool          Pool that the invoking application corresponds to
+     * @param beaconAgent   InetAddress of the agent that sent the beacon
+     * @param scanningAgent InetAddress of the agent that heard it
+     * @param rssi          average signal of the beacon in dBm
+     */
+    void reportBeaconRssi(String pool, InetAddress beaconAgent,
+                          InetAddress scanningAgent, double rssi);
+
+    /**
+     * Get the agents closest to an agent, the likeliest next APs of its clients, learnt from
+     * measurement beacons and past handoffs
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @param k         number of neighbors wanted
+     * @return up to k neighbors, best first, empty while nothing is known about the agent
+     */
+    List<InetAddress> getNeighborAgents(String pool, InetAddress agentAddr,
+                                        int k);
+
     /**
      * Retreive associated wi5 stations in the agent
      *
@@ -280,6 +396,22 @@ interface IOdinMasterToApplicationInterface {
      */
     Set<OdinClient> getClientsFromAgent(String pool, InetAddress agentAddr);
 
+    /**
+     * Retrieve the number of associated wi5 stations in the agent
+     *
+     * @param agentAddr InetAddress of the agent
+     * @return number of OdinClient associated in the agent
+     */
+    int getClientCountFromAgent(String pool, InetAddress agentAddr);
+
+    /**
+     * Retrieve wi5 stations associated to agents on a channel
+     *
+     * @param channel the channel
+     * @return Set of OdinClient associated in agents on that channel
+     */
+    Set<OdinClient> getClientsOnChannel(String pool, int channel);
+
     /**
      * Return Vip AP IP address
      *
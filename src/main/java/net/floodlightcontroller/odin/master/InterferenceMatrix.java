@@ -0,0 +1,114 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.odin.master.ScanResult.Status;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Stations each agent heard on each channel during a sweep, indexed by the position of the channel
+ * (row) and of the agent (column) in the arrays the sweep was started with. Every result carries
+ * the time it was collected at, since agents go through the channels in different orders.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class InterferenceMatrix {
+
+    private final InetAddress[] agents;
+    private final int[] channels;
+    private final StationStats[][] stats;
+    private final long[][] collectedAt;
+    private final Status[][] status;
+    private boolean sealed = false;
+
+    InterferenceMatrix(InetAddress[] agents, int[] channels) {
+        this.agents = agents.clone();
+        this.channels = channels.clone();
+        stats = new StationStats[channels.length][agents.length];
+        collectedAt = new long[channels.length][agents.length];
+        status = new Status[channels.length][agents.length];
+        for (int c = 0; c < channels.length; c++) {
+            Arrays.fill(status[c], channels[c] == 0 ? Status.SKIPPED :
+                                   Status.TIMED_OUT);
+        }
+    }
+
+    /**
+     * Record the result of one agent on one channel. Ignored once the sweep is over.
+     *
+     * @param at time the stats were collected, in ms since epoch
+     */
+    synchronized void set(int channel, int agent, Status s, StationStats value,
+                          long at) {
+        if (!sealed) {
+            status[channel][agent] = s;
+            stats[channel][agent] = value;
+            collectedAt[channel][agent] = at;
+        }
+    }
+
+    /**
+     * End the sweep, whatever is still missing stays timed out.
+     */
+    synchronized void seal() {
+        sealed = true;
+    }
+
+    public int getAgentCount() {
+        return agents.length;
+    }
+
+    public InetAddress getAgent(int agent) {
+        return agents[agent];
+    }
+
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    public int getChannel(int channel) {
+        return channels[channel];
+    }
+
+    /**
+     * @return stations the agent heard on the channel, null if there is no result
+     */
+    public synchronized StationStats getStats(int channel, int agent) {
+        return stats[channel][agent];
+    }
+
+    /**
+     * @return time the result was collected at in ms since epoch, 0 if there is no result
+     */
+    public synchronized long getCollectedAt(int channel, int agent) {
+        return collectedAt[channel][agent];
+    }
+
+    public synchronized Status getStatus(int channel, int agent) {
+        return status[channel][agent];
+    }
+
+    /**
+     * @return number of channel/agent pairs that were requested but have no result
+     */
+    public synchronized int getMissingCount() {
+        int missing = 0;
+        for (Status[] row : status) {
+            for (Status s : row) {
+                if (s != Status.OK && s != Status.SKIPPED) {
+                    missing++;
+                }
+            }
+        }
+        return missing;
+    }
+
+    @Override public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < channels.length; c++) {
+            sb.append(channels[c]).append(' ').append(Arrays.toString(status[c]))
+              .append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package net.floodlightcontroller.odin.master;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in microseconds, in the manner of HdrHistogram: buckets are linear within
+ * each power of two, so every recorded value is kept with a relative error below 1/SUB_BUCKETS
+ * whatever its magnitude. Recording is lock-free and allocation-free, the count and sum striped
+ * across threads, cheap enough to stay on in production.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 40; // Up to 2^44 us, about 200 days
+    private static final int BUCKETS = (MAGNITUDES + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param micros latency in microseconds, negative values count as 0
+     */
+    void record(long micros) {
+        long v = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return count, mean, max and the usual percentiles, in microseconds
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", getCount());
+        m.put("mean", Math.round(getMean()));
+        m.put("p50", getValueAtPercentile(50));
+        m.put("p90", getValueAtPercentile(90));
+        m.put("p99", getValueAtPercentile(99));
+        m.put("p999", getValueAtPercentile(99.9));
+        m.put("max", getMax());
+        return m;
+    }
+
+    private static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        // Magnitude counted from the top SUB_BUCKET_BITS + 1 bits, which pick the sub-bucket
+        int magnitude = 64 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+        if (magnitude > MAGNITUDES) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (v >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+    }
+}
@@ -0,0 +1,185 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.ServerResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Base of the resources listing clients and agents, for dashboards that poll them.
+ * <p>
+ * Listings are written to the response as they are read from the master's indexes, without
+ * building the whole list first, and carry an entity tag taken from the version of the state they
+ * list: a poll sending it back in If-None-Match gets a 304 while nothing changed, at the cost of
+ * reading a counter. A listing is paginated with ?limit=n, then resumed with ?after=&lt;next&gt;,
+ * the cursor returned along with the page; ?fields=a,b selects the fields of the items.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+abstract class ListingResource extends ServerResource {
+
+    static final int MAX_LIMIT = 1000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Writes the listing
+     */
+    interface Body {
+        void write(JsonGenerator jgen) throws IOException;
+    }
+
+    @Override protected void doInit() throws ResourceException {
+        // The tag is checked before the listing is written, not after
+        setConditional(false);
+    }
+
+    protected OdinMaster getMaster() {
+        return (OdinMaster) getContext().getAttributes()
+                                        .get(OdinMaster.class
+                                                     .getCanonicalName());
+    }
+
+    /**
+     * @return the number of items per page, 0 if the listing is not paginated
+     */
+    protected int getLimit() {
+        String limit = getQuery().getFirstValue("limit");
+        if (limit == null) {
+            return 0;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                                        "Invalid limit " + limit);
+        }
+    }
+
+    /**
+     * @return the cursor the listing resumes after, null to start from the beginning
+     */
+    protected String getAfter() {
+        return getQuery().getFirstValue("after");
+    }
+
+    /**
+     * @return the fields selected, null for all of them
+     */
+    protected Set<String> getFields() {
+        String fields = getQuery().getFirstValue("fields");
+        return fields == null ? null :
+               new HashSet<>(Arrays.asList(fields.split(",")));
+    }
+
+    /**
+     * List the clients of every pool, by hw address. Unpaginated, the clients are a JSON array, or
+     * an object keyed by hw address for connected clients only, as they always were; a page is
+     * {"clients": [...], "next": cursor}, next being null on the last page.
+     *
+     * @param connectedOnly whether to skip the clients without an IP address
+     */
+    protected Representation clients(final boolean connectedOnly) {
+        final OdinMaster master = getMaster();
+        final int limit = getLimit();
+        final Set<String> fields = getFields();
+        final String after = getAfter();
+        final MACAddress afterAddr;
+        try {
+            afterAddr = after == null ? null : MACAddress.valueOf(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                                        "Invalid cursor " + after);
+        }
+        final boolean paginated = limit > 0 || after != null;
+
+        // The tag is read before the clients, so that it is never newer than the listing
+        return json(master.getClientsTag(), new Body() {
+            @Override public void write(JsonGenerator jgen)
+                    throws IOException {
+                boolean keyed = connectedOnly && !paginated;
+                if (paginated) {
+                    jgen.writeStartObject();
+                    jgen.writeArrayFieldStart("clients");
+                } else if (keyed) {
+                    jgen.writeStartObject();
+                } else {
+                    jgen.writeStartArray();
+                }
+
+                int count = 0;
+                OdinClient last = null;
+                for (OdinClient client : master.getClientsAfter(
+                        PoolManager.GLOBAL_POOL, afterAddr)) {
+                    if (connectedOnly && client.getIpAddress()
+                                               .getHostAddress()
+                                               .equals("0.0.0.0")) {
+                        continue;
+                    }
+                    if (keyed) {
+                        jgen.writeFieldName(client.getMacAddress().toString());
+                    }
+                    OdinClientSerializer.write(client, jgen, fields);
+                    last = client;
+                    if (++count == limit) {
+                        break;
+                    }
+                }
+
+                if (paginated) {
+                    jgen.writeEndArray();
+                    // A full page may be followed by an empty one
+                    String next = limit > 0 && count == limit ?
+                                  last.getMacAddress().toString() : null;
+                    jgen.writeStringField("next", next);
+                    jgen.writeEndObject();
+                } else if (keyed) {
+                    jgen.writeEndObject();
+                } else {
+                    jgen.writeEndArray();
+                }
+            }
+        });
+    }
+
+    /**
+     * Answer with a listing, or with a 304 if the client already has this version of it
+     *
+     * @param tag  version of the state listed
+     * @param body writes the listing
+     */
+    protected Representation json(String tag, final Body body) {
+        for (Tag t : getRequest().getConditions().getNoneMatch()) {
+            if (Tag.ALL.equals(t) || tag.equals(t.getName())) {
+                setStatus(Status.REDIRECTION_NOT_MODIFIED);
+                return null;
+            }
+        }
+
+        Representation r = new OutputRepresentation(
+                MediaType.APPLICATION_JSON) {
+            @Override public void write(OutputStream out) throws IOException {
+                JsonGenerator jgen = JSON_FACTORY
+                        .createJsonGenerator(out, JsonEncoding.UTF8);
+                body.write(jgen);
+                jgen.flush();
+            }
+        };
+        r.setTag(new Tag(tag, false));
+        return r;
+    }
+}
@@ -0,0 +1,19 @@
+package net.floodlightcontroller.odin.master;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+import java.util.Map;
+
+public class MetricsResource extends ServerResource {
+
+    /**
+     * @return operational metrics of the master, round trips in microseconds
+     */
+    @Get("json") public Map<String, Object> retreive() {
+        OdinMaster oc = (OdinMaster) getContext().getAttributes().
+                get(OdinMaster.class.getCanonicalName());
+
+        return oc.getMetrics().toMap();
+    }
+}
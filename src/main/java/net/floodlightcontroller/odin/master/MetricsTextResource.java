@@ -0,0 +1,21 @@
+package net.floodlightcontroller.odin.master;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+public class MetricsTextResource extends ServerResource {
+
+    /**
+     * @return operational metrics of the master, for Prometheus to scrape
+     */
+    @Get public Representation retreive() {
+        OdinMaster oc = (OdinMaster) getContext().getAttributes().
+                get(OdinMaster.class.getCanonicalName());
+
+        return new StringRepresentation(oc.getMetrics().toText(),
+                                        MediaType.TEXT_PLAIN);
+    }
+}
@@ -0,0 +1,36 @@
+package net.floodlightcontroller.odin.master;
+
+import java.net.InetAddress;
+
+/**
+ * Triggers an application can register with {@link OdinApplication#addNetworkEventListener}.
+ * Events of every pool are reported, and only the ones of interest need to be overridden.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public interface NetworkEventListener {
+
+    /**
+     * A client was heard for the first time
+     */
+    default void clientAdded(OdinClient client) {
+    }
+
+    /**
+     * A client left the network
+     */
+    default void clientRemoved(OdinClient client) {
+    }
+
+    /**
+     * An agent connected to the master
+     */
+    default void agentUp(InetAddress agentAddr) {
+    }
+
+    /**
+     * An agent stopped answering, or its switch disconnected
+     */
+    default void agentDown(InetAddress agentAddr) {
+    }
+}
@@ -12,16 +12,17 @@ import org.openflow.util.U16;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * OdinAgent class. Wi5 NOTE: we introduce a new variable channel to map the physical Wi-Fi channel
@@ -35,15 +36,13 @@ import java.util.concurrent.ConcurrentSkipListSet;
     protected static Logger log = LoggerFactory.getLogger(OdinAgent.class);
 
     // Connect to control socket on OdinAgent
-    private Socket odinAgentSocket = null;
-    private PrintWriter outBuf;
-    private BufferedReader inBuf;
+    private OdinAgentControlChannel controlChannel;
+    private String handlerElement = ODIN_AGENT_ELEMENT;
     private IOFSwitch ofSwitch;
     private InetAddress ipAddress;
     private long lastHeard;
-    private int channel;
     private int lastScan;
-    private int txpower;
+    private volatile OdinMetrics metrics;
 
     // The weighted RSSI value for each client MAC address heard by the AP
     private ConcurrentHashMap<MACAddress, Double> weightedRssi = new ConcurrentHashMap<>();
@@ -82,6 +81,12 @@ import java.util.concurrent.ConcurrentSkipListSet;
     private final int RX_STAT_NUM_PROPERTIES = 8;
     private final int MTX_DISTANCE_RX_STAT_NUM_PROPERTIES = 1;
     private final int ODIN_AGENT_PORT = 6777;
+    private final long READ_HANDLER_TIMEOUT = 5000; // ms
+
+    // Channel and tx power, served from memory
+    private final AgentRadioConfig radioConfig = new AgentRadioConfig(
+            this::invokeReadHandlerAsync, READ_HANDLER_CHANNEL,
+            READ_HANDLER_TXPOWER, READ_HANDLER_TIMEOUT);
 
     /**
      * Probably need a better identifier
@@ -115,14 +120,14 @@ import java.util.concurrent.ConcurrentSkipListSet;
      * an agent registration to shield against master failures. The assumption is that when this is
      * invoked, the controller has never heard about the agent before.
      *
-     * @return a list of OdinClient entities on the agent
+     * @return a list of OdinClient entities on the agent, or null if the read failed
      */
     public Set<OdinClient> getLvapsRemote() {
         ConcurrentSkipListSet<OdinClient> clients = new ConcurrentSkipListSet<OdinClient>();
         String handle = invokeReadHandler(READ_HANDLER_TABLE);
 
         if (handle == null) {
-            return clients; // empty list
+            return null; // Not the same as an agent hosting no LVAP
         }
 
         String tableList[] = handle.split("\n");
@@ -183,46 +188,74 @@ import java.util.concurrent.ConcurrentSkipListSet;
      * @return A map of stations' MAC addresses to a map of properties and values.
      */
     public Map<MACAddress, Map<String, String>> getTxStats() {
-        String stats = invokeReadHandler(READ_HANDLER_TXSTATS);
-
-        Map<MACAddress, Map<String, String>> ret = new HashMap<MACAddress, Map<String, String>>();
+        return parseStationStats(invokeReadHandler(READ_HANDLER_TXSTATS),
+                                 TX_STAT_NUM_PROPERTIES, false);
+    }
 
-        /*
-         * We basically get rows like this MAC_ADDR1 prop1:<value> prop2:<value>
-         * MAC_ADDR2 prop1:<value> prop2:<value>
-         */
-        String arr[] = stats.split("\n");
-        for (String elem : arr) {
-            String row[] = elem.split(" ");
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getTxStatsAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_TXSTATS).thenApply(
+                stats -> parseStationStats(stats, TX_STAT_NUM_PROPERTIES,
+                                           false));
+    }
 
-            if (row.length != TX_STAT_NUM_PROPERTIES + 1) {
-                continue;
-            }
+    /**
+     * Retrive Rx-stats from the OdinAgent.
+     *
+     * @return A map of stations' MAC addresses to a map of properties and values.
+     */
+    public Map<MACAddress, Map<String, String>> getRxStats() {
+        return parseStationStats(invokeReadHandler(READ_HANDLER_RXSTATS),
+                                 RX_STAT_NUM_PROPERTIES, true);
+    }
 
-            MACAddress eth = MACAddress.valueOf(row[0].toLowerCase());
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getRxStatsAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_RXSTATS).thenApply(
+                stats -> parseStationStats(stats, RX_STAT_NUM_PROPERTIES,
+                                           true));
+    }
 
-            Map<String, String> innerMap = new HashMap<String, String>();
+    @Override public StationStats getTxStationStats() {
+        return StationStats.parse(invokeReadHandler(READ_HANDLER_TXSTATS),
+                                  TX_STAT_NUM_PROPERTIES, false);
+    }
 
-            for (int i = 1; i < TX_STAT_NUM_PROPERTIES + 1; i += 1) {
-                innerMap.put(row[i].split(":")[0], row[i].split(":")[1]);
-            }
+    @Override public StationStats getRxStationStats() {
+        return StationStats.parse(invokeReadHandler(READ_HANDLER_RXSTATS),
+                                  RX_STAT_NUM_PROPERTIES, true);
+    }
 
-            ret.put(eth, Collections.unmodifiableMap(innerMap));
-        }
+    @Override
+    public CompletableFuture<StationStats> getTxStationStatsAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_TXSTATS).thenApply(
+                stats -> StationStats.parse(stats, TX_STAT_NUM_PROPERTIES,
+                                            false));
+    }
 
-        return Collections.unmodifiableMap(ret);
+    @Override
+    public CompletableFuture<StationStats> getRxStationStatsAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_RXSTATS).thenApply(
+                stats -> StationStats.parse(stats, RX_STAT_NUM_PROPERTIES,
+                                            true));
     }
 
     /**
-     * Retrive Rx-stats from the OdinAgent.
+     * Parse the rows returned by the stats read handlers.
      *
+     * @param stats         read-handler string
+     * @param numProperties number of properties expected on each row
+     * @param skipBeacons   whether to drop rows with no data packets (i.e. beacons)
      * @return A map of stations' MAC addresses to a map of properties and values.
      */
-    public Map<MACAddress, Map<String, String>> getRxStats() {
-        String stats = invokeReadHandler(READ_HANDLER_RXSTATS);
-
+    private static Map<MACAddress, Map<String, String>> parseStationStats(
+            String stats, int numProperties, boolean skipBeacons) {
         Map<MACAddress, Map<String, String>> ret = new HashMap<MACAddress, Map<String, String>>();
 
+        if (stats == null) {
+            return Collections.unmodifiableMap(ret);
+        }
+
         /*
          * We basically get rows like this MAC_ADDR1 prop1:<value> prop2:<value>
          * MAC_ADDR2 prop1:<value> prop2:<value>
@@ -231,10 +264,10 @@ import java.util.concurrent.ConcurrentSkipListSet;
         for (String elem : arr) {
             String row[] = elem.split(" ");
 
-            if (row.length != RX_STAT_NUM_PROPERTIES + 1) {
+            if (row.length != numProperties + 1) {
                 continue;
             }
-            if (row[1].split(":")[1].equals("0")) { // Avoid beacons
+            if (skipBeacons && row[1].split(":")[1].equals("0")) {
                 continue;
             }
 
@@ -242,8 +275,9 @@ import java.util.concurrent.ConcurrentSkipListSet;
 
             Map<String, String> innerMap = new HashMap<String, String>();
 
-            for (int i = 1; i < RX_STAT_NUM_PROPERTIES + 1; i += 1) {
-                innerMap.put(row[i].split(":")[0], row[i].split(":")[1]);
+            for (int i = 1; i < numProperties + 1; i += 1) {
+                String property[] = row[i].split(":");
+                innerMap.put(property[0], property[1]);
             }
 
             ret.put(eth, Collections.unmodifiableMap(innerMap));
@@ -365,16 +399,12 @@ import java.util.concurrent.ConcurrentSkipListSet;
 		}*/
 
         try {
-            odinAgentSocket = new Socket(host.getHostAddress(),
-                                         ODIN_AGENT_PORT);
-            outBuf = new PrintWriter(odinAgentSocket.getOutputStream(),
-                                     true);
-            inBuf = new BufferedReader(
-                    new InputStreamReader(odinAgentSocket.getInputStream()));
+            controlChannel = OdinAgentControlChannel
+                    .open(new InetSocketAddress(host, ODIN_AGENT_PORT));
             ipAddress = host;
-        } catch (UnknownHostException e) {
-            e.printStackTrace();
-            return -1;
+            if (host.getHostAddress().equals(this.detectionAgentIP)) {
+                handlerElement = DETECTION_AGENT_ELEMENT;
+            }
         } catch (IOException e) {
             e.printStackTrace();
             return -1;
@@ -383,6 +413,12 @@ import java.util.concurrent.ConcurrentSkipListSet;
         return 0;
     }
 
+    @Override public void close() {
+        if (controlChannel != null) {
+            controlChannel.close();
+        }
+    }
+
     /**
      * Get the IOFSwitch for this agent
      *
@@ -412,6 +448,24 @@ import java.util.concurrent.ConcurrentSkipListSet;
         clientList.remove(oc);
     }
 
+    /**
+     * Remove several virtual access points from the AP corresponding to this agent, with the
+     * commands sent together
+     *
+     * @param clients OdinClient entities
+     * @return future completed once the agent acknowledged every removal
+     */
+    public CompletableFuture<Void> removeClientLvaps(
+            Collection<OdinClient> clients) {
+        List<String> args = new ArrayList<>(clients.size());
+        for (OdinClient oc : clients) {
+            args.add(oc.getMacAddress().toString());
+        }
+        clientList.removeAll(clients);
+        return controlChannel.writeAll(
+                handlerElement + "." + WRITE_HANDLER_REMOVE_VAP, args);
+    }
+
     /**
      * Add a virtual access point to the AP corresponding to this agent
      *
@@ -420,17 +474,41 @@ import java.util.concurrent.ConcurrentSkipListSet;
     public void addClientLvap(OdinClient oc) {
         assert (oc.getLvap() != null);
 
-        String ssidList = "";
+        invokeWriteHandler(WRITE_HANDLER_ADD_VAP, lvapArgs(oc));
+        clientList.add(oc);
+    }
 
-        for (String ssid : oc.getLvap().getSsids()) {
-            ssidList += " " + ssid;
+    /**
+     * Add several virtual access points to the AP corresponding to this agent, with the commands
+     * sent together
+     *
+     * @param clients OdinClient entities
+     * @return future completed once the agent acknowledged every LVAP
+     */
+    public CompletableFuture<Void> addClientLvaps(
+            Collection<OdinClient> clients) {
+        List<String> args = new ArrayList<>(clients.size());
+        for (OdinClient oc : clients) {
+            assert (oc.getLvap() != null);
+            args.add(lvapArgs(oc));
         }
+        clientList.addAll(clients);
+        return controlChannel.writeAll(
+                handlerElement + "." + WRITE_HANDLER_ADD_VAP, args);
+    }
 
-        invokeWriteHandler(WRITE_HANDLER_ADD_VAP,
-                           oc.getMacAddress().toString() + " " + oc
-                                   .getIpAddress().getHostAddress() + " "
-                           + oc.getLvap().getBssid().toString() + ssidList);
-        clientList.add(oc);
+    /**
+     * @return arguments of add_vap and set_vap for a client: MAC, IP, BSSID and SSIDs
+     */
+    private static String lvapArgs(OdinClient oc) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(oc.getMacAddress()).append(' ')
+          .append(oc.getIpAddress().getHostAddress()).append(' ')
+          .append(oc.getLvap().getBssid());
+        for (String ssid : oc.getLvap().getSsids()) {
+            sb.append(' ').append(ssid);
+        }
+        return sb.toString();
     }
 
     /**
@@ -441,16 +519,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
     public void updateClientLvap(OdinClient oc) {
         assert (oc.getLvap() != null);
 
-        String ssidList = "";
-
-        for (String ssid : oc.getLvap().getSsids()) {
-            ssidList += " " + ssid;
-        }
-
-        invokeWriteHandler(WRITE_HANDLER_SET_VAP,
-                           oc.getMacAddress().toString() + " " + oc
-                                   .getIpAddress().getHostAddress() + " "
-                           + oc.getLvap().getBssid().toString() + ssidList);
+        invokeWriteHandler(WRITE_HANDLER_SET_VAP, lvapArgs(oc));
     }
 
     /**
@@ -463,75 +532,85 @@ import java.util.concurrent.ConcurrentSkipListSet;
     }
 
     /**
-     * Internal method to invoke a read handler on the OdinAgent
+     * Internal method to invoke a read handler on the OdinAgent, waiting for its reply
      *
      * @param handlerName OdinAgent handler
-     * @return read-handler string
-     */
-    private synchronized String invokeReadHandler(String handlerName) {
-        //log.info("[invokeReadHandler] Begin " + handlerName);
-        //log.info("[invokeReadHandler] IP address of detection agent is " + this.detectionAgentIP);
-        //log.info("[invokeReadHandler] IP address of agent is " + this.ipAddress);
-        if (this.ipAddress.getHostAddress().equals(this.detectionAgentIP)) {
-            outBuf.println(
-                    "READ " + DETECTION_AGENT_ELEMENT + "." + handlerName);
-        } else {
-            outBuf.println("READ " + ODIN_AGENT_ELEMENT + "." + handlerName);
-        }
-
-        String line = "";
-
+     * @return read-handler string, or null if the call failed
+     */
+    private String invokeReadHandler(String handlerName) {
         try {
-            String data = null;
-            while ((data = inBuf.readLine()).contains("DATA") == false) {
-                // skip all the crap that the Click control
-                // socket tells us
-            }
-            int numBytes = Integer.parseInt(data.split(" ")[1]);
-
-            while (numBytes != 0) {
-                numBytes--;
-                char[] buf = new char[1];
-                inBuf.read(buf);
-                line = line + new String(buf);
-            }
-            //log.info("[invokeReadHandler] End " + handlerName + line);
-            return line;
-        } catch (IOException e) {
-            e.printStackTrace();
+            return invokeReadHandlerAsync(handlerName)
+                    .get(READ_HANDLER_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Read handler " + handlerName + " failed on agent "
+                      + ipAddress + ": " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            log.error("Read handler " + handlerName + " timed out on agent "
+                      + ipAddress);
         }
-        //log.info("[invokeReadHandler] End " + handlerName);
         return null;
     }
 
     /**
-     * Internal method to invoke a write handler of the OdinAgent
+     * Internal method to invoke a write handler of the OdinAgent. The write is pipelined and
+     * does not wait for the agent's acknowledgement.
      *
      * @param handlerName OdinAgent write handler name
      * @param handlerText Write string
      */
-    private synchronized void invokeWriteHandler(String handlerName,
-                                                 String handlerText) {
-        //log.info("[invokeWriteHandler] Begin " + handlerName);
-        //log.info("[invokeWriteHandler] IP address of detection agent is " + this.detectionAgentIP);
-        //log.info("[invokeWriteHandler] IP address of agent is " + this.ipAddress);
-        if (this.ipAddress.getHostAddress().equals(this.detectionAgentIP)) {
-            outBuf.println(
-                    "WRITE " + DETECTION_AGENT_ELEMENT + "." + handlerName
-                    + " " + handlerText);
-        } else {
-            outBuf.println(
-                    "WRITE " + ODIN_AGENT_ELEMENT + "." + handlerName + " "
-                    + handlerText);
+    private void invokeWriteHandler(String handlerName, String handlerText) {
+        invokeWriteHandlerAsync(handlerName, handlerText);
+    }
+
+    @Override
+    public CompletableFuture<String> invokeReadHandlerAsync(
+            final String handlerName) {
+        final OdinMetrics m = metrics;
+        final long start = System.nanoTime();
+        CompletableFuture<String> f = controlChannel
+                .read(handlerElement + "." + handlerName);
+        if (m != null) {
+            f.whenComplete((v, t) -> m.controlRead(ipAddress, handlerName,
+                                                   start, t == null));
         }
+        return f;
+    }
 
-        //outBuf.println("WRITE " + ODIN_AGENT_ELEMENT + "." + handlerName + " " + handlerText);
-        //log.info("[invokeWriteHandler] End " + handlerName);
+    @Override
+    public CompletableFuture<Void> invokeWriteHandlerAsync(String handlerName,
+                                                           String handlerText) {
+        return controlChannel
+                .write(handlerElement + "." + handlerName, handlerText);
     }
 
     @Override
     public void sendProbeResponse(MACAddress clientHwAddr, MACAddress bssid,
                                   Set<String> ssidList) {
+        invokeWriteHandler(WRITE_HANDLER_SEND_PROBE_RESPONSE,
+                           probeResponseArgs(clientHwAddr, bssid, ssidList));
+    }
+
+    /**
+     * Answer the probes of several clients, the commands sent together
+     */
+    @Override
+    public void sendProbeResponses(List<MACAddress> clientHwAddrs,
+                                   List<MACAddress> bssids,
+                                   Set<String> ssidList) {
+        List<String> args = new ArrayList<>(clientHwAddrs.size());
+        for (int i = 0; i < clientHwAddrs.size(); i++) {
+            args.add(probeResponseArgs(clientHwAddrs.get(i), bssids.get(i),
+                                       ssidList));
+        }
+        controlChannel.writeAll(
+                handlerElement + "." + WRITE_HANDLER_SEND_PROBE_RESPONSE, args);
+    }
+
+    private static String probeResponseArgs(MACAddress clientHwAddr,
+                                            MACAddress bssid,
+                                            Set<String> ssidList) {
         StringBuilder sb = new StringBuilder();
         sb.append(clientHwAddr);
         sb.append(" ");
@@ -541,27 +620,30 @@ import java.util.concurrent.ConcurrentSkipListSet;
             sb.append(" ");
             sb.append(ssid);
         }
-
-        invokeWriteHandler(WRITE_HANDLER_SEND_PROBE_RESPONSE, sb.toString());
+        return sb.toString();
     }
 
     @Override public void setChannel(int channel) {
         //Wi5- TODO: We should announce to the APs the change of the channel. This need further discussion
-        if (channel != this.channel) {
-            this.channel = channel;
-        }
         String chan = Integer.toString(channel);
         invokeWriteHandler(WRITE_HANDLER_CHANNEL, chan);
+        radioConfig.setChannel(channel);
     }
 
     @Override public int getChannel() {
-        int chan = 0;
-        String handler = invokeReadHandler(READ_HANDLER_CHANNEL);
-        chan = Integer.parseInt(handler.trim());
-        if (chan != this.channel) {
-            this.channel = chan;
-        }
-        return this.channel;
+        return radioConfig.getChannel();
+    }
+
+    @Override public void refreshRadioConfig() {
+        radioConfig.refresh();
+    }
+
+    @Override public void setRadioConfigTtl(long ttl) {
+        radioConfig.setTtl(ttl);
+    }
+
+    @Override public void setMetrics(OdinMetrics metrics) {
+        this.metrics = metrics;
     }
 
     @Override
@@ -607,12 +689,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
 
     @Override
     public int scanClient(MACAddress clientHwAddr, int channel, int time) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(clientHwAddr);
-        sb.append(" ");
-        sb.append(channel);
-        log.debug("Sending WRITE_HANDLER_SCAN_CLIENT " + sb.toString());
-        invokeWriteHandler(WRITE_HANDLER_SCAN_CLIENT, sb.toString());
+        requestScanClientAsync(clientHwAddr, channel);
         try {
             Thread.sleep(time);
         } catch (InterruptedException e) {
@@ -620,11 +697,30 @@ import java.util.concurrent.ConcurrentSkipListSet;
         }
         log.debug("Sending READ_HANDLER_SCAN_CLIENT");
         String handler = invokeReadHandler(READ_HANDLER_SCAN_CLIENT);
+        if (handler == null) {
+            return 0; // Nothing heard from the agent
+        }
         lastScan = Integer.parseInt(handler.trim());
         log.debug("READ_HANDLER_SCAN_CLIENT " + lastScan);
         return lastScan;
     }
 
+    @Override
+    public CompletableFuture<Void> requestScanClientAsync(
+            MACAddress clientHwAddr, int channel) {
+        String args = clientHwAddr + " " + channel;
+        log.debug("Sending WRITE_HANDLER_SCAN_CLIENT " + args);
+        return invokeWriteHandlerAsync(WRITE_HANDLER_SCAN_CLIENT, args);
+    }
+
+    @Override public CompletableFuture<Integer> getScanClientResultAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_SCAN_CLIENT).thenApply(
+                handler -> {
+                    lastScan = Integer.parseInt(handler.trim());
+                    return lastScan;
+                });
+    }
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -639,6 +735,25 @@ import java.util.concurrent.ConcurrentSkipListSet;
         //log.info("Sending READ_HANDLER_SCANNING_FLAGS");
         String flags = invokeReadHandler(READ_HANDLER_SCANING_FLAGS);
         //log.info("Received flags: " + flags);
+        return startScanIfIdle(flags, channel, ssid);
+    }
+
+    @Override
+    public CompletableFuture<Integer> requestScannedStationsStatsAsync(
+            final int channel, final String ssid) {
+        return invokeReadHandlerAsync(READ_HANDLER_SCANING_FLAGS).thenApply(
+                flags -> startScanIfIdle(flags, channel, ssid));
+    }
+
+    /**
+     * Start a scan unless the scanning flags show the agent is already busy with one.
+     *
+     * @return 1 if the scan was started, 0 otherwise
+     */
+    private int startScanIfIdle(String flags, int channel, String ssid) {
+        if (flags == null) {
+            return (0);
+        }
         String row[] = flags.split(" ");
         int client_scanning_flag = Integer.parseInt(row[0].trim());
         int AP_scanning_flag = Integer.parseInt(row[1].trim());
@@ -667,42 +782,37 @@ import java.util.concurrent.ConcurrentSkipListSet;
     @Override
     public Map<MACAddress, Map<String, String>> getScannedStationsStats(
             String ssid) {
+        return parseStationStats(invokeReadHandler(READ_HANDLER_SCAN_APS),
+                                 scannedStationsStatsProperties(ssid), false);
+    }
+
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getScannedStationsStatsAsync(
+            String ssid) {
+        final int numProperties = scannedStationsStatsProperties(ssid);
+        return invokeReadHandlerAsync(READ_HANDLER_SCAN_APS).thenApply(
+                stats -> parseStationStats(stats, numProperties, false));
+    }
 
-        String stats = invokeReadHandler(READ_HANDLER_SCAN_APS);
+    @Override public StationStats getScannedStationStats(String ssid) {
+        return StationStats.parse(invokeReadHandler(READ_HANDLER_SCAN_APS),
+                                  scannedStationsStatsProperties(ssid), false);
+    }
 
-        Map<MACAddress, Map<String, String>> ret = new HashMap<MACAddress, Map<String, String>>();
+    @Override
+    public CompletableFuture<StationStats> getScannedStationStatsAsync(
+            String ssid) {
+        final int numProperties = scannedStationsStatsProperties(ssid);
+        return invokeReadHandlerAsync(READ_HANDLER_SCAN_APS).thenApply(
+                stats -> StationStats.parse(stats, numProperties, false));
+    }
 
-        int num_properties;
+    private int scannedStationsStatsProperties(String ssid) {
         if (ssid == "*") {
-            num_properties = RX_STAT_NUM_PROPERTIES;
+            return RX_STAT_NUM_PROPERTIES;
         } else {
-            num_properties = MTX_DISTANCE_RX_STAT_NUM_PROPERTIES;
-        }
-
-        /*
-         * We basically get rows like this MAC_ADDR1 prop1:<value> prop2:<value>
-         * MAC_ADDR2 prop1:<value> prop2:<value>
-         */
-        String arr[] = stats.split("\n");
-        for (String elem : arr) {
-            String row[] = elem.split(" ");
-
-            if (row.length != num_properties + 1) {
-                continue;
-            }
-
-            MACAddress eth = MACAddress.valueOf(row[0].toLowerCase());
-
-            Map<String, String> innerMap = new HashMap<String, String>();
-
-            for (int i = 1; i < num_properties + 1; i += 1) {
-                innerMap.put(row[i].split(":")[0], row[i].split(":")[1]);
-            }
-
-            ret.put(eth, Collections.unmodifiableMap(innerMap));
+            return MTX_DISTANCE_RX_STAT_NUM_PROPERTIES;
         }
-
-        return Collections.unmodifiableMap(ret);
     }
 
     /**
@@ -719,6 +829,9 @@ import java.util.concurrent.ConcurrentSkipListSet;
         log.info("Sending READ_HANDLER_SCANING_FLAGS");
         String flags = invokeReadHandler(READ_HANDLER_SCANING_FLAGS);
         log.info("Received flags: " + flags);
+        if (flags == null) {
+            return (0);
+        }
         String row[] = flags.split(" ");
         int client_scanning_flag = Integer.parseInt(row[0].trim());
         int AP_scanning_flag = Integer.parseInt(row[1].trim());
@@ -770,13 +883,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
      * @param agentAddr InetAddress of the agent
      */
     @Override public int getTxPower() {
-        int txpower = 0;
-        String handler = invokeReadHandler(READ_HANDLER_TXPOWER);
-        txpower = Integer.parseInt(handler.trim());
-        if (txpower != this.txpower) {
-            this.txpower = txpower;
-        }
-        return this.txpower;
+        return radioConfig.getTxPower();
     }
 
     /**
@@ -803,6 +910,10 @@ import java.util.concurrent.ConcurrentSkipListSet;
         return stats;
     }
 
+    @Override public CompletableFuture<String> getScannedStaRssiAsync() {
+        return invokeReadHandlerAsync(READ_HANDLER_STA_RSSI);
+    }
+
     /**
      * Retrieves historical RSSI value for all stations
      *
@@ -0,0 +1,489 @@
+package net.floodlightcontroller.odin.master;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking client for the Click ControlSocket of an OdinAgent.
+ * <p>
+ * Handler calls are pipelined over a single connection: a command is written as soon as it is
+ * submitted and its reply is correlated in FIFO order, which is what the ControlSocket guarantees.
+ * Every command is answered by exactly one status reply (possibly spread over "XXX-" continuation
+ * lines), and a successful READ is followed by a "DATA &lt;n&gt;" line and n bytes of payload.
+ * <p>
+ * All channels share one selector thread. Futures are completed on that thread, so dependent
+ * stages must not block on other control channel calls.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class OdinAgentControlChannel {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(OdinAgentControlChannel.class);
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static Reactor reactor;
+
+    private final SocketChannel channel;
+    private final String remote;
+
+    // Guarded by this
+    private final Queue<Request> inFlight = new ArrayDeque<>();
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+    private boolean closed = false;
+
+    // Only touched by the selector thread
+    private SelectionKey key;
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] payload = new byte[BUFFER_SIZE];
+    private int payloadLength = -1;
+    private int payloadRead;
+    private boolean expectData = false;
+
+    private OdinAgentControlChannel(SocketChannel channel, String remote) {
+        this.channel = channel;
+        this.remote = remote;
+    }
+
+    /**
+     * Connect to a Click ControlSocket. The connect itself is blocking; every call made on the
+     * returned channel is not.
+     *
+     * @param address address and port of the control socket
+     * @return a connected control channel
+     * @throws IOException if the connection cannot be established
+     */
+    static OdinAgentControlChannel open(InetSocketAddress address)
+            throws IOException {
+        SocketChannel sc = SocketChannel.open(address);
+        sc.configureBlocking(false);
+        sc.socket().setTcpNoDelay(true);
+
+        final OdinAgentControlChannel cc = new OdinAgentControlChannel(sc,
+                                                                      address.toString());
+        final Reactor r = reactor();
+        r.execute(new Runnable() {
+            @Override public void run() {
+                cc.register(r.selector);
+            }
+        });
+        return cc;
+    }
+
+    /**
+     * Invoke a read handler.
+     *
+     * @param handler fully qualified handler name, e.g. odinagent.table
+     * @return future completed with the handler's payload
+     */
+    CompletableFuture<String> read(String handler) {
+        Request request = new Request(new CompletableFuture<String>(), null);
+        submit(Collections.singletonList(request), "READ " + handler + "\n");
+        return request.data;
+    }
+
+    /**
+     * Invoke a write handler.
+     *
+     * @param handler fully qualified handler name, e.g. odinagent.add_vap
+     * @param text    argument for the write handler
+     * @return future completed once the agent acknowledged the write
+     */
+    CompletableFuture<Void> write(String handler, String text) {
+        Request request = new Request(null, new CompletableFuture<Void>());
+        submit(Collections.singletonList(request),
+               "WRITE " + handler + " " + text + "\n");
+        return request.done;
+    }
+
+    /**
+     * Invoke a write handler once per argument. The calls go out together, in order.
+     *
+     * @param handler fully qualified handler name, e.g. odinagent.add_vap
+     * @param texts   argument of each call
+     * @return future completed once the agent acknowledged every write
+     */
+    CompletableFuture<Void> writeAll(String handler, List<String> texts) {
+        List<Request> requests = new ArrayList<>(texts.size());
+        CompletableFuture<?>[] done = new CompletableFuture<?>[texts.size()];
+        StringBuilder sb = new StringBuilder();
+        for (String text : texts) {
+            Request request = new Request(null, new CompletableFuture<Void>());
+            done[requests.size()] = request.done;
+            requests.add(request);
+            sb.append("WRITE ").append(handler).append(' ').append(text)
+              .append('\n');
+        }
+        if (!requests.isEmpty()) {
+            submit(requests, sb.toString());
+        }
+        return CompletableFuture.allOf(done);
+    }
+
+    /**
+     * @return number of requests still waiting for a reply
+     */
+    synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Close the connection, failing every request still in flight.
+     */
+    void close() {
+        shutdown(new IOException("Control channel to " + remote + " closed"));
+    }
+
+    private void submit(List<Request> requests, String command) {
+        ByteBuffer buf = ByteBuffer.wrap(command.getBytes(CHARSET));
+        IOException error = null;
+        boolean wantWrite = false;
+
+        synchronized (this) {
+            if (closed) {
+                for (Request request : requests) {
+                    request.fail(new IOException(
+                            "Control channel to " + remote + " is closed"));
+                }
+                return;
+            }
+            // Enqueue before writing, the reply may arrive before we return
+            inFlight.addAll(requests);
+            try {
+                if (outbound.isEmpty()) {
+                    channel.write(buf);
+                }
+                if (buf.hasRemaining()) {
+                    wantWrite = outbound.isEmpty();
+                    outbound.add(buf);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        if (error != null) {
+            fail(error);
+        } else if (wantWrite) {
+            reactor().execute(new Runnable() {
+                @Override public void run() {
+                    if (key != null && key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ
+                                        | SelectionKey.OP_WRITE);
+                    }
+                }
+            });
+        }
+    }
+
+    private void register(Selector selector) {
+        try {
+            int ops = SelectionKey.OP_READ;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (!outbound.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+            }
+            key = channel.register(selector, ops, this);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void onWritable() {
+        IOException error = null;
+        synchronized (this) {
+            try {
+                while (!outbound.isEmpty()) {
+                    ByteBuffer buf = outbound.peek();
+                    channel.write(buf);
+                    if (buf.hasRemaining()) {
+                        return;
+                    }
+                    outbound.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            fail(error);
+        }
+    }
+
+    private void onReadable() {
+        try {
+            if (!in.hasRemaining()) {
+                // A single line larger than the buffer, make room for it
+                ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                bigger.put(in);
+                in = bigger;
+            }
+            if (channel.read(in) < 0) {
+                throw new EOFException(
+                        "Control socket closed by " + remote);
+            }
+            in.flip();
+            parse();
+            in.compact();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Consume as many complete reply lines and payload bytes as the input buffer holds.
+     */
+    private void parse() throws IOException {
+        byte[] buf = in.array();
+
+        while (in.hasRemaining()) {
+            if (payloadLength >= 0) {
+                int chunk = Math.min(in.remaining(),
+                                     payloadLength - payloadRead);
+                in.get(payload, payloadRead, chunk);
+                payloadRead += chunk;
+                if (payloadRead < payloadLength) {
+                    return;
+                }
+                String data = new String(payload, 0, payloadLength, CHARSET);
+                payloadLength = -1;
+                completeRead(data);
+                continue;
+            }
+
+            int start = in.position();
+            int limit = in.limit();
+            int eol = start;
+            while (eol < limit && buf[eol] != '\n') {
+                eol++;
+            }
+            if (eol == limit) {
+                return; // Incomplete line
+            }
+            in.position(eol + 1);
+
+            int end = eol;
+            if (end > start && buf[end - 1] == '\r') {
+                end--;
+            }
+
+            if (expectData) {
+                onDataLine(buf, start, end);
+            } else {
+                onStatusLine(buf, start, end);
+            }
+        }
+    }
+
+    private void onDataLine(byte[] buf, int start, int end) throws IOException {
+        if (end - start < 6 || buf[start] != 'D' || buf[start + 1] != 'A'
+            || buf[start + 2] != 'T' || buf[start + 3] != 'A') {
+            throw new IOException("Expected DATA from " + remote + ", got: "
+                                  + new String(buf, start, end - start, CHARSET));
+        }
+        int n = 0;
+        for (int i = start + 5; i < end; i++) {
+            n = n * 10 + (buf[i] - '0');
+        }
+
+        expectData = false;
+        if (n == 0) {
+            completeRead("");
+            return;
+        }
+        if (payload.length < n) {
+            payload = new byte[Math.max(n, payload.length * 2)];
+        }
+        payloadLength = n;
+        payloadRead = 0;
+    }
+
+    private void onStatusLine(byte[] buf, int start, int end) {
+        if (end - start < 3 || !isDigit(buf[start]) || !isDigit(buf[start + 1])
+            || !isDigit(buf[start + 2])) {
+            return; // Greeting banner, e.g. Click::ControlSocket/1.3
+        }
+        if (end - start > 3 && buf[start + 3] == '-') {
+            return; // Continuation line, the final one carries the outcome
+        }
+
+        int code = (buf[start] - '0') * 100 + (buf[start + 1] - '0') * 10
+                   + (buf[start + 2] - '0');
+
+        Request head;
+        synchronized (this) {
+            head = inFlight.peek();
+            if (head == null) {
+                log.warn("Unsolicited reply from " + remote + ": "
+                         + new String(buf, start, end - start, CHARSET));
+                return;
+            }
+            if (code / 100 == 2 && head.data != null) {
+                expectData = true; // Stays at the head until its payload arrives
+                return;
+            }
+            inFlight.poll();
+        }
+
+        if (code / 100 == 2) {
+            head.done.complete(null);
+        } else {
+            String status = new String(buf, start, end - start, CHARSET);
+            log.warn("Handler call on " + remote + " failed: " + status);
+            head.fail(new IOException(status));
+        }
+    }
+
+    private void completeRead(String data) {
+        Request head;
+        synchronized (this) {
+            head = inFlight.poll();
+        }
+        if (head != null) {
+            head.data.complete(data);
+        }
+    }
+
+    private void fail(IOException cause) {
+        if (shutdown(cause)) {
+            log.error("Control channel to " + remote + " failed: " + cause
+                    .getMessage());
+        }
+    }
+
+    private boolean shutdown(IOException cause) {
+        List<Request> orphans;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            orphans = new ArrayList<>(inFlight);
+            inFlight.clear();
+            outbound.clear();
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+        for (Request request : orphans) {
+            request.fail(cause);
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static synchronized Reactor reactor() {
+        if (reactor == null) {
+            try {
+                reactor = new Reactor();
+            } catch (IOException e) {
+                throw new IllegalStateException(
+                        "Unable to open control channel selector", e);
+            }
+        }
+        return reactor;
+    }
+
+    /**
+     * A pending handler call. Exactly one of the futures is set.
+     */
+    private static class Request {
+        final CompletableFuture<String> data;
+        final CompletableFuture<Void> done;
+
+        Request(CompletableFuture<String> data, CompletableFuture<Void> done) {
+            this.data = data;
+            this.done = done;
+        }
+
+        void fail(Throwable cause) {
+            if (data != null) {
+                data.completeExceptionally(cause);
+            } else {
+                done.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Selector thread shared by every control channel.
+     */
+    private static class Reactor implements Runnable {
+        final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        Reactor() throws IOException {
+            selector = Selector.open();
+            Thread thread = new Thread(this, "OdinAgentControlChannel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override public void run() {
+            while (true) {
+                try {
+                    selector.select();
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys()
+                                                        .iterator();
+                    while (it.hasNext()) {
+                        SelectionKey k = it.next();
+                        it.remove();
+                        OdinAgentControlChannel cc = (OdinAgentControlChannel) k
+                                .attachment();
+                        if (k.isValid() && k.isWritable()) {
+                            cc.onWritable();
+                        }
+                        if (k.isValid() && k.isReadable()) {
+                            cc.onReadable();
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("Control channel selector error", e);
+                }
+            }
+        }
+    }
+}
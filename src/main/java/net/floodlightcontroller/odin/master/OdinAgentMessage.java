@@ -0,0 +1,319 @@
+package net.floodlightcontroller.odin.master;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A message received from an OdinAgent over UDP. Instances are meant to be reused: {@link
+ * #parse(ByteBuffer)} decodes a datagram in place, straight from the receive buffer, without
+ * building intermediate strings or arrays.
+ * <p>
+ * Messages look like this (the type is matched case-insensitively):
+ * <pre>
+ *   ping
+ *   probe &lt;sta_mac&gt; [ssid]
+ *   publish &lt;sta_mac&gt; &lt;count&gt; &lt;id&gt;:&lt;value&gt; ...
+ *   detectedflow &lt;ip_src&gt; &lt;ip_dst&gt; &lt;protocol&gt; &lt;src_port&gt; &lt;dst_port&gt;
+ *   deauthentication &lt;sta_mac&gt;
+ *   association &lt;sta_mac&gt;
+ * </pre>
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class OdinAgentMessage {
+
+    enum Type {
+        PING("ping"),
+        PROBE("probe"),
+        PUBLISH("publish"),
+        DETECTED_FLOW("detectedflow"),
+        DEAUTH("deauthentication"),
+        ASSOC("association");
+
+        private final byte[] keyword;
+
+        Type(String keyword) {
+            this.keyword = keyword.getBytes();
+        }
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final int DETECTED_FLOW_FIELDS = 5;
+
+    private Type type;
+    private long staHwAddr;
+    private String ssid;
+    private int publishCount;
+    private long[] publishIds = new long[8];
+    private long[] publishValues = new long[8];
+    private String detectedFlow;
+
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    /**
+     * Decode a datagram. The buffer's position and limit delimit the message; neither is
+     * modified.
+     *
+     * @param buf received datagram
+     * @return true if the message was understood, false otherwise
+     */
+    boolean parse(ByteBuffer buf) {
+        type = null;
+        staHwAddr = -1;
+        ssid = "";
+        publishCount = 0;
+        detectedFlow = null;
+
+        int pos = buf.position();
+        int end = buf.limit();
+
+        // Same as String.trim(), agents may pad or terminate messages
+        while (end > pos && (buf.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        while (pos < end && (buf.get(pos) & 0xff) <= ' ') {
+            pos++;
+        }
+
+        int tokenEnd = tokenEnd(buf, pos, end);
+        type = matchType(buf, pos, tokenEnd);
+        if (type == null) {
+            return false;
+        }
+        pos = tokenEnd + 1;
+
+        switch (type) {
+        case PING:
+            return true;
+
+        case PROBE:
+            tokenEnd = tokenEnd(buf, pos, end);
+            staHwAddr = parseMac(buf, pos, tokenEnd);
+            if (tokenEnd < end) {
+                // SSID is specified in the scan, it may contain spaces
+                ssid = decode(buf, tokenEnd + 1, end);
+            }
+            return staHwAddr >= 0;
+
+        case PUBLISH:
+            tokenEnd = tokenEnd(buf, pos, end);
+            staHwAddr = parseMac(buf, pos, tokenEnd);
+            pos = tokenEnd + 1;
+            tokenEnd = tokenEnd(buf, pos, end);
+            long count = parseLong(buf, pos, tokenEnd);
+            if (staHwAddr < 0 || count < 0) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                pos = tokenEnd + 1;
+                tokenEnd = tokenEnd(buf, pos, end);
+                int colon = indexOf(buf, pos, tokenEnd, (byte) ':');
+                if (colon < 0) {
+                    return false;
+                }
+                long id = parseLong(buf, pos, colon);
+                long value = parseLong(buf, colon + 1, tokenEnd);
+                if (id < 0 || value < 0) {
+                    return false;
+                }
+                addPublish(id, value);
+            }
+            return true;
+
+        case DETECTED_FLOW:
+            scratch.setLength(0);
+            for (int i = 0; i < DETECTED_FLOW_FIELDS; i++) {
+                if (pos >= end) {
+                    return false;
+                }
+                tokenEnd = tokenEnd(buf, pos, end);
+                if (i > 0) {
+                    scratch.append(' ');
+                }
+                appendLowerCase(buf, pos, tokenEnd);
+                pos = tokenEnd + 1;
+            }
+            detectedFlow = scratch.toString();
+            return true;
+
+        case DEAUTH:
+        case ASSOC:
+            staHwAddr = parseMac(buf, pos, tokenEnd(buf, pos, end));
+            return staHwAddr >= 0;
+
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return the message type, null if the last datagram was not understood
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the station's MAC address as a long, -1 if the message carries none
+     */
+    long getStaHwAddr() {
+        return staHwAddr;
+    }
+
+    /**
+     * @return the probed SSID, empty for broadcast probes
+     */
+    String getSsid() {
+        return ssid;
+    }
+
+    /**
+     * @return number of subscription id/value pairs in a publish message
+     */
+    int getPublishCount() {
+        return publishCount;
+    }
+
+    long getPublishId(int i) {
+        return publishIds[i];
+    }
+
+    long getPublishValue(int i) {
+        return publishValues[i];
+    }
+
+    /**
+     * @return the five-tuple of a detected flow, space separated
+     */
+    String getDetectedFlow() {
+        return detectedFlow;
+    }
+
+    private void addPublish(long id, long value) {
+        if (publishCount == publishIds.length) {
+            publishIds = Arrays.copyOf(publishIds, publishCount * 2);
+            publishValues = Arrays.copyOf(publishValues, publishCount * 2);
+        }
+        publishIds[publishCount] = id;
+        publishValues[publishCount] = value;
+        publishCount++;
+    }
+
+    private String decode(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) < 0) {
+                // Not plain ASCII, take the slow path
+                byte[] bytes = new byte[to - from];
+                ByteBuffer dup = buf.duplicate();
+                dup.position(from);
+                dup.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8).toLowerCase();
+            }
+        }
+        scratch.setLength(0);
+        appendLowerCase(buf, from, to);
+        return scratch.toString();
+    }
+
+    /**
+     * Messages have always been lower-cased as a whole before being handled, keep doing so.
+     */
+    private void appendLowerCase(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            scratch.append((char) toLowerCase(buf.get(i)));
+        }
+    }
+
+    private static Type matchType(ByteBuffer buf, int from, int to) {
+        for (Type t : TYPES) {
+            byte[] keyword = t.keyword;
+            if (keyword.length != to - from) {
+                continue;
+            }
+            int i = 0;
+            while (i < keyword.length
+                   && toLowerCase(buf.get(from + i)) == keyword[i]) {
+                i++;
+            }
+            if (i == keyword.length) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse a colon separated MAC address.
+     *
+     * @return the address as a long, -1 if malformed
+     */
+    static long parseMac(ByteBuffer buf, int from, int to) {
+        if (to - from != 17) {
+            return -1;
+        }
+        long mac = 0;
+        for (int i = 0; i < 6; i++) {
+            int p = from + i * 3;
+            int hi = hexValue(buf.get(p));
+            int lo = hexValue(buf.get(p + 1));
+            if (hi < 0 || lo < 0 || (i < 5 && buf.get(p + 2) != ':')) {
+                return -1;
+            }
+            mac = (mac << 8) | (hi << 4) | lo;
+        }
+        return mac;
+    }
+
+    /**
+     * Parse a non-negative decimal number.
+     *
+     * @return the number, -1 if malformed
+     */
+    static long parseLong(ByteBuffer buf, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            n = n * 10 + d;
+        }
+        return n;
+    }
+
+    private static int tokenEnd(ByteBuffer buf, int from, int end) {
+        int i = from;
+        while (i < end && buf.get(i) != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
@@ -5,43 +5,61 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 class OdinAgentProtocolServer implements Runnable {
 
     protected static Logger log = LoggerFactory
             .getLogger(OdinAgentProtocolServer.class);
 
-    // Odin Message types
-    private final String ODIN_MSG_PING = "ping";
-    private final String ODIN_MSG_PROBE = "probe";
-    private final String ODIN_MSG_PUBLISH = "publish";
-    private final String ODIN_MSG_DETECTED_FLOW = "detectedflow";
-    private final String ODIN_MSG_DEAUTH = "deauthentication";
-    private final String ODIN_MSG_ASSOC = "association";
+    private final int DATAGRAM_SIZE = 1024; // We can probably live with less
+    private final int DATAGRAM_POOL_SIZE = 256; // Allocated up front, more are as needed
 
     private final int ODIN_SERVER_PORT;
 
-    private DatagramSocket controllerSocket;
-    private final ExecutorService executor;
+    private DatagramChannel controllerChannel;
+    private final OdinEventDispatcher dispatcher;
     private final OdinMaster odinMaster;
+    private final OdinMetrics metrics;
+
+    // Receive buffers and parsed messages are recycled instead of being allocated per datagram.
+    // There are at most as many as the dispatcher's lanes can hold, so that it is the lanes that
+    // fill up and drop events, each counting its own. Past that, datagrams are read into the
+    // scratch buffer and dropped.
+    private final BlockingQueue<Datagram> datagramPool;
+    private final int maxDatagrams;
+    private int allocated = 0; // Only touched by the receiving thread
+    private final ByteBuffer scratch = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
 
     public OdinAgentProtocolServer(OdinMaster om, int port,
-                                   ExecutorService executor) {
+                                   OdinEventDispatcher dispatcher) {
         this.odinMaster = om;
+        this.metrics = om.getMetrics();
         this.ODIN_SERVER_PORT = port;
-        this.executor = executor;
+        this.dispatcher = dispatcher;
+        // One more per lane, for the event each is handling
+        this.maxDatagrams = dispatcher.getLaneCount()
+                            * (dispatcher.getQueueCapacity() + 1);
+        this.datagramPool = new ArrayBlockingQueue<>(maxDatagrams);
+        for (int i = 0; i < Math.min(DATAGRAM_POOL_SIZE, maxDatagrams); i++) {
+            datagramPool.add(new Datagram());
+            allocated++;
+        }
     }
 
     @Override public void run() {
 
         try {
-            controllerSocket = new DatagramSocket(ODIN_SERVER_PORT);
+            controllerChannel = DatagramChannel.open();
+            controllerChannel.bind(new InetSocketAddress(ODIN_SERVER_PORT));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -49,15 +67,55 @@ class OdinAgentProtocolServer implements Runnable {
         while (true) {
 
             try {
-                final byte[] receiveData = new byte[1024]; // We can probably live with less
-                final DatagramPacket receivedPacket = new DatagramPacket(
-                        receiveData, receiveData.length);
-                controllerSocket.receive(receivedPacket);
-
-                executor.execute(
-                        new OdinAgentConnectionHandler(receivedPacket));
+                Datagram datagram = datagramPool.poll();
+                if (datagram == null && allocated < maxDatagrams) {
+                    datagram = new Datagram();
+                    allocated++;
+                }
+                if (datagram == null) {
+                    // Every lane is full
+                    scratch.clear();
+                    controllerChannel.receive(scratch);
+                    metrics.droppedMessage();
+                    continue;
+                }
+                datagram.buffer.clear();
+                InetSocketAddress sender = (InetSocketAddress) controllerChannel
+                        .receive(datagram.buffer);
+                datagram.buffer.flip();
+                datagram.odinAgentAddr = sender.getAddress();
+
+                if (!datagram.msg.parse(datagram.buffer)) {
+                    log.debug("Ignoring malformed message from "
+                              + datagram.odinAgentAddr);
+                    metrics.malformedMessage();
+                    datagram.release();
+                    continue;
+                }
+                metrics.message(datagram.msg.getType());
+
+                // Keep each client's events in order, agent-wide ones in order per agent
+                boolean queued;
+                switch (datagram.msg.getType()) {
+                case PING:
+                case DETECTED_FLOW:
+                    queued = dispatcher.dispatch(datagram.odinAgentAddr,
+                                                 datagram);
+                    break;
+                default:
+                    queued = dispatcher.dispatch(datagram.msg.getStaHwAddr(),
+                                                 datagram);
+                }
+                if (!queued) {
+                    metrics.droppedMessage();
+                    datagram.release();
+                }
+            } catch (AsynchronousCloseException e) {
+                // The executor running the server was shut down
+                log.info("Odin agent protocol server stopped");
+                return;
             } catch (IOException e) {
-                log.error("controllerSocket.accept() failed: "
+                log.error("controllerChannel.receive() failed: "
                           + ODIN_SERVER_PORT);
                 e.printStackTrace();
                 System.exit(-1);
@@ -65,6 +123,57 @@ class OdinAgentProtocolServer implements Runnable {
         }
     }
 
+    /**
+     * Hand a message over to the master.
+     *
+     * @param odinAgentAddr agent that sent the message
+     * @param msg           parsed message
+     */
+    private void dispatch(final InetAddress odinAgentAddr,
+                          final OdinAgentMessage msg) {
+        switch (msg.getType()) {
+        case PING:
+            receivePing(odinAgentAddr);
+            break;
+
+        case PROBE:
+            receiveProbe(odinAgentAddr,
+                         MACAddress.valueOf(msg.getStaHwAddr()),
+                         msg.getSsid());
+            break;
+
+        case PUBLISH:
+            final Map<Long, Long> matchingIds = new HashMap<Long, Long>();
+            for (int i = 0; i < msg.getPublishCount(); i++) {
+                matchingIds.put(msg.getPublishId(i), msg.getPublishValue(i));
+            }
+            receivePublish(MACAddress.valueOf(msg.getStaHwAddr()),
+                           odinAgentAddr, matchingIds);
+            break;
+
+        case DETECTED_FLOW:
+            // FIXME: Always detect all flows --> flows2detect is equal to (IP source address  = *, IP destination address = *, Protocol = 0, Source Port = 0 and Destination Port = 0)
+            // 1st part of message is not sent. There is a only Id. It is always 1
+            // 2nd part of message is sent. It should contain detected flow (IP source address, IP destination address, Protocol, Source Port and Destination Port
+            final Map<Long, String> matchingId = new HashMap<Long, String>();
+            // There is a only Id. It is always 1
+            final long detectedId = 1;
+            matchingId.put(detectedId, msg.getDetectedFlow());
+            receiveDetectedFlow(odinAgentAddr, matchingId);
+            break;
+
+        case DEAUTH:
+            receiveDeauth(odinAgentAddr,
+                          MACAddress.valueOf(msg.getStaHwAddr()));
+            break;
+
+        case ASSOC:
+            receiveAssoc(odinAgentAddr,
+                         MACAddress.valueOf(msg.getStaHwAddr()));
+            break;
+        }
+    }
+
     /**
      * Protocol handlers
      **/
@@ -101,87 +210,28 @@ class OdinAgentProtocolServer implements Runnable {
         odinMaster.receiveAssoc(odinAgentAddr, clientHwAddress);
     }
 
-    private class OdinAgentConnectionHandler implements Runnable {
-
-        final DatagramPacket receivedPacket;
+    /**
+     * A pooled receive buffer along with the message parsed from it. Returns itself to the pool
+     * once the message has been handled.
+     */
+    private class Datagram implements Runnable {
 
-        public OdinAgentConnectionHandler(final DatagramPacket dp) {
-            receivedPacket = dp;
-        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
+        final OdinAgentMessage msg = new OdinAgentMessage();
+        InetAddress odinAgentAddr;
 
         // Agent message handler
-        public void run() {
-            final String msg = new String(receivedPacket.getData()).trim()
-                                                                   .toLowerCase();
-            final String[] fields = msg.split(" ");
-            final String msg_type = fields[0];
-            final InetAddress odinAgentAddr = receivedPacket.getAddress();
-
-            if (msg_type.equals(ODIN_MSG_PING)) {
-                receivePing(odinAgentAddr);
-            } else if (msg_type.equals(ODIN_MSG_PROBE)) {
-                // 2nd part of message should contain
-                // the STA's MAC address
-                final String staAddress = fields[1];
-                String ssid = "";
-
-                if (fields.length > 2) {
-                    //SSID is specified in the scan
-                    ssid = msg.substring(
-                            ODIN_MSG_PROBE.length() + staAddress.length()
-                            + 2);
-                }
-
-                receiveProbe(odinAgentAddr, MACAddress.valueOf(staAddress),
-                             ssid);
-            } else if (msg_type.equals(ODIN_MSG_PUBLISH)) {
-                final String staAddress = fields[1];
-                final int count = Integer.parseInt(fields[2]);
-                final Map<Long, Long> matchingIds = new HashMap<Long, Long>();
-
-                for (int i = 0; i < count; i++) {
-                    matchingIds
-                            .put(Long.parseLong(fields[3 + i].split(":")[0]),
-                                 Long.parseLong(
-                                         fields[3 + i].split(":")[1]));
-                }
-
-                receivePublish(MACAddress.valueOf(staAddress), odinAgentAddr,
-                               matchingIds);
-
-            } else if (msg_type.equals(ODIN_MSG_DETECTED_FLOW)) {
-
-                // FIXME: Always detect all flows --> flows2detect is equal to (IP source address  = *, IP destination address = *, Protocol = 0, Source Port = 0 and Destination Port = 0)
-                // 1st part of message is not sent. There is a only Id. It is always 1
-                // 2nd part of message is sent. It should contain detected flow (IP source address, IP destination address, Protocol, Source Port and Destination Port
-
-                //final String IPSrcAddress = fields[1];
-                //final String IPDstAddress = fields[2];
-                //final int protocol = Integer.parseInt(fields[3]);
-                //final int SrcPort = Integer.parseInt(fields[4]);
-                //final int DstPort = Integer.parseInt(fields[5]);
-
-                final String detectedFlow =
-                        fields[1] + " " + fields[2] + " " + fields[3] + " "
-                        + fields[4] + " " + fields[5];
-                //log.info("We receive a detected flow "+ detectedFlow +  "from: " + odinAgentAddr.getHostAddress());
-                final Map<Long, String> matchingId = new HashMap<Long, String>();
-                // There is a only Id. It is always 1
-                final long detectedId = 1;
-                matchingId.put(detectedId, detectedFlow);
-
-                receiveDetectedFlow(odinAgentAddr, matchingId);
-            } else if (msg_type.equals(ODIN_MSG_DEAUTH)) {
-
-                final String staAddress = fields[1];
-                receiveDeauth(odinAgentAddr, MACAddress.valueOf(staAddress));
-
-            } else if (msg_type.equals(ODIN_MSG_ASSOC)) {
-
-                final String staAddress = fields[1];
-                receiveAssoc(odinAgentAddr, MACAddress.valueOf(staAddress));
-
+        @Override public void run() {
+            try {
+                dispatch(odinAgentAddr, msg);
+            } finally {
+                release();
             }
         }
+
+        void release() {
+            odinAgentAddr = null;
+            datagramPool.offer(this);
+        }
     }
 }
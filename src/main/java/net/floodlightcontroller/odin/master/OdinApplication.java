@@ -11,6 +11,7 @@ import java.io.PrintStream;
 import java.net.InetAddress;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -28,6 +29,7 @@ public abstract class OdinApplication implements Runnable {
 
     private AtomicReference<State> state;
     private Object lock;
+    private ApplicationScheduler scheduler;
 
     /**
      * Constructor.
@@ -51,6 +53,13 @@ public abstract class OdinApplication implements Runnable {
         this.pool = pool;
     }
 
+    /**
+     * Sets the scheduler running the application's tasks
+     */
+    final void setScheduler(ApplicationScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     /**
      * Gets the application's state (RUNNING, HALTING, HALTED)
      *
@@ -104,7 +113,13 @@ public abstract class OdinApplication implements Runnable {
      * @author André Oliveira <andreduartecoliveira@gmail.com>
      */
     protected final boolean tryHalt() {
-        return state.compareAndSet(State.RUNNING, State.HALTING);
+        if (!state.compareAndSet(State.RUNNING, State.HALTING)) {
+            return false;
+        }
+        if (scheduler != null) {
+            scheduler.haltRequested();
+        }
+        return true;
     }
 
     /**
@@ -126,15 +141,73 @@ public abstract class OdinApplication implements Runnable {
      * @author André Oliveira <andreduartecoliveira@gmail.com>
      */
     protected final boolean resume() {
-        return state.compareAndSet(State.HALTED, State.RUNNING);
+        if (!state.compareAndSet(State.HALTED, State.RUNNING)) {
+            return false;
+        }
+        if (scheduler != null) {
+            scheduler.resumed();
+        }
+        return true;
     }
 
     /**
      * Needed to wrap OdinApplications into a thread, and is implemented by the specific
-     * application
+     * application. Applications may instead schedule their work here (see
+     * {@link #schedulePeriodic}, {@link #scheduleOnce} and {@link #addNetworkEventListener})
+     * and return, leaving the thread to others.
      */
     public abstract void run();
 
+    /**
+     * Run a task periodically, with a fixed delay between the end of a run and the start of the
+     * next one. Runs due while the application is halted are skipped.
+     *
+     * @param task         the task
+     * @param initialDelay time in ms before the first run
+     * @param period       time in ms between runs
+     * @return handle to cancel the task
+     * @author André Oliveira <andreduartecoliveira@gmail.com>
+     */
+    protected final ScheduledTask schedulePeriodic(Runnable task,
+                                                   long initialDelay,
+                                                   long period) {
+        return getScheduler().schedulePeriodic(task, initialDelay, period);
+    }
+
+    /**
+     * Run a task once after a delay. If the application is halted by then, the task runs when it
+     * resumes.
+     *
+     * @param task  the task
+     * @param delay time in ms before running it
+     * @return handle to cancel the task
+     * @author André Oliveira <andreduartecoliveira@gmail.com>
+     */
+    protected final ScheduledTask scheduleOnce(Runnable task, long delay) {
+        return getScheduler().scheduleOnce(task, delay);
+    }
+
+    /**
+     * Be told of clients and agents coming and going. Events are delivered on the master's
+     * executor, as tasks of this application, and held back while it is halted.
+     *
+     * @param listener the listener
+     * @return handle to unregister the listener
+     * @author André Oliveira <andreduartecoliveira@gmail.com>
+     */
+    protected final ScheduledTask addNetworkEventListener(
+            NetworkEventListener listener) {
+        return getScheduler().addListener(listener);
+    }
+
+    private ApplicationScheduler getScheduler() {
+        if (scheduler == null) {
+            throw new IllegalStateException(
+                    "Application not started by the master");
+        }
+        return scheduler;
+    }
+
     /**
      * VAP-Handoff a client to a new AP. This operation is idempotent.
      *
@@ -147,6 +220,16 @@ public abstract class OdinApplication implements Runnable {
                 .handoffClientToAp(pool, staHwAddr, newApIpAddr);
     }
 
+    /**
+     * VAP-Handoff several clients at once, each to its own AP.
+     *
+     * @param handoffs IPv4 address of the new access point of each STA
+     */
+    protected final void handoffClientsToAps(
+            Map<MACAddress, InetAddress> handoffs) {
+        odinApplicationInterfaceToMaster.handoffClientsToAps(pool, handoffs);
+    }
+
     /**
      * Get the list of clients currently registered with Odin
      *
@@ -202,6 +285,30 @@ public abstract class OdinApplication implements Runnable {
                 .getRxStatsFromAgent(pool, agentAddr);
     }
 
+    /**
+     * Retreive typed TxStats from the agent
+     *
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    protected final StationStats getTxStationStatsFromAgent(
+            InetAddress agentAddr) {
+        return odinApplicationInterfaceToMaster
+                .getTxStationStatsFromAgent(pool, agentAddr);
+    }
+
+    /**
+     * Retreive typed RxStats from the agent
+     *
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    protected final StationStats getRxStationStatsFromAgent(
+            InetAddress agentAddr) {
+        return odinApplicationInterfaceToMaster
+                .getRxStationStatsFromAgent(pool, agentAddr);
+    }
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -229,6 +336,19 @@ public abstract class OdinApplication implements Runnable {
                 .getScannedStationsStatsFromAgent(pool, agentAddr, ssid);
     }
 
+    /**
+     * Retreive typed scanned stations statistics from the agent
+     *
+     * @param agentAddr InetAddress of the agent
+     * @param ssid      Network name
+     * @return statistics of each scanned station
+     */
+    protected final StationStats getScannedStationStatsFromAgent(
+            InetAddress agentAddr, String ssid) {
+        return odinApplicationInterfaceToMaster
+                .getScannedStationStatsFromAgent(pool, agentAddr, ssid);
+    }
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -429,6 +549,90 @@ public abstract class OdinApplication implements Runnable {
                 .getScannedStaRssiFromAgent(pool, agentAddr);
     }
 
+    /**
+     * Scan several channels with several agents at once, and retrieve the rssi of the wi5
+     * stations each agent heard on each channel
+     *
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return rssi rows per agent and channel, missing for busy or slow agents
+     */
+    protected final ScanResult scanStaRssiFromAgents(InetAddress[] agents,
+                                                     int[] channels,
+                                                     String ssid,
+                                                     long scanTime,
+                                                     long slack) {
+        return odinApplicationInterfaceToMaster
+                .scanStaRssiFromAgents(pool, agents, channels, ssid, scanTime,
+                                       slack);
+    }
+
+    /**
+     * Sweep several channels with several agents at once, each agent starting on a different
+     * channel, and retrieve the statistics of the stations each agent heard on each channel
+     *
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan (* for all)
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return station statistics per channel and agent, missing for busy or slow agents
+     */
+    protected final InterferenceMatrix sweepStationStatsFromAgents(
+            InetAddress[] agents, int[] channels, String ssid, long scanTime,
+            long slack) {
+        return odinApplicationInterfaceToMaster
+                .sweepStationStatsFromAgents(pool, agents, channels, ssid,
+                                             scanTime, slack);
+    }
+
+    /**
+     * Scan for a client with several agents at once
+     *
+     * @param agents       agents to scan with
+     * @param clientHwAddr MAC address of the client
+     * @param channel      Channel number
+     * @param time         Scanning time
+     * @return signal power each agent heard the client with, missing for agents that failed
+     */
+    protected final Map<InetAddress, Integer> scanClientFromAgents(
+            InetAddress[] agents, MACAddress clientHwAddr, int channel,
+            int time) {
+        return odinApplicationInterfaceToMaster
+                .scanClientFromAgents(pool, agents, clientHwAddr, channel,
+                                      time);
+    }
+
+    /**
+     * Report the signal an agent heard the measurement beacon of another agent with
+     *
+     * @param beaconAgent   InetAddress of the agent that sent the beacon
+     * @param scanningAgent InetAddress of the agent that heard it
+     * @param rssi          average signal of the beacon in dBm
+     */
+    protected final void reportBeaconRssi(InetAddress beaconAgent,
+                                          InetAddress scanningAgent,
+                                          double rssi) {
+        odinApplicationInterfaceToMaster
+                .reportBeaconRssi(pool, beaconAgent, scanningAgent, rssi);
+    }
+
+    /**
+     * Get the agents closest to an agent, the likeliest next APs of its clients
+     *
+     * @param agentAddr InetAddress of the agent
+     * @param k         number of neighbors wanted
+     * @return up to k neighbors, best first, empty while nothing is known about the agent
+     */
+    protected final List<InetAddress> getNeighborAgents(InetAddress agentAddr,
+                                                        int k) {
+        return odinApplicationInterfaceToMaster
+                .getNeighborAgents(pool, agentAddr, k);
+    }
+
     /**
      * Retrieve associated wi5 stations in the agent
      *
@@ -441,6 +645,28 @@ public abstract class OdinApplication implements Runnable {
                 .getClientsFromAgent(pool, agentAddr);
     }
 
+    /**
+     * Retrieve the number of associated wi5 stations in the agent, without building the set
+     *
+     * @param agentAddr InetAddress of the agent
+     * @return number of OdinClient associated in the agent
+     */
+    protected final int getClientCountFromAgent(InetAddress agentAddr) {
+        return odinApplicationInterfaceToMaster
+                .getClientCountFromAgent(pool, agentAddr);
+    }
+
+    /**
+     * Retrieve wi5 stations associated to agents on a channel
+     *
+     * @param channel the channel
+     * @return Set of OdinClient associated in agents on that channel
+     */
+    protected final Set<OdinClient> getClientsOnChannel(int channel) {
+        return odinApplicationInterfaceToMaster
+                .getClientsOnChannel(pool, channel);
+    }
+
     /**
      * Return Vip AP IP address
      *
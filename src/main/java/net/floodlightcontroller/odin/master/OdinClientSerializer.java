@@ -6,6 +6,7 @@ import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.SerializerProvider;
 
 import java.io.IOException;
+import java.util.Set;
 
 public class OdinClientSerializer extends JsonSerializer<OdinClient> {
 
@@ -13,21 +14,41 @@ public class OdinClientSerializer extends JsonSerializer<OdinClient> {
     public void serialize(OdinClient client, JsonGenerator jgen,
                           SerializerProvider provider)
             throws IOException, JsonProcessingException {
+        write(client, jgen, null);
+    }
+
+    /**
+     * Write a client as a JSON object
+     *
+     * @param fields names of the fields to write, null for all of them
+     */
+    static void write(OdinClient client, JsonGenerator jgen,
+                      Set<String> fields) throws IOException {
         jgen.writeStartObject();
-        jgen.writeStringField("macAddress",
-                              client.getMacAddress().toString());
-        String clientIpAddr = client.getIpAddress().getHostAddress();
-        jgen.writeStringField("ipAddress", clientIpAddr);
-        jgen.writeStringField("lvapBssid",
-                              client.getLvap().getBssid().toString());
-        jgen.writeStringField("lvapSsid", client.getLvap().getSsids()
-                                                .get(0)); // FIXME: assumes single SSID
-        IOdinAgent agent = client.getLvap().getAgent();
-        if (agent != null) {
-            String agentIpAddr = agent.getIpAddress().getHostAddress();
-            jgen.writeStringField("agent", agentIpAddr);
-        } else {
-            jgen.writeStringField("agent", null);
+        if (fields == null || fields.contains("macAddress")) {
+            jgen.writeStringField("macAddress",
+                                  client.getMacAddress().toString());
+        }
+        if (fields == null || fields.contains("ipAddress")) {
+            String clientIpAddr = client.getIpAddress().getHostAddress();
+            jgen.writeStringField("ipAddress", clientIpAddr);
+        }
+        if (fields == null || fields.contains("lvapBssid")) {
+            jgen.writeStringField("lvapBssid",
+                                  client.getLvap().getBssid().toString());
+        }
+        if (fields == null || fields.contains("lvapSsid")) {
+            jgen.writeStringField("lvapSsid", client.getLvap().getSsids()
+                                                    .get(0)); // FIXME: assumes single SSID
+        }
+        if (fields == null || fields.contains("agent")) {
+            IOdinAgent agent = client.getLvap().getAgent();
+            if (agent != null) {
+                String agentIpAddr = agent.getIpAddress().getHostAddress();
+                jgen.writeStringField("agent", agentIpAddr);
+            } else {
+                jgen.writeStringField("agent", null);
+            }
         }
 
         jgen.writeEndObject();
@@ -0,0 +1,185 @@
+package net.floodlightcontroller.odin.master;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches agent protocol events onto a fixed set of single-threaded lanes. Events are sharded by
+ * key (the client's MAC address, or the agent's address for agent-wide events) so that everything
+ * concerning one client is handled in order, while unrelated clients are handled in parallel.
+ * <p>
+ * Lanes hold a bounded number of events, so that an agent flooding the master cannot grow the heap
+ * without limit: events beyond it are dropped, and counted.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class OdinEventDispatcher {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(OdinEventDispatcher.class);
+
+    static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private final Lane[] lanes;
+    private final int queueCapacity;
+
+    /**
+     * @param laneCount number of lanes, i.e. threads
+     */
+    OdinEventDispatcher(int laneCount) {
+        this(laneCount, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param laneCount     number of lanes, i.e. threads
+     * @param queueCapacity events a lane holds before dropping new ones
+     */
+    OdinEventDispatcher(int laneCount, int queueCapacity) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException(
+                    "Need at least one lane, got " + laneCount);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "Need room for at least one event, got " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * Queue an event concerning a client.
+     *
+     * @param clientHwAddr the client's MAC address, as a long
+     * @param event        event handler
+     * @return false if the event was dropped, its lane being full
+     */
+    boolean dispatch(long clientHwAddr, Runnable event) {
+        Lane lane = lanes[laneFor(clientHwAddr)];
+        if (!lane.queue.offer(event)) {
+            lane.dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queue an event concerning an agent as a whole.
+     *
+     * @param agentAddr the agent's address
+     * @param event     event handler
+     * @return false if the event was dropped, its lane being full
+     */
+    boolean dispatch(InetAddress agentAddr, Runnable event) {
+        return dispatch(agentAddr.hashCode(), event);
+    }
+
+    /**
+     * @return number of lanes
+     */
+    int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @return events a lane holds before dropping new ones
+     */
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @param lane lane index
+     * @return events currently waiting on the lane
+     */
+    int getQueueDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /**
+     * @param lane lane index
+     * @return highest number of events seen waiting on the lane
+     */
+    long getMaxQueueDepth(int lane) {
+        return lanes[lane].maxDepth.get();
+    }
+
+    /**
+     * @param lane lane index
+     * @return events handled by the lane so far
+     */
+    long getProcessed(int lane) {
+        return lanes[lane].processed.get();
+    }
+
+    /**
+     * @param lane lane index
+     * @return events dropped by the lane so far, as it was full
+     */
+    long getDropped(int lane) {
+        return lanes[lane].dropped.get();
+    }
+
+    /**
+     * Stop every lane. Events still queued are dropped.
+     */
+    void shutdown() {
+        for (Lane lane : lanes) {
+            lane.interrupt();
+        }
+    }
+
+    int laneFor(long key) {
+        // Spread the bits, MACs of one vendor only differ in the lower bytes
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) ((h & 0x7fffffffL) % lanes.length);
+    }
+
+    private static class Lane extends Thread {
+
+        final ArrayBlockingQueue<Runnable> queue;
+        final AtomicLong maxDepth = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+
+        Lane(int index, int capacity) {
+            super("OdinEventDispatcher-" + index);
+            queue = new ArrayBlockingQueue<>(capacity);
+            setDaemon(true);
+        }
+
+        @Override public void run() {
+            while (!isInterrupted()) {
+                Runnable event;
+                try {
+                    event = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                // Depth as seen by this event, including itself
+                long depth = queue.size() + 1;
+                if (depth > maxDepth.get()) {
+                    maxDepth.set(depth);
+                }
+
+                try {
+                    event.run();
+                } catch (Exception e) {
+                    log.error("Error while handling an agent event on "
+                              + getName(), e);
+                }
+                processed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.module.FloodlightModuleException;
 import net.floodlightcontroller.core.module.IFloodlightModule;
 import net.floodlightcontroller.core.module.IFloodlightService;
+import net.floodlightcontroller.odin.master.HandoffTracer.Phase;
 import net.floodlightcontroller.odin.master.OdinApplication.State;
 import net.floodlightcontroller.packet.DHCP;
 import net.floodlightcontroller.packet.Ethernet;
@@ -25,6 +26,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -47,6 +49,9 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
 
     private IFloodlightProviderService floodlightProvider;
     private ScheduledExecutorService executor;
+    private OdinEventDispatcher eventDispatcher;
+    private ScanOrchestrator scanOrchestrator;
+    private StateJournal stateJournal;
 
     private final AgentManager agentManager;
     private final ClientManager clientManager;
@@ -54,14 +59,15 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
     private final PoolManager poolManager;
     private final Object lock;
 
-    private long subscriptionId = 0;
-    private String subscriptionList = "";
+    private final SubscriptionRegistry subscriptionRegistry;
+    private final HandoffTracer handoffTracer = new HandoffTracer();
+    private final OdinMetrics metrics = new OdinMetrics();
+    private final ProbeCoalescer probeCoalescer;
+    private final ApNeighborGraph neighborGraph = new ApNeighborGraph();
     private long flowdetectionId = 0;
-    private String flowdetectionList = "";
+    private volatile String flowdetectionList = "";
     private int idleLvapTimeout = 60; // Seconds
 
-    private final ConcurrentMap<Long, SubscriptionCallbackTuple> subscriptions = new ConcurrentHashMap<>();
-
     private final ConcurrentMap<Long, FlowDetectionCallbackTuple> flowsdetection = new ConcurrentHashMap<>();
 
     private static String detector_ip_address = "0.0.0.0"; // Detector Ip Address not assigned
@@ -83,13 +89,24 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
     // some defaults
     private static final String DEFAULT_POOL_FILE = "poolfile";
     private static final String DEFAULT_CLIENT_LIST_FILE = "odin_client_list";
+    private static final String DEFAULT_STATE_JOURNAL_FILE = "odin_state_journal";
     private static final int DEFAULT_PORT = 2819;
+    private static final int DEFAULT_DISPATCH_LANES = Runtime.getRuntime()
+                                                             .availableProcessors();
+    private static final long CLIENT_SCAN_SLACK = 1000; // ms on top of a client scan
 
     public OdinMaster() {
         clientManager = new ClientManager();
         lvapManager = new LvapManager();
         poolManager = new PoolManager();
         agentManager = new AgentManager(clientManager, poolManager);
+        agentManager.setMetrics(metrics);
+        subscriptionRegistry = new SubscriptionRegistry(agentManager,
+                                                        poolManager);
+        agentManager.addAgentStatusListener(subscriptionRegistry);
+        probeCoalescer = new ProbeCoalescer(agentManager, poolManager);
+        agentManager.addAgentStatusListener(probeCoalescer);
+        agentManager.setAgentSetUp(new AgentSetUp());
         lock = new Object();
     }
 
@@ -99,6 +116,13 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         this.clientManager = clientManager;
         this.lvapManager = lvapManager;
         this.poolManager = poolManager;
+        agentManager.setMetrics(metrics);
+        subscriptionRegistry = new SubscriptionRegistry(agentManager,
+                                                        poolManager);
+        agentManager.addAgentStatusListener(subscriptionRegistry);
+        probeCoalescer = new ProbeCoalescer(agentManager, poolManager);
+        agentManager.addAgentStatusListener(probeCoalescer);
+        agentManager.setAgentSetUp(new AgentSetUp());
         lock = new Object();
     }
 
@@ -109,23 +133,36 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      *
      * @param odinAgentAddr InetAddress of the agent
      */
-    synchronized void receivePing(final InetAddress odinAgentAddr) {
-        if (agentManager.receivePing(odinAgentAddr) && (!odinAgentAddr
-                .getHostAddress()
-                .equals(OdinMaster.detector_ip_address))) { // Detector does not need to be checked
-            log.info(odinAgentAddr.getHostAddress() + " is a new agent");
-            // if the above leads to a new agent being
-            // tracked, push the current subscription list
-            // to it.
-            IOdinAgent agent = agentManager.getAgent(odinAgentAddr);
+    void receivePing(final InetAddress odinAgentAddr) {
+        // New agents are set up by the bootstrap, through AgentSetUp
+        if (!agentManager.receivePing(odinAgentAddr) && !odinAgentAddr
+                .getHostAddress().equals(OdinMaster.detector_ip_address)) {
+            updateAgentLastHeard(odinAgentAddr);
+        }
+    }
+
+    /**
+     * Last stages of the bootstrap of a new agent
+     */
+    private class AgentSetUp implements AgentBootstrap.SetUp {
+
+        @Override public void pushSubscriptions(IOdinAgent agent) {
+            if (isDetector(agent)) {
+                return; // Detector does not need to be checked
+            }
+            log.info(agent.getIpAddress().getHostAddress() + " is a new agent");
             pushSubscriptionListToAgent(agent);
+        }
 
-            // Reclaim idle lvaps and also attach flows to lvaps
-            for (OdinClient client : agent.getLvapsLocal()) {
-                executor.schedule(new IdleLvapReclaimTask(client),
-                                  idleLvapTimeout, TimeUnit.SECONDS);
+        @Override public void installFlows(IOdinAgent agent)
+                throws IOException {
+            if (isDetector(agent)) {
+                return;
+            }
 
-                // Assign flow tables
+            // Attach flows to lvaps, pushed to the switch in a single write
+            List<OFMessage> flows = new ArrayList<>();
+            for (OdinClient client : agent.getLvapsLocal()) {
                 if (!client.getIpAddress().getHostAddress()
                            .equals("0.0.0.0")) {
 
@@ -137,27 +174,28 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                     assert (lvap != null);
                     lvap.setOFMessageList(lvapManager.getDefaultOFModList(
                             client.getIpAddress()));
-
-                    // Push flow messages associated with the client
-                    try {
-                        lvap.getAgent().getSwitch()
-                            .write(lvap.getOFMessageList(), null);
-                    } catch (IOException e) {
-                        log.error("Failed to update switch's flow tables "
-                                  + lvap.getAgent().getSwitch());
-                    }
+                    flows.addAll(lvap.getOFMessageList());
                 }
             }
-        } else {
-            if (!odinAgentAddr.getHostAddress()
-                              .equals(OdinMaster.detector_ip_address)) {
-                updateAgentLastHeard(odinAgentAddr);
+            if (!flows.isEmpty()) {
+                agent.getSwitch().write(flows, null);
             }
+
+            // Reclaim idle lvaps
+            for (OdinClient client : agent.getLvapsLocal()) {
+                executor.schedule(new IdleLvapReclaimTask(client),
+                                  idleLvapTimeout, TimeUnit.SECONDS);
+            }
+        }
+
+        private boolean isDetector(IOdinAgent agent) {
+            return agent.getIpAddress().getHostAddress()
+                        .equals(OdinMaster.detector_ip_address);
         }
     }
 
-    synchronized void receiveDeauth(final InetAddress odinAgentAddr,
-                                    final MACAddress clientHwAddress) {
+    void receiveDeauth(final InetAddress odinAgentAddr,
+                       final MACAddress clientHwAddress) {
 
         if (clientHwAddress == null || odinAgentAddr == null) {
             return;
@@ -166,20 +204,29 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         IOdinAgent agent = agentManager.getAgent(odinAgentAddr);
         OdinClient oc = clientManager.getClient(clientHwAddress);
 
-        if (agent == null) {
+        if (agent == null || oc == null) {
             return;
         }
 
-        log.info("Clearing Lvap " + clientHwAddress + " from agent:" + agent
-                .getIpAddress() + " due to deauthentication/inactivity");
-        poolManager.removeClientPoolMapping(oc);
-        agent.removeClientLvap(oc);
-        clientManager.removeClient(clientHwAddress);
+        // Same lock as the handoffs, so a client is not removed halfway through one
+        synchronized (oc) {
+            if (clientManager.getClient(clientHwAddress) != oc) {
+                return; // Removed meanwhile
+            }
+            log.info("Clearing Lvap " + clientHwAddress + " from agent:"
+                     + agent.getIpAddress()
+                     + " due to deauthentication/inactivity");
+            poolManager.removeClientPoolMapping(oc);
+            agent.removeClientLvap(oc);
+            clientManager.removeClient(clientHwAddress);
+            handoffTracer.forget(clientHwAddress);
+            metrics.lvapReclaimed(OdinMetrics.Reclaim.DEAUTH);
+        }
     }
 
     /* This method stops the timer that clears the lvap if an IP is not received for the client */
-    synchronized void receiveAssoc(final InetAddress odinAgentAddr,
-                                   final MACAddress clientHwAddress) {
+    void receiveAssoc(final InetAddress odinAgentAddr,
+                      final MACAddress clientHwAddress) {
 
         if (clientHwAddress == null || odinAgentAddr == null) {
             return;
@@ -195,6 +242,7 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
 
         OdinClient oc = clientManager.getClient(clientHwAddress);
         oc.getLvap().setAssocState(true); // associated;
+        handoffTracer.associated(clientHwAddress, odinAgentAddr);
 
         // poolManager.removeClientPoolMapping(oc);
         // agent.removeClientLvap(oc);
@@ -208,9 +256,9 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param odinAgentAddr   InetAddress of agent
      * @param clientHwAddress MAC address of client that performed probe scan
      */
-    synchronized void receiveProbe(final InetAddress odinAgentAddr,
-                                   final MACAddress clientHwAddress,
-                                   String ssid) {
+    void receiveProbe(final InetAddress odinAgentAddr,
+                      final MACAddress clientHwAddress,
+                      String ssid) {
 
         if (odinAgentAddr == null || clientHwAddress == null
             || clientHwAddress.isBroadcast() || clientHwAddress.isMulticast()
@@ -227,28 +275,12 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
          */
         if (ssid.equals(
                 "")) { // FIXMeE:  Are you sure this is right, the client can delete the network.
-            // we just send probe responses
-            IOdinAgent agent = agentManager.getAgent(odinAgentAddr);
-            MACAddress bssid = poolManager
-                    .generateBssidForClient(clientHwAddress);
-
-            // FIXME: Sub-optimal. We'll end up generating redundant probe requests
-            Set<String> ssidSet = new TreeSet<>();
-            for (String pool : poolManager.getPoolsForAgent(odinAgentAddr)) {
-
-                if (pool.equals(PoolManager.GLOBAL_POOL)) // ???????
-                {
-                    continue;
-                }
-
-                ssidSet.addAll(poolManager.getSsidListForPool(pool));
+            // we just send probe responses, once per window and client
+            if (!probeCoalescer.probed(odinAgentAddr, clientHwAddress,
+                                       System.currentTimeMillis())) {
+                metrics.probeCoalesced();
             }
 
-            executor.execute(new OdinAgentSendProbeResponseRunnable(agent,
-                                                                    clientHwAddress,
-                                                                    bssid,
-                                                                    ssidSet));
-
             return;
         }
 
@@ -292,6 +324,7 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                     handoffClientToApInternal(PoolManager.GLOBAL_POOL,
                                               clientHwAddress,
                                               odinAgentAddr);
+                    metrics.lvapSpawned();
                 }
 
                 poolManager.mapClientToPool(oc, pool);
@@ -308,9 +341,9 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param odinAgentAddr   agent at which the event was triggered
      * @param subscriptionIds list of subscription Ids that the event matches
      */
-    synchronized void receivePublish(final MACAddress clientHwAddress,
-                                     final InetAddress odinAgentAddr,
-                                     final Map<Long, Long> subscriptionIds) {
+    void receivePublish(final MACAddress clientHwAddress,
+                        final InetAddress odinAgentAddr,
+                        final Map<Long, Long> subscriptionIds) {
 
         // The check for null clientHwAddress might go away
         // in the future if we end up having events
@@ -328,25 +361,28 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         }
 
         // Update last-heard for failure detection
-        oa.setLastHeard(System.currentTimeMillis());
+        agentManager.agentHeard(odinAgentAddr, System.currentTimeMillis());
 
+        int matches = 0;
         for (Entry<Long, Long> entry : subscriptionIds.entrySet()) {
-            SubscriptionCallbackTuple tup = subscriptions
+            SubscriptionRegistry.Subscription sub = subscriptionRegistry
                     .get(entry.getKey());
 
             /* This might occur as a race condition when the master
              * has cleared all subscriptions, but hasn't notified
              * the agent about it yet.
              */
-            if (tup == null) {
+            if (sub == null) {
                 continue;
             }
 
             NotificationCallbackContext cntx = new NotificationCallbackContext(
                     clientHwAddress, oa, entry.getValue(), 0, 0);
 
-            tup.cb.exec(tup.oes, cntx);
+            sub.cb.exec(sub.oes, cntx);
+            matches++;
         }
+        metrics.published(matches);
     }
 
     /**
@@ -356,8 +392,8 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param detectedFlowIds list of detected flow Ids that the event matches. String contains the
      *                        detected flow: "IPSrcAddress IPDstAddress Protocol SrcPort DstPort"
      */
-    synchronized void receiveDetectedFlow(final InetAddress odinAgentAddr,
-                                          final Map<Long, String> detectedFlowIds) {
+    void receiveDetectedFlow(final InetAddress odinAgentAddr,
+                             final Map<Long, String> detectedFlowIds) {
 
         if (odinAgentAddr == null || detectedFlowIds == null) {
             return;
@@ -411,7 +447,57 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
     private void handoffClientToApInternal(String pool,
                                            final MACAddress clientHwAddr,
                                            final InetAddress newApIpAddr) {
+        HandoffBatch batch = new HandoffBatch(handoffTracer, clientManager);
+        planHandoff(batch, pool, clientHwAddr, newApIpAddr,
+                    new HashMap<InetAddress, Boolean>());
+        batch.execute();
+    }
+
+    /**
+     * VAP-Handoff several clients, each to its own AP. Every client is moved as with
+     * handoffClientToApInternal(), then the flow mods and LVAP commands of all of them are sent
+     * together.
+     *
+     * @param handoffs new access point of each client to be handed off
+     */
+    private void handoffClientsToApsInternal(String pool,
+                                             Map<MACAddress, InetAddress> handoffs) {
+        if (pool == null || handoffs == null) {
+            log.error("null argument in handoffClientsToAps(): pool: " + pool
+                      + " handoffs: " + handoffs);
+            return;
+        }
+
+        HandoffBatch batch = new HandoffBatch(handoffTracer, clientManager);
+        Map<InetAddress, Boolean> agentsInPool = new HashMap<>();
+        for (Entry<MACAddress, InetAddress> e : handoffs.entrySet()) {
+            planHandoff(batch, pool, e.getKey(), e.getValue(), agentsInPool);
+        }
+        batch.execute();
+    }
+
+    /**
+     * @param agentsInPool agents already checked against the pool, filled in as they are checked
+     * @return whether the agent belongs to the pool
+     */
+    private boolean isAgentInPool(String pool, InetAddress agentAddr,
+                                  Map<InetAddress, Boolean> agentsInPool) {
+        Boolean inPool = agentsInPool.get(agentAddr);
+        if (inPool == null) {
+            inPool = poolManager.getPoolsForAgent(agentAddr).contains(pool);
+            agentsInPool.put(agentAddr, inPool);
+        }
+        return inPool;
+    }
 
+    /**
+     * Move a client to a new AP in the master's view, leaving what has to be sent to the
+     * network in the batch.
+     */
+    private void planHandoff(HandoffBatch batch, String pool,
+                             final MACAddress clientHwAddr,
+                             final InetAddress newApIpAddr,
+                             Map<InetAddress, Boolean> agentsInPool) {
         // As an optimisation, we probably need to get the accessing done first,
         // prime both nodes, and complete a handoff.
 
@@ -422,26 +508,33 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
             return;
         }
 
-        synchronized (this) {
-            IOdinAgent newAgent = agentManager.getAgent(newApIpAddr);
+        IOdinAgent newAgent = agentManager.getAgent(newApIpAddr);
 
-            // If new agent doesn't exist, ignore request
-            if (newAgent == null) {
-                log.error("Handoff request ignored: OdinAgent " + newApIpAddr
-                          + " doesn't exist");
-                return;
-            }
+        // If new agent doesn't exist, ignore request
+        if (newAgent == null) {
+            log.error("Handoff request ignored: OdinAgent " + newApIpAddr
+                      + " doesn't exist");
+            return;
+        }
 
-            OdinClient client = clientManager.getClient(clientHwAddr);
+        OdinClient client = clientManager.getClient(clientHwAddr);
 
-            // Ignore request if we don't know the client
-            if (client == null) {
-                log.error(
-                        "Handoff request ignored: OdinClient " + clientHwAddr
-                        + " doesn't exist");
+        // Ignore request if we don't know the client
+        if (client == null) {
+            log.error("Handoff request ignored: OdinClient " + clientHwAddr
+                      + " doesn't exist");
+            return;
+        }
+
+        // Handoffs of different clients don't interfere with each other
+        long requested = System.nanoTime();
+        synchronized (client) {
+            handoffTracer.record(Phase.LOCK_WAIT, newApIpAddr, requested);
+            if (clientManager.getClient(clientHwAddr) != client) {
+                log.error("Handoff request ignored: OdinClient " + clientHwAddr
+                          + " was removed");
                 return;
             }
-
             Lvap lvap = client.getLvap();
 
             assert (lvap != null);
@@ -455,16 +548,11 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                          + newAgent.getIpAddress());
 
                 // Push flow messages associated with the client
-                try {
-                    newAgent.getSwitch()
-                            .write(lvap.getOFMessageList(), null);
-                } catch (IOException e) {
-                    log.error("Failed to update switch's flow tables "
-                              + newAgent.getSwitch());
-                }
-
-                newAgent.addClientLvap(client);
-                lvap.setAgent(newAgent);
+                batch.pushFlowMods(newAgent, lvap.getOFMessageList());
+                batch.addLvap(newAgent, client);
+                clientManager.setClientAgent(client, newAgent);
+                handoffTracer.handoffStarted(clientHwAddr, newApIpAddr,
+                                             requested);
                 executor.schedule(new IdleLvapReclaimTask(client),
                                   idleLvapTimeout, TimeUnit.SECONDS);
                 return;
@@ -500,9 +588,8 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                           + " domain when in domain: '" + pool + "'");
             }
 
-            if (!(poolManager.getPoolsForAgent(newApIpAddr).contains(pool)
-                  && poolManager.getPoolsForAgent(currentApIpAddress)
-                                .contains(pool))) {
+            if (!(isAgentInPool(pool, newApIpAddr, agentsInPool)
+                  && isAgentInPool(pool, currentApIpAddress, agentsInPool))) {
                 log.info("Agents " + newApIpAddr + " and "
                          + currentApIpAddress + " are not in the same pool: "
                          + pool);
@@ -513,39 +600,83 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
             if ((agentManager.getAgent(currentApIpAddress)).getChannel()
                 != (agentManager.getAgent(newApIpAddr)).getChannel()) {
                 // Send CSA messages and wait.
+                long csaStart = System.nanoTime();
                 sendChannelSwitchToClient(clientPool, currentApIpAddress,
                                           clientHwAddr,
                                           client.getLvap().getSsids(),
                                           (agentManager
                                                   .getAgent(newApIpAddr))
                                                   .getChannel());
+                handoffTracer.record(Phase.CSA, newApIpAddr, csaStart);
                 // void sendChannelSwitchToClient (String pool, InetAddress agentAddr, MACAddress
                 // clientHwAddr, List<String> lvapSsids, int channel);
 
             }
 
             // Push flow messages associated with the client
-            try {
-                newAgent.getSwitch().write(lvap.getOFMessageList(), null);
-            } catch (IOException e) {
-                log.error("Failed to update switch's flow tables " + newAgent
-                        .getSwitch());
-            }
+            batch.pushFlowMods(newAgent, lvap.getOFMessageList());
 
             /* Client is with another AP. We remove the VAP from
              * the current AP of the client, and spawn it on the new one.
-             * We split the add and remove VAP operations across two threads
-             * to make it faster. Note that there is a temporary inconsistent
-             * state between setting the agent for the client and it actually
-             * being reflected in the network
+             * Note that there is a temporary inconsistent state between
+             * setting the agent for the client and it actually being
+             * reflected in the network, once the batch is sent
              */
-            lvap.setAgent(newAgent);
-            executor.execute(new OdinAgentLvapAddRunnable(newAgent, client));
-            executor.execute(new OdinAgentLvapRemoveRunnable(
-                    agentManager.getAgent(currentApIpAddress), client));
+            clientManager.setClientAgent(client, newAgent);
+            handoffTracer.handoffStarted(clientHwAddr, newApIpAddr, requested);
+            neighborGraph.observeHandoff(currentApIpAddress, newApIpAddr);
+            batch.addLvap(newAgent, client);
+            batch.removeLvap(agentManager.getAgent(currentApIpAddress),
+                             client);
         }
     }
 
+    /**
+     * Get the dispatcher that handles agent protocol events
+     *
+     * @return event dispatcher, null until the module has started
+     */
+    OdinEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    /**
+     * Get the latency histograms of handoffs
+     *
+     * @return handoff tracer
+     */
+    HandoffTracer getHandoffTracer() {
+        return handoffTracer;
+    }
+
+    OdinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param after hw address of the last client listed, null to start from the first client
+     * @return read-only view of the clients of a pool, by hw address
+     */
+    SortedSet<OdinClient> getClientsAfter(String pool, MACAddress after) {
+        return poolManager.getClientsFromPoolAfter(pool, after);
+    }
+
+    /**
+     * @return entity tag of the client listings, changed whenever a client is added, removed,
+     * handed off, given an address or placed in a pool
+     */
+    String getClientsTag() {
+        return clientManager.getVersion() + "." + poolManager
+                .getClientVersion();
+    }
+
+    /**
+     * @return entity tag of the agent listing, changed whenever the pools change
+     */
+    String getAgentsTag() {
+        return Long.toString(poolManager.getVersion());
+    }
+
     /**
      * Return Detector Ip Address
      *
@@ -581,6 +712,18 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         handoffClientToApInternal(pool, clientHwAddr, newApIpAddr);
     }
 
+    /**
+     * VAP-Handoff several clients at once, each to its own AP. Flow mods are sent in one write
+     * per switch and LVAP commands together per agent.
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param handoffs InetAddress of the future agent of each client
+     */
+    @Override public void handoffClientsToAps(String pool,
+                                              Map<MACAddress, InetAddress> handoffs) {
+        handoffClientsToApsInternal(pool, handoffs);
+    }
+
     /**
      * Get the list of clients currently registered with Odin
      *
@@ -642,6 +785,30 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         return agentManager.getAgent(agentAddr).getRxStats();
     }
 
+    /**
+     * Retrieve typed TxStats from the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    @Override public StationStats getTxStationStatsFromAgent(String pool,
+                                                             InetAddress agentAddr) {
+        return agentManager.getAgent(agentAddr).getTxStationStats();
+    }
+
+    /**
+     * Retrieve typed RxStats from the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @return statistics of each client
+     */
+    @Override public StationStats getRxStationStatsFromAgent(String pool,
+                                                             InetAddress agentAddr) {
+        return agentManager.getAgent(agentAddr).getRxStationStats();
+    }
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -672,6 +839,19 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                            .getScannedStationsStats(ssid);
     }
 
+    /**
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @param ssid      Network name
+     * @return statistics of each scanned station
+     */
+    @Override
+    public StationStats getScannedStationStatsFromAgent(String pool,
+                                                        InetAddress agentAddr,
+                                                        String ssid) {
+        return agentManager.getAgent(agentAddr).getScannedStationStats(ssid);
+    }
+
     /**
      * Request scanned stations statistics from the agent
      *
@@ -720,52 +900,14 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param oes  the subscription
      * @param cb   the callback
      */
-    @SuppressWarnings("Duplicates") @Override
-    public synchronized long registerSubscription(String pool,
-                                                  final OdinEventSubscription oes,
-                                                  final NotificationCallback cb) {
-        // FIXME: Need to calculate subscriptions per pool
+    @Override public long registerSubscription(String pool,
+                                               final OdinEventSubscription oes,
+                                               final NotificationCallback cb) {
         assert (oes != null);
         assert (cb != null);
-        SubscriptionCallbackTuple tup = new SubscriptionCallbackTuple();
-        tup.oes = oes;
-        tup.cb = cb;
-        subscriptionId++;
-        subscriptions.put(subscriptionId, tup);
-
-    /*
-     Update the subscription list, and push to all agents
-     TODO: This is a common subscription string being
-      sent to all agents. Replace this with per-agent
-      subscriptions.
-    */
-        subscriptionList = "";
-        int count = 0;
-        for (Entry<Long, SubscriptionCallbackTuple> entry : subscriptions
-                .entrySet()) {
-            count++;
-            final String addr = entry.getValue().oes.getClient();
-            subscriptionList =
-                    subscriptionList + entry.getKey() + " " + (addr.equals(
-                            "*") ?
-                                                               MACAddress
-                                                                       .valueOf(
-                                                                               "00:00:00:00:00:00") :
-                                                               addr) + " "
-                    + entry.getValue().oes.getStatistic() + " " + entry
-                            .getValue().oes.getRelation().ordinal() + " "
-                    + entry.getValue().oes.getValue() + " ";
-        }
-
-        subscriptionList = count + " " + subscriptionList;
-
-        /* Should probably have threads to do this */
-        for (InetAddress agentAddr : poolManager
-                .getAgentAddrsForPool(pool)) {
-            pushSubscriptionListToAgent(agentManager.getAgent(agentAddr));
-        }
 
-        return subscriptionId;
+        // Agents of the pool are pushed their updated list shortly after
+        return subscriptionRegistry.register(pool, oes, cb);
     }
 
     /**
@@ -774,37 +916,8 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param pool Pool that the invoking application corresponds to
      * @param id   subscription id to remove
      */
-    @SuppressWarnings("Duplicates") @Override
-    public synchronized void unregisterSubscription(String pool,
-                                                    final long id) {
-        // FIXME: Need to calculate subscriptions per pool
-        subscriptions.remove(id);
-
-        subscriptionList = "";
-        int count = 0;
-        for (Entry<Long, SubscriptionCallbackTuple> entry : subscriptions
-                .entrySet()) {
-            count++;
-            final String addr = entry.getValue().oes.getClient();
-            subscriptionList =
-                    subscriptionList + entry.getKey() + " " + (addr.equals(
-                            "*") ?
-                                                               MACAddress
-                                                                       .valueOf(
-                                                                               "00:00:00:00:00:00") :
-                                                               addr) + " "
-                    + entry.getValue().oes.getStatistic() + " " + entry
-                            .getValue().oes.getRelation().ordinal() + " "
-                    + entry.getValue().oes.getValue() + " ";
-        }
-
-        subscriptionList = count + " " + subscriptionList;
-
-        /* Should probably have threads to do this */
-        for (InetAddress agentAddr : poolManager
-                .getAgentAddrsForPool(pool)) {
-            pushSubscriptionListToAgent(agentManager.getAgent(agentAddr));
-        }
+    @Override public void unregisterSubscription(String pool, final long id) {
+        subscriptionRegistry.unregister(id);
     }
 
     /**
@@ -982,6 +1095,7 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
                                             InetAddress agentAddr,
                                             int channel) {
         agentManager.getAgent(agentAddr).setChannel(channel);
+        clientManager.setAgentChannel(agentAddr, channel);
     }
 
     /**
@@ -993,7 +1107,9 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      */
     @Override public int getChannelFromAgent(String pool,
                                              InetAddress agentAddr) {
-        return agentManager.getAgent(agentAddr).getChannel();
+        int channel = agentManager.getAgent(agentAddr).getChannel();
+        clientManager.setAgentChannel(agentAddr, channel);
+        return channel;
     }
 
     // TODO: check if error 'private' is a problem (01-06-2019)
@@ -1108,16 +1224,149 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         return agentManager.getAgent(agentAddr).getScannedStaRssi();
     }
 
+    /**
+     * Scan several channels with several agents at once, and retrieve the rssi of the wi5
+     * stations each agent heard on each channel
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return rssi rows per agent and channel
+     */
+    @Override public ScanResult scanStaRssiFromAgents(String pool,
+                                                      InetAddress[] agents,
+                                                      int[] channels,
+                                                      String ssid,
+                                                      long scanTime,
+                                                      long slack) {
+        return scanOrchestrator
+                .scanStaRssi(agents, channels, ssid, scanTime, slack).join();
+    }
+
+    /**
+     * Sweep several channels with several agents at once, each agent starting on a different
+     * channel
+     *
+     * @param pool     Pool that the invoking application corresponds to
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     Network to scan (* for all)
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, before giving up
+     * @return station statistics per channel and agent
+     */
+    @Override
+    public InterferenceMatrix sweepStationStatsFromAgents(String pool,
+                                                          InetAddress[] agents,
+                                                          int[] channels,
+                                                          String ssid,
+                                                          long scanTime,
+                                                          long slack) {
+        return scanOrchestrator
+                .sweepStationStats(agents, channels, ssid, scanTime, slack)
+                .join();
+    }
+
+    /**
+     * Scan for a client with several agents at once
+     *
+     * @param pool         Pool that the invoking application corresponds to
+     * @param agents       agents to scan with
+     * @param clientHwAddr MAC address of the client
+     * @param channel      Channel number
+     * @param time         Scanning time
+     * @return signal power each agent heard the client with, missing for agents that failed
+     */
+    @Override
+    public Map<InetAddress, Integer> scanClientFromAgents(String pool,
+                                                          InetAddress[] agents,
+                                                          MACAddress clientHwAddr,
+                                                          int channel,
+                                                          int time) {
+        return scanOrchestrator.scanClient(agents, clientHwAddr, channel, time,
+                                           CLIENT_SCAN_SLACK).join();
+    }
+
+    /**
+     * Report the signal an agent heard the measurement beacon of another agent with
+     *
+     * @param pool          Pool that the invoking application corresponds to
+     * @param beaconAgent   InetAddress of the agent that sent the beacon
+     * @param scanningAgent InetAddress of the agent that heard it
+     * @param rssi          average signal of the beacon in dBm
+     */
+    @Override public void reportBeaconRssi(String pool,
+                                           InetAddress beaconAgent,
+                                           InetAddress scanningAgent,
+                                           double rssi) {
+        neighborGraph.observeBeacon(beaconAgent, scanningAgent, rssi);
+    }
+
+    /**
+     * Get the agents closest to an agent, the likeliest next APs of its clients
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @param k         number of neighbors wanted
+     * @return up to k agents of the pool still connected, best first
+     */
+    @Override public List<InetAddress> getNeighborAgents(String pool,
+                                                         InetAddress agentAddr,
+                                                         int k) {
+        List<InetAddress> neighbors = new ArrayList<>(k);
+        Set<InetAddress> poolAgents = poolManager.getAgentAddrsForPool(pool);
+        // Agents that left are skipped, they may come back where they were
+        for (InetAddress addr : neighborGraph
+                .getNeighbors(agentAddr, ApNeighborGraph.DEFAULT_MAX_NEIGHBORS)) {
+            if (neighbors.size() == k) {
+                break;
+            }
+            if (poolAgents.contains(addr)
+                && agentManager.getAgent(addr) != null) {
+                neighbors.add(addr);
+            }
+        }
+        return neighbors;
+    }
+
     /**
      * Retrieve associated wi5 stations in the agent
      *
      * @param pool      Pool that the invoking application corresponds to
      * @param agentAddr InetAddress of the agent
-     * @return Set of OdinClient associated in the agent
+     * @return Read-only view of the OdinClient associated in the agent, safe to iterate without copying
      */
     @Override public Set<OdinClient> getClientsFromAgent(String pool,
                                                          InetAddress agentAddr) {
-        return agentManager.getAgent(agentAddr).getLvapsLocal();
+        return clientManager.getClientsFromAgent(agentAddr);
+    }
+
+    /**
+     * Retrieve the number of associated wi5 stations in the agent
+     *
+     * @param pool      Pool that the invoking application corresponds to
+     * @param agentAddr InetAddress of the agent
+     * @return number of OdinClient associated in the agent
+     */
+    @Override public int getClientCountFromAgent(String pool,
+                                                 InetAddress agentAddr) {
+        return clientManager.getClientCountFromAgent(agentAddr);
+    }
+
+    /**
+     * Retrieve wi5 stations associated to agents on a channel. Agents are placed on a channel
+     * when it is set or read through the master.
+     *
+     * @param pool    Pool that the invoking application corresponds to
+     * @param channel the channel
+     * @return Read-only view of the OdinClient associated in agents on that channel
+     */
+    @Override public Set<OdinClient> getClientsOnChannel(String pool,
+                                                         int channel) {
+        return clientManager.getClientsOnChannel(channel);
     }
 
     /**
@@ -1243,9 +1492,17 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         floodlightProvider = context
                 .getServiceImpl(IFloodlightProviderService.class);
         restApi = context.getServiceImpl(IRestApiService.class);
-        IThreadPoolService tp = context
-                .getServiceImpl(IThreadPoolService.class);
-        executor = tp.getScheduledExecutor();
+    }
+
+    /**
+     * Set the executor the master and its helpers schedule their tasks on
+     */
+    void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+        subscriptionRegistry.setExecutor(executor);
+        probeCoalescer.setExecutor(executor);
+        scanOrchestrator = new ScanOrchestrator(agentManager, executor,
+                                                metrics);
     }
 
     @Override public void startUp(FloodlightModuleContext context) {
@@ -1673,6 +1930,30 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
             e.printStackTrace();
         }
 
+        // Clients of the previous run, kept in the state journal
+        String journalFile = DEFAULT_STATE_JOURNAL_FILE;
+        String journalFileConfig = configOptions.get("stateJournal");
+
+        if (journalFileConfig != null) {
+            journalFile = journalFileConfig;
+        }
+
+        if (!journalFile.isEmpty()) {
+            stateJournal = new StateJournal(Paths.get(journalFile),
+                                            clientManager, poolManager,
+                                            lvapManager);
+            try {
+                long start = System.nanoTime();
+                int restored = stateJournal.restore();
+                log.info("Restored " + restored + " clients from "
+                         + journalFile + " in " + TimeUnit.NANOSECONDS
+                                 .toMillis(System.nanoTime() - start) + " ms");
+            } catch (IOException e) {
+                log.error("Cannot open the state journal " + journalFile, e);
+                stateJournal = null;
+            }
+        }
+
         // Lvap timeout, port, and ssid-list
         String timeoutStr = configOptions.get("idleLvapTimeout");
         if (timeoutStr != null) {
@@ -1683,21 +1964,95 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
             }
         }
 
+        String ttlStr = configOptions.get("radioConfigTtl");
+        if (ttlStr != null) {
+            long ttl = Long.parseLong(ttlStr);
+
+            if (ttl >= 0) {
+                agentManager.setRadioConfigTtl(ttl);
+            }
+        }
+
+        String windowStr = configOptions.get("probeCoalesceWindow");
+        if (windowStr != null) {
+            long window = Long.parseLong(windowStr);
+
+            if (window >= 0) {
+                probeCoalescer.setWindow(window);
+            }
+        }
+
         int port = DEFAULT_PORT;
         String portNum = configOptions.get("masterPort");
         if (portNum != null) {
             port = Integer.parseInt(portNum);
         }
 
+        int lanes = DEFAULT_DISPATCH_LANES;
+        String lanesStr = configOptions.get("dispatchLanes");
+        if (lanesStr != null) {
+            lanes = Integer.parseInt(lanesStr);
+        }
+
+        int queueCapacity = OdinEventDispatcher.DEFAULT_QUEUE_CAPACITY;
+        String queueCapacityStr = configOptions.get("dispatchQueueCapacity");
+        if (queueCapacityStr != null) {
+            queueCapacity = Integer.parseInt(queueCapacityStr);
+        }
+
+        int parallelism = AgentBootstrap.DEFAULT_PARALLELISM;
+        String parallelismStr = configOptions.get("bootstrapParallelism");
+        if (parallelismStr != null) {
+            parallelism = Integer.parseInt(parallelismStr);
+        }
+
         IThreadPoolService tp = context
                 .getServiceImpl(IThreadPoolService.class);
-        executor = tp.getScheduledExecutor();
-        // Spawn threads for different services
-        executor.execute(new OdinAgentProtocolServer(this, port, executor));
+        setExecutor(tp.getScheduledExecutor());
+        agentManager.setBootstrapExecutors(
+                AgentBootstrap.newWorkers(parallelism), executor);
+        eventDispatcher = new OdinEventDispatcher(lanes, queueCapacity);
+        if (stateJournal != null) {
+            long interval = StateJournal.DEFAULT_INTERVAL;
+            String intervalStr = configOptions.get("stateJournalInterval");
+            if (intervalStr != null && Long.parseLong(intervalStr) > 0) {
+                interval = Long.parseLong(intervalStr);
+            }
+            executor.scheduleWithFixedDelay(stateJournal, interval, interval,
+                                            TimeUnit.MILLISECONDS);
+
+            // Restored clients that had not associated are reclaimed like new ones, even if their
+            // agent never comes back
+            for (OdinClient client : clientManager.getClients().values()) {
+                if (!client.getLvap().getAssocState()) {
+                    executor.schedule(new IdleLvapReclaimTask(client),
+                                      idleLvapTimeout, TimeUnit.SECONDS);
+                }
+            }
+        }
+        // Spawn threads for different services. The lanes stop along with the server, once the
+        // executor is shut down.
+        final OdinAgentProtocolServer server = new OdinAgentProtocolServer(
+                this, port, eventDispatcher);
+        final OdinEventDispatcher dispatcher = eventDispatcher;
+        executor.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    server.run();
+                } finally {
+                    dispatcher.shutdown();
+                }
+            }
+        });
 
         // Spawn applications
         for (OdinApplication app : applicationList) {
-            executor.execute(app);
+            ApplicationScheduler scheduler = new ApplicationScheduler(app,
+                                                                      executor);
+            app.setScheduler(scheduler);
+            agentManager.addAgentStatusListener(scheduler);
+            clientManager.addClientStatusListener(scheduler);
+            scheduler.start();
         }
     }
 
@@ -1785,7 +2140,7 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
 
                     log.info("Updating client: " + clientHwAddr
                              + " with ipAddr: " + yourIp);
-                    oc.setIpAddress(yourIp);
+                    clientManager.setClientIpAddress(oc, yourIp);
           /*	oc.getLvap().setOFMessageList(lvapManager.getDefaultOFModList(yourIp));
 
           // Push flow messages associated with the client
@@ -1822,7 +2177,7 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param oa agent to push subscription list to
      */
     private void pushSubscriptionListToAgent(final IOdinAgent oa) {
-        oa.setSubscriptions(subscriptionList);
+        subscriptionRegistry.pushTo(oa);
     }
 
     /**
@@ -1831,64 +2186,8 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
      * @param odinAgentAddr InetAddress of the agent
      */
     private void updateAgentLastHeard(InetAddress odinAgentAddr) {
-        IOdinAgent agent = agentManager.getAgent(odinAgentAddr);
-
-        if (agent != null) {
-            // Update last-heard for failure detection
-            agent.setLastHeard(System.currentTimeMillis());
-        }
-    }
-
-    private class OdinAgentLvapAddRunnable implements Runnable {
-
-        final IOdinAgent oa;
-        final OdinClient oc;
-
-        OdinAgentLvapAddRunnable(IOdinAgent newAgent, OdinClient oc) {
-            this.oa = newAgent;
-            this.oc = oc;
-        }
-
-        @Override public void run() {
-            oa.addClientLvap(oc);
-        }
-    }
-
-    private class OdinAgentLvapRemoveRunnable implements Runnable {
-
-        final IOdinAgent oa;
-        final OdinClient oc;
-
-        OdinAgentLvapRemoveRunnable(IOdinAgent oa, OdinClient oc) {
-            this.oa = oa;
-            this.oc = oc;
-        }
-
-        @Override public void run() {
-            oa.removeClientLvap(oc);
-        }
-    }
-
-    private class OdinAgentSendProbeResponseRunnable implements Runnable {
-
-        final IOdinAgent oa;
-        final MACAddress clientHwAddr;
-        final MACAddress bssid;
-        final Set<String> ssidList;
-
-        OdinAgentSendProbeResponseRunnable(IOdinAgent oa,
-                                           MACAddress clientHwAddr,
-                                           MACAddress bssid,
-                                           Set<String> ssidList) {
-            this.oa = oa;
-            this.clientHwAddr = clientHwAddr;
-            this.bssid = bssid;
-            this.ssidList = ssidList;
-        }
-
-        @Override public void run() {
-            oa.sendProbeResponse(clientHwAddr, bssid, ssidList);
-        }
+        // Update last-heard for failure detection
+        agentManager.agentHeard(odinAgentAddr, System.currentTimeMillis());
     }
 
     private class IdleLvapReclaimTask implements Runnable {
@@ -1910,15 +2209,24 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
             // Client didn't follow through to connect - no assoc message received in the master
 
             if (!client.getLvap().getAssocState()) {
-                IOdinAgent agent = client.getLvap().getAgent();
-
-                if (agent != null) {
-                    log.info("Clearing Lvap " + client.getMacAddress()
-                             + " from agent:" + agent.getIpAddress()
-                             + " due to association not completed");
-                    poolManager.removeClientPoolMapping(client);
-                    agent.removeClientLvap(client);
-                    clientManager.removeClient(client.getMacAddress());
+                // Same lock as the handoffs, so a client is not removed halfway through one
+                synchronized (client) {
+                    IOdinAgent agent = client.getLvap().getAgent();
+
+                    if (clientManager.getClient(client.getMacAddress()) == client) {
+                        // A client restored from the journal has no agent until its own is back
+                        log.info("Clearing Lvap " + client.getMacAddress()
+                                 + " from agent:"
+                                 + (agent == null ? null : agent.getIpAddress())
+                                 + " due to association not completed");
+                        poolManager.removeClientPoolMapping(client);
+                        if (agent != null) {
+                            agent.removeClientLvap(client);
+                        }
+                        clientManager.removeClient(client.getMacAddress());
+                        handoffTracer.forget(client.getMacAddress());
+                        metrics.lvapReclaimed(OdinMetrics.Reclaim.IDLE);
+                    }
                 }
 
             } else {
@@ -1948,12 +2256,6 @@ public class OdinMaster implements IFloodlightModule, IOFSwitchListener,
         }
     }
 
-    private class SubscriptionCallbackTuple {
-
-        OdinEventSubscription oes;
-        NotificationCallback cb;
-    }
-
     private class FlowDetectionCallbackTuple {
 
         OdinEventFlowDetection oefd;
@@ -18,6 +18,10 @@ class OdinMasterWebRoutable implements RestletRoutable {
                       ConnectedClientsResource.class);
         router.attach("/agents/json", AgentManagerResource.class);
         router.attach("/handoff/json", LvapHandoffResource.class);
+        router.attach("/handoff/latency/json", HandoffLatencyResource.class);
+        router.attach("/dispatcher/json", EventDispatcherResource.class);
+        router.attach("/metrics/json", MetricsResource.class);
+        router.attach("/metrics", MetricsTextResource.class);
         return router;
     }
 }
@@ -0,0 +1,306 @@
+package net.floodlightcontroller.odin.master;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operational metrics of the master: messages from the agents by type, and dropped, round trip of
+ * the control socket reads per agent and handler, LVAPs spawned and reclaimed, subscription
+ * matches, probes coalesced and scan outcomes. Counters are LongAdders, striped across the threads
+ * that update them, and round trips go to {@link LatencyHistogram}s, so recording takes no lock.
+ * Nothing is summed or formatted until someone reads the metrics, as JSON or in the Prometheus text
+ * format.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class OdinMetrics {
+
+    enum Reclaim {
+        DEAUTH, // The client deauthenticated
+        IDLE    // The client did not associate in time
+    }
+
+    private static final OdinAgentMessage.Type[] TYPES = OdinAgentMessage.Type
+            .values();
+    private static final ScanResult.Status[] SCAN_STATUSES = {
+            ScanResult.Status.OK, ScanResult.Status.BUSY,
+            ScanResult.Status.FAILED, ScanResult.Status.TIMED_OUT};
+
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder[] messages = adders(TYPES.length);
+    private final LongAdder malformedMessages = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final ConcurrentHashMap<InetAddress, ConcurrentHashMap<String, LatencyHistogram>> controlRtt = new ConcurrentHashMap<>();
+    private final LongAdder controlFailures = new LongAdder();
+    private final LongAdder lvapsSpawned = new LongAdder();
+    private final LongAdder[] lvapsReclaimed = adders(Reclaim.values().length);
+    private final LongAdder subscriptionMatches = new LongAdder();
+    private final LongAdder probesCoalesced = new LongAdder();
+    private final LongAdder[] scans = adders(
+            ScanResult.Status.values().length);
+
+    void message(OdinAgentMessage.Type type) {
+        messages[type.ordinal()].increment();
+    }
+
+    void malformedMessage() {
+        malformedMessages.increment();
+    }
+
+    /**
+     * A message was dropped, the master not keeping up with the agents
+     */
+    void droppedMessage() {
+        droppedMessages.increment();
+    }
+
+    long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    /**
+     * A read handler of an agent answered, or failed
+     *
+     * @param start System.nanoTime() when the read was sent
+     */
+    void controlRead(InetAddress agent, String handler, long start,
+                     boolean ok) {
+        if (!ok) {
+            controlFailures.increment();
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        // get() first, computeIfAbsent() locks the bin even when the key is there
+        ConcurrentHashMap<String, LatencyHistogram> handlers = controlRtt
+                .get(agent);
+        if (handlers == null) {
+            handlers = controlRtt.computeIfAbsent(agent,
+                                                  k -> new ConcurrentHashMap<>());
+        }
+        LatencyHistogram h = handlers.get(handler);
+        if (h == null) {
+            h = handlers.computeIfAbsent(handler, k -> new LatencyHistogram());
+        }
+        h.record(micros);
+    }
+
+    void lvapSpawned() {
+        lvapsSpawned.increment();
+    }
+
+    void lvapReclaimed(Reclaim reason) {
+        lvapsReclaimed[reason.ordinal()].increment();
+    }
+
+    /**
+     * @param matches subscriptions the published event matched
+     */
+    void published(int matches) {
+        subscriptionMatches.add(matches);
+    }
+
+    /**
+     * A probe was dropped, the agent having answered the client a moment ago
+     */
+    void probeCoalesced() {
+        probesCoalesced.increment();
+    }
+
+    /**
+     * An agent was done with a channel of a scan
+     */
+    void scanned(ScanResult.Status status) {
+        scans[status.ordinal()].increment();
+    }
+
+    long getMessages(OdinAgentMessage.Type type) {
+        return messages[type.ordinal()].sum();
+    }
+
+    long getLvapsSpawned() {
+        return lvapsSpawned.sum();
+    }
+
+    long getLvapsReclaimed(Reclaim reason) {
+        return lvapsReclaimed[reason.ordinal()].sum();
+    }
+
+    long getScans(ScanResult.Status status) {
+        return scans[status.ordinal()].sum();
+    }
+
+    LatencyHistogram getControlRtt(InetAddress agent, String handler) {
+        Map<String, LatencyHistogram> handlers = controlRtt.get(agent);
+        return handlers == null ? null : handlers.get(handler);
+    }
+
+    /**
+     * @return every metric, round trips in microseconds
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        double uptime = (System.nanoTime() - startedAt) / 1e9;
+        m.put("uptime", Math.round(uptime));
+
+        Map<String, Object> msgs = new LinkedHashMap<>();
+        for (OdinAgentMessage.Type type : TYPES) {
+            msgs.put(name(type), getMessages(type));
+        }
+        msgs.put("malformed", malformedMessages.sum());
+        msgs.put("dropped", getDroppedMessages());
+        m.put("messages", msgs);
+
+        Map<String, Object> rtt = new TreeMap<>();
+        for (Map.Entry<InetAddress, ConcurrentHashMap<String, LatencyHistogram>> e : controlRtt
+                .entrySet()) {
+            Map<String, Object> handlers = new TreeMap<>();
+            for (Map.Entry<String, LatencyHistogram> h : e.getValue()
+                    .entrySet()) {
+                handlers.put(h.getKey(), h.getValue().toMap());
+            }
+            rtt.put(e.getKey().getHostAddress(), handlers);
+        }
+        m.put("controlRtt", rtt);
+        m.put("controlFailures", controlFailures.sum());
+
+        Map<String, Object> lvaps = new LinkedHashMap<>();
+        lvaps.put("spawned", getLvapsSpawned());
+        for (Reclaim reason : Reclaim.values()) {
+            lvaps.put("reclaimed_" + name(reason), getLvapsReclaimed(reason));
+        }
+        m.put("lvaps", lvaps);
+
+        Map<String, Object> subscriptions = new LinkedHashMap<>();
+        long publishes = getMessages(OdinAgentMessage.Type.PUBLISH);
+        subscriptions.put("publishes", publishes);
+        subscriptions.put("publishesPerSecond",
+                          uptime > 0 ? publishes / uptime : 0.0);
+        subscriptions.put("matches", subscriptionMatches.sum());
+        m.put("subscriptions", subscriptions);
+        m.put("probesCoalesced", probesCoalesced.sum());
+
+        Map<String, Object> scanMap = new LinkedHashMap<>();
+        long total = 0;
+        for (ScanResult.Status s : SCAN_STATUSES) {
+            long n = getScans(s);
+            scanMap.put(name(s), n);
+            total += n;
+        }
+        scanMap.put("successRatio", ratio(getScans(ScanResult.Status.OK),
+                                          total));
+        scanMap.put("busyRatio", ratio(getScans(ScanResult.Status.BUSY),
+                                       total));
+        m.put("scans", scanMap);
+        return m;
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format (version 0.0.4)
+     */
+    String toText() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        header(sb, "odin_agent_messages_total", "counter",
+               "Messages received from the agents, by type");
+        for (OdinAgentMessage.Type type : TYPES) {
+            sb.append("odin_agent_messages_total{type=\"").append(name(type))
+              .append("\"} ").append(getMessages(type)).append('\n');
+        }
+        header(sb, "odin_agent_messages_malformed_total", "counter",
+               "Messages from the agents that could not be parsed");
+        sample(sb, "odin_agent_messages_malformed_total",
+               malformedMessages.sum());
+        header(sb, "odin_agent_messages_dropped_total", "counter",
+               "Messages from the agents dropped as the master was not keeping up");
+        sample(sb, "odin_agent_messages_dropped_total", getDroppedMessages());
+
+        header(sb, "odin_agent_control_rtt_microseconds", "summary",
+               "Round trip of the control socket reads, by agent and handler");
+        for (Map.Entry<InetAddress, ConcurrentHashMap<String, LatencyHistogram>> e : controlRtt
+                .entrySet()) {
+            String agent = e.getKey().getHostAddress();
+            for (Map.Entry<String, LatencyHistogram> h : e.getValue()
+                    .entrySet()) {
+                summary(sb, "odin_agent_control_rtt_microseconds",
+                        "agent=\"" + agent + "\",handler=\"" + h.getKey()
+                        + "\"", h.getValue());
+            }
+        }
+        header(sb, "odin_agent_control_failures_total", "counter",
+               "Control socket reads that failed");
+        sample(sb, "odin_agent_control_failures_total", controlFailures.sum());
+
+        header(sb, "odin_lvap_spawns_total", "counter", "LVAPs spawned");
+        sample(sb, "odin_lvap_spawns_total", getLvapsSpawned());
+        header(sb, "odin_lvap_reclaims_total", "counter",
+               "LVAPs reclaimed, by reason");
+        for (Reclaim reason : Reclaim.values()) {
+            sb.append("odin_lvap_reclaims_total{reason=\"").append(name(reason))
+              .append("\"} ").append(getLvapsReclaimed(reason)).append('\n');
+        }
+
+        header(sb, "odin_subscription_matches_total", "counter",
+               "Subscriptions matched by the events the agents published");
+        sample(sb, "odin_subscription_matches_total",
+               subscriptionMatches.sum());
+
+        header(sb, "odin_probes_coalesced_total", "counter",
+               "Probes dropped, the agent having answered the client a moment ago");
+        sample(sb, "odin_probes_coalesced_total", probesCoalesced.sum());
+
+        header(sb, "odin_scans_total", "counter",
+               "Channels scanned by an agent, by outcome");
+        for (ScanResult.Status s : SCAN_STATUSES) {
+            sb.append("odin_scans_total{status=\"").append(name(s))
+              .append("\"} ").append(getScans(s)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String metric, String type,
+                               String help) {
+        sb.append("# HELP ").append(metric).append(' ').append(help)
+          .append('\n');
+        sb.append("# TYPE ").append(metric).append(' ').append(type)
+          .append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String metric, long value) {
+        sb.append(metric).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String metric,
+                                String labels, LatencyHistogram h) {
+        for (double q : new double[] {0.5, 0.9, 0.99}) {
+            sb.append(metric).append('{').append(labels).append(",quantile=\"")
+              .append(q).append("\"} ").append(h.getValueAtPercentile(q * 100))
+              .append('\n');
+        }
+        sb.append(metric).append("_sum{").append(labels).append("} ")
+          .append(h.getSum()).append('\n');
+        sb.append(metric).append("_count{").append(labels).append("} ")
+          .append(h.getCount()).append('\n');
+    }
+
+    private static double ratio(long n, long total) {
+        return total == 0 ? 0.0 : (double) n / total;
+    }
+
+    private static String name(Enum<?> e) {
+        return e.name().toLowerCase();
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new LongAdder();
+        }
+        return a;
+    }
+}
@@ -5,6 +5,9 @@ import net.floodlightcontroller.util.MACAddress;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class does all the book keeping for Odin's pool-based state. The master and other components
@@ -19,14 +22,29 @@ class PoolManager {
     private final Map<InetAddress, List<String>> agentToPoolListMap = new ConcurrentHashMap<InetAddress, List<String>>();
     private final Map<String, Set<InetAddress>> poolToAgentSetMap = new ConcurrentHashMap<String, Set<InetAddress>>();
     private final Map<String, Set<String>> poolToSsidListMap = new ConcurrentHashMap<String, Set<String>>();
-    private final Map<String, Set<OdinClient>> poolToClientSetMap = new ConcurrentHashMap<String, Set<OdinClient>>();
+    private final ClientIndex<String> poolToClientIndex = new ClientIndex<String>();
     private final Map<OdinClient, String> clientToPoolMap = new ConcurrentHashMap<OdinClient, String>();
-    private int numNetworks = 0;
+    private volatile int numNetworks = 0;
 
+    // SSIDs of each agent's pools, recomputed once a pool or its networks changed
+    private final Map<InetAddress, AgentSsids> agentSsidCache = new ConcurrentHashMap<InetAddress, AgentSsids>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong clientVersion = new AtomicLong();
+
+    private static class AgentSsids {
+        final long version;
+        final Set<String> ssids;
+
+        AgentSsids(long version, Set<String> ssids) {
+            this.version = version;
+            this.ssids = ssids;
+        }
+    }
+
+    // Pools are read and updated from several event dispatcher lanes, hence the concurrent sets
     PoolManager() {
-        poolToAgentSetMap.put(GLOBAL_POOL, new HashSet<InetAddress>());
-        poolToSsidListMap.put(GLOBAL_POOL, new TreeSet<String>());
-        poolToClientSetMap.put(GLOBAL_POOL, new TreeSet<OdinClient>());
+        poolToAgentSetMap.put(GLOBAL_POOL, ConcurrentHashMap.<InetAddress>newKeySet());
+        poolToSsidListMap.put(GLOBAL_POOL, new ConcurrentSkipListSet<String>());
     }
 
     /**
@@ -55,19 +73,45 @@ class PoolManager {
         if (agentToPoolListMap.containsKey(agentInetAddr)) {
             agentToPoolListMap.get(agentInetAddr).add(pool);
         } else {
-            List<String> poolList = new ArrayList<String>();
+            List<String> poolList = new CopyOnWriteArrayList<String>();
             poolList.add(pool);
             agentToPoolListMap.put(agentInetAddr, poolList);
         }
 
-        if (!poolToClientSetMap.containsKey(pool)) {
-            poolToAgentSetMap.put(pool, new HashSet<InetAddress>());
-            poolToClientSetMap.put(pool, new TreeSet<OdinClient>());
-            poolToSsidListMap.put(pool, new TreeSet<String>());
+        if (!poolToAgentSetMap.containsKey(pool)) {
+            poolToAgentSetMap.put(pool, ConcurrentHashMap.<InetAddress>newKeySet());
+            poolToSsidListMap.put(pool, new ConcurrentSkipListSet<String>());
         }
 
         poolToAgentSetMap.get(GLOBAL_POOL).add(agentInetAddr);
         poolToAgentSetMap.get(pool).add(agentInetAddr);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Get the SSIDs of every pool the agent belongs to, those it answers active scans with. The set
+     * is cached until the agent's pools or their networks change.
+     *
+     * @param agentInetAddr agent's address
+     * @return immutable set of SSIDs
+     */
+    Set<String> getSsidsForAgent(InetAddress agentInetAddr) {
+        // Read before the pools, a change while computing leaves a stale version behind
+        long current = version.get();
+        AgentSsids cached = agentSsidCache.get(agentInetAddr);
+        if (cached != null && cached.version == current) {
+            return cached.ssids;
+        }
+
+        Set<String> ssids = new TreeSet<String>();
+        for (String pool : getPoolsForAgent(agentInetAddr)) {
+            if (!pool.equals(GLOBAL_POOL)) {
+                ssids.addAll(getSsidListForPool(pool));
+            }
+        }
+        ssids = Collections.unmodifiableSet(ssids);
+        agentSsidCache.put(agentInetAddr, new AgentSsids(current, ssids));
+        return ssids;
     }
 
     /**
@@ -98,6 +142,7 @@ class PoolManager {
         if (poolToSsidListMap.get(GLOBAL_POOL).add(ssid)) {
             poolToSsidListMap.get(pool).add(ssid);
             numNetworks++;
+            version.incrementAndGet();
             System.out.println(
                     "[DEBUG] PoolManager: " + poolToSsidListMap.toString());
             return true;
@@ -121,6 +166,7 @@ class PoolManager {
         if (poolToSsidListMap.get(pool).remove(ssid)) {
             poolToSsidListMap.get(GLOBAL_POOL).remove(ssid);
             numNetworks--;
+            version.incrementAndGet();
             return true;
         }
 
@@ -160,11 +206,12 @@ class PoolManager {
         String currentPool = clientToPoolMap.put(client, pool);
 
         if (currentPool != null) {
-            poolToClientSetMap.get(currentPool).remove(client);
+            poolToClientIndex.remove(currentPool, client);
         }
 
-        poolToClientSetMap.get(GLOBAL_POOL).add(client);
-        poolToClientSetMap.get(pool).add(client);
+        poolToClientIndex.add(GLOBAL_POOL, client);
+        poolToClientIndex.add(pool, client);
+        clientVersion.incrementAndGet();
     }
 
     /**
@@ -174,18 +221,53 @@ class PoolManager {
         String currentPool = clientToPoolMap.get(client);
 
         if (currentPool != null) {
-            poolToClientSetMap.get(currentPool).remove(client);
+            poolToClientIndex.remove(currentPool, client);
             clientToPoolMap.remove(client);
+            clientVersion.incrementAndGet();
         }
     }
 
     /**
      * Get the set of clients that have connected to a particular pool
      *
-     * @return Immutable set of OdinClient instances in that pool
+     * @return Read-only view of the OdinClient instances in that pool
      */
     Set<OdinClient> getClientsFromPool(String pool) {
-        return Collections.unmodifiableSet(poolToClientSetMap.get(pool));
+        return poolToClientIndex.get(pool);
+    }
+
+    /**
+     * Get the clients of a pool from a hw address on, for a listing to resume where it stopped
+     *
+     * @param after hw address of the last client listed, null to start from the first client
+     * @return read-only view of the clients, by hw address
+     */
+    SortedSet<OdinClient> getClientsFromPoolAfter(String pool,
+                                                  MACAddress after) {
+        SortedSet<OdinClient> clients = poolToClientIndex.get(pool);
+        if (after == null) {
+            return clients;
+        }
+        long next = after.toLong() + 1;
+        if (next >> 48 != 0) {
+            return Collections.<OdinClient>emptySortedSet();
+        }
+        return clients.tailSet(
+                new OdinClient(MACAddress.valueOf(next), null, null));
+    }
+
+    /**
+     * @return a number that changes whenever a pool or its agents or networks do
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return a number that changes whenever a client joins or leaves a pool
+     */
+    long getClientVersion() {
+        return clientVersion.get();
     }
 
     /**
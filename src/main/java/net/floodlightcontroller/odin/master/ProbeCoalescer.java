@@ -0,0 +1,139 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Answers the active scans of the clients (probes without an SSID). A client probes on every
+ * channel in bursts, and every agent in range reports each probe, so an agent answers a client at
+ * most once per window; the probes in between are dropped. The answers an agent owes are sent
+ * together, in a single write to its control socket, as soon as the executor gets to them: probes
+ * reported meanwhile join the same write, but no answer is held back to wait for others.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ProbeCoalescer implements AgentStatusListener {
+
+    static final long DEFAULT_WINDOW = 100; // ms
+    private static final int PRUNE_SIZE = 256; // Clients remembered by an agent before pruning
+
+    /**
+     * Probes reported by one agent
+     */
+    private static class AgentProbes {
+        // Guarded by this
+        final Map<MACAddress, Long> answeredAt = new HashMap<>();
+        List<MACAddress> pending = new ArrayList<>();
+        boolean flushScheduled = false;
+    }
+
+    private final AgentManager agentManager;
+    private final PoolManager poolManager;
+    private final ConcurrentHashMap<InetAddress, AgentProbes> agents = new ConcurrentHashMap<>();
+    private volatile Executor executor;
+    private volatile long window = DEFAULT_WINDOW;
+
+    ProbeCoalescer(AgentManager agentManager, PoolManager poolManager) {
+        this.agentManager = agentManager;
+        this.poolManager = poolManager;
+    }
+
+    /**
+     * Set the executor that sends the answers. Without one, they are sent right away by the thread
+     * that reported the probe.
+     */
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param window time in ms during which an agent answers a client only once, 0 to answer every
+     *               probe
+     */
+    void setWindow(long window) {
+        this.window = window;
+    }
+
+    /**
+     * An agent reported a probe without an SSID
+     *
+     * @param now time of the probe, in ms
+     * @return true if the probe will be answered, false if the agent answered the client less than
+     * a window ago
+     */
+    boolean probed(InetAddress agentAddr, MACAddress clientHwAddr, long now) {
+        AgentProbes probes = agents.get(agentAddr);
+        if (probes == null) {
+            probes = agents.computeIfAbsent(agentAddr, k -> new AgentProbes());
+        }
+
+        boolean schedule;
+        synchronized (probes) {
+            Long last = probes.answeredAt.get(clientHwAddr);
+            if (last != null && now - last < window) {
+                return false;
+            }
+            probes.answeredAt.put(clientHwAddr, now);
+            probes.pending.add(clientHwAddr);
+            schedule = !probes.flushScheduled;
+            probes.flushScheduled = true;
+        }
+
+        if (schedule) {
+            final AgentProbes p = probes;
+            Executor e = executor;
+            if (e == null) {
+                flush(agentAddr, p, now);
+            } else {
+                e.execute(() -> flush(agentAddr, p,
+                                      System.currentTimeMillis()));
+            }
+        }
+        return true;
+    }
+
+    private void flush(InetAddress agentAddr, AgentProbes probes, long now) {
+        List<MACAddress> clients;
+        synchronized (probes) {
+            clients = probes.pending;
+            probes.pending = new ArrayList<>();
+            probes.flushScheduled = false;
+
+            if (probes.answeredAt.size() > PRUNE_SIZE) {
+                Iterator<Long> it = probes.answeredAt.values().iterator();
+                while (it.hasNext()) {
+                    if (now - it.next() >= window) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        IOdinAgent agent = agentManager.getAgent(agentAddr);
+        if (agent == null || clients.isEmpty()) {
+            return;
+        }
+        List<MACAddress> bssids = new ArrayList<>(clients.size());
+        for (MACAddress client : clients) {
+            bssids.add(poolManager.generateBssidForClient(client));
+        }
+        Set<String> ssids = poolManager.getSsidsForAgent(agentAddr);
+        agent.sendProbeResponses(clients, bssids, ssids);
+    }
+
+    @Override public void agentUp(IOdinAgent agent) {
+    }
+
+    @Override public void agentDown(IOdinAgent agent) {
+        agents.remove(agent.getIpAddress());
+    }
+}
@@ -0,0 +1,332 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scans on many agents at once. Every agent goes through the requested channels on its own
+ * (it only has one radio to scan with), requesting the scan, waiting for it to finish and
+ * collecting the RSSI of the stations it heard, without ever blocking a thread. Agents do not wait
+ * for each other, so a scan takes about one scan interval per channel however many agents there
+ * are. Agents that are busy, fail, or are still going at their deadline are reported as such and
+ * don't hold back the others.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class ScanOrchestrator {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(ScanOrchestrator.class);
+
+    private final AgentManager agentManager;
+    private final ScheduledExecutorService executor;
+    private final OdinMetrics metrics;
+
+    /**
+     * @param agentManager where to find the agents
+     * @param executor     used to wait for scans to finish
+     * @param metrics      where to count the outcome of every channel scanned by an agent
+     */
+    ScanOrchestrator(AgentManager agentManager,
+                     ScheduledExecutorService executor, OdinMetrics metrics) {
+        this.agentManager = agentManager;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Have every agent scan every channel, and collect the RSSI of the stations it heard on each.
+     *
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     SSID to scan for
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, for requests and replies
+     * @return future completed once every agent is done or past its deadline
+     */
+    CompletableFuture<ScanResult> scanStaRssi(InetAddress[] agents,
+                                              int[] channels, String ssid,
+                                              long scanTime, long slack) {
+        final ScanResult result = new ScanResult(agents, channels);
+
+        final long timeout = steps(channels) * (scanTime + slack);
+        final long deadline = System.currentTimeMillis() + timeout;
+
+        CompletableFuture<?>[] done = new CompletableFuture<?>[agents.length];
+        for (int a = 0; a < agents.length; a++) {
+            final int agentIndex = a;
+            final IOdinAgent agent = agentManager.getAgent(agents[a]);
+            done[a] = scanAgent(agent, channels, 0, ssid, scanTime, deadline,
+                                new ChannelCollector() {
+                @Override public CompletableFuture<Void> collect(int c) {
+                    return agent.getScannedStaRssiAsync().thenAccept(
+                            rssi -> result.set(agentIndex, c,
+                                               ScanResult.Status.OK, rssi));
+                }
+
+                @Override public void failed(int c, ScanResult.Status s) {
+                    result.set(agentIndex, c, s, null);
+                }
+            });
+        }
+
+        final CompletableFuture<ScanResult> ret = new CompletableFuture<>();
+        CompletableFuture.allOf(done).whenComplete((v, t) -> {
+            result.seal();
+            ret.complete(result);
+        });
+        if (!ret.isDone()) {
+            executor.schedule(new Runnable() {
+                @Override public void run() {
+                    result.seal();
+                    if (ret.complete(result)) {
+                        log.warn("Scan deadline reached, missing "
+                                 + result.getMissingCount() + " results");
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        return ret;
+    }
+
+    /**
+     * Have every agent scan every channel for the stations around, each agent starting on a
+     * different channel and going round-robin through the others. At any time the agents listen
+     * to different channels, so the channels are not all left unwatched at once and a partial
+     * sweep already covers every channel.
+     *
+     * @param agents   agents to scan with
+     * @param channels channels to scan, entries set to 0 are skipped
+     * @param ssid     SSID to scan for (* for all)
+     * @param scanTime time in ms to leave an agent scanning a channel
+     * @param slack    time in ms allowed on top of scanTime, per channel, for requests and replies
+     * @return future completed once every agent is done or past its deadline
+     */
+    CompletableFuture<InterferenceMatrix> sweepStationStats(
+            InetAddress[] agents, int[] channels, final String ssid,
+            long scanTime, long slack) {
+        final InterferenceMatrix result = new InterferenceMatrix(agents,
+                                                                 channels);
+        final long timeout = steps(channels) * (scanTime + slack);
+        final long deadline = System.currentTimeMillis() + timeout;
+
+        CompletableFuture<?>[] done = new CompletableFuture<?>[agents.length];
+        for (int a = 0; a < agents.length; a++) {
+            final int agentIndex = a;
+            final IOdinAgent agent = agentManager.getAgent(agents[a]);
+            done[a] = scanAgent(agent, channels,
+                                staggerOffset(a, agents.length, channels.length),
+                                ssid, scanTime, deadline,
+                                new ChannelCollector() {
+                @Override public CompletableFuture<Void> collect(int c) {
+                    return agent.getScannedStationStatsAsync(ssid).thenAccept(
+                            stats -> result.set(c, agentIndex,
+                                                ScanResult.Status.OK, stats,
+                                                System.currentTimeMillis()));
+                }
+
+                @Override public void failed(int c, ScanResult.Status s) {
+                    result.set(c, agentIndex, s, null,
+                               System.currentTimeMillis());
+                }
+            });
+        }
+
+        final CompletableFuture<InterferenceMatrix> ret = new CompletableFuture<>();
+        CompletableFuture.allOf(done).whenComplete((v, t) -> {
+            result.seal();
+            ret.complete(result);
+        });
+        if (!ret.isDone()) {
+            executor.schedule(new Runnable() {
+                @Override public void run() {
+                    result.seal();
+                    if (ret.complete(result)) {
+                        log.warn("Sweep deadline reached, missing "
+                                 + result.getMissingCount() + " results");
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        return ret;
+    }
+
+    /**
+     * Channel each agent starts a sweep on, spread evenly over the channels so that neighbouring
+     * agents are as far apart as possible
+     *
+     * @return index of the first channel of the agent
+     */
+    static int staggerOffset(int agent, int agentCount, int channelCount) {
+        if (agentCount <= channelCount) {
+            return agent * channelCount / agentCount;
+        }
+        return agent % channelCount;
+    }
+
+    /**
+     * Have several agents scan for a client at once.
+     *
+     * @param agents       agents to scan with
+     * @param clientHwAddr client to scan for
+     * @param channel      channel to scan
+     * @param scanTime     time in ms to leave the agents scanning
+     * @param slack        time in ms allowed on top of scanTime for requests and replies
+     * @return future completed with the signal power each agent heard the client with, agents
+     * that failed or missed the deadline are left out
+     */
+    CompletableFuture<Map<InetAddress, Integer>> scanClient(
+            InetAddress[] agents, final MACAddress clientHwAddr,
+            final int channel, final long scanTime, long slack) {
+        final Map<InetAddress, Integer> result = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] done = new CompletableFuture<?>[agents.length];
+
+        for (int a = 0; a < agents.length; a++) {
+            final InetAddress agentAddr = agents[a];
+            final IOdinAgent agent = agentManager.getAgent(agentAddr);
+            CompletableFuture<Void> f;
+            try {
+                if (agent == null) {
+                    throw new IllegalStateException("unknown agent");
+                }
+                f = agent.requestScanClientAsync(clientHwAddr, channel)
+                         .thenCompose(v -> delay(scanTime))
+                         .thenCompose(v -> agent.getScanClientResultAsync())
+                         .thenAccept(power -> result.put(agentAddr, power));
+            } catch (RuntimeException e) {
+                f = new CompletableFuture<>();
+                f.completeExceptionally(e);
+            }
+            done[a] = f.exceptionally(t -> {
+                log.warn("Scan of client " + clientHwAddr + " by agent "
+                         + agentAddr + " failed: " + t.getMessage());
+                return null;
+            });
+        }
+
+        final CompletableFuture<Map<InetAddress, Integer>> ret = new CompletableFuture<>();
+        CompletableFuture.allOf(done).whenComplete(
+                (v, t) -> ret.complete(new HashMap<>(result)));
+        if (!ret.isDone()) {
+            executor.schedule(new Runnable() {
+                @Override public void run() {
+                    if (ret.complete(new HashMap<>(result))) {
+                        log.warn("Client scan deadline reached, "
+                                 + result.size() + " of " + done.length
+                                 + " agents answered");
+                    }
+                }
+            }, scanTime + slack, TimeUnit.MILLISECONDS);
+        }
+        return ret;
+    }
+
+    /**
+     * Collects what an agent heard on a channel, and records the channels it could not scan.
+     * Channels are given by their index in the scan.
+     */
+    private interface ChannelCollector {
+        CompletableFuture<Void> collect(int c);
+
+        void failed(int c, ScanResult.Status s);
+    }
+
+    /**
+     * Chain the channels of one agent, from the one at offset round the others, stopping at the
+     * deadline.
+     */
+    private CompletableFuture<Void> scanAgent(final IOdinAgent agent,
+                                              int[] channels, int offset,
+                                              final String ssid,
+                                              final long scanTime,
+                                              final long deadline,
+                                              final ChannelCollector collector) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+        for (int k = 0; k < channels.length; k++) {
+            final int c = (offset + k) % channels.length;
+            if (channels[c] == 0) {
+                continue;
+            }
+            if (agent == null) {
+                collector.failed(c, ScanResult.Status.FAILED);
+                metrics.scanned(ScanResult.Status.FAILED);
+                continue;
+            }
+
+            final int channel = channels[c];
+            chain = chain.thenCompose(v -> {
+                if (System.currentTimeMillis() >= deadline) {
+                    metrics.scanned(ScanResult.Status.TIMED_OUT);
+                    return CompletableFuture.completedFuture(null);
+                }
+                return scanChannel(agent, c, channel, ssid, scanTime,
+                                   collector);
+            });
+        }
+        return chain;
+    }
+
+    private CompletableFuture<Void> scanChannel(final IOdinAgent agent,
+                                                final int c, int channel,
+                                                String ssid,
+                                                final long scanTime,
+                                                final ChannelCollector collector) {
+        CompletableFuture<Void> f;
+        try {
+            f = agent.requestScannedStationsStatsAsync(channel, ssid)
+                     .thenCompose(accepted -> {
+                         if (accepted == null || accepted == 0) {
+                             collector.failed(c, ScanResult.Status.BUSY);
+                             metrics.scanned(ScanResult.Status.BUSY);
+                             return CompletableFuture
+                                     .<Void>completedFuture(null);
+                         }
+                         return delay(scanTime)
+                                 .thenCompose(v -> collector.collect(c))
+                                 .thenRun(() -> metrics
+                                         .scanned(ScanResult.Status.OK));
+                     });
+        } catch (RuntimeException e) {
+            f = new CompletableFuture<>();
+            f.completeExceptionally(e);
+        }
+
+        return f.exceptionally(t -> {
+            log.warn("Scan of channel " + channel + " by agent "
+                     + agent.getIpAddress() + " failed: " + t.getMessage());
+            collector.failed(c, ScanResult.Status.FAILED);
+            metrics.scanned(ScanResult.Status.FAILED);
+            return null;
+        });
+    }
+
+    private static int steps(int[] channels) {
+        int steps = 0;
+        for (int channel : channels) {
+            if (channel != 0) {
+                steps++;
+            }
+        }
+        return steps;
+    }
+
+    private CompletableFuture<Void> delay(long ms) {
+        final CompletableFuture<Void> f = new CompletableFuture<>();
+        executor.schedule(new Runnable() {
+            @Override public void run() {
+                f.complete(null);
+            }
+        }, ms, TimeUnit.MILLISECONDS);
+        return f;
+    }
+}
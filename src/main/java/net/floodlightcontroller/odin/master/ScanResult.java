@@ -0,0 +1,110 @@
+package net.floodlightcontroller.odin.master;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Outcome of a scan of several channels by several agents. Results are indexed by the position of
+ * the agent and of the channel in the arrays the scan was started with. Agents that were busy,
+ * failed or did not answer in time leave a null result behind, and the rest of the scan is still
+ * reported.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class ScanResult {
+
+    public enum Status {
+        OK, // Scanned and collected
+        SKIPPED, // Channel not requested (0)
+        BUSY, // Agent was already scanning
+        FAILED, // Agent unknown or request failed
+        TIMED_OUT // No answer before the deadline
+    }
+
+    private final InetAddress[] agents;
+    private final int[] channels;
+    private final String[][] rssi;
+    private final Status[][] status;
+    private boolean sealed = false;
+
+    ScanResult(InetAddress[] agents, int[] channels) {
+        this.agents = agents.clone();
+        this.channels = channels.clone();
+        rssi = new String[agents.length][channels.length];
+        status = new Status[agents.length][channels.length];
+        for (int a = 0; a < agents.length; a++) {
+            for (int c = 0; c < channels.length; c++) {
+                status[a][c] = channels[c] == 0 ? Status.SKIPPED :
+                               Status.TIMED_OUT;
+            }
+        }
+    }
+
+    /**
+     * Record the result of one agent on one channel. Ignored once the scan is over.
+     */
+    synchronized void set(int agent, int channel, Status s, String value) {
+        if (!sealed) {
+            status[agent][channel] = s;
+            rssi[agent][channel] = value;
+        }
+    }
+
+    /**
+     * End the scan, whatever is still missing stays timed out.
+     */
+    synchronized void seal() {
+        sealed = true;
+    }
+
+    public int getAgentCount() {
+        return agents.length;
+    }
+
+    public InetAddress getAgent(int agent) {
+        return agents[agent];
+    }
+
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    public int getChannel(int channel) {
+        return channels[channel];
+    }
+
+    /**
+     * @return the "MAC rssi" rows reported by the agent, null if there is no result
+     */
+    public synchronized String getStaRssi(int agent, int channel) {
+        return rssi[agent][channel];
+    }
+
+    public synchronized Status getStatus(int agent, int channel) {
+        return status[agent][channel];
+    }
+
+    /**
+     * @return number of agent/channel pairs that were requested but have no result
+     */
+    public synchronized int getMissingCount() {
+        int missing = 0;
+        for (Status[] row : status) {
+            for (Status s : row) {
+                if (s != Status.OK && s != Status.SKIPPED) {
+                    missing++;
+                }
+            }
+        }
+        return missing;
+    }
+
+    @Override public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int a = 0; a < agents.length; a++) {
+            sb.append(agents[a]).append(' ').append(Arrays.toString(status[a]))
+              .append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package net.floodlightcontroller.odin.master;
+
+import java.util.concurrent.Future;
+
+/**
+ * Handle of a periodic task, timer or event listener registered by an application.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public final class ScheduledTask {
+
+    private Future<?> future;
+    private boolean cancelled = false;
+
+    ScheduledTask() {
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+        if (cancelled) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Stop the task. A run already going on is not interrupted.
+     *
+     * @return true if the task was still active
+     */
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
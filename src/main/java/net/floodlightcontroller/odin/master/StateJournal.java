@@ -0,0 +1,412 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of the clients of the master, kept so that a restarted master resumes where it stopped:
+ * the LVAP of each client, its IP address, pool, association state and the agent hosting it.
+ *
+ * Nothing is recorded while the master handles the agents. Every interval the journal walks the
+ * clients, encodes each one, and appends the records that differ from the ones it wrote last,
+ * plus a removal for every client gone since, to a memory-mapped file. When the file is mostly
+ * stale records, it is rewritten with the live ones and swapped in with a rename. On start up the
+ * file is replayed, the last record of a client winning, and its clients are tracked again
+ * before any agent connects. They are attached to their agent once it registers and reports the
+ * LVAPs it hosts, like any client the master recovers from an agent.
+ *
+ * A record is its length, the CRC32 of its body and the body, so replay stops at a torn write.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class StateJournal implements Runnable {
+
+    protected static Logger log = LoggerFactory.getLogger(StateJournal.class);
+
+    static final long DEFAULT_INTERVAL = 1000; // ms
+
+    private static final int MAGIC = 0x4f4a524e; // "OJRN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8; // Length and CRC32
+    private static final int KEY_SIZE = 1 + MACAddress.MAC_ADDRESS_LENGTH; // Type and client
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + KEY_SIZE;
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int COMPACT_MIN_SIZE = 1 << 16;
+    private static final int COMPACT_RATIO = 4; // Stale records per live one before compacting
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final ClientManager clientManager;
+    private final PoolManager poolManager;
+    private final LvapManager lvapManager;
+    private final Path path;
+
+    // Guarded by this
+    private final Map<MACAddress, byte[]> written = new HashMap<>(); // Last body written per client
+    private final Map<MACAddress, InetAddress> restoredAgents = new HashMap<>(); // Awaiting their agent
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private FileChannel channel;
+    private MappedByteBuffer buf;
+    private long liveBytes = 0;
+
+    StateJournal(Path path, ClientManager clientManager,
+                 PoolManager poolManager, LvapManager lvapManager) {
+        this.path = path;
+        this.clientManager = clientManager;
+        this.poolManager = poolManager;
+        this.lvapManager = lvapManager;
+    }
+
+    /**
+     * Open the journal, creating it if needed, and track again the clients it holds. Clients
+     * already tracked, such as the ones of the static client list, are left as they are.
+     *
+     * @return number of clients restored
+     */
+    synchronized int restore() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        long size = channel.size();
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                          Math.max(size, INITIAL_SIZE));
+
+        Map<MACAddress, byte[]> bodies = new HashMap<>();
+        if (size >= HEADER_SIZE && buf.getInt(0) == MAGIC
+            && buf.getInt(4) == VERSION) {
+            buf.position(HEADER_SIZE);
+            replay(bodies);
+        } else {
+            if (size > 0) {
+                log.warn("Ignoring unknown state journal " + path);
+            }
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.position(HEADER_SIZE);
+            terminate();
+        }
+
+        int restored = 0;
+        for (Map.Entry<MACAddress, byte[]> e : bodies.entrySet()) {
+            if (clientManager.getClient(e.getKey()) != null) {
+                continue;
+            }
+            try {
+                restore(e.getKey(), ByteBuffer.wrap(e.getValue()));
+                written.put(e.getKey(), e.getValue());
+                liveBytes += RECORD_OVERHEAD + e.getValue().length;
+                restored++;
+            } catch (BufferUnderflowException | IllegalArgumentException | UnknownHostException ex) {
+                log.warn("Skipping unreadable journal record of " + e.getKey());
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Read the records from the current position, leaving it after the last good one
+     */
+    private void replay(Map<MACAddress, byte[]> bodies) {
+        while (buf.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buf.position();
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length <= 0 || length > buf.remaining()) {
+                buf.position(start);
+                break;
+            }
+            byte[] body = new byte[length];
+            buf.get(body);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum || length < KEY_SIZE) {
+                buf.position(start);
+                break;
+            }
+            ByteBuffer b = ByteBuffer.wrap(body);
+            byte type = b.get();
+            MACAddress mac = MACAddress.valueOf(readMac(b));
+            if (type == PUT) {
+                bodies.put(mac, Arrays.copyOfRange(body, KEY_SIZE, length));
+            } else if (type == REMOVE) {
+                bodies.remove(mac);
+            } else {
+                buf.position(start);
+                break;
+            }
+        }
+        terminate();
+    }
+
+    private void restore(MACAddress mac, ByteBuffer b)
+            throws UnknownHostException {
+        InetAddress ipAddr = InetAddress.getByAddress(readBytes(b));
+        MACAddress bssid = MACAddress.valueOf(readMac(b));
+        boolean assocState = b.get() != 0;
+        byte[] agentAddr = readBytes(b);
+        String pool = readString(b);
+        int ssidCount = b.get() & 0xff;
+        List<String> ssids = new ArrayList<>(ssidCount);
+        for (int i = 0; i < ssidCount; i++) {
+            ssids.add(readString(b));
+        }
+
+        Lvap lvap = new Lvap(bssid, ssids);
+        lvap.setAssocState(assocState);
+        if (!ipAddr.getHostAddress().equals("0.0.0.0")) {
+            lvap.setOFMessageList(lvapManager.getDefaultOFModList(ipAddr));
+        }
+        OdinClient oc = new OdinClient(mac, ipAddr, lvap);
+        clientManager.addClient(oc);
+        if (!pool.isEmpty()) {
+            poolManager.mapClientToPool(oc, pool);
+        }
+        if (agentAddr.length > 0) {
+            restoredAgents.put(mac, InetAddress.getByAddress(agentAddr));
+        }
+    }
+
+    /**
+     * Append the clients that changed since the last run
+     */
+    @Override public synchronized void run() {
+        if (buf == null) {
+            return;
+        }
+        try {
+            boolean appended = false;
+            Map<MACAddress, OdinClient> clients = clientManager.getClients();
+            for (OdinClient oc : clients.values()) {
+                encode(oc);
+                byte[] last = written.get(oc.getMacAddress());
+                if (last != null && sameBody(last)) {
+                    continue;
+                }
+                byte[] body = Arrays.copyOf(scratch.array(),
+                                            scratch.position());
+                append(PUT, oc.getMacAddress(), body);
+                written.put(oc.getMacAddress(), body);
+                liveBytes += RECORD_OVERHEAD + body.length
+                             - (last == null ? 0 : RECORD_OVERHEAD
+                                                   + last.length);
+                appended = true;
+            }
+
+            Iterator<Map.Entry<MACAddress, byte[]>> it = written.entrySet()
+                                                                .iterator();
+            while (it.hasNext()) {
+                Map.Entry<MACAddress, byte[]> e = it.next();
+                if (!clients.containsKey(e.getKey())) {
+                    append(REMOVE, e.getKey(), new byte[0]);
+                    liveBytes -= RECORD_OVERHEAD + e.getValue().length;
+                    restoredAgents.remove(e.getKey());
+                    it.remove();
+                    appended = true;
+                }
+            }
+
+            if (buf.position() > COMPACT_MIN_SIZE
+                && buf.position() > COMPACT_RATIO * (HEADER_SIZE + liveBytes)) {
+                compact();
+            } else if (appended) {
+                buf.force();
+            }
+        } catch (IOException e) {
+            log.error("Failed to write the state journal " + path, e);
+        }
+    }
+
+    /**
+     * Rewrite the journal with the live records only
+     */
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long size = Math.max(INITIAL_SIZE, 2 * (HEADER_SIZE + liveBytes));
+        FileChannel tmpChannel = FileChannel.open(tmp,
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                                  StandardOpenOption.READ,
+                                                  StandardOpenOption.WRITE);
+        // The journal keeps going to the current file until the new one has replaced it
+        MappedByteBuffer tmpBuf;
+        try {
+            tmpBuf = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            tmpBuf.putInt(MAGIC);
+            tmpBuf.putInt(VERSION);
+            for (Map.Entry<MACAddress, byte[]> e : written.entrySet()) {
+                put(tmpBuf, PUT, e.getKey(), e.getValue());
+            }
+            tmpBuf.putInt(tmpBuf.position(), 0);
+            tmpBuf.force();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            tmpChannel.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        channel.close();
+        channel = tmpChannel;
+        buf = tmpBuf;
+    }
+
+    /**
+     * Stop journaling. The file stays as it is, to be replayed by the next master.
+     */
+    synchronized void close() throws IOException {
+        if (buf != null) {
+            buf.force();
+            buf = null;
+            channel.close();
+        }
+    }
+
+    private void encode(OdinClient oc) {
+        Lvap lvap = oc.getLvap();
+        IOdinAgent agent = lvap.getAgent();
+        InetAddress agentAddr;
+        if (agent != null) {
+            agentAddr = agent.getIpAddress();
+            restoredAgents.remove(oc.getMacAddress());
+        } else {
+            agentAddr = restoredAgents.get(oc.getMacAddress());
+        }
+        String pool = poolManager.getPoolForClient(oc);
+        List<String> ssids = lvap.getSsids();
+
+        for (; ; ) {
+            scratch.clear();
+            try {
+                writeBytes(oc.getIpAddress().getAddress());
+                scratch.put(lvap.getBssid().toBytes());
+                scratch.put((byte) (lvap.getAssocState() ? 1 : 0));
+                writeBytes(agentAddr == null ? new byte[0]
+                                             : agentAddr.getAddress());
+                writeString(pool == null ? "" : pool);
+                scratch.put((byte) ssids.size());
+                for (String ssid : ssids) {
+                    writeString(ssid);
+                }
+                return;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(2 * scratch.capacity());
+            }
+        }
+    }
+
+    private boolean sameBody(byte[] last) {
+        if (last.length != scratch.position()) {
+            return false;
+        }
+        byte[] current = scratch.array();
+        for (int i = 0; i < last.length; i++) {
+            if (last[i] != current[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(byte type, MACAddress mac, byte[] body)
+            throws IOException {
+        ensure(RECORD_OVERHEAD + body.length);
+        put(buf, type, mac, body);
+        terminate();
+    }
+
+    /**
+     * Write a record at the position of a buffer, which must have room for it
+     */
+    private void put(ByteBuffer b, byte type, MACAddress mac, byte[] body) {
+        int length = KEY_SIZE + body.length;
+        byte[] macBytes = mac.toBytes();
+        crc.reset();
+        crc.update(type);
+        crc.update(macBytes, 0, macBytes.length);
+        crc.update(body, 0, body.length);
+
+        b.putInt(length);
+        b.putInt((int) crc.getValue());
+        b.put(type);
+        b.put(macBytes);
+        b.put(body);
+    }
+
+    /**
+     * Make room for a record and the terminator after it, mapping a larger file if needed
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buf.remaining() >= bytes + 4) {
+            return;
+        }
+        int position = buf.position();
+        long size = Math.max(2L * buf.capacity(), position + bytes + 4);
+        buf.force();
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buf.position(position);
+    }
+
+    /**
+     * Mark the end of the journal, hiding anything a torn write left after it
+     */
+    private void terminate() {
+        if (buf.remaining() >= 4) {
+            buf.putInt(buf.position(), 0);
+        }
+    }
+
+    private void writeBytes(byte[] b) {
+        scratch.put((byte) b.length);
+        scratch.put(b);
+    }
+
+    private void writeString(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        scratch.putShort((short) b.length);
+        scratch.put(b);
+    }
+
+    private static byte[] readMac(ByteBuffer b) {
+        byte[] mac = new byte[MACAddress.MAC_ADDRESS_LENGTH];
+        b.get(mac);
+        return mac;
+    }
+
+    private static byte[] readBytes(ByteBuffer b) {
+        byte[] bytes = new byte[b.get() & 0xff];
+        b.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xffff];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
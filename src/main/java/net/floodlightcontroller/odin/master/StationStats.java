@@ -0,0 +1,373 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+
+/**
+ * Per-station statistics reported by an agent (tx, rx or scan), stored column-wise in primitive
+ * arrays. Rows are addressed by index, 0 to {@link #size()} - 1, so applications can walk a column
+ * without boxing or parsing anything.
+ * <p>
+ * The agent reports one station per line, as "MAC_ADDR prop1:value prop2:value ...". Properties
+ * not present in a row (e.g. scans for a given SSID only report the signal) read as NaN, or 0 for
+ * the packet count.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public final class StationStats {
+
+    public static final StationStats EMPTY = new StationStats(0);
+
+    private static final String[] PROPERTIES = {"packets", "avg_rate",
+            "avg_signal", "avg_len_pkt", "air_time", "first_received",
+            "last_received", "equipment"};
+    private static final int PACKETS = 0;
+    private static final int AVG_RATE = 1;
+    private static final int AVG_SIGNAL = 2;
+    private static final int AVG_LEN_PKT = 3;
+    private static final int AIR_TIME = 4;
+    private static final int FIRST_RECEIVED = 5;
+    private static final int LAST_RECEIVED = 6;
+    private static final int EQUIPMENT = 7;
+
+    private int size;
+    private long[] hwAddr;
+    private long[] packets;
+    private double[] avgRate;
+    private double[] avgSignal;
+    private double[] avgLenPkt;
+    private double[] airTime;
+    private double[] firstReceived;
+    private double[] lastReceived;
+    private boolean[] accessPoint;
+
+    private StationStats(int capacity) {
+        hwAddr = new long[capacity];
+        packets = new long[capacity];
+        avgRate = new double[capacity];
+        avgSignal = new double[capacity];
+        avgLenPkt = new double[capacity];
+        airTime = new double[capacity];
+        firstReceived = new double[capacity];
+        lastReceived = new double[capacity];
+        accessPoint = new boolean[capacity];
+    }
+
+    /**
+     * Parse the rows returned by a stats read handler. Malformed rows, and rows without the
+     * expected number of properties, are skipped.
+     *
+     * @param stats         read-handler string, may be null
+     * @param numProperties number of properties expected on each row
+     * @param skipBeacons   whether to drop rows with no data packets (i.e. beacons)
+     * @return the parsed statistics
+     */
+    public static StationStats parse(String stats, int numProperties,
+                                     boolean skipBeacons) {
+        if (stats == null || stats.isEmpty()) {
+            return EMPTY;
+        }
+
+        int lines = 1;
+        for (int i = 0; i < stats.length(); i++) {
+            if (stats.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+
+        StationStats ret = new StationStats(lines);
+        int pos = 0;
+        while (pos < stats.length()) {
+            int eol = stats.indexOf('\n', pos);
+            if (eol < 0) {
+                eol = stats.length();
+            }
+            if (ret.parseRow(stats, pos, eol, numProperties, skipBeacons)) {
+                ret.size++;
+            }
+            pos = eol + 1;
+        }
+        return ret;
+    }
+
+    /**
+     * @return number of stations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param hwAddr station MAC address as a long
+     * @return row of the station, -1 if it's not in these statistics
+     */
+    public int indexOf(long hwAddr) {
+        for (int i = 0; i < size; i++) {
+            if (this.hwAddr[i] == hwAddr) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param hwAddr station MAC address
+     * @return row of the station, -1 if it's not in these statistics
+     */
+    public int indexOf(MACAddress hwAddr) {
+        return indexOf(hwAddr.toLong());
+    }
+
+    public long getHwAddr(int row) {
+        check(row);
+        return hwAddr[row];
+    }
+
+    public MACAddress getMacAddress(int row) {
+        check(row);
+        return MACAddress.valueOf(hwAddr[row]);
+    }
+
+    public long getPackets(int row) {
+        check(row);
+        return packets[row];
+    }
+
+    /**
+     * @return average rate in kbps
+     */
+    public double getAvgRate(int row) {
+        check(row);
+        return avgRate[row];
+    }
+
+    /**
+     * @return average signal in dBm
+     */
+    public double getAvgSignal(int row) {
+        check(row);
+        return avgSignal[row];
+    }
+
+    /**
+     * @return average packet length in bytes
+     */
+    public double getAvgLenPkt(int row) {
+        check(row);
+        return avgLenPkt[row];
+    }
+
+    /**
+     * @return air time in ms
+     */
+    public double getAirTime(int row) {
+        check(row);
+        return airTime[row];
+    }
+
+    /**
+     * @return time the first packet was received, in seconds
+     */
+    public double getFirstReceived(int row) {
+        check(row);
+        return firstReceived[row];
+    }
+
+    /**
+     * @return time the last packet was received, in seconds
+     */
+    public double getLastReceived(int row) {
+        check(row);
+        return lastReceived[row];
+    }
+
+    /**
+     * @return true if the agent reported this station as an AP (scans only)
+     */
+    public boolean isAccessPoint(int row) {
+        check(row);
+        return accessPoint[row];
+    }
+
+    private void check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Row " + row + " of " + size);
+        }
+    }
+
+    /**
+     * Parse one row into slot {@link #size}.
+     *
+     * @return true if the row is valid and should be kept
+     */
+    private boolean parseRow(String s, int from, int to, int numProperties,
+                             boolean skipBeacons) {
+        int row = size;
+        packets[row] = 0;
+        avgRate[row] = Double.NaN;
+        avgSignal[row] = Double.NaN;
+        avgLenPkt[row] = Double.NaN;
+        airTime[row] = Double.NaN;
+        firstReceived[row] = Double.NaN;
+        lastReceived[row] = Double.NaN;
+        accessPoint[row] = false;
+
+        int tokenEnd = tokenEnd(s, from, to);
+        hwAddr[row] = parseMac(s, from, tokenEnd);
+        if (hwAddr[row] < 0) {
+            return false;
+        }
+
+        int count = 0;
+        int pos = tokenEnd + 1;
+        while (pos < to) {
+            tokenEnd = tokenEnd(s, pos, to);
+            int colon = s.indexOf(':', pos);
+            if (colon < 0 || colon >= tokenEnd) {
+                return false;
+            }
+
+            int property = property(s, pos, colon);
+            if (count == 0 && skipBeacons && tokenEnd - colon == 2
+                && s.charAt(colon + 1) == '0') {
+                return false;
+            }
+            if (property == EQUIPMENT) {
+                accessPoint[row] = tokenEnd - colon == 3 && s
+                        .regionMatches(colon + 1, "AP", 0, 2);
+            } else if (property >= 0) {
+                double value = parseDouble(s, colon + 1, tokenEnd);
+                switch (property) {
+                case PACKETS:
+                    packets[row] = (long) value;
+                    break;
+                case AVG_RATE:
+                    avgRate[row] = value;
+                    break;
+                case AVG_SIGNAL:
+                    avgSignal[row] = value;
+                    break;
+                case AVG_LEN_PKT:
+                    avgLenPkt[row] = value;
+                    break;
+                case AIR_TIME:
+                    airTime[row] = value;
+                    break;
+                case FIRST_RECEIVED:
+                    firstReceived[row] = value;
+                    break;
+                case LAST_RECEIVED:
+                    lastReceived[row] = value;
+                    break;
+                default:
+                    break;
+                }
+            }
+            count++;
+            pos = tokenEnd + 1;
+        }
+
+        return count == numProperties;
+    }
+
+    private static int property(String s, int from, int to) {
+        for (int i = 0; i < PROPERTIES.length; i++) {
+            String p = PROPERTIES[i];
+            if (p.length() == to - from && s.regionMatches(from, p, 0,
+                                                           p.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int tokenEnd(String s, int from, int to) {
+        int i = from;
+        while (i < to && s.charAt(i) != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parse a colon separated MAC address, in either case.
+     *
+     * @return the address as a long, -1 if malformed
+     */
+    static long parseMac(String s, int from, int to) {
+        if (to - from != 17) {
+            return -1;
+        }
+        long mac = 0;
+        for (int i = 0; i < 6; i++) {
+            int p = from + i * 3;
+            int hi = Character.digit(s.charAt(p), 16);
+            int lo = Character.digit(s.charAt(p + 1), 16);
+            if (hi < 0 || lo < 0 || (i < 5 && s.charAt(p + 2) != ':')) {
+                return -1;
+            }
+            mac = (mac << 8) | (hi << 4) | lo;
+        }
+        return mac;
+    }
+
+    /**
+     * Parse a plain decimal number ("-56.25") without going through a String. Anything fancier
+     * is handed to {@link Double#parseDouble(String)}; garbage reads as NaN.
+     */
+    static double parseDouble(String s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_EXACT_DIGITS) {
+                    return slowParseDouble(s, from, to);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    scale++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return slowParseDouble(s, from, to);
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+
+        // Both operands are exact doubles, so the division is correctly rounded
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_DIGITS + 1];
+
+    static {
+        double p = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = p;
+            p *= 10;
+        }
+    }
+
+    private static double slowParseDouble(String s, int from, int to) {
+        try {
+            return Double.parseDouble(s.substring(from, to));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -4,10 +4,12 @@ import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.util.MACAddress;
 
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
@@ -32,6 +34,12 @@ class StubOdinAgent implements IOdinAgent {
         clientList.add(oc);
     }
 
+    @Override public CompletableFuture<Void> addClientLvaps(
+            Collection<OdinClient> clients) {
+        clientList.addAll(clients);
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override public InetAddress getIpAddress() {
         return ipAddr;
     }
@@ -44,6 +52,46 @@ class StubOdinAgent implements IOdinAgent {
         return null;
     }
 
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getTxStatsAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getRxStatsAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override public StationStats getTxStationStats() {
+        return StationStats.EMPTY;
+    }
+
+    @Override public StationStats getRxStationStats() {
+        return StationStats.EMPTY;
+    }
+
+    @Override
+    public CompletableFuture<StationStats> getTxStationStatsAsync() {
+        return CompletableFuture.completedFuture(StationStats.EMPTY);
+    }
+
+    @Override
+    public CompletableFuture<StationStats> getRxStationStatsAsync() {
+        return CompletableFuture.completedFuture(StationStats.EMPTY);
+    }
+
+    @Override
+    public CompletableFuture<String> invokeReadHandlerAsync(
+            String handlerName) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> invokeWriteHandlerAsync(String handlerName,
+                                                           String handlerText) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override public IOFSwitch getSwitch() {
         return sw;
     }
@@ -58,10 +106,19 @@ class StubOdinAgent implements IOdinAgent {
         return 0;
     }
 
+    @Override public void close() {
+    }
+
     @Override public void removeClientLvap(OdinClient oc) {
         clientList.remove(oc);
     }
 
+    @Override public CompletableFuture<Void> removeClientLvaps(
+            Collection<OdinClient> clients) {
+        clientList.removeAll(clients);
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override public void setSwitch(IOFSwitch sw) {
         this.sw = sw;
     }
@@ -90,6 +147,12 @@ class StubOdinAgent implements IOdinAgent {
                                   Set<String> ssidLists) {
     }
 
+    @Override
+    public void sendProbeResponses(List<MACAddress> clientHwAddrs,
+                                   List<MACAddress> bssids,
+                                   Set<String> ssidLists) {
+    }
+
     @Override public void setChannel(int channel) {
         this.channel = channel;
     }
@@ -117,17 +180,49 @@ class StubOdinAgent implements IOdinAgent {
         return lastScan;
     }
 
+    @Override
+    public CompletableFuture<Void> requestScanClientAsync(
+            MACAddress clientHwAddr, int channel) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override public CompletableFuture<Integer> getScanClientResultAsync() {
+        return CompletableFuture.completedFuture(lastScan);
+    }
+
     @Override
     public int requestScannedStationsStats(int channel, String ssid) {
         return 1;
     }
 
+    @Override
+    public CompletableFuture<Integer> requestScannedStationsStatsAsync(
+            int channel, String ssid) {
+        return CompletableFuture.completedFuture(1);
+    }
+
     @Override
     public Map<MACAddress, Map<String, String>> getScannedStationsStats(
             String ssid) {
         return null;
     }
 
+    @Override
+    public CompletableFuture<Map<MACAddress, Map<String, String>>> getScannedStationsStatsAsync(
+            String ssid) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override public StationStats getScannedStationStats(String ssid) {
+        return StationStats.EMPTY;
+    }
+
+    @Override
+    public CompletableFuture<StationStats> getScannedStationStatsAsync(
+            String ssid) {
+        return CompletableFuture.completedFuture(StationStats.EMPTY);
+    }
+
     @Override
     public int requestSendMesurementBeacon(int channel, String ssid) {
         return 1;
@@ -145,10 +240,23 @@ class StubOdinAgent implements IOdinAgent {
         return txpower;
     }
 
+    @Override public void refreshRadioConfig() {
+    }
+
+    @Override public void setRadioConfigTtl(long ttl) {
+    }
+
+    @Override public void setMetrics(OdinMetrics metrics) {
+    }
+
     @Override public String getScannedStaRssi() {
         return null;
     }
 
+    @Override public CompletableFuture<String> getScannedStaRssiAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override public Map<MACAddress, Double> getWeightedRssi() {
         // Do nothing.
         return null;
@@ -0,0 +1,257 @@
+package net.floodlightcontroller.odin.master;
+
+import net.floodlightcontroller.util.MACAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the subscriptions registered by applications, and of the subscription list each
+ * agent should be running.
+ * <p>
+ * Every subscription is encoded once, when registered, and the encoded lists are cached per pool.
+ * An agent gets the subscriptions of the global pool plus those of the pools it belongs to. Changes
+ * only mark their pool as dirty; the agents of dirty pools are pushed their new list a short while
+ * later, so that a burst of registrations (e.g. every application starting up) results in a single
+ * push per agent. Agents whose list didn't change are skipped.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+class SubscriptionRegistry implements AgentStatusListener {
+
+    protected static Logger log = LoggerFactory
+            .getLogger(SubscriptionRegistry.class);
+
+    private static final long PUSH_DELAY = 50; // ms
+    private static final String ANY_CLIENT = MACAddress
+            .valueOf("00:00:00:00:00:00").toString();
+
+    /**
+     * A registered subscription and the callback to notify.
+     */
+    static class Subscription {
+        final long id;
+        final String pool;
+        final OdinEventSubscription oes;
+        final NotificationCallback cb;
+        final String encoded;
+
+        Subscription(long id, String pool, OdinEventSubscription oes,
+                     NotificationCallback cb) {
+            this.id = id;
+            this.pool = pool;
+            this.oes = oes;
+            this.cb = cb;
+
+            final String addr = oes.getClient();
+            this.encoded = id + " " + (addr.equals("*") ? ANY_CLIENT : addr)
+                           + " " + oes.getStatistic() + " " + oes.getRelation()
+                                                                 .ordinal()
+                           + " " + oes.getValue() + " ";
+        }
+    }
+
+    /**
+     * Subscriptions of one pool, with their encoded form cached until the next change.
+     */
+    private static class PoolSubscriptions {
+        final SortedMap<Long, Subscription> entries = new TreeMap<>();
+        String encoded = "";
+
+        void rebuild() {
+            StringBuilder sb = new StringBuilder();
+            for (Subscription s : entries.values()) {
+                sb.append(s.encoded);
+            }
+            encoded = sb.toString();
+        }
+    }
+
+    private final PoolManager poolManager;
+    private final AgentManager agentManager;
+    private volatile ScheduledExecutorService executor;
+
+    // Looked up on every publish, so kept lock-free
+    private final ConcurrentMap<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // List last pushed to each agent
+    private final ConcurrentMap<InetAddress, String> pushed = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private long lastId = 0;
+    private final Map<String, PoolSubscriptions> pools = new HashMap<>();
+    private final Set<String> dirtyPools = new HashSet<>();
+    private boolean pushScheduled = false;
+
+    SubscriptionRegistry(AgentManager agentManager, PoolManager poolManager) {
+        this.agentManager = agentManager;
+        this.poolManager = poolManager;
+    }
+
+    /**
+     * Set the executor used for pushing lists to agents. Without one, lists are pushed right
+     * away by the thread that changed them.
+     *
+     * @param executor executor for deferred pushes
+     */
+    void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Add a subscription.
+     *
+     * @param pool pool of the registering application
+     * @param oes  the subscription
+     * @param cb   the callback
+     * @return subscription id
+     */
+    long register(String pool, OdinEventSubscription oes,
+                  NotificationCallback cb) {
+        Subscription s;
+        synchronized (this) {
+            s = new Subscription(++lastId, pool, oes, cb);
+            subscriptions.put(s.id, s);
+
+            PoolSubscriptions ps = pools.get(pool);
+            if (ps == null) {
+                ps = new PoolSubscriptions();
+                pools.put(pool, ps);
+            }
+            ps.entries.put(s.id, s);
+            ps.rebuild();
+            dirtyPools.add(pool);
+        }
+        schedulePush();
+        return s.id;
+    }
+
+    /**
+     * Remove a subscription. Unknown ids are ignored.
+     *
+     * @param id subscription id
+     */
+    void unregister(long id) {
+        synchronized (this) {
+            Subscription s = subscriptions.remove(id);
+            if (s == null) {
+                return;
+            }
+            PoolSubscriptions ps = pools.get(s.pool);
+            ps.entries.remove(id);
+            ps.rebuild();
+            dirtyPools.add(s.pool);
+        }
+        schedulePush();
+    }
+
+    /**
+     * @param id subscription id
+     * @return the subscription, or null if there is none with this id
+     */
+    Subscription get(long id) {
+        return subscriptions.get(id);
+    }
+
+    /**
+     * Compute the subscription list of an agent, in the format understood by its subscriptions
+     * write handler: the number of subscriptions followed by "id client statistic relation value"
+     * for each of them.
+     *
+     * @param agentAddr the agent's address
+     * @return encoded subscription list
+     */
+    synchronized String getSubscriptionList(InetAddress agentAddr) {
+        int count = 0;
+        StringBuilder sb = new StringBuilder();
+
+        PoolSubscriptions global = pools.get(PoolManager.GLOBAL_POOL);
+        if (global != null) {
+            count += global.entries.size();
+            sb.append(global.encoded);
+        }
+        for (String pool : poolManager.getPoolsForAgent(agentAddr)) {
+            PoolSubscriptions ps = pools.get(pool);
+            if (ps != null && !pool.equals(PoolManager.GLOBAL_POOL)) {
+                count += ps.entries.size();
+                sb.append(ps.encoded);
+            }
+        }
+
+        return count + " " + sb;
+    }
+
+    /**
+     * Push an agent its subscription list, whether or not it changed.
+     *
+     * @param agent agent to push the list to
+     */
+    void pushTo(IOdinAgent agent) {
+        String list = getSubscriptionList(agent.getIpAddress());
+        pushed.put(agent.getIpAddress(), list);
+        agent.setSubscriptions(list);
+    }
+
+    /**
+     * Push the agents of every pool changed since the last flush their new list. Agents whose
+     * list is unchanged are skipped.
+     */
+    void flush() {
+        Set<String> dirty;
+        synchronized (this) {
+            pushScheduled = false;
+            dirty = new HashSet<>(dirtyPools);
+            dirtyPools.clear();
+        }
+
+        Set<InetAddress> targets = new HashSet<>();
+        for (String pool : dirty) {
+            targets.addAll(poolManager.getAgentAddrsForPool(pool));
+        }
+
+        // Agent writes are pipelined, so these all go out without waiting on each other
+        for (InetAddress agentAddr : targets) {
+            IOdinAgent agent = agentManager.getAgent(agentAddr);
+            if (agent == null) {
+                continue;
+            }
+            String list = getSubscriptionList(agentAddr);
+            if (!list.equals(pushed.put(agentAddr, list))) {
+                agent.setSubscriptions(list);
+            }
+        }
+    }
+
+    private void schedulePush() {
+        ScheduledExecutorService ex = executor;
+        if (ex == null) {
+            flush();
+            return;
+        }
+
+        synchronized (this) {
+            if (pushScheduled) {
+                return; // Coalesced into the pending push
+            }
+            pushScheduled = true;
+        }
+        ex.schedule(new Runnable() {
+            @Override public void run() {
+                flush();
+            }
+        }, PUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    @Override public void agentUp(IOdinAgent agent) {
+        // The master pushes new agents their list once it has set them up
+    }
+
+    @Override public void agentDown(IOdinAgent agent) {
+        pushed.remove(agent.getIpAddress());
+    }
+}
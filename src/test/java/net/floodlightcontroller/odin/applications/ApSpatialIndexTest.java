@@ -0,0 +1,69 @@
+package net.floodlightcontroller.odin.applications;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ApSpatialIndexTest {
+
+    private static int bruteForce(double[] positions, double x, double y,
+                                  double z) {
+        int best = -1;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < positions.length / 3; i++) {
+            double dx = positions[3 * i] - x;
+            double dy = positions[3 * i + 1] - y;
+            double dz = positions[3 * i + 2] - z;
+            double d = dx * dx + dy * dy + dz * dz;
+            if (d < min) {
+                min = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testEmpty() {
+        ApSpatialIndex index = new ApSpatialIndex(new double[0]);
+        assertEquals(0, index.size());
+        assertEquals(-1, index.nearest(1.0, 2.0, 3.0));
+    }
+
+    @Test
+    public void testNearest() {
+        double[] positions = {0.0, 0.0, 0.0,
+                              100.0, 0.0, 0.0,
+                              0.0, 100.0, -50.0};
+        ApSpatialIndex index = new ApSpatialIndex(positions);
+        assertEquals(3, index.size());
+        assertEquals(0, index.nearest(10.0, 10.0, 0.0));
+        assertEquals(1, index.nearest(60.0, 10.0, 0.0));
+        assertEquals(2, index.nearest(0.0, 80.0, -40.0));
+
+        // The lowest index wins a tie
+        assertEquals(0, index.nearest(50.0, 0.0, 0.0));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int n : new int[] {1, 2, 7, 64, 500}) {
+            double[] positions = new double[3 * n];
+            for (int i = 0; i < positions.length; i++) {
+                // Coarse coordinates, so that many are equal along an axis
+                positions[i] = random.nextInt(20) * 10.0;
+            }
+            ApSpatialIndex index = new ApSpatialIndex(positions);
+            for (int q = 0; q < 1000; q++) {
+                double x = random.nextDouble() * 220.0 - 10.0;
+                double y = random.nextDouble() * 220.0 - 10.0;
+                double z = random.nextDouble() * 220.0 - 10.0;
+                assertEquals(bruteForce(positions, x, y, z),
+                             index.nearest(x, y, z));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package net.floodlightcontroller.odin.applications;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.floodlightcontroller.odin.applications.ChannelAssignmentSolver.Interference;
+import net.floodlightcontroller.odin.applications.ChannelAssignmentSolver.LeastCongested;
+import net.floodlightcontroller.odin.applications.ChannelAssignmentSolver.Wi5;
+
+import org.junit.Test;
+
+public class ChannelAssignmentSolverTest {
+
+    // As in ChannelAssignment
+    private static final double[] COEF_II = { 0.65, 0.8, 0.6, 0.4, 0.2, 0.0,
+                                              0.0, 0.0, 0.0, 0.0, 0.0 };
+
+    private static double[][] randomPathLosses(int n, Random random) {
+        double[][] pl = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                pl[i][j] = 40 + 60 * random.nextDouble();
+                pl[j][i] = pl[i][j] + random.nextGaussian();
+            }
+        }
+        return pl;
+    }
+
+    private static int[] txPowers(int n) {
+        int[] tx = new int[n];
+        Arrays.fill(tx, 15);
+        return tx;
+    }
+
+    /**
+     * No AP can lower the total interference by changing its channel alone
+     */
+    private static void assertLocalOptimum(Interference model, int[] channels) {
+        double total = model.total(channels);
+        for (int i = 0; i < channels.length; i++) {
+            int[] moved = channels.clone();
+            for (int c = 1; c <= ChannelAssignmentSolver.CHANNELS; c++) {
+                moved[i] = c;
+                assertTrue(model.total(moved) >= total * (1 - 1e-9));
+            }
+        }
+    }
+
+    @Test
+    public void testSeparatesCloseAps() {
+        int n = 3;
+        double[][] pl = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                pl[i][j] = i == j ? 0 : 50;
+            }
+        }
+        ChannelAssignmentSolver solver = ChannelAssignmentSolver
+                .forMethod(ChannelAssignmentSolver.METHOD_WI5, COEF_II);
+        int[] channels = solver.assign(pl, txPowers(n), null);
+
+        // 1, 6 and 11 do not interfere with each other
+        Interference model = new Interference(COEF_II, pl, txPowers(n), null);
+        assertEquals(0.0, model.total(channels), 0.0);
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearch() {
+        Random random = new Random(7);
+        int n = 4;
+        for (int run = 0; run < 10; run++) {
+            double[][] pl = randomPathLosses(n, random);
+            Interference model = new Interference(COEF_II, pl, txPowers(n),
+                                                  null);
+            double best = Double.POSITIVE_INFINITY;
+            int[] c = new int[n];
+            for (int k = 0; k < Math.pow(11, n); k++) {
+                for (int i = 0, v = k; i < n; i++, v /= 11) {
+                    c[i] = 1 + v % 11;
+                }
+                best = Math.min(best, model.total(c));
+            }
+
+            int[] channels = new Wi5(COEF_II).assign(pl, txPowers(n), null);
+            assertEquals(best, model.total(channels), best * 1e-9);
+        }
+    }
+
+    @Test
+    public void testExternalInterference() {
+        double[][] pl = new double[1][1];
+        double[][] external = new double[11][1];
+        for (double[] row : external) {
+            row[0] = -60;
+        }
+        external[8][0] = Double.NEGATIVE_INFINITY; // Nothing heard on channel 9
+
+        assertArrayEquals(new int[] {9}, new Wi5(COEF_II)
+                .assign(pl, txPowers(1), external));
+        assertArrayEquals(new int[] {9}, new LeastCongested(COEF_II)
+                .assign(pl, txPowers(1), external));
+    }
+
+    @Test
+    public void testIncremental() {
+        Random random = new Random(3);
+        int n = 20;
+        double[][] pl = randomPathLosses(n, random);
+        Wi5 solver = new Wi5(COEF_II);
+        int[] first = solver.assign(pl, txPowers(n), null);
+
+        // Nothing changed enough, nothing moves
+        pl[0][1] += 0.01;
+        assertArrayEquals(first, solver.assign(pl, txPowers(n), null));
+
+        // Two APs got much closer
+        pl[2][3] = 30;
+        pl[3][2] = 30;
+        int[] second = solver.assign(pl, txPowers(n), null);
+        assertLocalOptimum(new Interference(COEF_II, pl, txPowers(n), null),
+                           second);
+    }
+
+    @Test
+    public void testLargeDeployment() {
+        Random random = new Random(11);
+        int n = Wi5.PARALLEL_APS + 8;
+        double[][] pl = randomPathLosses(n, random);
+        Interference model = new Interference(COEF_II, pl, txPowers(n), null);
+
+        int[] channels = new Wi5(COEF_II).assign(pl, txPowers(n), null);
+        assertLocalOptimum(model, channels);
+        assertTrue(model.total(channels) <= model
+                .total(LeastCongested.assign(model)));
+
+        // Restarts are seeded, whatever thread runs them
+        assertArrayEquals(channels,
+                          new Wi5(COEF_II).assign(pl, txPowers(n), null));
+    }
+
+    @Test
+    public void testLeastCongested() {
+        double[][] pl = { {0, 50, 90}, {50, 0, 60}, {90, 60, 0} };
+        int[] channels = ChannelAssignmentSolver
+                .forMethod(ChannelAssignmentSolver.METHOD_LCC, COEF_II)
+                .assign(pl, txPowers(3), null);
+        // Each AP takes the lowest channel clear of the ones before it
+        assertArrayEquals(new int[] {1, 6, 11}, channels);
+    }
+
+    @Test
+    public void testRandom() {
+        int[] channels = ChannelAssignmentSolver
+                .forMethod(ChannelAssignmentSolver.METHOD_RANDOM, COEF_II)
+                .assign(new double[50][50], txPowers(50), null);
+        for (int c : channels) {
+            assertTrue(c >= 1 && c <= ChannelAssignmentSolver.CHANNELS);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMethod() {
+        ChannelAssignmentSolver.forMethod(4, COEF_II);
+    }
+}
@@ -0,0 +1,122 @@
+package net.floodlightcontroller.odin.applications;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MobilityStateTableTest {
+
+    private InetAddress ap1;
+    private InetAddress ap2;
+
+    @Before
+    public void setup() throws Exception {
+        ap1 = InetAddress.getByName("172.17.2.1");
+        ap2 = InetAddress.getByName("172.17.2.2");
+    }
+
+    @Test
+    public void testHeard() {
+        MobilityStateTable table = new MobilityStateTable();
+        assertTrue(table.heard(1L, 200, 1000, ap1, 190, 2));
+        assertEquals(200, table.getSignal(1L));
+        assertEquals(1000, table.getLastHeard(1L));
+        assertEquals(1000, table.getAssignedAt(1L));
+        assertEquals(200, table.getScanningResult(1L));
+        assertEquals(190, table.getAverage(1L));
+        assertEquals(2, table.getTriggers(1L));
+        assertEquals(ap1, table.getAgent(1L));
+
+        // A known client keeps its assignment time, scanning result and average
+        assertFalse(table.heard(1L, 180, 2000, ap2, 0, 0));
+        assertEquals(180, table.getSignal(1L));
+        assertEquals(2000, table.getLastHeard(1L));
+        assertEquals(1000, table.getAssignedAt(1L));
+        assertEquals(200, table.getScanningResult(1L));
+        assertEquals(190, table.getAverage(1L));
+        assertEquals(2, table.getTriggers(1L));
+        assertEquals(ap2, table.getAgent(1L));
+
+        table.reassign(1L, 210, 3000, ap1, 210);
+        assertEquals(3000, table.getAssignedAt(1L));
+        assertEquals(ap1, table.getAgent(1L));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testAverage() {
+        MobilityStateTable table = new MobilityStateTable();
+        long[] samples = {200, 196, 203, 180, 199};
+        table.heard(1L, samples[0], 0, ap1, 0, 0);
+
+        long expected = 0;
+        for (int i = 0; i < samples.length; i++) {
+            table.heard(1L, samples[i], i, ap1, 0, 0);
+            table.addSampleToAverage(1L, i);
+
+            // As MobilityManager used to compute it
+            double signal = Math.pow(10.0, (samples[i] - 256) / 10.0);
+            double avg = Math.pow(10.0, (expected - 256) / 10.0);
+            avg = avg + (signal - avg) / (i + 1);
+            expected = Math.round(10.0 * Math.log10(avg)) + 256;
+            assertEquals(expected, table.getAverage(1L));
+            assertEquals(i + 1, table.getTriggers(1L));
+        }
+
+        table.setAverage(1L, 10, 0, 0);
+        assertEquals(0, table.getAverage(1L));
+        assertEquals(0, table.getTriggers(1L));
+        assertEquals(10, table.getLastHeard(1L));
+    }
+
+    @Test
+    public void testToMilliwatts() {
+        for (long v = -300; v < 600; v++) {
+            assertEquals(Math.pow(10.0, (v - 256) / 10.0),
+                         MobilityStateTable.toMilliwatts(v), 0.0);
+        }
+    }
+
+    @Test
+    public void testGrowAndRemove() {
+        MobilityStateTable table = new MobilityStateTable();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            // Same vendor prefix, as most clients of a deployment
+            long mac = 0x001122000000L | random.nextInt(1 << 24);
+            table.heard(mac, i, i, ap1, 0, 0);
+            expected.put(mac, (long) i);
+        }
+        int removed = 0;
+        for (Long mac : expected.keySet()) {
+            if (removed++ % 2 == 0) {
+                assertTrue(table.remove(mac));
+            }
+        }
+        assertFalse(table.remove(0x001122000000L - 1));
+
+        removed = 0;
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            if (removed++ % 2 == 0) {
+                assertFalse(table.contains(e.getKey()));
+            } else {
+                assertEquals((long) e.getValue(), table.getSignal(e.getKey()));
+            }
+        }
+        assertEquals(expected.size() / 2, table.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownClient() {
+        new MobilityStateTable().getSignal(1L);
+    }
+}
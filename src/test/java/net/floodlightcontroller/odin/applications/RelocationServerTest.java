@@ -0,0 +1,109 @@
+package net.floodlightcontroller.odin.applications;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.odin.applications.RelocationServer.JsonFramer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RelocationServerTest {
+
+    private RelocationServer server;
+    private Thread thread;
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RelocationServer(0, (json, receiveTime, reply) -> {
+            received.add(json);
+            reply.send("ACK " + json.length());
+        });
+        thread = new Thread(server);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        thread.join(1000);
+    }
+
+    private static List<String> frame(String stream) {
+        JsonFramer framer = new JsonFramer();
+        List<String> values = new ArrayList<>();
+        for (byte b : stream.getBytes(StandardCharsets.UTF_8)) {
+            String value = framer.feed(b);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testFramer() {
+        List<String> values = frame("hello {\"a\": \"}{\"}\n[1, [2]]{\"b\":\n"
+                                    + "\"\\\"}\"} {\"unfinished\": ");
+        assertEquals(3, values.size());
+        assertEquals("{\"a\": \"}{\"}", values.get(0));
+        assertEquals("[1, [2]]", values.get(1));
+        assertEquals("{\"b\":\n\"\\\"}\"}", values.get(2));
+    }
+
+    @Test
+    public void testConcurrentControllers() throws Exception {
+        InetAddress localhost = InetAddress.getLoopbackAddress();
+        try (Socket first = new Socket(localhost, server.getPort());
+             Socket second = new Socket(localhost, server.getPort())) {
+            OutputStream out1 = first.getOutputStream();
+            OutputStream out2 = second.getOutputStream();
+            BufferedReader in1 = new BufferedReader(new InputStreamReader(
+                    first.getInputStream(), StandardCharsets.UTF_8));
+            BufferedReader in2 = new BufferedReader(new InputStreamReader(
+                    second.getInputStream(), StandardCharsets.UTF_8));
+
+            // The first controller is in the middle of a relocation
+            out1.write("{\"10.0.0.1\": {".getBytes(StandardCharsets.UTF_8));
+            out1.flush();
+
+            // The second one is served meanwhile
+            out2.write("{\"10.0.0.2\": {}}\n".getBytes(StandardCharsets.UTF_8));
+            out2.flush();
+            assertEquals("{\"10.0.0.2\": {}}",
+                         received.poll(5, TimeUnit.SECONDS));
+            assertEquals("ACK 16", in2.readLine());
+
+            // Then the first one ends its relocation and streams another
+            out1.write("}}{\"10.0.0.3\": {}}".getBytes(StandardCharsets.UTF_8));
+            out1.flush();
+            assertEquals("{\"10.0.0.1\": {}}",
+                         received.poll(5, TimeUnit.SECONDS));
+            assertEquals("{\"10.0.0.3\": {}}",
+                         received.poll(5, TimeUnit.SECONDS));
+            assertEquals("ACK 16", in1.readLine());
+            assertEquals("ACK 16", in1.readLine());
+
+            // The connections stay open
+            out2.write("[]".getBytes(StandardCharsets.UTF_8));
+            out2.flush();
+            assertEquals("[]", received.poll(5, TimeUnit.SECONDS));
+            assertEquals("ACK 2", in2.readLine());
+        }
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
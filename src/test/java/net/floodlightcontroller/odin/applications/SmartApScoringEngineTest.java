@@ -0,0 +1,122 @@
+package net.floodlightcontroller.odin.applications;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmartApScoringEngineTest {
+
+    private static final MACAddress STA1 = MACAddress.valueOf("00:00:00:00:00:01");
+    private static final MACAddress STA2 = MACAddress.valueOf("00:00:00:00:00:02");
+
+    private InetAddress[] agents;
+    private SmartApScoringEngine scores;
+
+    @Before
+    public void setup() throws Exception {
+        agents = new InetAddress[] {
+                InetAddress.getByName("172.17.2.1"),
+                InetAddress.getByName("172.17.2.2"),
+                InetAddress.getByName("172.17.2.3")
+        };
+        scores = new SmartApScoringEngine(agents);
+    }
+
+    @Test
+    public void testUpdateRssi() {
+        int row1 = scores.addClient(STA1);
+        int row2 = scores.addClient(STA2);
+        assertEquals(row1, scores.addClient(STA1));
+        scores.setScanChannel(row1, 0);
+        scores.setScanChannel(row2, 1);
+
+        final int[] heard = new int[1];
+        SmartApScoringEngine.FirstHeardListener listener =
+                new SmartApScoringEngine.FirstHeardListener() {
+                    @Override
+                    public void firstHeard(MACAddress client, InetAddress agent,
+                                           double rssi) {
+                        heard[0]++;
+                    }
+                };
+
+        // STA2 is heard on channel 0 but is on channel 1, so it is ignored there
+        String[][] scans = {
+                {"00:00:00:00:00:01 -50\n00:00:00:00:00:02 -40\n", null,
+                 "00:00:00:00:00:01 -70 extra\n"},
+                {null, "00:00:00:00:00:02 -60.5\n", null}
+        };
+        scores.updateRssi(scans, 0.5, listener);
+        assertEquals(2, heard[0]);
+        assertArrayEquals(new double[] {-50, SmartApScoringEngine.NO_SIGNAL,
+                                        SmartApScoringEngine.NO_SIGNAL},
+                          scores.getRssiRow(row1, null), 0);
+        assertEquals(-60.5, scores.getRssi(row2, 1), 0);
+        assertEquals(SmartApScoringEngine.NO_SIGNAL, scores.getRssi(row2, 0), 0);
+
+        scans[0][0] = "00:00:00:00:00:01 -60\n";
+        scores.updateRssi(scans, 0.5, listener);
+        assertEquals(2, heard[0]);
+        double expected = 10 * Math.log10(0.5 * Math.pow(10, -5) + 0.5 * Math.pow(10, -6));
+        assertEquals(Math.round(expected * 100) / 100.0, scores.getRssi(row1, 0), 0);
+        // Not heard this time, the average is kept
+        assertEquals(-60.5, scores.getRssi(row2, 1), 0);
+
+        assertTrue(scores.anyAbove(0, -60));
+        assertFalse(scores.anyAbove(2, -99));
+    }
+
+    @Test
+    public void testToLinear() {
+        double[] values = {-99.9, -67.43, -50, 0, 20.01, -63.456, -200};
+        for (double v : values) {
+            assertEquals(Math.pow(10, v / 10), SmartApScoringEngine.toLinear(v),
+                         Math.pow(10, v / 10) * 1e-12);
+        }
+    }
+
+    @Test
+    public void testRankByFittingness() {
+        int row = scores.addClient(STA1);
+        scores.setThroughput(row, 0, 1000);
+        scores.setThroughput(row, 1, 0);
+        scores.setThroughput(row, 2, 2000);
+        scores.computeFittingness(2000);
+
+        assertEquals(0, scores.getFittingness(row, 1), 0);
+        assertArrayEquals(new int[] {2, 0, 1}, scores.rankByFittingness(row));
+    }
+
+    @Test
+    public void testBestFairnessColumn() {
+        int row = scores.addClient(STA1);
+        scores.setScanChannel(row, 0);
+        scores.updateRssi(new String[][] {
+                {"00:00:00:00:00:01 -50\n", "00:00:00:00:00:01 -60\n",
+                 "00:00:00:00:00:01 -95\n"}}, 0.5, null);
+
+        int[] stas = {4, 1, 0};
+        double[] fairness = new double[3];
+        assertEquals(1, scores.bestFairnessColumn(row, 0, stas, 5, -80, fairness));
+
+        // Same as recounting the squares with the client moved
+        for (int col = 0; col < stas.length; col++) {
+            int[] moved = stas.clone();
+            moved[0]--;
+            moved[col]++;
+            double sum = 0;
+            for (int n : moved) {
+                sum += n * n;
+            }
+            assertEquals(5 / (3 * sum), fairness[col], 1e-12);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package net.floodlightcontroller.odin.emulator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emulates many OdinAgents in one JVM, for load testing a master. Each agent sends its pings and
+ * events to the master over UDP from its own address, and serves the Click ControlSocket protocol
+ * the master's OdinAgent uses, on its own address and the agent control port (6777).
+ * <p>
+ * The agents are given loopback addresses (see {@link #loopbackAddress(int)}), which only Linux
+ * routes without configuration. All control sockets are served by one selector thread, pings
+ * and stations are driven by a small scheduler; thread names start with {@link #THREAD_PREFIX}
+ * so a load test can tell the emulator's CPU time from the master's.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class AgentEmulator implements AutoCloseable {
+
+    protected static Logger log = LoggerFactory.getLogger(AgentEmulator.class);
+
+    public static final String THREAD_PREFIX = "AgentEmulator";
+    public static final int CONTROL_PORT = 6777;
+
+    private static final String GREETING = "Click::ControlSocket/1.3\r\n";
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Notified on the control thread when the master adds or removes an LVAP
+     */
+    public interface LvapListener {
+        void lvapAdded(EmulatedAgent agent, long staHwAddr);
+
+        void lvapRemoved(EmulatedAgent agent, long staHwAddr);
+    }
+
+    private final InetSocketAddress master;
+    private final int controlPort;
+    private final List<EmulatedAgent> agents = new ArrayList<>();
+    private final List<LvapListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile StationMobility stations;
+    private Selector selector;
+    private Thread controlThread;
+    private volatile boolean running = false;
+
+    /**
+     * @param master  address and port of the master's agent protocol server
+     * @param threads scheduler threads for pings and stations
+     */
+    public AgentEmulator(InetSocketAddress master, int threads) {
+        this(master, threads, CONTROL_PORT);
+    }
+
+    AgentEmulator(InetSocketAddress master, int threads, int controlPort) {
+        this.master = master;
+        this.controlPort = controlPort;
+        final AtomicInteger count = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads,
+                new ThreadFactory() {
+                    @Override public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, THREAD_PREFIX + "-"
+                                                 + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * @param index position of an agent, from 0 to 254 * 254 - 1
+     * @return a loopback address for the agent, 127.1.x.y with y from 1 to 254
+     */
+    public static InetAddress loopbackAddress(int index) {
+        try {
+            return InetAddress.getByAddress(new byte[] {127, 1,
+                    (byte) (index / 254), (byte) (index % 254 + 1)});
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Add an agent, before the emulator is started
+     */
+    public EmulatedAgent addAgent(InetAddress address, int channel,
+                                  int txPower) {
+        if (running) {
+            throw new IllegalStateException("Emulator already started");
+        }
+        EmulatedAgent agent = new EmulatedAgent(this, address, agents.size(),
+                                                channel, txPower);
+        agents.add(agent);
+        return agent;
+    }
+
+    public List<EmulatedAgent> getAgents() {
+        return Collections.unmodifiableList(agents);
+    }
+
+    public void addLvapListener(LvapListener listener) {
+        listeners.add(listener);
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    void setStations(StationMobility stations) {
+        this.stations = stations;
+        addLvapListener(stations);
+    }
+
+    /**
+     * Open the agents' sockets and start pinging the master
+     *
+     * @param pingInterval time between two pings of an agent, in ms
+     * @throws IOException if an agent's address cannot be bound
+     */
+    public void start(long pingInterval) throws IOException {
+        running = true;
+        selector = Selector.open();
+        for (EmulatedAgent agent : agents) {
+            agent.open(master);
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.configureBlocking(false);
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(agent.getAddress(), controlPort));
+            server.register(selector, SelectionKey.OP_ACCEPT, agent);
+        }
+        controlThread = new Thread(new Runnable() {
+            @Override public void run() {
+                serve();
+            }
+        }, THREAD_PREFIX + "-control");
+        controlThread.setDaemon(true);
+        controlThread.start();
+
+        // Spread the pings over the interval, as independent agents would
+        for (final EmulatedAgent agent : agents) {
+            long delay = pingInterval * agent.getIndex() / agents.size();
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override public void run() {
+                    agent.ping();
+                }
+            }, delay, pingInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override public void close() throws IOException {
+        running = false;
+        scheduler.shutdownNow();
+        if (selector != null) {
+            selector.wakeup();
+            try {
+                controlThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+        for (EmulatedAgent agent : agents) {
+            agent.close();
+        }
+    }
+
+    /**
+     * @return signal of the station at the agent, dBm + 256, 0 if not heard
+     */
+    long signalAt(EmulatedAgent agent, long staHwAddr) {
+        StationMobility s = stations;
+        return s == null ? 0 : s.signalAt(agent, staHwAddr);
+    }
+
+    void lvapAdded(EmulatedAgent agent, long staHwAddr) {
+        for (LvapListener l : listeners) {
+            l.lvapAdded(agent, staHwAddr);
+        }
+    }
+
+    void lvapRemoved(EmulatedAgent agent, long staHwAddr) {
+        for (LvapListener l : listeners) {
+            l.lvapRemoved(agent, staHwAddr);
+        }
+    }
+
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(key);
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            c.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.flush();
+                        }
+                    } catch (IOException e) {
+                        // The master closed its control channel
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Control socket selector failed", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        SocketChannel sc = ((ServerSocketChannel) key.channel()).accept();
+        if (sc == null) {
+            return;
+        }
+        sc.configureBlocking(false);
+        sc.socket().setTcpNoDelay(true);
+        Connection c = new Connection((EmulatedAgent) key.attachment(), sc);
+        c.key = sc.register(selector, SelectionKey.OP_READ, c);
+        c.reply(GREETING);
+        c.flush();
+    }
+
+    /**
+     * A control connection from the master, commands are newline terminated and answered in order
+     */
+    private static class Connection {
+        private final EmulatedAgent agent;
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Queue<ByteBuffer> out = new ArrayDeque<>();
+        private byte[] line = new byte[256];
+        private int lineLength = 0;
+        SelectionKey key;
+
+        Connection(EmulatedAgent agent, SocketChannel channel) {
+            this.agent = agent;
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            int n;
+            while ((n = channel.read(in)) > 0) {
+                in.flip();
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    if (b == '\n') {
+                        int len = lineLength;
+                        if (len > 0 && line[len - 1] == '\r') {
+                            len--;
+                        }
+                        String command = new String(line, 0, len,
+                                                    StandardCharsets.UTF_8);
+                        lineLength = 0;
+                        reply(agent.handle(command));
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                in.clear();
+            }
+            flush();
+            if (n < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+
+        void reply(String text) {
+            out.add(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        void flush() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer buf = out.peek();
+                channel.write(buf);
+                if (buf.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                out.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+}
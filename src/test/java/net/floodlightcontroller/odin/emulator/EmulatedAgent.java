@@ -0,0 +1,313 @@
+package net.floodlightcontroller.odin.emulator;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One emulated OdinAgent: the state its Click handlers would expose to the master, and the UDP
+ * messages it sends to the master's OdinAgentProtocolServer.
+ * <p>
+ * Control socket commands are handled by the AgentEmulator's selector thread, while messages are
+ * sent from the emulator's scheduler, so the state shared by both is kept in concurrent or
+ * volatile fields.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class EmulatedAgent {
+
+    static final String ELEMENT = "odinagent.";
+
+    private final AgentEmulator emulator;
+    private final InetAddress address;
+    private final int index;
+    private DatagramChannel udp;
+
+    // LVAP table entry of each client, "sta_mac ipv4addr bssid ssid...", as the table handler
+    private final Map<Long, String> lvaps = new ConcurrentHashMap<>();
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile int channel;
+    private volatile int txPower;
+    private volatile long scanClient = -1;
+
+    EmulatedAgent(AgentEmulator emulator, InetAddress address, int index,
+                  int channel, int txPower) {
+        this.emulator = emulator;
+        this.address = address;
+        this.index = index;
+        this.channel = channel;
+        this.txPower = txPower;
+    }
+
+    void open(InetSocketAddress master) throws IOException {
+        udp = DatagramChannel.open();
+        udp.bind(new InetSocketAddress(address, 0));
+        udp.connect(master);
+    }
+
+    void close() throws IOException {
+        if (udp != null) {
+            udp.close();
+        }
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return position of the agent in the emulator, from 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    public int getTxPower() {
+        return txPower;
+    }
+
+    public boolean hasLvap(long staHwAddr) {
+        return lvaps.containsKey(staHwAddr);
+    }
+
+    public int getLvapCount() {
+        return lvaps.size();
+    }
+
+    /**
+     * Send a heartbeat to the master
+     */
+    public void ping() {
+        send("ping");
+    }
+
+    /**
+     * The station sent a probe request for the SSID, empty for a broadcast probe
+     */
+    public void probe(long staHwAddr, String ssid) {
+        send("probe " + MACAddress.valueOf(staHwAddr) + " " + ssid);
+    }
+
+    /**
+     * The station associated with its LVAP on this agent
+     */
+    public void associated(long staHwAddr) {
+        send("association " + MACAddress.valueOf(staHwAddr));
+    }
+
+    /**
+     * A frame of the station was received with the given signal. Publish it to the master if the
+     * station has an LVAP here and the signal matches any subscription, as the agent would.
+     *
+     * @param signal signal strength, dBm + 256
+     * @return true if an event was published
+     */
+    public boolean heard(long staHwAddr, long signal) {
+        if (!lvaps.containsKey(staHwAddr)) {
+            return false;
+        }
+        StringBuilder sb = null;
+        int count = 0;
+        for (Subscription s : subscriptions) {
+            if (s.matches(staHwAddr, signal)) {
+                if (sb == null) {
+                    sb = new StringBuilder(64);
+                }
+                sb.append(' ').append(s.id).append(':').append(signal);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        send("publish " + MACAddress.valueOf(staHwAddr) + " " + count + sb);
+        return true;
+    }
+
+    private void send(String message) {
+        try {
+            udp.write(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            AgentEmulator.log.debug("Agent " + address.getHostAddress()
+                                    + " could not send '" + message + "': "
+                                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle one command of the control socket
+     *
+     * @param command a line as sent by the master, without its terminator
+     * @return the reply of the Click ControlSocket
+     */
+    String handle(String command) {
+        int sp = command.indexOf(' ');
+        if (sp < 0) {
+            return "500 Syntax error\r\n";
+        }
+        String verb = command.substring(0, sp);
+        int end = command.indexOf(' ', sp + 1);
+        String handler = end < 0 ? command.substring(sp + 1) :
+                         command.substring(sp + 1, end);
+        String args = end < 0 ? "" : command.substring(end + 1).trim();
+        if (!handler.startsWith(ELEMENT)) {
+            return "511 No element named '" + handler + "'\r\n";
+        }
+        String name = handler.substring(ELEMENT.length());
+
+        if (verb.equals("READ")) {
+            String data = read(name);
+            if (data == null) {
+                return "511 No read handler '" + handler + "'\r\n";
+            }
+            return "200 Read handler '" + handler + "' OK\r\nDATA "
+                   + data.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+                   + data;
+        }
+        if (verb.equals("WRITE")) {
+            if (!write(name, args)) {
+                return "511 No write handler '" + handler + "'\r\n";
+            }
+            return "200 Write handler '" + handler + "' OK\r\n";
+        }
+        return "500 Syntax error\r\n";
+    }
+
+    private String read(String name) {
+        switch (name) {
+            case "table":
+                StringBuilder sb = new StringBuilder();
+                for (String entry : lvaps.values()) {
+                    sb.append(entry).append('\n');
+                }
+                return sb.toString();
+            case "channel":
+                return Integer.toString(channel);
+            case "txpower":
+                return Integer.toString(txPower);
+            case "scan_client":
+                long sta = scanClient;
+                return Long.toString(sta < 0 ? 0 :
+                                     emulator.signalAt(this, sta));
+            case "scanning_flags":
+                return "0 0 0";
+            case "txstats":
+            case "rxstats":
+            case "scan_APs":
+            case "sta_rssi":
+            case "spectral_scan":
+                return "";
+            default:
+                return null;
+        }
+    }
+
+    private boolean write(String name, String args) {
+        switch (name) {
+            case "add_vap":
+            case "set_vap": {
+                String[] fields = args.split(" ");
+                long sta = MACAddress.valueOf(fields[0]).toLong();
+                boolean added = lvaps.put(sta, args) == null;
+                if (added) {
+                    emulator.lvapAdded(this, sta);
+                }
+                return true;
+            }
+            case "remove_vap": {
+                long sta = MACAddress.valueOf(args.trim()).toLong();
+                if (lvaps.remove(sta) != null) {
+                    emulator.lvapRemoved(this, sta);
+                }
+                return true;
+            }
+            case "subscriptions":
+                subscriptions = Subscription.parse(args);
+                return true;
+            case "channel":
+                channel = Integer.parseInt(args.trim());
+                return true;
+            case "scan_client":
+                scanClient = MACAddress.valueOf(args.split(" ")[0]).toLong();
+                return true;
+            case "send_probe_response":
+            case "channel_switch_announcement":
+            case "scan_APs":
+            case "send_measurement_beacon":
+            case "scanning_flags":
+            case "spectral_scan":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A subscription as written by the master: "id sta_mac statistic relation value". Only the
+     * signal statistic is emulated.
+     */
+    static class Subscription {
+        static final long ANY_CLIENT = 0L;
+
+        final long id;
+        final long staHwAddr;
+        final String statistic;
+        final int relation; // OdinEventSubscription.Relation ordinal
+        final double value;
+
+        Subscription(long id, long staHwAddr, String statistic, int relation,
+                     double value) {
+            this.id = id;
+            this.staHwAddr = staHwAddr;
+            this.statistic = statistic;
+            this.relation = relation;
+            this.value = value;
+        }
+
+        boolean matches(long sta, long signal) {
+            if (staHwAddr != ANY_CLIENT && staHwAddr != sta
+                || !statistic.equals("signal")) {
+                return false;
+            }
+            switch (relation) {
+                case 0:
+                    return signal == value;
+                case 1:
+                    return signal > value;
+                case 2:
+                    return signal < value;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @param list number of subscriptions followed by the fields of each of them
+         */
+        static Subscription[] parse(String list) {
+            String[] fields = list.trim().split("\\s+");
+            int count = Integer.parseInt(fields[0]);
+            Subscription[] parsed = new Subscription[count];
+            for (int i = 0; i < count; i++) {
+                int f = 1 + 5 * i;
+                parsed[i] = new Subscription(Long.parseLong(fields[f]),
+                        MACAddress.valueOf(fields[f + 1]).toLong(),
+                        fields[f + 2], Integer.parseInt(fields[f + 3]),
+                        Double.parseDouble(fields[f + 4]));
+            }
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package net.floodlightcontroller.odin.emulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic stations moving over the emulated agents. The agents stand on a square grid and the
+ * stations follow the random waypoint model over it. The signal of a station at an agent follows
+ * the log-distance path loss model, and only agents above the sensitivity hear the station.
+ * <p>
+ * A station without an LVAP probes for the SSID through the agents that hear it best, then sends
+ * an association once the master gave it an LVAP. Its agent publishes its signal against the
+ * subscriptions the master wrote, at most once per publish interval.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class StationMobility implements AgentEmulator.LvapListener {
+
+    static final double PATH_LOSS_1M = 40.0;   // dB
+    static final double PATH_LOSS_EXPONENT = 3.0;
+    static final double SENSITIVITY = -90.0;   // dBm
+    static final int PROBING_AGENTS = 3;       // Agents a probe is heard by
+    static final long PROBE_RETRY = 1000;      // ms without an LVAP before probing again
+    static final int SEARCH_CELLS = 2;         // Grid cells searched around a station
+
+    /**
+     * Notified when a station gets an LVAP in answer to its probes
+     */
+    public interface ConnectListener {
+        /**
+         * @param probeToLvap time from the first probe to the LVAP, in ns
+         */
+        void connected(Station station, EmulatedAgent agent, long probeToLvap);
+    }
+
+    public static class Station {
+        final long staHwAddr;
+        final long activeAt;   // ms since the start
+        volatile double x;
+        volatile double y;
+        double waypointX;
+        double waypointY;
+        double speed;          // m/s
+
+        volatile EmulatedAgent agent;
+        volatile long probedAt; // ns of the first unanswered probe, 0 if not probing
+        volatile boolean associated;
+        long nextProbe;
+        long nextPublish;
+
+        Station(long staHwAddr, long activeAt) {
+            this.staHwAddr = staHwAddr;
+            this.activeAt = activeAt;
+        }
+
+        public long getHwAddr() {
+            return staHwAddr;
+        }
+
+        /**
+         * @return agent hosting the station's LVAP, null if none
+         */
+        public EmulatedAgent getAgent() {
+            return agent;
+        }
+    }
+
+    private final AgentEmulator emulator;
+    private final List<EmulatedAgent> agents;
+    private final String ssid;
+    private final double spacing;
+    private final int columns;
+    private final int rows;
+    private final double minSpeed;
+    private final double maxSpeed;
+    private final Random random;
+    private final List<Station> stations = new ArrayList<>();
+    private final Map<Long, Station> byHwAddr = new HashMap<>();
+
+    private volatile ConnectListener connectListener;
+    private long startedAt;
+
+    /**
+     * @param count    number of stations
+     * @param ssid     SSID the stations probe for
+     * @param spacing  distance between two neighbouring agents, in m
+     * @param minSpeed lowest speed of a station, in m/s
+     * @param maxSpeed highest speed of a station, in m/s
+     * @param ramp     time over which the stations become active once started, in ms, as
+     *                 stations arriving at a venue
+     * @param seed     seed of the positions, waypoints and speeds
+     */
+    public StationMobility(AgentEmulator emulator, int count, String ssid,
+                           double spacing, double minSpeed, double maxSpeed,
+                           long ramp, long seed) {
+        this.emulator = emulator;
+        this.agents = emulator.getAgents();
+        this.ssid = ssid;
+        this.spacing = spacing;
+        this.columns = (int) Math.ceil(Math.sqrt(agents.size()));
+        this.rows = (agents.size() + columns - 1) / columns;
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+        this.random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            // Locally administered unicast addresses
+            Station s = new Station(0x020000000000L | (i + 1),
+                                    ramp * i / count);
+            s.x = random.nextDouble() * columns * spacing;
+            s.y = random.nextDouble() * rows * spacing;
+            newWaypoint(s, random);
+            stations.add(s);
+            byHwAddr.put(s.staHwAddr, s);
+        }
+        emulator.setStations(this);
+    }
+
+    public void setConnectListener(ConnectListener listener) {
+        this.connectListener = listener;
+    }
+
+    public List<Station> getStations() {
+        return Collections.unmodifiableList(stations);
+    }
+
+    /**
+     * Start moving the stations
+     *
+     * @param tick            time between two moves of a station, in ms
+     * @param publishInterval time between two publishes of a station's signal, in ms
+     */
+    public void start(long tick, final long publishInterval) {
+        startedAt = System.currentTimeMillis();
+
+        // Each scheduler thread moves a slice of the stations
+        int slices = Math.max(1, Math.min(stations.size(), 4));
+        for (int k = 0; k < slices; k++) {
+            final int from = stations.size() * k / slices;
+            final int to = stations.size() * (k + 1) / slices;
+            final long dt = tick;
+            emulator.getScheduler().scheduleAtFixedRate(new Runnable() {
+                @Override public void run() {
+                    long now = System.currentTimeMillis() - startedAt;
+                    for (int i = from; i < to; i++) {
+                        step(stations.get(i), now, dt, publishInterval);
+                    }
+                }
+            }, tick * k / slices, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return signal of the station at the agent, dBm + 256, 0 if the agent does not hear it
+     */
+    public long signalAt(EmulatedAgent agent, long staHwAddr) {
+        Station s = byHwAddr.get(staHwAddr);
+        if (s == null) {
+            return 0;
+        }
+        double dbm = dbm(agent, s.x, s.y);
+        return dbm < SENSITIVITY ? 0 : Math.round(dbm) + 256;
+    }
+
+    /**
+     * @return agent that hears the station best
+     */
+    public EmulatedAgent bestAgent(Station s) {
+        EmulatedAgent[] best = strongest(s, 1);
+        return best[0];
+    }
+
+    private void step(Station s, long now, long dt, long publishInterval) {
+        if (now < s.activeAt) {
+            return;
+        }
+        move(s, dt);
+
+        EmulatedAgent agent = s.agent;
+        if (agent == null) {
+            if (now >= s.nextProbe) {
+                if (s.probedAt == 0) {
+                    s.probedAt = System.nanoTime();
+                }
+                for (EmulatedAgent a : strongest(s, PROBING_AGENTS)) {
+                    if (a != null) {
+                        a.probe(s.staHwAddr, ssid);
+                    }
+                }
+                s.nextProbe = now + PROBE_RETRY;
+            }
+            return;
+        }
+        if (!s.associated) {
+            s.associated = true;
+            agent.associated(s.staHwAddr);
+        }
+        if (now >= s.nextPublish) {
+            long signal = signalAt(agent, s.staHwAddr);
+            if (signal != 0) {
+                agent.heard(s.staHwAddr, signal);
+            }
+            s.nextPublish = now + publishInterval;
+        }
+    }
+
+    private void move(Station s, long dt) {
+        double dx = s.waypointX - s.x;
+        double dy = s.waypointY - s.y;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double step = s.speed * dt / 1000.0;
+        if (step >= distance) {
+            s.x = s.waypointX;
+            s.y = s.waypointY;
+            // Shared by the threads moving the slices
+            synchronized (random) {
+                newWaypoint(s, random);
+            }
+        } else {
+            s.x += dx * step / distance;
+            s.y += dy * step / distance;
+        }
+    }
+
+    private void newWaypoint(Station s, Random r) {
+        s.waypointX = r.nextDouble() * columns * spacing;
+        s.waypointY = r.nextDouble() * rows * spacing;
+        s.speed = minSpeed + r.nextDouble() * (maxSpeed - minSpeed);
+    }
+
+    /**
+     * @return the agents hearing the station best, strongest first, null where fewer hear it
+     */
+    private EmulatedAgent[] strongest(Station s, int n) {
+        EmulatedAgent[] best = new EmulatedAgent[n];
+        double[] bestDbm = new double[n];
+        double x = s.x;
+        double y = s.y;
+        int column = (int) (x / spacing);
+        int row = (int) (y / spacing);
+        for (int r = row - SEARCH_CELLS; r <= row + SEARCH_CELLS; r++) {
+            for (int c = column - SEARCH_CELLS; c <= column + SEARCH_CELLS; c++) {
+                int index = r * columns + c;
+                if (r < 0 || c < 0 || c >= columns || index >= agents.size()) {
+                    continue;
+                }
+                EmulatedAgent a = agents.get(index);
+                double dbm = dbm(a, x, y);
+                if (dbm < SENSITIVITY) {
+                    continue;
+                }
+                // Insertion into the n best so far
+                for (int k = 0; k < n; k++) {
+                    if (best[k] == null || dbm > bestDbm[k]) {
+                        System.arraycopy(best, k, best, k + 1, n - k - 1);
+                        System.arraycopy(bestDbm, k, bestDbm, k + 1, n - k - 1);
+                        best[k] = a;
+                        bestDbm[k] = dbm;
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private double dbm(EmulatedAgent agent, double x, double y) {
+        int index = agent.getIndex();
+        double dx = ((index % columns) + 0.5) * spacing - x;
+        double dy = ((index / columns) + 0.5) * spacing - y;
+        double distance = Math.max(1.0, Math.sqrt(dx * dx + dy * dy));
+        return agent.getTxPower() - PATH_LOSS_1M
+               - 10.0 * PATH_LOSS_EXPONENT * Math.log10(distance);
+    }
+
+    @Override public void lvapAdded(EmulatedAgent agent, long staHwAddr) {
+        Station s = byHwAddr.get(staHwAddr);
+        if (s == null) {
+            return;
+        }
+        long probedAt = s.probedAt;
+        s.agent = agent;
+        s.probedAt = 0;
+        ConnectListener l = connectListener;
+        if (probedAt != 0 && l != null) {
+            l.connected(s, agent, System.nanoTime() - probedAt);
+        }
+    }
+
+    @Override public void lvapRemoved(EmulatedAgent agent, long staHwAddr) {
+        Station s = byHwAddr.get(staHwAddr);
+        // A handoff adds the new LVAP before removing the old one
+        if (s != null && s.agent == agent) {
+            s.agent = null;
+            s.associated = false;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.util.MACAddress;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AgentBootstrapTest {
+
+    private static final long CONNECT_TIME = 200; // ms
+
+    private final IOFSwitch sw = EasyMock.createNiceMock(IOFSwitch.class);
+    private final Map<InetAddress, AtomicInteger> connects = new ConcurrentHashMap<>();
+    private final Map<InetAddress, Integer> connectFailures = new ConcurrentHashMap<>();
+    private final Map<InetAddress, Integer> tableFailures = new ConcurrentHashMap<>();
+    private final AtomicInteger closes = new AtomicInteger();
+    private final AtomicInteger flowFailures = new AtomicInteger();
+    private final AtomicInteger setUps = new AtomicInteger();
+    private volatile OdinClient hostedClient; // LVAP every agent hosts when connected
+    private ClientManager clientManager;
+    private AgentManager agentManager;
+    private ExecutorService workers;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Agent whose control socket takes a while to connect, and whose connect and LVAP table read
+     * fail as many times as told
+     */
+    private class SlowAgent extends StubOdinAgent {
+        @Override public int init(InetAddress host) {
+            super.init(host);
+            if (hostedClient != null) {
+                addClientLvap(hostedClient);
+            }
+            connects.computeIfAbsent(host, k -> new AtomicInteger())
+                    .incrementAndGet();
+            try {
+                Thread.sleep(CONNECT_TIME);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            Integer failures = connectFailures.get(host);
+            if (failures != null && failures > 0) {
+                connectFailures.put(host, failures - 1);
+                return -1;
+            }
+            return 0;
+        }
+
+        @Override public Set<OdinClient> getLvapsRemote() {
+            Integer failures = tableFailures.get(getIpAddress());
+            if (failures != null && failures > 0) {
+                tableFailures.put(getIpAddress(), failures - 1);
+                return null;
+            }
+            return super.getLvapsRemote();
+        }
+
+        @Override public void close() {
+            closes.incrementAndGet();
+        }
+    }
+
+    @Before
+    public void setup() {
+        clientManager = new ClientManager();
+        agentManager = new AgentManager(clientManager, new PoolManager()) {
+            @Override protected IOFSwitch findSwitch(InetAddress addr) {
+                return sw;
+            }
+
+            @Override protected IOdinAgent newAgent() {
+                return new SlowAgent();
+            }
+        };
+        agentManager.setAgentSetUp(new AgentBootstrap.SetUp() {
+            @Override public void pushSubscriptions(IOdinAgent agent) {
+            }
+
+            @Override public void installFlows(IOdinAgent agent)
+                    throws IOException {
+                if (flowFailures.getAndDecrement() > 0) {
+                    throw new IOException("switch unreachable");
+                }
+                setUps.incrementAndGet();
+            }
+        });
+        workers = Executors.newFixedThreadPool(10);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        agentManager.setBootstrapExecutors(workers, scheduler);
+        agentManager.setBootstrapBackoff(20);
+    }
+
+    @After
+    public void teardown() {
+        workers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private static InetAddress agent(int i) throws Exception {
+        return InetAddress.getByAddress(new byte[] {(byte) 172, 17, 2,
+                                                    (byte) (i + 1)});
+    }
+
+    private int connects(int i) throws Exception {
+        AtomicInteger n = connects.get(agent(i));
+        return n == null ? 0 : n.get();
+    }
+
+    private void awaitAgents(int count, long timeout) throws Exception {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (agentManager.getAgents().size() < count
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, agentManager.getAgents().size());
+    }
+
+    @Test
+    public void testAgentsBootstrappedInParallel() throws Exception {
+        int agents = 40;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < agents; i++) {
+            // Pings return right away, the agents are set up by the workers
+            assertFalse(agentManager.receivePing(agent(i)));
+        }
+        assertTrue(System.currentTimeMillis() - start < CONNECT_TIME);
+
+        // One at a time, this would take agents * CONNECT_TIME
+        awaitAgents(agents, agents * CONNECT_TIME / 2);
+        assertTrue(System.currentTimeMillis() - start
+                   < agents * CONNECT_TIME / 2);
+        assertEquals(agents, setUps.get());
+    }
+
+    @Test
+    public void testOneBootstrapPerAgent() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            agentManager.receivePing(agent(0));
+        }
+        awaitAgents(1, 1000);
+        agentManager.receivePing(agent(0));
+        assertEquals(1, connects(0));
+        assertEquals(1, setUps.get());
+    }
+
+    @Test
+    public void testFailedConnectRetried() throws Exception {
+        connectFailures.put(agent(0), 2);
+        agentManager.receivePing(agent(0));
+        awaitAgents(1, 5000);
+        assertEquals(3, connects(0));
+        assertEquals(1, setUps.get());
+    }
+
+    @Test
+    public void testFailedStageRetriedAlone() throws Exception {
+        flowFailures.set(2);
+        agentManager.receivePing(agent(0));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (setUps.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, setUps.get());
+        assertEquals(1, agentManager.getAgents().size());
+        // The agent was not connected again to retry its flows
+        assertEquals(1, connects(0));
+    }
+
+    @Test
+    public void testGivesUp() throws Exception {
+        connectFailures.put(agent(0), AgentBootstrap.MAX_ATTEMPTS);
+        agentManager.receivePing(agent(0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (connects(0) < AgentBootstrap.MAX_ATTEMPTS
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(CONNECT_TIME + 50);
+        assertEquals(0, agentManager.getAgents().size());
+
+        // The next ping starts over
+        assertFalse(agentManager.receivePing(agent(0)));
+        awaitAgents(1, 1000);
+        assertEquals(AgentBootstrap.MAX_ATTEMPTS + 1, connects(0));
+    }
+
+    @Test
+    public void testFailedTableReadRetried() throws Exception {
+        tableFailures.put(agent(0), 2);
+        agentManager.receivePing(agent(0));
+        awaitAgents(1, 5000);
+        assertEquals(0, (int) tableFailures.get(agent(0)));
+        // Read again on the same connection
+        assertEquals(1, connects(0));
+        assertEquals(0, closes.get());
+    }
+
+    @Test
+    public void testGivingUpClosesAgent() throws Exception {
+        tableFailures.put(agent(0), AgentBootstrap.MAX_ATTEMPTS);
+        agentManager.receivePing(agent(0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (closes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(1, closes.get());
+        assertEquals(0, agentManager.getAgents().size());
+
+        // The next ping starts over
+        agentManager.receivePing(agent(0));
+        awaitAgents(1, 1000);
+        assertEquals(2, connects(0));
+    }
+
+    @Test
+    public void testGivingUpDetachesClients() throws Exception {
+        MACAddress mac = MACAddress.valueOf("00:00:00:00:00:01");
+        hostedClient = new OdinClient(mac, InetAddress.getByName("0.0.0.0"),
+                                      new Lvap(mac, Arrays.asList("odin")));
+        flowFailures.set(AgentBootstrap.MAX_ATTEMPTS);
+        agentManager.receivePing(agent(0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (closes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, closes.get());
+        assertEquals(0, agentManager.getAgents().size());
+        // Tracked from the agent's LVAP table, then left without an agent
+        OdinClient client = clientManager.getClient(mac);
+        assertNull(client.getLvap().getAgent());
+        assertEquals(0, clientManager.getClientCountFromAgent(agent(0)));
+    }
+}
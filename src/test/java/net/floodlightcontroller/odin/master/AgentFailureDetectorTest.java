@@ -0,0 +1,117 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AgentFailureDetectorTest {
+    private final List<IOdinAgent> expired = new ArrayList<IOdinAgent>();
+    private AgentFailureDetector detector;
+
+    @Before
+    public void setUp() {
+        detector = new AgentFailureDetector(100, 1000, new AgentFailureDetector.ExpiryHandler() {
+            @Override
+            public void expired(IOdinAgent agent) {
+                synchronized (expired) {
+                    expired.add(agent);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        detector.shutdown();
+    }
+
+    /*
+     * Times are pushed well into the future so that the detector's own
+     * thread, which runs on the wall clock, never gets to a bucket first.
+     */
+    @Test
+    public void testExpiry() {
+        long t0 = System.currentTimeMillis() + 60000;
+        IOdinAgent a = new StubOdinAgent();
+        IOdinAgent b = new StubOdinAgent();
+        IOdinAgent c = new StubOdinAgent();
+
+        int slotA = detector.register(a, t0);
+        detector.register(b, t0);
+        int slotC = detector.register(c, t0);
+        assertEquals(3, detector.size());
+
+        detector.heard(slotA, a, t0 + 800);
+        detector.unregister(slotC, c);
+
+        detector.advance(t0 + 999);
+        assertTrue(expired.isEmpty());
+
+        detector.advance(t0 + 1100);
+        assertEquals(1, expired.size());
+        assertTrue(expired.contains(b));
+
+        detector.advance(t0 + 1790);
+        assertEquals(1, expired.size());
+
+        detector.advance(t0 + 1900);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(a));
+        assertEquals(0, detector.size());
+    }
+
+    @Test
+    public void testManyAgents() {
+        long t0 = System.currentTimeMillis() + 60000;
+        int n = 5000;
+        int[] slots = new int[n];
+        IOdinAgent[] agents = new IOdinAgent[n];
+        for (int i = 0; i < n; i++) {
+            agents[i] = new StubOdinAgent();
+            slots[i] = detector.register(agents[i], t0);
+        }
+
+        // Keep the even ones alive
+        for (long t = t0 + 500; t <= t0 + 3000; t += 500) {
+            for (int i = 0; i < n; i += 2) {
+                detector.heard(slots[i], agents[i], t);
+            }
+            detector.advance(t);
+        }
+
+        assertEquals(n / 2, expired.size());
+        assertEquals(n / 2, detector.size());
+
+        // Freed slots get reused
+        int slot = detector.register(new StubOdinAgent(), t0 + 3000);
+        assertTrue(slot < n);
+    }
+
+    @Test
+    public void testReusedSlot() {
+        long t0 = System.currentTimeMillis() + 60000;
+        IOdinAgent a = new StubOdinAgent();
+        IOdinAgent b = new StubOdinAgent();
+
+        int slotA = detector.register(a, t0);
+        detector.advance(t0 + 1100);
+        assertTrue(expired.contains(a));
+
+        // The expired slot goes to another agent before the first one is removed
+        int slotB = detector.register(b, t0 + 1100);
+        assertEquals(slotA, slotB);
+        detector.heard(slotA, a, t0 + 5000);
+        detector.unregister(slotA, a);
+        assertEquals(1, detector.size());
+
+        detector.advance(t0 + 2200);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(b));
+    }
+}
@@ -0,0 +1,139 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AgentRadioConfigTest {
+
+    private FakeAgent agent;
+    private AgentRadioConfig config;
+
+    /**
+     * Read handlers answering with the current values, or leaving reads pending when asked to.
+     */
+    private static class FakeAgent implements AgentRadioConfig.Source {
+        final AtomicInteger reads = new AtomicInteger();
+        final List<CompletableFuture<String>> pending = new ArrayList<>();
+        volatile int channel = 1;
+        volatile int txPower = 20;
+        volatile boolean answer = true;
+
+        @Override public CompletableFuture<String> read(String handler) {
+            reads.incrementAndGet();
+            if (!answer) {
+                CompletableFuture<String> f = new CompletableFuture<>();
+                synchronized (pending) {
+                    pending.add(f);
+                }
+                return f;
+            }
+            int value = handler.equals("channel") ? channel : txPower;
+            return CompletableFuture.completedFuture(value + "\n");
+        }
+    }
+
+    @Before
+    public void setup() {
+        agent = new FakeAgent();
+        config = new AgentRadioConfig(agent, "channel", "txpower", 1000);
+    }
+
+    @Test
+    public void testCachedWithinTtl() {
+        assertEquals(1, config.getChannel());
+        assertEquals(20, config.getTxPower());
+        assertEquals(2, agent.reads.get());
+
+        agent.channel = 6;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, config.getChannel());
+        }
+        assertEquals(2, agent.reads.get());
+    }
+
+    @Test
+    public void testRefreshAfterTtl() throws Exception {
+        config.setTtl(10);
+        assertEquals(1, config.getChannel());
+        agent.channel = 6;
+        agent.answer = false;
+        Thread.sleep(20);
+
+        // The old value is served while the agent is read
+        assertEquals(1, config.getChannel());
+        assertEquals(1, config.getChannel());
+        assertEquals(1, agent.pending.size());
+
+        agent.pending.get(0).complete("6");
+        assertEquals(6, config.getChannel());
+    }
+
+    @Test
+    public void testWriteThrough() {
+        assertEquals(1, config.getChannel());
+        config.setChannel(11);
+        assertEquals(11, config.getChannel());
+        assertEquals(1, agent.reads.get());
+    }
+
+    @Test
+    public void testNoCaching() {
+        config.setTtl(0);
+        assertEquals(1, config.getChannel());
+        agent.channel = 6;
+        assertEquals(6, config.getChannel());
+        assertEquals(2, agent.reads.get());
+    }
+
+    @Test
+    public void testRefresh() {
+        assertEquals(1, config.getChannel());
+        assertEquals(20, config.getTxPower());
+        agent.channel = 6;
+        agent.txPower = 15;
+        config.refresh();
+        assertEquals(6, config.getChannel());
+        assertEquals(15, config.getTxPower());
+    }
+
+    @Test
+    public void testBadAnswerKeepsValue() {
+        assertEquals(1, config.getChannel());
+        agent.answer = false;
+        config.setTtl(0);
+        CompletableFuture<Void> refreshed = CompletableFuture.runAsync(
+                () -> config.getChannel());
+        CompletableFuture<String> read = null;
+        while (read == null) {
+            synchronized (agent.pending) {
+                read = agent.pending.isEmpty() ? null : agent.pending.get(0);
+            }
+            Thread.yield();
+        }
+        read.complete("garbage");
+        refreshed.join();
+        config.setTtl(AgentRadioConfig.DEFAULT_TTL);
+        assertEquals(1, config.getChannel());
+    }
+
+    @Test
+    public void testReadBeforeWriteDropped() throws Exception {
+        config.setTtl(10);
+        assertEquals(1, config.getChannel());
+        agent.answer = false;
+        Thread.sleep(20);
+        assertEquals(1, config.getChannel()); // Sends a read
+
+        // The agent switches channel, then answers the read sent before
+        config.setChannel(11);
+        agent.pending.get(0).complete("1");
+        assertEquals(11, config.getChannel());
+    }
+}
@@ -0,0 +1,69 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ApNeighborGraphTest {
+
+    private InetAddress ap1, ap2, ap3, ap4;
+
+    @Before
+    public void setup() throws Exception {
+        ap1 = InetAddress.getByName("172.17.2.1");
+        ap2 = InetAddress.getByName("172.17.2.2");
+        ap3 = InetAddress.getByName("172.17.2.3");
+        ap4 = InetAddress.getByName("172.17.2.4");
+    }
+
+    @Test
+    public void testBeacons() {
+        ApNeighborGraph graph = new ApNeighborGraph(2);
+        assertTrue(graph.getNeighbors(ap1, 3).isEmpty());
+
+        graph.observeBeacon(ap1, ap2, -70);
+        graph.observeBeacon(ap1, ap3, -50);
+        graph.observeBeacon(ap4, ap1, -60);
+        graph.observeBeacon(ap1, ap1, -10); // Ignored
+
+        // Closest first, only the best two kept
+        assertEquals(Arrays.asList(ap3, ap4), graph.getNeighbors(ap1, 3));
+        assertEquals(Arrays.asList(ap3), graph.getNeighbors(ap1, 1));
+        // Links go both ways
+        assertEquals(Arrays.asList(ap1), graph.getNeighbors(ap2, 3));
+
+        // Averaged, one bad measurement does not reorder
+        graph.observeBeacon(ap1, ap3, -80);
+        assertEquals(Arrays.asList(ap3, ap4), graph.getNeighbors(ap1, 2));
+        for (int i = 0; i < 10; i++) {
+            graph.observeBeacon(ap1, ap3, -80);
+        }
+        assertEquals(Arrays.asList(ap4, ap2), graph.getNeighbors(ap1, 2));
+
+        // Too weak to be a neighbor
+        graph.observeBeacon(ap2, ap3, -120);
+        assertEquals(Arrays.asList(ap1), graph.getNeighbors(ap2, 3));
+    }
+
+    @Test
+    public void testHandoffs() {
+        ApNeighborGraph graph = new ApNeighborGraph();
+        graph.observeBeacon(ap1, ap2, -60);
+        graph.observeBeacon(ap1, ap3, -55);
+        for (int i = 0; i < 3; i++) {
+            graph.observeHandoff(ap1, ap2);
+        }
+        // Clients keep moving to ap2, a weaker beacon is not enough
+        assertEquals(Arrays.asList(ap2, ap3), graph.getNeighbors(ap1, 3));
+
+        // Handoff history alone makes a neighbor, in its direction only
+        graph.observeHandoff(ap4, ap1);
+        assertEquals(Arrays.asList(ap1), graph.getNeighbors(ap4, 3));
+        assertEquals(Arrays.asList(ap2, ap3), graph.getNeighbors(ap1, 3));
+    }
+}
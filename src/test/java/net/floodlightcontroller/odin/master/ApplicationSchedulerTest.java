@@ -0,0 +1,167 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.floodlightcontroller.odin.master.OdinApplication.State;
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ApplicationSchedulerTest {
+
+    private ScheduledExecutorService executor;
+    private final Object lock = new Object();
+
+    /**
+     * Application counting the runs of a periodic task.
+     */
+    private static class PeriodicApplication extends OdinApplication {
+        final AtomicInteger runs = new AtomicInteger();
+
+        @Override public void run() {
+            schedulePeriodic(new Runnable() {
+                @Override public void run() {
+                    runs.incrementAndGet();
+                }
+            }, 0, 10);
+        }
+    }
+
+    @Before
+    public void setup() {
+        executor = Executors.newScheduledThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ApplicationScheduler start(OdinApplication app) {
+        ApplicationScheduler scheduler = new ApplicationScheduler(app, executor);
+        app.setLock(lock);
+        app.setScheduler(scheduler);
+        scheduler.start();
+        return scheduler;
+    }
+
+    private void awaitHalted(OdinApplication app) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        synchronized (lock) {
+            while (app.getState() != State.HALTED
+                   && System.currentTimeMillis() < deadline) {
+                lock.wait(100);
+            }
+        }
+        assertEquals(State.HALTED, app.getState());
+    }
+
+    @Test
+    public void testHaltBetweenTasks() throws Exception {
+        PeriodicApplication app = new PeriodicApplication();
+        start(app);
+        while (app.runs.get() < 3) {
+            Thread.sleep(5);
+        }
+
+        assertTrue(app.tryHalt());
+        awaitHalted(app);
+        int runs = app.runs.get();
+        Thread.sleep(100);
+        assertEquals(runs, app.runs.get());
+
+        assertTrue(app.resume());
+        Thread.sleep(100);
+        assertTrue(app.runs.get() > runs);
+    }
+
+    @Test
+    public void testTimerKeptWhileHalted() throws Exception {
+        PeriodicApplication app = new PeriodicApplication();
+        start(app);
+        app.tryHalt();
+        awaitHalted(app);
+
+        final CountDownLatch fired = new CountDownLatch(1);
+        ScheduledTask cancelled = app.scheduleOnce(new Runnable() {
+            @Override public void run() {
+                fired.countDown();
+            }
+        }, 0);
+        cancelled.cancel();
+        app.scheduleOnce(new Runnable() {
+            @Override public void run() {
+                fired.countDown();
+            }
+        }, 10);
+        assertFalse(fired.await(100, TimeUnit.MILLISECONDS));
+
+        app.resume();
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLoopingApplicationHaltsAtCheckpoint() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        OdinApplication app = new OdinApplication() {
+            @Override public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                checkpoint();
+            }
+        };
+        start(app);
+
+        app.tryHalt();
+        Thread.sleep(50);
+        assertEquals(State.HALTING, app.getState());
+
+        release.countDown();
+        awaitHalted(app);
+        synchronized (lock) {
+            app.resume();
+            lock.notifyAll();
+        }
+    }
+
+    @Test
+    public void testNetworkEvents() throws Exception {
+        OdinApplication app = new PeriodicApplication();
+        ApplicationScheduler scheduler = start(app);
+        ClientManager clientManager = new ClientManager();
+        clientManager.addClientStatusListener(scheduler);
+
+        final CountDownLatch added = new CountDownLatch(2);
+        ScheduledTask handle = app.addNetworkEventListener(new NetworkEventListener() {
+            @Override public void clientAdded(OdinClient client) {
+                added.countDown();
+            }
+        });
+
+        MACAddress mac = MACAddress.valueOf("00:00:00:00:00:01");
+        clientManager.addClient(mac, InetAddress.getByName("0.0.0.0"), null);
+        // Already known, not a new client
+        clientManager.addClient(mac, InetAddress.getByName("0.0.0.0"), null);
+        Thread.sleep(50);
+        assertEquals(1, added.getCount());
+
+        handle.cancel();
+        clientManager.removeClient(mac);
+        clientManager.addClient(mac, InetAddress.getByName("0.0.0.0"), null);
+        assertFalse(added.await(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,84 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Set;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClientManagerTest {
+
+    private ClientManager clientManager;
+    private StubOdinAgent agent1;
+    private StubOdinAgent agent2;
+
+    @Before
+    public void setup() throws Exception {
+        clientManager = new ClientManager();
+        agent1 = new StubOdinAgent();
+        agent1.init(InetAddress.getByName("172.17.2.1"));
+        agent2 = new StubOdinAgent();
+        agent2.init(InetAddress.getByName("172.17.2.2"));
+    }
+
+    private OdinClient addClient(int i) throws Exception {
+        MACAddress mac = MACAddress.valueOf(new byte[] {0, 0, 0, 0, 0, (byte) i});
+        OdinClient oc = new OdinClient(mac, InetAddress.getByName("0.0.0.0"),
+                                       new Lvap(mac, new ArrayList<String>()));
+        clientManager.addClient(oc);
+        return oc;
+    }
+
+    @Test
+    public void testAgentIndex() throws Exception {
+        OdinClient c1 = addClient(1);
+        OdinClient c2 = addClient(2);
+        clientManager.setClientAgent(c1, agent1);
+        clientManager.setClientAgent(c2, agent1);
+        assertEquals(2, clientManager.getClientCountFromAgent(agent1.getIpAddress()));
+
+        Set<OdinClient> view = clientManager.getClientsFromAgent(agent1.getIpAddress());
+        clientManager.setClientAgent(c2, agent2);
+        // Views follow later moves
+        assertEquals(1, view.size());
+        assertFalse(view.contains(c2));
+        assertEquals(1, clientManager.getClientCountFromAgent(agent1.getIpAddress()));
+        assertTrue(clientManager.getClientsFromAgent(agent2.getIpAddress()).contains(c2));
+        assertEquals(agent2, c2.getLvap().getAgent());
+
+        clientManager.removeClient(c1.getMacAddress());
+        assertEquals(0, clientManager.getClientCountFromAgent(agent1.getIpAddress()));
+        clientManager.setClientAgent(c2, null);
+        assertTrue(clientManager.getClientsFromAgent(agent2.getIpAddress()).isEmpty());
+    }
+
+    @Test
+    public void testChannelIndex() throws Exception {
+        OdinClient c1 = addClient(1);
+        OdinClient c2 = addClient(2);
+        clientManager.setClientAgent(c1, agent1);
+        clientManager.setAgentChannel(agent1.getIpAddress(), 1);
+        clientManager.setAgentChannel(agent2.getIpAddress(), 6);
+        clientManager.setClientAgent(c2, agent2);
+
+        assertTrue(clientManager.getClientsOnChannel(1).contains(c1));
+        assertTrue(clientManager.getClientsOnChannel(6).contains(c2));
+
+        // The agent changes channel, along with its clients
+        clientManager.setAgentChannel(agent1.getIpAddress(), 6);
+        assertTrue(clientManager.getClientsOnChannel(1).isEmpty());
+        assertEquals(2, clientManager.getClientsOnChannel(6).size());
+
+        clientManager.setClientAgent(c2, agent1);
+        clientManager.setAgentChannel(agent1.getIpAddress(), 11);
+        assertFalse(clientManager.getClientsOnChannel(6).contains(c2));
+        assertEquals(2, clientManager.getClientsOnChannel(11).size());
+    }
+}
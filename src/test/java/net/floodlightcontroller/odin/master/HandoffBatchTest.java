@@ -0,0 +1,129 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.odin.master.HandoffTracer.Phase;
+import net.floodlightcontroller.util.MACAddress;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.openflow.protocol.OFFlowMod;
+import org.openflow.protocol.OFMessage;
+
+public class HandoffBatchTest {
+
+    /**
+     * Agent counting the batched LVAP calls it gets.
+     */
+    private static class CountingAgent extends StubOdinAgent {
+        final List<Collection<OdinClient>> added = new ArrayList<>();
+        final List<Collection<OdinClient>> removed = new ArrayList<>();
+
+        @Override public CompletableFuture<Void> addClientLvaps(
+                Collection<OdinClient> clients) {
+            added.add(new ArrayList<>(clients));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override public CompletableFuture<Void> removeClientLvaps(
+                Collection<OdinClient> clients) {
+            removed.add(new ArrayList<>(clients));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static OdinClient client(int i) throws Exception {
+        MACAddress mac = MACAddress.valueOf(new byte[] {0, 0, 0, 0, 0, (byte) i});
+        return new OdinClient(mac, InetAddress.getByName("0.0.0.0"),
+                              new Lvap(mac, new ArrayList<String>()));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        OFMessage m1 = new OFFlowMod();
+        OFMessage m2 = new OFFlowMod();
+        OFMessage m3 = new OFFlowMod();
+
+        // One write per switch, with the messages of every client
+        IOFSwitch sw1 = EasyMock.createMock(IOFSwitch.class);
+        sw1.write(Arrays.asList(m1, m2), null);
+        EasyMock.expectLastCall().once();
+        IOFSwitch sw2 = EasyMock.createMock(IOFSwitch.class);
+        sw2.write(Arrays.asList(m3), null);
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(sw1, sw2);
+
+        CountingAgent from = new CountingAgent();
+        from.init(InetAddress.getByName("172.17.2.1"));
+        from.setSwitch(sw2);
+        CountingAgent to = new CountingAgent();
+        to.init(InetAddress.getByName("172.17.2.2"));
+        to.setSwitch(sw1);
+        OdinClient c1 = client(1);
+        OdinClient c2 = client(2);
+        OdinClient c3 = client(3);
+
+        ClientManager clientManager = new ClientManager();
+        clientManager.addClient(c1);
+        clientManager.addClient(c2);
+        clientManager.addClient(c3);
+
+        HandoffTracer tracer = new HandoffTracer();
+        HandoffBatch batch = new HandoffBatch(tracer, clientManager);
+        assertTrue(batch.isEmpty());
+        batch.pushFlowMods(to, Arrays.asList(m1));
+        batch.pushFlowMods(to, Arrays.asList(m2));
+        batch.pushFlowMods(from, Arrays.asList(m3));
+        batch.addLvap(to, c1);
+        batch.addLvap(to, c2);
+        batch.removeLvap(from, c1);
+        batch.removeLvap(from, c2);
+        batch.addLvap(from, c3);
+        batch.execute();
+
+        EasyMock.verify(sw1, sw2);
+        assertEquals(1, to.added.size());
+        assertEquals(Arrays.asList(c1, c2), to.added.get(0));
+        assertEquals(0, to.removed.size());
+        assertEquals(1, from.removed.size());
+        assertEquals(Arrays.asList(c1, c2), from.removed.get(0));
+        assertEquals(Arrays.asList(c3), from.added.get(0));
+
+        // Each switch write and agent acknowledgement was timed
+        assertEquals(2, tracer.getHistogram(Phase.FLOW_PUSH).getCount());
+        assertEquals(2, tracer.getHistogram(Phase.ADD_VAP).getCount());
+        assertEquals(1, tracer.getHistogram(Phase.REMOVE_VAP,
+                                            from.getIpAddress()).getCount());
+    }
+
+    @Test
+    public void testRemovedClientNotAdded() throws Exception {
+        CountingAgent to = new CountingAgent();
+        to.init(InetAddress.getByName("172.17.2.2"));
+        OdinClient c1 = client(1);
+        OdinClient c2 = client(2);
+        ClientManager clientManager = new ClientManager();
+        clientManager.addClient(c1);
+        clientManager.addClient(c2);
+
+        HandoffBatch batch = new HandoffBatch(new HandoffTracer(),
+                                              clientManager);
+        batch.addLvap(to, c1);
+        batch.addLvap(to, c2);
+        // Deauthenticated after the handoff was planned
+        clientManager.removeClient(c2.getMacAddress());
+        batch.execute();
+
+        assertEquals(1, to.added.size());
+        assertEquals(Arrays.asList(c1), to.added.get(0));
+    }
+}
@@ -0,0 +1,72 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.odin.master.HandoffTracer.Phase;
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Test;
+
+public class HandoffTracerTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(99));
+        for (long v = 1; v <= 10000; v++) {
+            h.record(v);
+        }
+        assertEquals(10000, h.getCount());
+        assertEquals(10000, h.getMax());
+        assertEquals(5000.5, h.getMean(), 0.01);
+
+        // Within the bucket resolution, 1/16
+        long p50 = h.getValueAtPercentile(50);
+        assertTrue(p50 >= 5000 && p50 <= 5000 * 17 / 16);
+        long p99 = h.getValueAtPercentile(99);
+        assertTrue(p99 >= 9900 && p99 <= 9900 * 17 / 16);
+        assertEquals(10000, h.getValueAtPercentile(100));
+
+        // Small values are exact
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(3);
+        small.record(7);
+        assertEquals(3, small.getValueAtPercentile(50));
+        assertEquals(7, small.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testAssociation() throws Exception {
+        HandoffTracer tracer = new HandoffTracer();
+        MACAddress client = MACAddress.valueOf("00:00:00:00:00:01");
+        InetAddress agent1 = InetAddress.getByName("172.17.2.1");
+        InetAddress agent2 = InetAddress.getByName("172.17.2.2");
+
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20);
+        tracer.handoffStarted(client, agent2, start);
+        // Association with another agent does not end the handoff
+        tracer.associated(client, agent1);
+        assertEquals(0, tracer.getHistogram(Phase.ASSOCIATION).getCount());
+
+        tracer.associated(client, agent2);
+        tracer.associated(client, agent2);
+        assertEquals(1, tracer.getHistogram(Phase.ASSOCIATION).getCount());
+        assertTrue(tracer.getHistogram(Phase.ASSOCIATION, agent2).getMax() >= 20000);
+        assertNull(tracer.getHistogram(Phase.ASSOCIATION, agent1));
+
+        tracer.handoffStarted(client, agent1, start);
+        tracer.forget(client);
+        tracer.associated(client, agent1);
+        assertEquals(1, tracer.getHistogram(Phase.ASSOCIATION).getCount());
+
+        Map<String, Object> m = tracer.toMap();
+        assertTrue(((Map<?, ?>) m.get("agents")).containsKey("172.17.2.2"));
+        assertTrue(((Map<?, ?>) m.get("global")).containsKey("association"));
+    }
+}
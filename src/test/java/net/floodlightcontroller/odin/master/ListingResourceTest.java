@@ -0,0 +1,148 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+
+public class ListingResourceTest {
+
+    private ClientManager clientManager;
+    private PoolManager poolManager;
+    private Restlet router;
+
+    @Before
+    public void setup() throws Exception {
+        clientManager = new ClientManager();
+        poolManager = new PoolManager();
+        AgentManager agentManager = new AgentManager(clientManager,
+                                                     poolManager);
+        OdinMaster master = new OdinMaster(agentManager, clientManager,
+                                           new LvapManager(), poolManager);
+        Context context = new Context();
+        context.getAttributes().put(OdinMaster.class.getCanonicalName(),
+                                    master);
+        router = new OdinMasterWebRoutable().getRestlet(context);
+
+        for (int i = 3; i >= 1; i--) {
+            addClient(i, i == 2 ? "0.0.0.0" : "10.0.0." + i);
+        }
+        for (int i = 3; i >= 1; i--) {
+            poolManager.addPoolForAgent(
+                    InetAddress.getByName("172.17.2." + i), "pool-1");
+        }
+    }
+
+    private OdinClient addClient(int i, String ip) throws Exception {
+        Lvap lvap = new Lvap(MACAddress.valueOf(0x001bb3000000L + i),
+                             Arrays.asList("odin"));
+        OdinClient oc = new OdinClient(MACAddress.valueOf(i),
+                                       InetAddress.getByName(ip), lvap);
+        clientManager.addClient(oc);
+        poolManager.mapClientToPool(oc, "pool-1");
+        return oc;
+    }
+
+    private Response get(String path, Tag tag) {
+        Request request = new Request(Method.GET, "http://localhost" + path);
+        request.getResourceRef().setBaseRef("http://localhost");
+        if (tag != null) {
+            request.getConditions().setNoneMatch(
+                    Collections.singletonList(tag));
+        }
+        Response response = new Response(request);
+        router.handle(request, response);
+        return response;
+    }
+
+    private String getText(String path) throws Exception {
+        Response response = get(path, null);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        return response.getEntity().getText();
+    }
+
+    @Test
+    public void testUnpaginated() throws Exception {
+        assertEquals("[{\"macAddress\":\"00:00:00:00:00:01\","
+                     + "\"ipAddress\":\"10.0.0.1\","
+                     + "\"lvapBssid\":\"00:1B:B3:00:00:01\","
+                     + "\"lvapSsid\":\"odin\",\"agent\":null},"
+                     + "{\"macAddress\":\"00:00:00:00:00:02\","
+                     + "\"ipAddress\":\"0.0.0.0\","
+                     + "\"lvapBssid\":\"00:1B:B3:00:00:02\","
+                     + "\"lvapSsid\":\"odin\",\"agent\":null},"
+                     + "{\"macAddress\":\"00:00:00:00:00:03\","
+                     + "\"ipAddress\":\"10.0.0.3\","
+                     + "\"lvapBssid\":\"00:1B:B3:00:00:03\","
+                     + "\"lvapSsid\":\"odin\",\"agent\":null}]",
+                     getText("/clients/all/json"));
+        assertEquals("{\"00:00:00:00:00:01\":{\"ipAddress\":\"10.0.0.1\"},"
+                     + "\"00:00:00:00:00:03\":{\"ipAddress\":\"10.0.0.3\"}}",
+                     getText("/clients/connected/json?fields=ipAddress"));
+        assertEquals("[\"172.17.2.1\",\"172.17.2.2\",\"172.17.2.3\"]",
+                     getText("/agents/json"));
+    }
+
+    @Test
+    public void testPaginated() throws Exception {
+        assertEquals("{\"clients\":[{\"macAddress\":\"00:00:00:00:00:01\"},"
+                     + "{\"macAddress\":\"00:00:00:00:00:02\"}],"
+                     + "\"next\":\"00:00:00:00:00:02\"}",
+                     getText("/clients/all/json?limit=2&fields=macAddress"));
+        assertEquals("{\"clients\":[{\"macAddress\":\"00:00:00:00:00:03\"}],"
+                     + "\"next\":null}",
+                     getText("/clients/all/json?limit=2&fields=macAddress"
+                             + "&after=00:00:00:00:00:02"));
+        assertEquals("{\"clients\":[{\"macAddress\":\"00:00:00:00:00:03\"}],"
+                     + "\"next\":\"00:00:00:00:00:03\"}",
+                     getText("/clients/connected/json?limit=1&fields=macAddress"
+                             + "&after=00:00:00:00:00:01"));
+        assertEquals("{\"agents\":[\"172.17.2.2\",\"172.17.2.3\"],"
+                     + "\"next\":null}",
+                     getText("/agents/json?limit=5&after=172.17.2.1"));
+        assertEquals(Status.CLIENT_ERROR_BAD_REQUEST,
+                     get("/clients/all/json?after=nope", null).getStatus());
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        Response first = get("/clients/all/json", null);
+        Tag tag = first.getEntity().getTag();
+        assertNotNull(tag);
+
+        Response second = get("/clients/all/json", tag);
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, second.getStatus());
+        assertNull(second.getEntity());
+
+        // Handing a client off changes the listing
+        StubOdinAgent agent = new StubOdinAgent();
+        agent.init(InetAddress.getByName("172.17.2.1"));
+        clientManager.setClientAgent(
+                clientManager.getClient(MACAddress.valueOf(1)), agent);
+        assertEquals(Status.SUCCESS_OK,
+                     get("/clients/all/json", tag).getStatus());
+
+        Tag agentsTag = get("/agents/json", null).getEntity().getTag();
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED,
+                     get("/agents/json", agentsTag).getStatus());
+        poolManager.addPoolForAgent(InetAddress.getByName("172.17.2.4"),
+                                    "pool-1");
+        assertEquals(Status.SUCCESS_OK,
+                     get("/agents/json", agentsTag).getStatus());
+    }
+}
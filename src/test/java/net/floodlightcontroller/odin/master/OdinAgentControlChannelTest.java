@@ -0,0 +1,173 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Talks to a minimal Click ControlSocket lookalike to check reply correlation.
+ */
+public class OdinAgentControlChannelTest {
+    private ServerSocket server;
+    private Thread agent;
+    private final List<String> received = new ArrayList<String>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        agent = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket s = server.accept()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(
+                            s.getInputStream(), StandardCharsets.UTF_8));
+                    OutputStream out = s.getOutputStream();
+                    out.write("Click::ControlSocket/1.3\r\n".getBytes(StandardCharsets.UTF_8));
+
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        synchronized (received) {
+                            received.add(line);
+                        }
+                        out.write(reply(line).getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                } catch (Exception e) {
+                    // Connection torn down by the test
+                }
+            }
+        });
+        agent.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        agent.join(1000);
+    }
+
+    /**
+     * Replies the way Click would, with a large payload for the "big" handler and an error for
+     * anything called "missing".
+     */
+    private static String reply(String command) {
+        String handler = command.split(" ")[1];
+        if (handler.endsWith("missing")) {
+            return "511-No element named 'missing'\r\n511 Handler error\r\n";
+        }
+        if (command.startsWith("WRITE")) {
+            return "200 Write handler '" + handler + "' OK\r\n";
+        }
+        String data = handler;
+        if (handler.endsWith("big")) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                sb.append("00:00:00:00:00:0").append(i % 10).append(" rate:54\n");
+            }
+            data = sb.toString();
+        }
+        return "200 Read handler '" + handler + "' OK\r\nDATA "
+               + data.getBytes(StandardCharsets.UTF_8).length + "\r\n" + data;
+    }
+
+    @Test
+    public void testPipelinedReplies() throws Exception {
+        OdinAgentControlChannel cc = OdinAgentControlChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+
+        List<CompletableFuture<String>> reads = new ArrayList<CompletableFuture<String>>();
+        List<CompletableFuture<Void>> writes = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 100; i++) {
+            reads.add(cc.read("odinagent.h" + i));
+            writes.add(cc.write("odinagent.w" + i, "arg " + i));
+        }
+        CompletableFuture<String> big = cc.read("odinagent.big");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("odinagent.h" + i, reads.get(i).get(5, TimeUnit.SECONDS));
+            assertNull(writes.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(5000, big.get(5, TimeUnit.SECONDS).split("\n").length);
+        assertEquals(0, cc.getInFlight());
+
+        synchronized (received) {
+            assertEquals(201, received.size());
+            assertEquals("WRITE odinagent.w7 arg 7", received.get(15));
+        }
+        cc.close();
+    }
+
+    @Test
+    public void testWriteAll() throws Exception {
+        OdinAgentControlChannel cc = OdinAgentControlChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+
+        List<String> args = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            args.add("arg " + i);
+        }
+        CompletableFuture<Void> writes = cc.writeAll("odinagent.add_vap", args);
+        CompletableFuture<String> read = cc.read("odinagent.channel");
+
+        assertNull(writes.get(5, TimeUnit.SECONDS));
+        assertEquals("odinagent.channel", read.get(5, TimeUnit.SECONDS));
+        assertEquals(0, cc.getInFlight());
+        synchronized (received) {
+            assertEquals(51, received.size());
+            assertEquals("WRITE odinagent.add_vap arg 49", received.get(49));
+        }
+
+        CompletableFuture<Void> missing = cc.writeAll("odinagent.missing", args);
+        try {
+            missing.get(5, TimeUnit.SECONDS);
+            fail("Expected the writes to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().startsWith("511"));
+        }
+        cc.close();
+    }
+
+    @Test
+    public void testErrorReplyFailsOnlyItsRequest() throws Exception {
+        OdinAgentControlChannel cc = OdinAgentControlChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+
+        CompletableFuture<String> missing = cc.read("odinagent.missing");
+        CompletableFuture<String> ok = cc.read("odinagent.channel");
+
+        try {
+            missing.get(5, TimeUnit.SECONDS);
+            fail("Expected the read to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().startsWith("511"));
+        }
+        assertEquals("odinagent.channel", ok.get(5, TimeUnit.SECONDS));
+
+        cc.close();
+        try {
+            cc.read("odinagent.channel").get(5, TimeUnit.SECONDS);
+            fail("Expected the read to fail on a closed channel");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Test;
+
+public class OdinAgentMessageTest {
+    private final OdinAgentMessage msg = new OdinAgentMessage();
+
+    /**
+     * Lay the message out like the receiver does: direct buffer, padded with garbage past the
+     * limit.
+     */
+    private boolean parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocateDirect(1024);
+        buf.put(bytes);
+        buf.put((byte) 'x');
+        buf.flip();
+        buf.limit(bytes.length);
+        return msg.parse(buf);
+    }
+
+    @Test
+    public void testPing() {
+        assertTrue(parse("ping\n"));
+        assertEquals(OdinAgentMessage.Type.PING, msg.getType());
+        assertTrue(parse("PING"));
+        assertEquals(OdinAgentMessage.Type.PING, msg.getType());
+    }
+
+    @Test
+    public void testProbe() {
+        assertTrue(parse("probe 00:1B:2c:3d:4e:5F"));
+        assertEquals(OdinAgentMessage.Type.PROBE, msg.getType());
+        assertEquals(MACAddress.valueOf("00:1b:2c:3d:4e:5f").toLong(), msg.getStaHwAddr());
+        assertEquals("", msg.getSsid());
+
+        assertTrue(parse("probe 00:00:00:00:00:01 My Network\0\0"));
+        assertEquals(1L, msg.getStaHwAddr());
+        assertEquals("my network", msg.getSsid());
+
+        assertFalse(parse("probe 00:00:00:00:00"));
+    }
+
+    @Test
+    public void testPublish() {
+        assertTrue(parse("publish 00:00:00:00:00:02 3 1:150 2:7 13:0"));
+        assertEquals(OdinAgentMessage.Type.PUBLISH, msg.getType());
+        assertEquals(2L, msg.getStaHwAddr());
+        assertEquals(3, msg.getPublishCount());
+        assertEquals(13L, msg.getPublishId(2));
+        assertEquals(150L, msg.getPublishValue(0));
+
+        StringBuilder sb = new StringBuilder("publish 00:00:00:00:00:02 20");
+        for (int i = 0; i < 20; i++) {
+            sb.append(' ').append(i).append(':').append(i * 10);
+        }
+        assertTrue(parse(sb.toString()));
+        assertEquals(20, msg.getPublishCount());
+        assertEquals(190L, msg.getPublishValue(19));
+
+        assertFalse(parse("publish 00:00:00:00:00:02 2 1:150"));
+    }
+
+    @Test
+    public void testOtherMessages() {
+        assertTrue(parse("detectedflow 10.0.0.1 10.0.0.2 17 5000 5001"));
+        assertEquals(OdinAgentMessage.Type.DETECTED_FLOW, msg.getType());
+        assertEquals("10.0.0.1 10.0.0.2 17 5000 5001", msg.getDetectedFlow());
+        assertFalse(parse("detectedflow 10.0.0.1 10.0.0.2"));
+
+        assertTrue(parse("deauthentication 00:00:00:00:00:03"));
+        assertEquals(OdinAgentMessage.Type.DEAUTH, msg.getType());
+        assertEquals(3L, msg.getStaHwAddr());
+
+        assertTrue(parse("association 00:00:00:00:00:04"));
+        assertEquals(OdinAgentMessage.Type.ASSOC, msg.getType());
+        assertEquals(4L, msg.getStaHwAddr());
+
+        assertFalse(parse("pong"));
+        assertFalse(parse(""));
+    }
+}
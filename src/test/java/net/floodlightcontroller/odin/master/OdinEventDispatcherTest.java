@@ -0,0 +1,107 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class OdinEventDispatcherTest {
+
+    @Test
+    public void testPerClientOrdering() throws Exception {
+        OdinEventDispatcher dispatcher = new OdinEventDispatcher(4);
+        final int clients = 32;
+        final int events = 500;
+        final List<List<Integer>> seen = new ArrayList<List<Integer>>();
+        final CountDownLatch done = new CountDownLatch(clients * events);
+
+        for (int c = 0; c < clients; c++) {
+            seen.add(new ArrayList<Integer>());
+        }
+        for (int e = 0; e < events; e++) {
+            for (int c = 0; c < clients; c++) {
+                final List<Integer> list = seen.get(c);
+                final int event = e;
+                dispatcher.dispatch(0x001bb3000000L + c, new Runnable() {
+                    @Override
+                    public void run() {
+                        list.add(event);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> list : seen) {
+            assertEquals(events, list.size());
+            for (int e = 0; e < events; e++) {
+                assertEquals(e, (int) list.get(e));
+            }
+        }
+
+        long processed = 0;
+        for (int i = 0; i < dispatcher.getLaneCount(); i++) {
+            processed += dispatcher.getProcessed(i);
+            assertTrue(dispatcher.getMaxQueueDepth(i) > 0);
+        }
+        assertEquals(clients * events, processed);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testLaneSpread() {
+        OdinEventDispatcher dispatcher = new OdinEventDispatcher(8);
+        int[] hits = new int[8];
+        for (int c = 0; c < 800; c++) {
+            hits[dispatcher.laneFor(0x001bb3000000L + c)]++;
+        }
+        for (int h : hits) {
+            assertTrue(h > 50);
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testFullLaneDrops() throws Exception {
+        OdinEventDispatcher dispatcher = new OdinEventDispatcher(1, 2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        Runnable event = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+
+        // Hold the lane while filling its queue
+        assertTrue(dispatcher.dispatch(1L, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch(1L, event));
+        assertTrue(dispatcher.dispatch(1L, event));
+        assertFalse(dispatcher.dispatch(1L, event));
+        assertEquals(1, dispatcher.getDropped(0));
+
+        release.countDown();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        dispatcher.shutdown();
+    }
+}
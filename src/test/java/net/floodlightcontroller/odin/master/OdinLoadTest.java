@@ -0,0 +1,452 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.core.test.MockFloodlightProvider;
+import net.floodlightcontroller.odin.emulator.AgentEmulator;
+import net.floodlightcontroller.odin.emulator.EmulatedAgent;
+import net.floodlightcontroller.odin.emulator.StationMobility;
+import net.floodlightcontroller.odin.emulator.StationMobility.Station;
+import net.floodlightcontroller.odin.master.HandoffTracer.Phase;
+import net.floodlightcontroller.restserver.IRestApiService;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
+import net.floodlightcontroller.threadpool.ThreadPool;
+import net.floodlightcontroller.util.MACAddress;
+
+import org.easymock.EasyMock;
+import org.jboss.netty.channel.Channel;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of a master against emulated agents and stations (see AgentEmulator). The master is
+ * the real one, talking to the agents over UDP and their control sockets; only the OpenFlow
+ * switches of the agents are mocks, since the master only writes flow mods to them.
+ * <p>
+ * Stations probe, get their LVAP and move around. Whenever one is heard better by another agent,
+ * the test hands it off there through the master, as a mobility application would. It reports:
+ * <ul>
+ * <li>probe to LVAP latency: from a station's first probe until its agent got the add_vap</li>
+ * <li>handoff throughput and latency: until the new agent got the add_vap</li>
+ * <li>CPU time and allocation of every thread but the emulator's, which is the master's plus a
+ * little of this test's (threads that end during the run are not counted)</li>
+ * </ul>
+ * The unit test runs a small deployment. For the real thing, run main() with any of the
+ * {@link Config} fields as system properties, e.g. -Dagents=500 -Dstations=5000
+ * -Dduration=60000. Agents use loopback addresses and need Linux, and three file descriptors
+ * each.
+ *
+ * @author André Oliveira <andreduartecoliveira@gmail.com>
+ */
+public class OdinLoadTest {
+
+    protected static Logger log = LoggerFactory.getLogger(OdinLoadTest.class);
+
+    private static final String POOL = "load-test";
+    private static final String SSID = "odin-load-test";
+    private static final long HANDOFF_TIMEOUT = 5000; // ms
+
+    static class Config {
+        int agents = 100;
+        int stations = 1000;
+        long duration = 30000;       // ms, measured once every agent is up
+        long ramp = 10000;           // ms over which the stations arrive
+        double spacing = 30;         // m between neighbouring agents
+        double minSpeed = 1;         // m/s
+        double maxSpeed = 2;         // m/s
+        long pingInterval = 1000;    // ms
+        long tick = 100;             // ms between two moves of the stations
+        long publishInterval = 1000; // ms between two publishes of a station
+        long handoffInterval = 200;  // ms between two looks for better agents
+        long hysteresis = 3;         // dB better for a handoff
+        String channels = "6";       // Channels given to the agents in turn
+        int masterPort = 0;          // 0 for any free port
+        int emulatorThreads = 4;
+        long seed = 1;
+
+        /**
+         * @return the defaults, overridden by system properties named after the fields
+         */
+        static Config fromSystemProperties() {
+            Config c = new Config();
+            c.agents = Integer.getInteger("agents", c.agents);
+            c.stations = Integer.getInteger("stations", c.stations);
+            c.duration = Long.getLong("duration", c.duration);
+            c.ramp = Long.getLong("ramp", c.ramp);
+            c.spacing = Double.parseDouble(System.getProperty("spacing",
+                    Double.toString(c.spacing)));
+            c.minSpeed = Double.parseDouble(System.getProperty("minSpeed",
+                    Double.toString(c.minSpeed)));
+            c.maxSpeed = Double.parseDouble(System.getProperty("maxSpeed",
+                    Double.toString(c.maxSpeed)));
+            c.pingInterval = Long.getLong("pingInterval", c.pingInterval);
+            c.tick = Long.getLong("tick", c.tick);
+            c.publishInterval = Long.getLong("publishInterval",
+                                             c.publishInterval);
+            c.handoffInterval = Long.getLong("handoffInterval",
+                                             c.handoffInterval);
+            c.hysteresis = Long.getLong("hysteresis", c.hysteresis);
+            c.channels = System.getProperty("channels", c.channels);
+            c.masterPort = Integer.getInteger("masterPort", c.masterPort);
+            c.emulatorThreads = Integer.getInteger("emulatorThreads",
+                                                   c.emulatorThreads);
+            c.seed = Long.getLong("seed", c.seed);
+            return c;
+        }
+    }
+
+    static class Report {
+        int agents;
+        int agentsUp;
+        int stations;
+        int connected;
+        long elapsed; // ms
+        final LatencyHistogram probeToLvap = new LatencyHistogram();
+        final LatencyHistogram handoff = new LatencyHistogram();
+        final AtomicLong handoffsRequested = new AtomicLong();
+        final AtomicLong handoffsTimedOut = new AtomicLong();
+        long cpuTime;    // ns
+        long allocated;  // bytes
+        long gcCount;
+        long gcTime;     // ms
+        HandoffTracer tracer;
+
+        @Override public String toString() {
+            double seconds = elapsed / 1000.0;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("agents up        %d/%d%n", agentsUp, agents));
+            sb.append(String.format("stations        %d/%d with an LVAP%n",
+                                    connected, stations));
+            sb.append(String.format("probe to LVAP   %s%n", format(probeToLvap)));
+            sb.append(String.format("handoffs        %d requested, %d done "
+                                    + "(%.1f/s), %d timed out%n",
+                                    handoffsRequested.get(), handoff.getCount(),
+                                    handoff.getCount() / seconds,
+                                    handoffsTimedOut.get()));
+            sb.append(String.format("handoff         %s%n", format(handoff)));
+            for (Phase phase : new Phase[] {Phase.FLOW_PUSH, Phase.ADD_VAP,
+                                            Phase.REMOVE_VAP}) {
+                sb.append(String.format("  %-14s%s%n", phase.name().toLowerCase(),
+                                        format(tracer.getHistogram(phase))));
+            }
+            sb.append(String.format("master CPU      %.0f ms in %.1f s (%.1f%% "
+                                    + "of a core)%n", cpuTime / 1e6, seconds,
+                                    cpuTime / 1e4 / elapsed));
+            sb.append(String.format("master alloc    %.1f MB (%.1f MB/s)%n",
+                                    allocated / 1e6, allocated / 1e6 / seconds));
+            sb.append(String.format("GC (whole JVM)  %d collections, %d ms%n",
+                                    gcCount, gcTime));
+            return sb.toString();
+        }
+
+        private static String format(LatencyHistogram h) {
+            return String.format("n=%d mean=%.1fms p50=%.1fms p99=%.1fms "
+                                 + "max=%.1fms", h.getCount(),
+                                 h.getMean() / 1000.0,
+                                 h.getValueAtPercentile(50) / 1000.0,
+                                 h.getValueAtPercentile(99) / 1000.0,
+                                 h.getMax() / 1000.0);
+        }
+    }
+
+    private static class PendingHandoff {
+        final EmulatedAgent target;
+        final long requested = System.nanoTime();
+
+        PendingHandoff(EmulatedAgent target) {
+            this.target = target;
+        }
+    }
+
+    static Report run(final Config config) throws Exception {
+        final Report report = new Report();
+        report.agents = config.agents;
+        report.stations = config.stations;
+
+        int port = config.masterPort;
+        if (port == 0) {
+            try (DatagramSocket s = new DatagramSocket(0)) {
+                port = s.getLocalPort();
+            }
+        }
+
+        // Agents, and the pool file the master reads them from
+        InetAddress[] addresses = new InetAddress[config.agents];
+        File poolFile = File.createTempFile("odin-load-test", ".pool");
+        poolFile.deleteOnExit();
+        try (PrintWriter w = new PrintWriter(poolFile, "UTF-8")) {
+            w.println("NAME " + POOL);
+            w.print("NODES");
+            for (int i = 0; i < config.agents; i++) {
+                addresses[i] = AgentEmulator.loopbackAddress(i);
+                w.print(" " + addresses[i].getHostAddress());
+            }
+            w.println();
+            w.println("NETWORKS " + SSID);
+        }
+
+        // Master
+        FloodlightModuleContext cntx = new FloodlightModuleContext();
+        MockFloodlightProvider provider = new MockFloodlightProvider();
+        IRestApiService restApi = EasyMock.createNiceMock(IRestApiService.class);
+        EasyMock.replay(restApi);
+        ThreadPool tp = new ThreadPool();
+        tp.init(cntx);
+
+        OdinAgentFactory.setOdinAgentType("OdinAgent");
+        ClientManager clientManager = new ClientManager();
+        PoolManager poolManager = new PoolManager();
+        AgentManager agentManager = new AgentManager(clientManager,
+                                                     poolManager);
+        final OdinMaster master = new OdinMaster(agentManager, clientManager,
+                                                 new LvapManager(),
+                                                 poolManager);
+        cntx.addService(IFloodlightProviderService.class, provider);
+        cntx.addService(IRestApiService.class, restApi);
+        cntx.addService(IThreadPoolService.class, tp);
+        cntx.addConfigParam(master, "poolFile", poolFile.getAbsolutePath());
+        cntx.addConfigParam(master, "masterPort", Integer.toString(port));
+        cntx.addConfigParam(master, "stateJournal", ""); // No journal
+
+        // The master waits for an agent's switch before taking the agent
+        for (int i = 0; i < config.agents; i++) {
+            provider.getSwitches().put((long) i + 1,
+                                       mockSwitch(i + 1, addresses[i]));
+        }
+        master.init(cntx);
+        master.startUp(cntx);
+
+        // Emulated agents and stations
+        String[] channels = config.channels.split(",");
+        final AgentEmulator emulator = new AgentEmulator(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                config.emulatorThreads);
+        for (int i = 0; i < config.agents; i++) {
+            emulator.addAgent(addresses[i], Integer.parseInt(
+                    channels[i % channels.length].trim()), 20);
+        }
+        final StationMobility mobility = new StationMobility(emulator,
+                config.stations, SSID, config.spacing, config.minSpeed,
+                config.maxSpeed, config.ramp, config.seed);
+
+        mobility.setConnectListener(new StationMobility.ConnectListener() {
+            @Override public void connected(Station station,
+                                            EmulatedAgent agent,
+                                            long probeToLvap) {
+                report.probeToLvap.record(probeToLvap / 1000);
+            }
+        });
+        final Map<Long, PendingHandoff> pending = new ConcurrentHashMap<>();
+        emulator.addLvapListener(new AgentEmulator.LvapListener() {
+            @Override public void lvapAdded(EmulatedAgent agent, long sta) {
+                PendingHandoff p = pending.get(sta);
+                if (p != null && p.target == agent && pending.remove(sta, p)) {
+                    report.handoff.record(
+                            (System.nanoTime() - p.requested) / 1000);
+                }
+            }
+
+            @Override public void lvapRemoved(EmulatedAgent agent, long sta) {
+            }
+        });
+
+        ScheduledExecutorService handoffs = Executors
+                .newSingleThreadScheduledExecutor();
+        try {
+            emulator.start(config.pingInterval);
+            long deadline = System.currentTimeMillis() + 30000
+                            + 10L * config.agents;
+            while (agentManager.getAgents().size() < config.agents
+                   && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            report.agentsUp = agentManager.getAgents().size();
+            log.info(report.agentsUp + " agents up, starting "
+                     + config.stations + " stations");
+
+            Map<Long, long[]> threadsBefore = masterThreads();
+            long[] gcBefore = gc();
+            long start = System.nanoTime();
+
+            mobility.start(config.tick, config.publishInterval);
+            handoffs.scheduleWithFixedDelay(new Runnable() {
+                @Override public void run() {
+                    handoffToBestAgents(master, mobility, pending, config,
+                                        report);
+                }
+            }, config.handoffInterval, config.handoffInterval,
+                                            TimeUnit.MILLISECONDS);
+
+            Thread.sleep(config.duration);
+            handoffs.shutdownNow();
+            handoffs.awaitTermination(5, TimeUnit.SECONDS);
+
+            report.elapsed = (System.nanoTime() - start) / 1000000;
+            Map<Long, long[]> threadsAfter = masterThreads();
+            for (Map.Entry<Long, long[]> e : threadsAfter.entrySet()) {
+                long[] before = threadsBefore.get(e.getKey());
+                report.cpuTime += e.getValue()[0]
+                                  - (before == null ? 0 : before[0]);
+                report.allocated += e.getValue()[1]
+                                    - (before == null ? 0 : before[1]);
+            }
+            long[] gcAfter = gc();
+            report.gcCount = gcAfter[0] - gcBefore[0];
+            report.gcTime = gcAfter[1] - gcBefore[1];
+            for (Station s : mobility.getStations()) {
+                if (s.getAgent() != null) {
+                    report.connected++;
+                }
+            }
+            report.tracer = master.getHandoffTracer();
+        } finally {
+            handoffs.shutdownNow();
+            tp.getScheduledExecutor().shutdownNow();
+            if (master.getEventDispatcher() != null) {
+                master.getEventDispatcher().shutdown();
+            }
+            emulator.close();
+        }
+        return report;
+    }
+
+    /**
+     * Hand the stations heard clearly better by another agent off to it, as a mobility
+     * application would
+     */
+    private static void handoffToBestAgents(OdinMaster master,
+                                            StationMobility mobility,
+                                            Map<Long, PendingHandoff> pending,
+                                            Config config, Report report) {
+        long now = System.nanoTime();
+        for (Station s : mobility.getStations()) {
+            long sta = s.getHwAddr();
+            PendingHandoff p = pending.get(sta);
+            if (p != null) {
+                if (now - p.requested < HANDOFF_TIMEOUT * 1000000
+                    || !pending.remove(sta, p)) {
+                    continue;
+                }
+                report.handoffsTimedOut.incrementAndGet();
+            }
+            EmulatedAgent current = s.getAgent();
+            if (current == null) {
+                continue;
+            }
+            EmulatedAgent best = mobility.bestAgent(s);
+            if (best == null || best == current
+                || mobility.signalAt(best, sta)
+                   < mobility.signalAt(current, sta) + config.hysteresis) {
+                continue;
+            }
+            pending.put(sta, new PendingHandoff(best));
+            report.handoffsRequested.incrementAndGet();
+            master.handoffClientToAp(POOL, MACAddress.valueOf(sta),
+                                     best.getAddress());
+        }
+    }
+
+    private static IOFSwitch mockSwitch(long id, InetAddress address) {
+        IOFSwitch sw = EasyMock.createNiceMock(IOFSwitch.class);
+        Channel ch = EasyMock.createNiceMock(Channel.class);
+        expect(sw.getChannel()).andReturn(ch).anyTimes();
+        expect(sw.getId()).andReturn(id).anyTimes();
+        expect(ch.getRemoteAddress()).andReturn(
+                (SocketAddress) new InetSocketAddress(address, 6633))
+                .anyTimes();
+        EasyMock.replay(sw, ch);
+        return sw;
+    }
+
+    /**
+     * @return CPU time (ns) and allocated bytes of each live thread but the emulator's
+     */
+    private static Map<Long, long[]> masterThreads() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        bean.setThreadCpuTimeEnabled(true);
+        bean.setThreadAllocatedMemoryEnabled(true);
+        Map<Long, long[]> threads = new HashMap<>();
+        for (ThreadInfo info : bean.getThreadInfo(bean.getAllThreadIds())) {
+            if (info == null || info.getThreadName()
+                                    .startsWith(AgentEmulator.THREAD_PREFIX)) {
+                continue;
+            }
+            long id = info.getThreadId();
+            long cpu = bean.getThreadCpuTime(id);
+            long allocated = bean.getThreadAllocatedBytes(id);
+            if (cpu >= 0 && allocated >= 0) {
+                threads.put(id, new long[] {cpu, allocated});
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * @return collections and collection time (ms) of the whole JVM so far
+     */
+    private static long[] gc() {
+        long[] gc = new long[2];
+        for (GarbageCollectorMXBean bean : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            gc[0] += Math.max(0, bean.getCollectionCount());
+            gc[1] += Math.max(0, bean.getCollectionTime());
+        }
+        return gc;
+    }
+
+    @Test
+    public void testSmallDeployment() throws Exception {
+        Config config = new Config();
+        config.agents = 9;
+        config.stations = 40;
+        config.duration = 4000;
+        config.ramp = 500;
+        config.spacing = 20;
+        config.minSpeed = 10;
+        config.maxSpeed = 20;
+        config.tick = 50;
+        config.publishInterval = 200;
+        config.handoffInterval = 100;
+        config.channels = "1,6,11";
+
+        Report report = run(config);
+        log.info("\n" + report);
+
+        assertEquals(config.agents, report.agentsUp);
+        assertEquals(config.stations, report.connected);
+        assertTrue(report.probeToLvap.getCount() >= config.stations);
+        assertTrue(report.handoff.getCount() > 0);
+        assertTrue(report.cpuTime > 0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Report report = run(Config.fromSystemProperties());
+        System.out.println(report);
+        System.exit(0);
+    }
+}
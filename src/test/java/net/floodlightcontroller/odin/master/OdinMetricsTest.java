@@ -0,0 +1,110 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class OdinMetricsTest {
+
+    @Test
+    public void testCounters() {
+        OdinMetrics metrics = new OdinMetrics();
+        metrics.message(OdinAgentMessage.Type.PING);
+        metrics.message(OdinAgentMessage.Type.PING);
+        metrics.message(OdinAgentMessage.Type.PUBLISH);
+        metrics.malformedMessage();
+        metrics.droppedMessage();
+        metrics.published(3);
+        metrics.lvapSpawned();
+        metrics.lvapReclaimed(OdinMetrics.Reclaim.IDLE);
+        metrics.scanned(ScanResult.Status.OK);
+        metrics.scanned(ScanResult.Status.OK);
+        metrics.scanned(ScanResult.Status.OK);
+        metrics.scanned(ScanResult.Status.BUSY);
+
+        assertEquals(2, metrics.getMessages(OdinAgentMessage.Type.PING));
+        assertEquals(0, metrics.getMessages(OdinAgentMessage.Type.PROBE));
+        assertEquals(1, metrics.getLvapsSpawned());
+        assertEquals(1, metrics.getLvapsReclaimed(OdinMetrics.Reclaim.IDLE));
+        assertEquals(0, metrics.getLvapsReclaimed(OdinMetrics.Reclaim.DEAUTH));
+
+        Map<String, Object> m = metrics.toMap();
+        Map<?, ?> messages = (Map<?, ?>) m.get("messages");
+        assertEquals(2L, messages.get("ping"));
+        assertEquals(1L, messages.get("malformed"));
+        assertEquals(1L, messages.get("dropped"));
+        Map<?, ?> subscriptions = (Map<?, ?>) m.get("subscriptions");
+        assertEquals(1L, subscriptions.get("publishes"));
+        assertEquals(3L, subscriptions.get("matches"));
+        Map<?, ?> scans = (Map<?, ?>) m.get("scans");
+        assertEquals(0.75, (Double) scans.get("successRatio"), 1e-9);
+        assertEquals(0.25, (Double) scans.get("busyRatio"), 1e-9);
+    }
+
+    @Test
+    public void testControlRtt() throws Exception {
+        OdinMetrics metrics = new OdinMetrics();
+        InetAddress agent = InetAddress.getByName("172.17.2.1");
+        long start = System.nanoTime() - 2000000; // 2 ms ago
+        metrics.controlRead(agent, "table", start, true);
+        metrics.controlRead(agent, "table", start, false);
+
+        LatencyHistogram h = metrics.getControlRtt(agent, "table");
+        assertEquals(1, h.getCount());
+        assertTrue(h.getMax() >= 2000);
+        assertNull(metrics.getControlRtt(agent, "txstats"));
+
+        String text = metrics.toText();
+        assertTrue(text.contains(
+                "odin_agent_control_rtt_microseconds_count{agent=\"172.17.2.1\","
+                + "handler=\"table\"} 1\n"));
+        assertTrue(text.contains("odin_agent_control_failures_total 1\n"));
+        assertTrue(text.contains(
+                "# TYPE odin_agent_control_rtt_microseconds summary\n"));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final OdinMetrics metrics = new OdinMetrics();
+        final InetAddress agent = InetAddress.getByName("172.17.2.1");
+        final int threads = 4;
+        final int updates = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < updates; i++) {
+                        metrics.message(OdinAgentMessage.Type.PUBLISH);
+                        metrics.controlRead(agent, "sta_rssi",
+                                            System.nanoTime(), true);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        assertEquals(threads * updates,
+                     metrics.getMessages(OdinAgentMessage.Type.PUBLISH));
+        assertEquals(threads * updates,
+                     metrics.getControlRtt(agent, "sta_rssi").getCount());
+        assertTrue(metrics.toText().contains(
+                "odin_agent_messages_total{type=\"publish\"} "
+                + threads * updates + "\n"));
+    }
+}
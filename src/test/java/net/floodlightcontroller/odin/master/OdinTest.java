@@ -131,6 +131,7 @@ public class OdinTest {
 			e.printStackTrace();
 		}
         restApi.startUp(cntx);
+        odinMaster.setExecutor(tp.getScheduledExecutor());
         
         mockFloodlightProvider.addOFSwitchListener(odinMaster);
         agentManager.setFloodlightProvider(mockFloodlightProvider);
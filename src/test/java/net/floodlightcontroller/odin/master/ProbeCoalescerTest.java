@@ -0,0 +1,149 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProbeCoalescerTest {
+
+    private final Map<InetAddress, IOdinAgent> agents = new HashMap<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private PoolManager poolManager;
+    private ProbeCoalescer coalescer;
+    private RespondingAgent agent;
+
+    private static final MACAddress CLIENT1 = MACAddress
+            .valueOf("00:00:00:00:00:01");
+    private static final MACAddress CLIENT2 = MACAddress
+            .valueOf("00:00:00:00:00:02");
+
+    /**
+     * Agent recording the probe responses it was asked to send
+     */
+    private class RespondingAgent extends StubOdinAgent {
+        final List<List<MACAddress>> writes = new ArrayList<>();
+        final List<Set<String>> ssids = new ArrayList<>();
+
+        RespondingAgent(String addr) throws Exception {
+            init(InetAddress.getByName(addr));
+            agents.put(getIpAddress(), this);
+        }
+
+        @Override
+        public void sendProbeResponses(List<MACAddress> clientHwAddrs,
+                                       List<MACAddress> bssids,
+                                       Set<String> ssidLists) {
+            assertEquals(clientHwAddrs.size(), bssids.size());
+            writes.add(clientHwAddrs);
+            ssids.add(ssidLists);
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        poolManager = new PoolManager();
+        AgentManager agentManager = new AgentManager(new ClientManager(),
+                                                     poolManager) {
+            @Override
+            protected IOdinAgent getAgent(InetAddress agentInetAddr) {
+                return agents.get(agentInetAddr);
+            }
+        };
+        agent = new RespondingAgent("172.17.2.1");
+        poolManager.addPoolForAgent(agent.getIpAddress(), "pool-1");
+        poolManager.addNetworkForPool("pool-1", "odin");
+
+        coalescer = new ProbeCoalescer(agentManager, poolManager);
+        coalescer.setExecutor(tasks::add);
+        coalescer.setWindow(100);
+    }
+
+    private void runTasks() {
+        List<Runnable> run = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable r : run) {
+            r.run();
+        }
+    }
+
+    @Test
+    public void testDuplicatesDropped() {
+        InetAddress addr = agent.getIpAddress();
+        assertTrue(coalescer.probed(addr, CLIENT1, 1000));
+        assertFalse(coalescer.probed(addr, CLIENT1, 1050));
+        assertFalse(coalescer.probed(addr, CLIENT1, 1099));
+        runTasks();
+        assertEquals(1, agent.writes.size());
+        assertEquals(Arrays.asList(CLIENT1), agent.writes.get(0));
+
+        // Once the window is over the client is answered again
+        assertTrue(coalescer.probed(addr, CLIENT1, 1100));
+        runTasks();
+        assertEquals(2, agent.writes.size());
+    }
+
+    @Test
+    public void testBatchedPerAgent() throws Exception {
+        RespondingAgent other = new RespondingAgent("172.17.2.2");
+        poolManager.addPoolForAgent(other.getIpAddress(), "pool-1");
+
+        assertTrue(coalescer.probed(agent.getIpAddress(), CLIENT1, 1000));
+        assertTrue(coalescer.probed(agent.getIpAddress(), CLIENT2, 1001));
+        assertTrue(coalescer.probed(other.getIpAddress(), CLIENT1, 1002));
+
+        // One write scheduled per agent
+        assertEquals(2, tasks.size());
+        runTasks();
+        assertEquals(1, agent.writes.size());
+        assertEquals(Arrays.asList(CLIENT1, CLIENT2), agent.writes.get(0));
+        assertEquals(1, other.writes.size());
+        assertEquals(Arrays.asList(CLIENT1), other.writes.get(0));
+    }
+
+    @Test
+    public void testSsidsCachedUntilChanged() {
+        InetAddress addr = agent.getIpAddress();
+        Set<String> ssids = poolManager.getSsidsForAgent(addr);
+        assertEquals(new TreeSet<>(Arrays.asList("odin")), ssids);
+        assertSame(ssids, poolManager.getSsidsForAgent(addr));
+
+        poolManager.addNetworkForPool("pool-1", "odin-guest");
+        coalescer.probed(addr, CLIENT1, 1000);
+        runTasks();
+        assertEquals(new TreeSet<>(Arrays.asList("odin", "odin-guest")),
+                     agent.ssids.get(0));
+
+        poolManager.removeNetworkFromPool("pool-1", "odin");
+        assertEquals(new TreeSet<>(Arrays.asList("odin-guest")),
+                     poolManager.getSsidsForAgent(addr));
+
+        poolManager.addPoolForAgent(addr, "pool-2");
+        poolManager.addNetworkForPool("pool-2", "odin-2");
+        assertEquals(new TreeSet<>(Arrays.asList("odin-guest", "odin-2")),
+                     poolManager.getSsidsForAgent(addr));
+    }
+
+    @Test
+    public void testAgentDownForgetsProbes() {
+        InetAddress addr = agent.getIpAddress();
+        assertTrue(coalescer.probed(addr, CLIENT1, 1000));
+        runTasks();
+        coalescer.agentDown(agent);
+        assertTrue(coalescer.probed(addr, CLIENT1, 1001));
+    }
+}
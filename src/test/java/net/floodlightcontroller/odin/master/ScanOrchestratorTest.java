@@ -0,0 +1,188 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScanOrchestratorTest {
+    private static final long SCAN_TIME = 200;
+
+    private ScheduledExecutorService executor;
+    private final Map<InetAddress, IOdinAgent> agents = new HashMap<>();
+    private ScanOrchestrator orchestrator;
+
+    /**
+     * Agent answering scan requests with the given behaviour.
+     */
+    private class ScanningAgent extends StubOdinAgent {
+        final boolean busy;
+        final boolean answers;
+        final List<Integer> requested = new CopyOnWriteArrayList<>();
+
+        ScanningAgent(String addr, boolean busy, boolean answers) throws Exception {
+            init(InetAddress.getByName(addr));
+            this.busy = busy;
+            this.answers = answers;
+            agents.put(getIpAddress(), this);
+        }
+
+        @Override
+        public CompletableFuture<Integer> requestScannedStationsStatsAsync(int channel,
+                                                                           String ssid) {
+            requested.add(channel);
+            return CompletableFuture.completedFuture(busy ? 0 : 1);
+        }
+
+        @Override
+        public CompletableFuture<String> getScannedStaRssiAsync() {
+            if (!answers) {
+                return new CompletableFuture<>(); // Never completes
+            }
+            return CompletableFuture.completedFuture("00:00:00:00:00:01 -50\n");
+        }
+
+        @Override
+        public CompletableFuture<StationStats> getScannedStationStatsAsync(String ssid) {
+            if (!answers) {
+                return new CompletableFuture<>(); // Never completes
+            }
+            return CompletableFuture.completedFuture(StationStats.EMPTY);
+        }
+
+        @Override
+        public CompletableFuture<Integer> getScanClientResultAsync() {
+            if (!answers) {
+                return new CompletableFuture<>(); // Never completes
+            }
+            return CompletableFuture.completedFuture(200);
+        }
+    }
+
+    @Before
+    public void setup() {
+        executor = Executors.newScheduledThreadPool(2);
+        AgentManager agentManager = new AgentManager(new ClientManager(), new PoolManager()) {
+            @Override
+            protected IOdinAgent getAgent(InetAddress agentInetAddr) {
+                return agents.get(agentInetAddr);
+            }
+        };
+        orchestrator = new ScanOrchestrator(agentManager, executor,
+                                            new OdinMetrics());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAgentsScanInParallel() throws Exception {
+        InetAddress[] addrs = new InetAddress[20];
+        for (int i = 0; i < addrs.length; i++) {
+            addrs[i] = new ScanningAgent("172.17.2." + (i + 1), false, true).getIpAddress();
+        }
+
+        long start = System.currentTimeMillis();
+        ScanResult result = orchestrator.scanStaRssi(addrs, new int[] {1, 0, 6}, "*",
+                                                     SCAN_TIME, 1000).get();
+        long elapsed = System.currentTimeMillis() - start;
+
+        // Two channels each, agents not waiting for each other
+        assertTrue("took " + elapsed + " ms", elapsed < 4 * SCAN_TIME);
+        assertEquals(0, result.getMissingCount());
+        assertEquals(ScanResult.Status.SKIPPED, result.getStatus(5, 1));
+        assertEquals("00:00:00:00:00:01 -50\n", result.getStaRssi(19, 2));
+    }
+
+    @Test
+    public void testSweepIsStaggered() throws Exception {
+        ScanningAgent[] scanning = new ScanningAgent[3];
+        InetAddress[] addrs = new InetAddress[scanning.length];
+        for (int i = 0; i < scanning.length; i++) {
+            scanning[i] = new ScanningAgent("172.17.2." + (i + 1), false, true);
+            addrs[i] = scanning[i].getIpAddress();
+        }
+        int[] channels = {1, 6, 0, 11};
+
+        long start = System.currentTimeMillis();
+        InterferenceMatrix result = orchestrator.sweepStationStats(addrs, channels, "*",
+                                                                   SCAN_TIME, 1000).get();
+
+        // Each agent starts on its own channel and goes round the others
+        assertEquals(Arrays.asList(1, 6, 11), scanning[0].requested);
+        assertEquals(Arrays.asList(6, 11, 1), scanning[1].requested);
+        assertEquals(Arrays.asList(11, 1, 6), scanning[2].requested);
+
+        assertEquals(0, result.getMissingCount());
+        assertEquals(ScanResult.Status.SKIPPED, result.getStatus(2, 0));
+        assertEquals(StationStats.EMPTY, result.getStats(3, 1));
+        assertTrue(result.getCollectedAt(3, 1) >= start + SCAN_TIME);
+        assertTrue(result.getCollectedAt(0, 0) < result.getCollectedAt(3, 0));
+        assertTrue(result.getCollectedAt(0, 2) > result.getCollectedAt(3, 2));
+    }
+
+    @Test
+    public void testStaggerOffset() {
+        assertEquals(0, ScanOrchestrator.staggerOffset(0, 2, 11));
+        assertEquals(5, ScanOrchestrator.staggerOffset(1, 2, 11));
+        assertEquals(10, ScanOrchestrator.staggerOffset(10, 11, 11));
+        assertEquals(1, ScanOrchestrator.staggerOffset(12, 20, 11));
+    }
+
+    @Test
+    public void testPartialResults() throws Exception {
+        InetAddress[] addrs = {
+                new ScanningAgent("172.17.2.1", false, true).getIpAddress(),
+                new ScanningAgent("172.17.2.2", true, true).getIpAddress(),
+                new ScanningAgent("172.17.2.3", false, false).getIpAddress(),
+                InetAddress.getByName("172.17.2.4") // Unknown agent
+        };
+
+        ScanResult result = orchestrator.scanStaRssi(addrs, new int[] {1}, "*", SCAN_TIME,
+                                                     100).get();
+
+        assertEquals(ScanResult.Status.OK, result.getStatus(0, 0));
+        assertEquals(ScanResult.Status.BUSY, result.getStatus(1, 0));
+        assertEquals(ScanResult.Status.TIMED_OUT, result.getStatus(2, 0));
+        assertEquals(ScanResult.Status.FAILED, result.getStatus(3, 0));
+        assertNull(result.getStaRssi(2, 0));
+        assertEquals(3, result.getMissingCount());
+    }
+
+    @Test
+    public void testClientScan() throws Exception {
+        InetAddress[] addrs = new InetAddress[10];
+        for (int i = 0; i < addrs.length; i++) {
+            addrs[i] = new ScanningAgent("172.17.2." + (i + 1), false, i != 0).getIpAddress();
+        }
+        addrs[9] = InetAddress.getByName("172.17.2.99"); // Unknown agent
+
+        long start = System.currentTimeMillis();
+        Map<InetAddress, Integer> result = orchestrator.scanClient(
+                addrs, MACAddress.valueOf("00:00:00:00:00:01"), 1, SCAN_TIME, 100).get();
+        long elapsed = System.currentTimeMillis() - start;
+
+        // One scan time for all of them, the silent agent only holds until the deadline
+        assertTrue("took " + elapsed + " ms", elapsed < 3 * SCAN_TIME);
+        assertEquals(8, result.size());
+        assertNull(result.get(addrs[0]));
+        assertEquals(Integer.valueOf(200), result.get(addrs[1]));
+    }
+}
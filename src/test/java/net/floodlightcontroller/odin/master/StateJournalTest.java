@@ -0,0 +1,223 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateJournalTest {
+
+    private Path path;
+    private ClientManager clientManager;
+    private PoolManager poolManager;
+    private StateJournal journal;
+    private StubOdinAgent agent;
+
+    private static final MACAddress CLIENT1 = MACAddress
+            .valueOf("00:00:00:00:00:01");
+    private static final MACAddress CLIENT2 = MACAddress
+            .valueOf("00:00:00:00:00:02");
+
+    @Before
+    public void setup() throws Exception {
+        path = File.createTempFile("odin", ".journal").toPath();
+        path.toFile().delete();
+        clientManager = new ClientManager();
+        poolManager = new PoolManager();
+        journal = new StateJournal(path, clientManager, poolManager,
+                                   new LvapManager());
+        assertEquals(0, journal.restore());
+        agent = new StubOdinAgent();
+        agent.init(InetAddress.getByName("172.17.2.1"));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        journal.close();
+        path.toFile().delete();
+    }
+
+    private OdinClient addClient(MACAddress mac, String ip, String pool)
+            throws Exception {
+        Lvap lvap = new Lvap(MACAddress.valueOf("00:1b:b3:00:00:0" + mac
+                .toBytes()[5]), Arrays.asList("odin", "odin-guest"));
+        OdinClient oc = new OdinClient(mac, InetAddress.getByName(ip), lvap);
+        clientManager.addClient(oc);
+        poolManager.mapClientToPool(oc, pool);
+        return oc;
+    }
+
+    /**
+     * @return offset of every record in the journal file
+     */
+    private long[] records() throws Exception {
+        long[] offsets = new long[0];
+        try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "r")) {
+            long pos = 8; // After the header
+            while (pos + 4 <= f.length()) {
+                f.seek(pos);
+                int length = f.readInt();
+                if (length == 0) {
+                    break;
+                }
+                offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                offsets[offsets.length - 1] = pos;
+                pos += 8 + length;
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Replay the journal in the managers of a new master
+     */
+    private StateJournal restart() throws Exception {
+        journal.close();
+        clientManager = new ClientManager();
+        poolManager = new PoolManager();
+        journal = new StateJournal(path, clientManager, poolManager,
+                                   new LvapManager());
+        journal.restore();
+        return journal;
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        OdinClient oc = addClient(CLIENT1, "10.0.0.1", "pool-1");
+        oc.getLvap().setAssocState(true);
+        clientManager.setClientAgent(oc, agent);
+        addClient(CLIENT2, "0.0.0.0", "pool-2");
+        journal.run();
+
+        restart();
+        assertEquals(2, clientManager.getClients().size());
+        OdinClient restored = clientManager.getClient(CLIENT1);
+        assertEquals(InetAddress.getByName("10.0.0.1"),
+                     restored.getIpAddress());
+        assertEquals(oc.getLvap().getBssid(), restored.getLvap().getBssid());
+        assertEquals(Arrays.asList("odin", "odin-guest"),
+                     restored.getLvap().getSsids());
+        assertTrue(restored.getLvap().getAssocState());
+        assertNull(restored.getLvap().getAgent());
+        assertEquals("pool-1", poolManager.getPoolForClient(restored));
+        assertFalse(clientManager.getClient(CLIENT2).getLvap()
+                                 .getAssocState());
+        assertEquals("pool-2", poolManager.getPoolForClient(
+                clientManager.getClient(CLIENT2)));
+    }
+
+    @Test
+    public void testChangesAndRemovals() throws Exception {
+        OdinClient oc = addClient(CLIENT1, "0.0.0.0", "pool-1");
+        addClient(CLIENT2, "0.0.0.0", "pool-1");
+        journal.run();
+
+        oc.setIpAddress(InetAddress.getByName("10.0.0.1"));
+        clientManager.removeClient(CLIENT2);
+        journal.run();
+        long size = path.toFile().length();
+        journal.run(); // Nothing changed, nothing appended
+
+        restart();
+        assertEquals(size, path.toFile().length());
+        assertEquals(1, clientManager.getClients().size());
+        assertEquals(InetAddress.getByName("10.0.0.1"),
+                     clientManager.getClient(CLIENT1).getIpAddress());
+    }
+
+    @Test
+    public void testTornWriteIgnored() throws Exception {
+        addClient(CLIENT1, "10.0.0.1", "pool-1");
+        journal.run();
+        addClient(CLIENT2, "10.0.0.2", "pool-1");
+        journal.run();
+        journal.close();
+
+        // Corrupt the last record, as a crash in the middle of its write would
+        long[] records = records();
+        try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw")) {
+            f.seek(records[records.length - 1] + 8 + 3);
+            f.write(0xff);
+        }
+
+        restart();
+        assertEquals(1, clientManager.getClients().size());
+        assertNull(clientManager.getClient(CLIENT2));
+
+        // The journal goes on after the last good record
+        addClient(CLIENT2, "10.0.0.2", "pool-1");
+        journal.run();
+        restart();
+        assertEquals(2, clientManager.getClients().size());
+    }
+
+    @Test
+    public void testRestoredAgentKept() throws Exception {
+        OdinClient oc = addClient(CLIENT1, "10.0.0.1", "pool-1");
+        clientManager.setClientAgent(oc, agent);
+        journal.run();
+        assertEquals(1, records().length);
+
+        // The client waits for its agent, the journal still knows where it was
+        restart().run();
+        assertEquals(1, records().length);
+
+        StubOdinAgent other = new StubOdinAgent();
+        other.init(InetAddress.getByName("172.17.2.2"));
+        clientManager.setClientAgent(clientManager.getClient(CLIENT1), other);
+        journal.run();
+        assertEquals(2, records().length);
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        OdinClient oc = addClient(CLIENT1, "0.0.0.0", "pool-1");
+        int runs = 2000;
+        for (int i = 0; i < runs; i++) {
+            oc.getLvap().setAssocState(i % 2 == 0);
+            journal.run();
+        }
+        // Each run appended a record, compaction dropped the stale ones
+        assertTrue(records().length < runs / 2);
+        restart();
+        assertFalse(clientManager.getClient(CLIENT1).getLvap()
+                                 .getAssocState());
+    }
+
+    @Test
+    public void testManyClients() throws Exception {
+        int clients = 5000;
+        for (int i = 0; i < clients; i++) {
+            MACAddress mac = MACAddress.valueOf(0x00aa00000000L + i);
+            OdinClient oc = new OdinClient(mac, InetAddress.getByAddress(
+                    new byte[] {10, 0, (byte) (i >> 8), (byte) i}),
+                                           new Lvap(MACAddress.valueOf(
+                                                   0x001bb3000000L + i),
+                                                    Arrays.asList("odin")));
+            oc.getLvap().setAssocState(true);
+            clientManager.addClient(oc);
+            poolManager.mapClientToPool(oc, "pool-1");
+        }
+        journal.run();
+
+        long start = System.nanoTime();
+        restart();
+        long elapsed = System.nanoTime() - start;
+        assertEquals(clients, clientManager.getClients().size());
+        assertEquals(clients, poolManager.getClientsFromPool("pool-1").size());
+        assertTrue("restore took " + elapsed / 1000000 + " ms",
+                   elapsed < 1000000000L);
+    }
+}
@@ -0,0 +1,66 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.floodlightcontroller.util.MACAddress;
+
+import org.junit.Test;
+
+public class StationStatsTest {
+
+    private static final String ROW1 = "00:1B:2C:3D:4E:5F packets:12 avg_rate:5500.5 "
+            + "avg_signal:-56.25 avg_len_pkt:1024 air_time:3.5 first_received:100.125 "
+            + "last_received:102 equipment:STA";
+    private static final String ROW2 = "00:00:00:00:00:02 packets:0 avg_rate:1000 "
+            + "avg_signal:-80 avg_len_pkt:60 air_time:0.1 first_received:1 "
+            + "last_received:2 equipment:AP";
+
+    @Test
+    public void testParse() {
+        StationStats stats = StationStats.parse(ROW1 + "\n" + ROW2 + "\n", 8, false);
+        assertEquals(2, stats.size());
+
+        int row = stats.indexOf(MACAddress.valueOf("00:1b:2c:3d:4e:5f"));
+        assertEquals(0, row);
+        assertEquals(12, stats.getPackets(row));
+        assertEquals(5500.5, stats.getAvgRate(row), 0);
+        assertEquals(-56.25, stats.getAvgSignal(row), 0);
+        assertEquals(1024, stats.getAvgLenPkt(row), 0);
+        assertEquals(3.5, stats.getAirTime(row), 0);
+        assertEquals(100.125, stats.getFirstReceived(row), 0);
+        assertEquals(102, stats.getLastReceived(row), 0);
+        assertFalse(stats.isAccessPoint(row));
+
+        assertEquals(1, stats.indexOf(2L));
+        assertTrue(stats.isAccessPoint(1));
+        assertEquals(-1, stats.indexOf(3L));
+    }
+
+    @Test
+    public void testSkippedRows() {
+        // Beacons only
+        assertEquals(1, StationStats.parse(ROW1 + "\n" + ROW2, 8, true).size());
+        // Wrong number of properties, bad MAC
+        assertEquals(0, StationStats.parse(ROW1, 1, false).size());
+        assertEquals(0, StationStats.parse("00:00:00:00:02 avg_signal:-40", 1, false).size());
+        assertEquals(0, StationStats.parse(null, 8, false).size());
+
+        StationStats scan = StationStats.parse("00:00:00:00:00:05 avg_signal:-40", 1, false);
+        assertEquals(1, scan.size());
+        assertEquals(-40, scan.getAvgSignal(0), 0);
+        assertTrue(Double.isNaN(scan.getAvgRate(0)));
+    }
+
+    @Test
+    public void testParseDouble() {
+        String[] values = {"0", "-0.5", "12345.678901", "1e3", "0.1", "-.25", "+3"};
+        for (String v : values) {
+            assertEquals(v, Double.parseDouble(v),
+                         StationStats.parseDouble(v, 0, v.length()), 0);
+        }
+        assertTrue(Double.isNaN(StationStats.parseDouble("-", 0, 1)));
+        assertTrue(Double.isNaN(StationStats.parseDouble("abc", 0, 3)));
+    }
+}
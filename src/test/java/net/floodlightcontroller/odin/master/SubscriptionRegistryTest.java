@@ -0,0 +1,81 @@
+package net.floodlightcontroller.odin.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+
+import net.floodlightcontroller.odin.master.OdinEventSubscription.Relation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubscriptionRegistryTest {
+    private PoolManager poolManager;
+    private SubscriptionRegistry registry;
+    private InetAddress agent1;
+    private InetAddress agent2;
+
+    private final NotificationCallback cb = new NotificationCallback() {
+        @Override
+        public void exec(OdinEventSubscription oes, NotificationCallbackContext cntx) {
+        }
+    };
+
+    private static OdinEventSubscription subscription(String client, int value) {
+        OdinEventSubscription oes = new OdinEventSubscription();
+        oes.setSubscription(client, "signal", Relation.GREATER_THAN, value);
+        return oes;
+    }
+
+    @Before
+    public void setup() throws Exception {
+        poolManager = new PoolManager();
+        registry = new SubscriptionRegistry(
+                new AgentManager(new ClientManager(), poolManager), poolManager);
+        agent1 = InetAddress.getByName("172.17.2.161");
+        agent2 = InetAddress.getByName("172.17.2.162");
+        poolManager.addPoolForAgent(agent1, PoolManager.GLOBAL_POOL);
+        poolManager.addPoolForAgent(agent1, "pool-1");
+        poolManager.addPoolForAgent(agent2, PoolManager.GLOBAL_POOL);
+    }
+
+    @Test
+    public void testEncoding() {
+        assertEquals("0 ", registry.getSubscriptionList(agent1));
+
+        long id1 = registry.register(PoolManager.GLOBAL_POOL, subscription("*", 180), cb);
+        long id2 = registry.register(PoolManager.GLOBAL_POOL,
+                                     subscription("00:00:00:00:00:03", 150), cb);
+        assertEquals(1, id1);
+        assertEquals(2, id2);
+        assertEquals("2 1 00:00:00:00:00:00 signal 1 180.0 2 00:00:00:00:00:03 signal 1 150.0 ",
+                     registry.getSubscriptionList(agent2));
+
+        registry.unregister(id1);
+        assertNull(registry.get(id1));
+        assertEquals("1 2 00:00:00:00:00:03 signal 1 150.0 ",
+                     registry.getSubscriptionList(agent2));
+
+        // Unknown ids are ignored
+        registry.unregister(id1);
+        registry.unregister(42);
+        assertEquals(3, registry.register(PoolManager.GLOBAL_POOL, subscription("*", 1), cb));
+    }
+
+    @Test
+    public void testPools() {
+        registry.register(PoolManager.GLOBAL_POOL, subscription("*", 180), cb);
+        long id = registry.register("pool-1", subscription("*", 100), cb);
+
+        assertEquals("2 1 00:00:00:00:00:00 signal 1 180.0 2 00:00:00:00:00:00 signal 1 100.0 ",
+                     registry.getSubscriptionList(agent1));
+        assertEquals("1 1 00:00:00:00:00:00 signal 1 180.0 ",
+                     registry.getSubscriptionList(agent2));
+        assertEquals("pool-1", registry.get(id).pool);
+
+        registry.unregister(id);
+        assertEquals(registry.getSubscriptionList(agent2),
+                     registry.getSubscriptionList(agent1));
+    }
+}